@@ -0,0 +1,28 @@
+package org.yah.tools.index;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+public class AsyncEntityIndexReader<T> extends AsyncIndexReader<T> {
+
+    public AsyncEntityIndexReader(Supplier<? extends EntityIndexReader<T>> reader, Executor executor) {
+        super(reader, executor);
+    }
+
+    @Override
+    public EntityIndexReader<T> getReader() {
+        return (EntityIndexReader<T>) reader.get();
+    }
+
+    public CompletableFuture<Collection<T>> find(Collection<String> ids) {
+        return CompletableFuture.supplyAsync(() -> getReader().find(ids), executor);
+    }
+
+    public CompletableFuture<Optional<T>> find(String id) {
+        return CompletableFuture.supplyAsync(() -> getReader().find(id), executor);
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.yah.tools.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+public class AsyncEntityIndexWriter<T> extends AsyncIndexWriter<T> {
+
+    public AsyncEntityIndexWriter(Supplier<? extends EntityIndexWriter<T>> writer, Executor executor) {
+        super(writer, executor);
+    }
+
+    @Override
+    public EntityIndexWriter<T> getWriter() {
+        return (EntityIndexWriter<T>) writer.get();
+    }
+
+    public CompletableFuture<Long> update(T element) {
+        return update(Collections.singleton(element));
+    }
+
+    public CompletableFuture<Long> update(Collection<T> elements) {
+        return CompletableFuture.supplyAsync(() -> getWriter().update(elements), executor);
+    }
+
+    public CompletableFuture<Long> delete(String id) {
+        return delete(Collections.singleton(id));
+    }
+
+    public CompletableFuture<Long> delete(Collection<String> ids) {
+        return CompletableFuture.supplyAsync(() -> getWriter().delete(ids), executor);
+    }
+
+    public CompletableFuture<Long> updateFields(String id, Map<String, ?> values) {
+        return CompletableFuture.supplyAsync(() -> getWriter().updateFields(id, values), executor);
+    }
+
+}
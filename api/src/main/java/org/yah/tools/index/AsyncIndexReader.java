@@ -0,0 +1,76 @@
+package org.yah.tools.index;
+
+import org.yah.tools.index.query.*;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Run the {@link IndexReader} operations on an executor, so the calling thread never waits for index I/O or
+ * elements deserialization.
+ */
+public class AsyncIndexReader<T> {
+
+    protected final Supplier<? extends IndexReader<T>> reader;
+    protected final Executor executor;
+
+    /**
+     * @param reader supplier of the reader used by each operation, called from the executor
+     */
+    public AsyncIndexReader(Supplier<? extends IndexReader<T>> reader, Executor executor) {
+        this.reader = Objects.requireNonNull(reader);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    public IndexReader<T> getReader() {
+        return reader.get();
+    }
+
+    public CompletableFuture<Integer> count() {
+        return CompletableFuture.supplyAsync(() -> getReader().count(), executor);
+    }
+
+    public CompletableFuture<Integer> count(IndexQuery query) {
+        return CompletableFuture.supplyAsync(() -> getReader().count(query), executor);
+    }
+
+    /**
+     * @return a cursor delivering batches of batchSize elements, created once the first batch is searched
+     */
+    public CompletableFuture<AsyncIndexCursor<T>> query(IndexQuery query, int batchSize) {
+        return CompletableFuture.supplyAsync(() -> new AsyncIndexCursor<>(getReader().query(query, batchSize),
+                executor, batchSize), executor);
+    }
+
+    public CompletableFuture<List<T>> list(IndexQuery query) {
+        return CompletableFuture.supplyAsync(() -> getReader().list(query), executor);
+    }
+
+    public CompletableFuture<Optional<T>> findFirst(IndexQuery query) {
+        return CompletableFuture.supplyAsync(() -> getReader().findFirst(query), executor);
+    }
+
+    public CompletableFuture<List<ScoredElement<T>>> scoredList(IndexQuery query) {
+        return CompletableFuture.supplyAsync(() -> getReader().scoredList(query), executor);
+    }
+
+    public CompletableFuture<IndexGroups<T>> groupedList(IndexQuery query) {
+        return CompletableFuture.supplyAsync(() -> getReader().groupedList(query), executor);
+    }
+
+    public CompletableFuture<Optional<String>> didYouMean(String fieldName, String text) {
+        return CompletableFuture.supplyAsync(() -> getReader().didYouMean(fieldName, text), executor);
+    }
+
+    /**
+     * Execute all the requests sequentially in one executor task, see {@link IndexReader#multiSearch(List)}
+     */
+    public CompletableFuture<List<SearchResult<T>>> multiSearch(List<SearchRequest> requests) {
+        return CompletableFuture.supplyAsync(() -> getReader().multiSearch(requests), executor);
+    }
+
+}
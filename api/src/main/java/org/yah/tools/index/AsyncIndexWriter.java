@@ -0,0 +1,49 @@
+package org.yah.tools.index;
+
+import org.yah.tools.index.query.IndexQuery;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Run the {@link IndexWriter} operations on an executor, so the calling thread never waits for elements
+ * serialization or index I/O.
+ */
+public class AsyncIndexWriter<T> {
+
+    protected final Supplier<? extends IndexWriter<T>> writer;
+    protected final Executor executor;
+
+    /**
+     * @param writer supplier of the writer used by each operation, called from the executor
+     */
+    public AsyncIndexWriter(Supplier<? extends IndexWriter<T>> writer, Executor executor) {
+        this.writer = Objects.requireNonNull(writer);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    public IndexWriter<T> getWriter() {
+        return writer.get();
+    }
+
+    public CompletableFuture<Long> add(T element) {
+        return add(Collections.singleton(element));
+    }
+
+    public CompletableFuture<Long> add(Collection<T> elements) {
+        return CompletableFuture.supplyAsync(() -> getWriter().add(elements), executor);
+    }
+
+    public CompletableFuture<Long> delete(IndexQuery query) {
+        return CompletableFuture.supplyAsync(() -> getWriter().delete(query), executor);
+    }
+
+    public CompletableFuture<Long> clear() {
+        return CompletableFuture.supplyAsync(() -> getWriter().clear(), executor);
+    }
+
+}
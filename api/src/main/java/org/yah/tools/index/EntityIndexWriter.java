@@ -2,19 +2,28 @@ package org.yah.tools.index;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 
 public interface EntityIndexWriter<T> extends IndexWriter<T> {
 
-    void update(Collection<T> elements);
+    long update(Collection<T> elements);
 
-    default void update(T element) {
-        update(Collections.singleton(element));
+    default long update(T element) {
+        return update(Collections.singleton(element));
     }
 
-    default void delete(String id) {
-        delete(Collections.singleton(id));
+    default long delete(String id) {
+        return delete(Collections.singleton(id));
     }
 
-    void delete(Collection<String> ids);
+    long delete(Collection<String> ids);
+
+    /**
+     * Update some fields of an indexed element in place, without reindexing it.<br/>
+     * Only the fields supporting partial updates can be updated, the indexed element must exist.
+     *
+     * @param values new values by field name
+     */
+    long updateFields(String id, Map<String, ?> values);
 
 }
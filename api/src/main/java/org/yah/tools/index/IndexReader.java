@@ -1,11 +1,9 @@
 package org.yah.tools.index;
 
-import org.yah.tools.index.query.IndexCursor;
-import org.yah.tools.index.query.IndexQuery;
-import org.yah.tools.index.query.IndexQueryBuilder;
-import org.yah.tools.index.query.ScoredElement;
+import org.yah.tools.index.query.*;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 
 public interface IndexReader<T> {
 
@@ -13,6 +11,8 @@ public interface IndexReader<T> {
 
     IndexQueryBuilder prepareQuery();
 
+    IndexQueryTemplateBuilder prepareTemplate();
+
     IndexCursor<T> query(IndexQuery query, int batchSize);
 
     List<T> list(IndexQuery query);
@@ -25,4 +25,50 @@ public interface IndexReader<T> {
 
     List<ScoredElement<T>> scoredList(IndexQuery query);
 
+    /**
+     * Execute a collapsed query, see {@link IndexQueryBuilder#collapse(String, int)}
+     *
+     * @throws IllegalArgumentException if the query is not collapsed
+     */
+    IndexGroups<T> groupedList(IndexQuery query);
+
+    /**
+     * Correct the misspelled words of a text, using the terms indexed in a field.<br/>
+     * A word is misspelled when its analyzed term is not indexed, it is replaced by the closest indexed term.
+     *
+     * @return the corrected text, empty if no word was corrected
+     */
+    Optional<String> didYouMean(String fieldName, String text);
+
+    /**
+     * Execute all requests sequentially, see {@link #multiSearch(List, Executor)}
+     */
+    default List<SearchResult<T>> multiSearch(List<SearchRequest> requests) {
+        return multiSearch(requests, null);
+    }
+
+    /**
+     * Execute a batch of requests, on the same index snapshot when supported by the implementation.<br/>
+     * A failing request does not fail the others, its error is returned in its result.
+     *
+     * @param executor executor used to run the requests in parallel, null to run them sequentially
+     * @return the results, in the requests order
+     */
+    default List<SearchResult<T>> multiSearch(List<SearchRequest> requests, Executor executor) {
+        return SearchResult.executeAll(requests, executor, request -> {
+            switch (request.getType()) {
+                case LIST:
+                    return list(request.getQuery());
+                case COUNT:
+                    return count(request.getQuery());
+                case FIRST:
+                    return findFirst(request.getQuery());
+                case SCORED_LIST:
+                    return scoredList(request.getQuery());
+                default:
+                    throw new IllegalArgumentException("Unsupported request type " + request.getType());
+            }
+        });
+    }
+
 }
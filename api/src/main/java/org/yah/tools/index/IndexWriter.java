@@ -5,16 +5,21 @@ import org.yah.tools.index.query.IndexQuery;
 import java.util.Collection;
 import java.util.Collections;
 
+/**
+ * Write operations return the sequence number of the operation: an operation with a higher sequence number was
+ * applied after the operations with lower ones. Sequence numbers only increase while the writer is open.<br/>
+ * A writer without a global operations order, like a sharded index writer, returns -1.
+ */
 public interface IndexWriter<T> {
 
-    default void add(T element) {
-        add(Collections.singleton(element));
+    default long add(T element) {
+        return add(Collections.singleton(element));
     }
 
-    void add(Collection<T> elements);
+    long add(Collection<T> elements);
 
-    void delete(IndexQuery query);
+    long delete(IndexQuery query);
 
-    void clear();
+    long clear();
 
 }
@@ -0,0 +1,23 @@
+package org.yah.tools.index;
+
+import java.util.List;
+
+/**
+ * Thrown by a conditional update when an element version is not newer than the indexed one
+ */
+public class VersionConflictException extends IndexException {
+
+    private final List<String> ids;
+
+    public VersionConflictException(String message, List<String> ids) {
+        super(message);
+        this.ids = List.copyOf(ids);
+    }
+
+    /**
+     * @return ids of the stale elements
+     */
+    public List<String> getIds() {
+        return ids;
+    }
+}
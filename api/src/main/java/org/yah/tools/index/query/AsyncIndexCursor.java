@@ -0,0 +1,57 @@
+package org.yah.tools.index.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Deliver the elements of an {@link IndexCursor} by batches, loaded by an executor.<br/>
+ * Batches are loaded one after the other, in the requests order. A failed batch only fails its own future, the next
+ * batches continue from the cursor position.
+ */
+public class AsyncIndexCursor<T> implements AutoCloseable {
+
+    private final IndexCursor<T> cursor;
+    private final Executor executor;
+    private final int batchSize;
+
+    private CompletableFuture<?> pending = CompletableFuture.completedFuture(null);
+
+    public AsyncIndexCursor(IndexCursor<T> cursor, Executor executor, int batchSize) {
+        this.cursor = Objects.requireNonNull(cursor);
+        this.executor = Objects.requireNonNull(executor);
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize " + batchSize + " must be > 0");
+        this.batchSize = batchSize;
+    }
+
+    public long getMinTotalHits() {
+        return cursor.getMinTotalHits();
+    }
+
+    /**
+     * @return the next elements, at most batchSize, an empty list when the cursor is exhausted
+     */
+    public synchronized CompletableFuture<List<T>> nextBatch() {
+        final CompletableFuture<List<T>> batch = pending.handle((ignored, error) -> null).thenApplyAsync(ignored -> {
+            final List<T> elements = new ArrayList<>(batchSize);
+            while (elements.size() < batchSize && cursor.hasNext()) {
+                elements.add(cursor.next());
+            }
+            return elements;
+        }, executor);
+        pending = batch;
+        return batch;
+    }
+
+    /**
+     * Close the cursor once the pending batches are loaded
+     */
+    @Override
+    public synchronized void close() {
+        pending.whenComplete((ignored, error) -> cursor.close());
+    }
+
+}
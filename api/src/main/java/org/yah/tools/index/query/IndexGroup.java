@@ -0,0 +1,53 @@
+package org.yah.tools.index.query;
+
+import java.util.List;
+
+/**
+ * The top elements of a group of hits sharing the same collapse field value, see
+ * {@link IndexQueryBuilder#collapse(String, int)}
+ */
+public class IndexGroup<T> {
+
+    private final String value;
+    private final long totalHits;
+    private final List<ScoredElement<T>> elements;
+
+    public IndexGroup(String value, long totalHits, List<ScoredElement<T>> elements) {
+        this.value = value;
+        this.totalHits = totalHits;
+        this.elements = List.copyOf(elements);
+    }
+
+    /**
+     * @return the collapse field value of the group, null for the hits without value
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the number of hits in the group
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return the top elements of the group, sorted by the query sort
+     */
+    public List<ScoredElement<T>> getElements() {
+        return elements;
+    }
+
+    /**
+     * @return the top element of the group
+     */
+    public ScoredElement<T> getTopElement() {
+        return elements.get(0);
+    }
+
+    @Override
+    public String toString() {
+        return value + " (" + totalHits + "): " + elements;
+    }
+}
@@ -0,0 +1,49 @@
+package org.yah.tools.index.query;
+
+import java.util.List;
+
+/**
+ * A page of the groups of a collapsed query, see {@link org.yah.tools.index.IndexReader#groupedList(IndexQuery)}
+ */
+public class IndexGroups<T> {
+
+    private final long totalHits;
+    private final int totalGroups;
+    private final List<IndexGroup<T>> groups;
+
+    public IndexGroups(long totalHits, int totalGroups, List<IndexGroup<T>> groups) {
+        this.totalHits = totalHits;
+        this.totalGroups = totalGroups;
+        this.groups = List.copyOf(groups);
+    }
+
+    /**
+     * @return the number of hits of the query, in all groups
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return the number of groups of the query hits
+     */
+    public int getTotalGroups() {
+        return totalGroups;
+    }
+
+    /**
+     * @return the groups page, sorted by their top element
+     */
+    public List<IndexGroup<T>> getGroups() {
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexGroups{" +
+                "totalHits=" + totalHits +
+                ", totalGroups=" + totalGroups +
+                ", groups=" + groups +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package org.yah.tools.index.query;
 
 import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
 
 public interface IndexQueryBuilder {
 
@@ -22,6 +23,56 @@ public interface IndexQueryBuilder {
 
     IndexQueryBuilder sort(IndexSort sort);
 
+    default IndexQueryBuilder highlight(String... fields) {
+        return highlight(Set.of(fields), 1);
+    }
+
+    /**
+     * Highlight the best passages of text fields matching the query, returned by {@link ScoredElement#getHighlights()}
+     * of the scored queries.
+     *
+     * @param fields      the highlighted text fields, indexed with offsets
+     * @param maxPassages the maximum number of passages per field
+     */
+    IndexQueryBuilder highlight(Set<String> fields, int maxPassages);
+
+    default IndexQueryBuilder collapse(String fieldName) {
+        return collapse(fieldName, 1);
+    }
+
+    /**
+     * Group the hits by the value of a sorted string field, executed by
+     * {@link org.yah.tools.index.IndexReader#groupedList(IndexQuery)}.<br/>
+     * The groups are sorted by their top hit, with the query sort, and paged by skip and limit. A query without limit
+     * returns the first 10 groups.
+     *
+     * @param groupSize the maximum number of hits returned per group
+     */
+    IndexQueryBuilder collapse(String fieldName, int groupSize);
+
+    default IndexQueryBuilder rescore(int windowSize, IndexQuery rescoreQuery) {
+        return rescore(windowSize, rescoreQuery, 1, 1);
+    }
+
+    /**
+     * Rescore the top hits of this query with a second query, only run on these hits.<br/>
+     * The rescored score is {@code queryWeight * score + rescoreQueryWeight * rescoreQueryScore}, the hits not matched
+     * by the rescore query keep their weighted score. Rescored queries are sorted by their rescored score, and return
+     * at most windowSize elements, skip and limit page the rescored hits.
+     *
+     * @param windowSize the number of top hits to rescore
+     */
+    IndexQueryBuilder rescore(int windowSize, IndexQuery rescoreQuery, float queryWeight, float rescoreQueryWeight);
+
+    /**
+     * Rescore the top hits of this query with a function of their score and of the value of a numeric sorted field,
+     * see {@link #rescore(int, IndexQuery, float, float)}.
+     *
+     * @param fieldName the numeric sorted field, hits without value are rescored with a 0 value
+     * @param function  the rescored score of a hit, from its score and its field value
+     */
+    IndexQueryBuilder rescore(int windowSize, String fieldName, DoubleBinaryOperator function);
+
     default IndexQueryBuilder withTerm(String fieldName, String keyword) {
         return withTerm(fieldName, keyword, Occur.SHOULD, 1);
     }
@@ -46,6 +97,37 @@ public interface IndexQueryBuilder {
         return withTerms(fieldName, terms, occur, termOccur, 1);
     }
 
+    default IndexQueryBuilder withFuzzyTerm(String fieldName, String term, Occur occur) {
+        return withFuzzyTerm(fieldName, term, occur, 2, 1, 50, 1);
+    }
+
+    /**
+     * Match the terms within maxEdits edits of a term, not analyzed.<br/>
+     * The query cost is bounded by the prefix shared by all matched terms, and by the maximum number of terms the
+     * query expands to.
+     *
+     * @param maxEdits      the maximum edit distance, between 0 and 2
+     * @param prefixLength  the length of the prefix shared by the term and the matched terms
+     * @param maxExpansions the maximum number of matched terms, the closest ones are kept
+     */
+    IndexQueryBuilder withFuzzyTerm(String fieldName, String term, Occur occur,
+                                    int maxEdits, int prefixLength, int maxExpansions, float boost);
+
+    default IndexQueryBuilder withFuzzyTerms(String fieldName, String terms, Occur occur) {
+        return withFuzzyTerms(fieldName, terms, occur, TermOccur.SHOULD, 2, 1, 50, 1);
+    }
+
+    default IndexQueryBuilder withFuzzyTerms(String fieldName, String terms, Occur occur, TermOccur termsOccur) {
+        return withFuzzyTerms(fieldName, terms, occur, termsOccur, 2, 1, 50, 1);
+    }
+
+    /**
+     * Analyze a text, and match each of its terms as a fuzzy term, see
+     * {@link #withFuzzyTerm(String, String, Occur, int, int, int, float)}
+     */
+    IndexQueryBuilder withFuzzyTerms(String fieldName, String terms, Occur occur, TermOccur termsOccur,
+                                     int maxEdits, int prefixLength, int maxExpansions, float boost);
+
     IndexQueryBuilder withPhrase(String fieldName, String phrase, Occur occur, int slope, float boost);
 
     default IndexQueryBuilder withPhrase(String fieldName, String phrase, Occur occur, int slope) {
@@ -70,6 +152,89 @@ public interface IndexQueryBuilder {
         return withRange(fieldName, min, max, Occur.SHOULD, 1);
     }
 
+    default IndexQueryBuilder withGeoDistance(String fieldName, double latitude, double longitude, double radiusMeters) {
+        return withGeoDistance(fieldName, latitude, longitude, radiusMeters, Occur.FILTER);
+    }
+
+    /**
+     * Match the geo points within a distance of an origin, see {@link IndexSort.IndexSortField#distance} to sort them.
+     */
+    IndexQueryBuilder withGeoDistance(String fieldName, double latitude, double longitude, double radiusMeters, Occur occur);
+
+    default IndexQueryBuilder withGeoBoundingBox(String fieldName, double minLatitude, double maxLatitude,
+                                                 double minLongitude, double maxLongitude) {
+        return withGeoBoundingBox(fieldName, minLatitude, maxLatitude, minLongitude, maxLongitude, Occur.FILTER);
+    }
+
+    /**
+     * Match the geo points in a box, crossing the dateline if minLongitude > maxLongitude.
+     */
+    IndexQueryBuilder withGeoBoundingBox(String fieldName, double minLatitude, double maxLatitude,
+                                         double minLongitude, double maxLongitude, Occur occur);
+
+    default IndexQueryBuilder withGeoPolygon(String fieldName, double[] latitudes, double[] longitudes) {
+        return withGeoPolygon(fieldName, latitudes, longitudes, Occur.FILTER);
+    }
+
+    /**
+     * Match the geo points in a polygon.
+     *
+     * @param latitudes  the latitudes of the polygon vertices, the last vertex must be the first one
+     * @param longitudes the longitudes of the polygon vertices, the last vertex must be the first one
+     */
+    IndexQueryBuilder withGeoPolygon(String fieldName, double[] latitudes, double[] longitudes, Occur occur);
+
+    default IndexQueryBuilder withRankFeature(String fieldName) {
+        return withRankFeature(fieldName, 1);
+    }
+
+    /**
+     * Add a static rank feature to the score of the matched elements, with a saturation function
+     * {@code weight * feature / (feature + pivot)} whose pivot is the approximate geometric mean of the feature.<br/>
+     * Rank features do not change the matched elements, and keep the top hits collection able to skip the
+     * non-competitive ones.
+     *
+     * @param fieldName a rank feature field
+     * @param weight    the maximum score of the feature, in ]0, 64]
+     */
+    IndexQueryBuilder withRankFeature(String fieldName, float weight);
+
+    /**
+     * Add a static rank feature to the score of the matched elements, with a saturation function
+     * {@code weight * feature / (feature + pivot)}.
+     *
+     * @param pivot the feature value scored weight / 2
+     */
+    IndexQueryBuilder withRankFeature(String fieldName, float weight, float pivot);
+
+    /**
+     * Add a static rank feature to the score of the matched elements, with a log function
+     * {@code weight * log(scalingFactor + feature)}.
+     *
+     * @param scalingFactor the log offset, >= 1
+     */
+    IndexQueryBuilder withLogRankFeature(String fieldName, float weight, float scalingFactor);
+
+    /**
+     * Add a static rank feature to the score of the matched elements, with a sigmoid function
+     * {@code weight * feature^exponent / (feature^exponent + pivot^exponent)}.
+     */
+    IndexQueryBuilder withSigmoidRankFeature(String fieldName, float weight, float pivot, float exponent);
+
+    default IndexQueryBuilder withNested(String path, IndexQuery nestedQuery, Occur occur) {
+        return withNested(path, nestedQuery, occur, NestedScoreMode.AVG);
+    }
+
+    /**
+     * Match the elements having a nested element matching a query, all the query clauses being matched by the
+     * same nested element.
+     *
+     * @param path        path of the nested elements
+     * @param nestedQuery query of the nested elements fields, whose names start with the path
+     * @param scoreMode   how the scores of the matched nested elements are combined into the element score
+     */
+    IndexQueryBuilder withNested(String path, IndexQuery nestedQuery, Occur occur, NestedScoreMode scoreMode);
+
     IndexQueryBuilder withQuery(IndexQuery query, Occur occur, float boost);
 
     default IndexQueryBuilder withQuery(IndexQuery query, Occur occur) {
@@ -104,4 +269,12 @@ public interface IndexQueryBuilder {
         SHOULD
     }
 
+    enum NestedScoreMode {
+        NONE,
+        AVG,
+        MAX,
+        MIN,
+        TOTAL
+    }
+
 }
@@ -0,0 +1,29 @@
+package org.yah.tools.index.query;
+
+/**
+ * A query shape prepared once, with named parameters bound for each request.
+ */
+public interface IndexQueryTemplate {
+
+    Binding bind();
+
+    /**
+     * Parameters values of one query, parameters not set are removed from the query.
+     */
+    interface Binding {
+
+        /**
+         * @param value a String for term, terms and query parameters, a number, LocalDate or Instant for range
+         *              parameters
+         */
+        Binding set(String parameter, Object value);
+
+        Binding limit(int limit);
+
+        Binding skip(int skip);
+
+        IndexQuery build();
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.yah.tools.index.query;
+
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+import org.yah.tools.index.query.IndexQueryBuilder.TermOccur;
+
+import java.util.Set;
+
+public interface IndexQueryTemplateBuilder {
+
+    IndexQueryTemplateBuilder withProjection(Set<String> projection);
+
+    IndexQueryTemplateBuilder limit(int limit);
+
+    IndexQueryTemplateBuilder skip(int skip);
+
+    IndexQueryTemplateBuilder sort(IndexSort sort);
+
+    /**
+     * Add a constant clause, only the query of the {@link IndexQuery} is used
+     */
+    IndexQueryTemplateBuilder withQuery(IndexQuery query, Occur occur);
+
+    /**
+     * Add a constant clause, parsed once
+     */
+    IndexQueryTemplateBuilder withQuery(String defaultField, String query, Occur occur);
+
+    IndexQueryTemplateBuilder withTermParameter(String fieldName, String parameter, Occur occur);
+
+    IndexQueryTemplateBuilder withTermsParameter(String fieldName, String parameter, Occur occur, TermOccur termsOccur);
+
+    default IndexQueryTemplateBuilder withTermsParameter(String fieldName, String parameter, Occur occur) {
+        return withTermsParameter(fieldName, parameter, occur, TermOccur.SHOULD);
+    }
+
+    /**
+     * @param minParameter parameter of the inclusive min value, the range is open if not set
+     * @param maxParameter parameter of the inclusive max value, the range is open if not set
+     */
+    IndexQueryTemplateBuilder withRangeParameter(String fieldName, String minParameter, String maxParameter, Occur occur);
+
+    /**
+     * Add a clause parsed from the parameter value using the query parser syntax
+     */
+    IndexQueryTemplateBuilder withQueryParameter(String defaultField, String parameter, Occur occur);
+
+    IndexQueryTemplate build();
+
+}
@@ -42,7 +42,8 @@ public class IndexSort {
     private enum SortableFieldType {
         SCORE,
         INDEX_ORDER,
-        PROPERTY
+        PROPERTY,
+        DISTANCE
     }
 
     public static class IndexSortField {
@@ -63,14 +64,30 @@ public class IndexSort {
             return new IndexSortField("indexOrder", direction, SortableFieldType.INDEX_ORDER);
         }
 
+        /**
+         * Sort the elements of a geo point field by their distance to an origin, the closest first
+         */
+        public static IndexSortField distance(String name, double latitude, double longitude) {
+            return new IndexSortField(name, IndexSortDirection.ASC, SortableFieldType.DISTANCE, latitude, longitude);
+        }
+
         private final String name;
         private final IndexSortDirection direction;
         private final SortableFieldType type;
+        private final double latitude;
+        private final double longitude;
 
         private IndexSortField(String name, IndexSortDirection direction, SortableFieldType type) {
+            this(name, direction, type, 0, 0);
+        }
+
+        private IndexSortField(String name, IndexSortDirection direction, SortableFieldType type,
+                               double latitude, double longitude) {
             this.name = Objects.requireNonNull(name);
             this.direction = Objects.requireNonNull(direction);
             this.type = type;
+            this.latitude = latitude;
+            this.longitude = longitude;
         }
 
         public String getName() {
@@ -89,6 +106,24 @@ public class IndexSort {
             return type == SortableFieldType.INDEX_ORDER;
         }
 
+        public boolean isDistance() {
+            return type == SortableFieldType.DISTANCE;
+        }
+
+        /**
+         * @return the latitude of the distance origin
+         */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        /**
+         * @return the longitude of the distance origin
+         */
+        public double getLongitude() {
+            return longitude;
+        }
+
         @Override
         public String toString() {
             return "IndexSortField{" +
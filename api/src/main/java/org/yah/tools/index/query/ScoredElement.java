@@ -1,6 +1,8 @@
 package org.yah.tools.index.query;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 
@@ -27,10 +29,16 @@ public class ScoredElement<T> {
 
     private final T element;
     private final float score;
+    private final Map<String, List<String>> highlights;
 
     public ScoredElement(T element, float score) {
+        this(element, score, Map.of());
+    }
+
+    public ScoredElement(T element, float score, Map<String, List<String>> highlights) {
         this.element = element;
         this.score = score;
+        this.highlights = Map.copyOf(highlights);
     }
 
     public T getElement() {
@@ -41,6 +49,17 @@ public class ScoredElement<T> {
         return score;
     }
 
+    /**
+     * @return the best passages of each highlighted field, see {@link IndexQueryBuilder#highlight(java.util.Set, int)}
+     */
+    public Map<String, List<String>> getHighlights() {
+        return highlights;
+    }
+
+    public List<String> getHighlights(String field) {
+        return highlights.getOrDefault(field, List.of());
+    }
+
     @Override
     public String toString() {
         return element + ": " + score;
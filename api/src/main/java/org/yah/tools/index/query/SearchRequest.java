@@ -0,0 +1,53 @@
+package org.yah.tools.index.query;
+
+import java.util.Objects;
+
+/**
+ * One query of a {@link org.yah.tools.index.IndexReader#multiSearch(java.util.List) multi search}.
+ */
+public final class SearchRequest {
+
+    public enum Type {
+        LIST,
+        COUNT,
+        FIRST,
+        SCORED_LIST
+    }
+
+    public static SearchRequest list(IndexQuery query) {
+        return new SearchRequest(Type.LIST, query);
+    }
+
+    public static SearchRequest count(IndexQuery query) {
+        return new SearchRequest(Type.COUNT, query);
+    }
+
+    public static SearchRequest first(IndexQuery query) {
+        return new SearchRequest(Type.FIRST, query);
+    }
+
+    public static SearchRequest scoredList(IndexQuery query) {
+        return new SearchRequest(Type.SCORED_LIST, query);
+    }
+
+    private final Type type;
+    private final IndexQuery query;
+
+    private SearchRequest(Type type, IndexQuery query) {
+        this.type = Objects.requireNonNull(type);
+        this.query = Objects.requireNonNull(query);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public IndexQuery getQuery() {
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + query;
+    }
+}
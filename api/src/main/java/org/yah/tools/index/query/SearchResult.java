@@ -0,0 +1,96 @@
+package org.yah.tools.index.query;
+
+import org.yah.tools.index.IndexException;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Result of a {@link SearchRequest}, holding either the value matching the request type or the error it raised.
+ */
+public final class SearchResult<T> {
+
+    /**
+     * Execute each request, sequentially if executor is null, catching errors in their result.
+     *
+     * @param search return the value of a request: a List for LIST and SCORED_LIST, an Integer for COUNT,
+     *               an Optional for FIRST
+     */
+    public static <T> List<SearchResult<T>> executeAll(List<SearchRequest> requests,
+                                                       Executor executor,
+                                                       Function<SearchRequest, ?> search) {
+        final Function<SearchRequest, SearchResult<T>> safeSearch = request -> {
+            try {
+                return new SearchResult<>(request, search.apply(request), null);
+            } catch (RuntimeException e) {
+                return new SearchResult<>(request, null, e);
+            }
+        };
+
+        if (executor == null)
+            return requests.stream().map(safeSearch).collect(Collectors.toList());
+
+        final List<CompletableFuture<SearchResult<T>>> futures = requests.stream()
+                .map(request -> CompletableFuture.supplyAsync(() -> safeSearch.apply(request), executor))
+                .collect(Collectors.toList());
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private final SearchRequest request;
+    private final Object value;
+    private final RuntimeException error;
+
+    private SearchResult(SearchRequest request, Object value, RuntimeException error) {
+        this.request = Objects.requireNonNull(request);
+        this.value = value;
+        this.error = error;
+    }
+
+    public SearchRequest getRequest() {
+        return request;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public List<T> getList() {
+        return value(SearchRequest.Type.LIST);
+    }
+
+    public int getCount() {
+        final Integer count = value(SearchRequest.Type.COUNT);
+        return count;
+    }
+
+    public Optional<T> getFirst() {
+        return value(SearchRequest.Type.FIRST);
+    }
+
+    public List<ScoredElement<T>> getScoredList() {
+        return value(SearchRequest.Type.SCORED_LIST);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V value(SearchRequest.Type type) {
+        if (request.getType() != type)
+            throw new IllegalStateException("Request " + request + " is not a " + type + " request");
+        if (error != null)
+            throw new IndexException("Request " + request + " failed", error);
+        return (V) value;
+    }
+
+    @Override
+    public String toString() {
+        return request + " -> " + (error != null ? error : value);
+    }
+}
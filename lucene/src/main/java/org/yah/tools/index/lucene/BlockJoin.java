@@ -0,0 +1,101 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.join.BitSetProducer;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToChildBlockJoinQuery;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.apache.lucene.util.BytesRef;
+import org.yah.tools.index.lucene.mapper.DocumentMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Nested documents of an index, written in blocks before their parent document.<br/>
+ * The nested documents are hidden from the index searchers, they are only matched through their parents by
+ * {@link #join} queries.
+ */
+final class BlockJoin {
+
+    /**
+     * @return the block join of a document mapper, null if its elements have no nested documents
+     */
+    static BlockJoin create(DocumentMapper<?> documentMapper) {
+        final List<String> paths = documentMapper.getNestedPaths();
+        return paths.isEmpty() ? null : new BlockJoin(paths);
+    }
+
+    private final List<String> paths;
+    private final Query childrenQuery;
+    /**
+     * cached per segment, parents of soft deleted blocks are kept to delimit the blocks
+     */
+    private final BitSetProducer parentsFilter;
+
+    private BlockJoin(List<String> paths) {
+        this.paths = List.copyOf(paths);
+        this.childrenQuery = new TermInSetQuery(DocumentMapper.NESTED_FIELD, paths.stream()
+                .map(BytesRef::new)
+                .collect(Collectors.toList()));
+        this.parentsFilter = new QueryBitSetProducer(new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), BooleanClause.Occur.FILTER)
+                .add(childrenQuery, BooleanClause.Occur.MUST_NOT)
+                .build());
+    }
+
+    /**
+     * @return a searcher matching only the parent documents
+     */
+    IndexSearcher searcher(IndexReader reader) {
+        return new IndexSearcher(reader) {
+            @Override
+            public Query rewrite(Query original) throws IOException {
+                return super.rewrite(parents(original));
+            }
+        };
+    }
+
+    /**
+     * @return the parents of the nested documents of a path matching a query
+     * @throws IllegalArgumentException if the path is not a nested documents path
+     */
+    Query join(String path, Query nestedQuery, ScoreMode scoreMode) {
+        if (!paths.contains(path))
+            throw new IllegalArgumentException("'" + path + "' is not a nested documents path, nested paths are " + paths);
+        final Query childQuery = new BooleanQuery.Builder()
+                .add(nestedQuery, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(DocumentMapper.NESTED_FIELD, path)), BooleanClause.Occur.FILTER)
+                .build();
+        return new ToParentBlockJoinQuery(childQuery, parentsFilter, scoreMode);
+    }
+
+    /**
+     * @return the parent documents matching a query, with all their nested documents
+     */
+    Query blocks(Query query) {
+        final Query parents = parents(query);
+        return new BooleanQuery.Builder()
+                .add(parents, BooleanClause.Occur.SHOULD)
+                .add(new ToChildBlockJoinQuery(parents, parentsFilter), BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    private Query parents(Query query) {
+        return new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(childrenQuery, BooleanClause.Occur.MUST_NOT)
+                .build();
+    }
+
+}
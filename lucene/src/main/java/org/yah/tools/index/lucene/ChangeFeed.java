@@ -0,0 +1,404 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SoftDeletesRetentionMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yah.tools.index.IndexException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Ordered feed of the changes written to an entity index, enabled with
+ * {@link LuceneIndex.Builder#withChangeFeed(long)}.<br/>
+ * Each indexed document and each deletion tombstone carries a change sequence, replaced documents and tombstones are
+ * soft deleted, and kept by merges while their sequence is in the retention window. A consumer can then poll from
+ * its last checkpoint, even after a restart, as long as the checkpoint is not older than
+ * {@link #getRetainedSequence()}.<br/>
+ * Writes of an index with a change feed are serialized, so the change sequence order is the index order.
+ */
+public final class ChangeFeed implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeed.class);
+
+    static final String SOFT_DELETES_FIELD = "_soft_deleted";
+    static final String SEQUENCE_FIELD = "_change_sequence";
+    static final String OPERATION_FIELD = "_change_operation";
+    static final String ID_FIELD = "_change_id";
+
+    private static final IndexChange.Operation[] OPERATIONS = IndexChange.Operation.values();
+    private static final Sort SEQUENCE_SORT = new Sort(new SortField(SEQUENCE_FIELD, SortField.Type.LONG));
+
+    private final LuceneIndex<?> index;
+    private final long retainedChanges;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+
+    /**
+     * reader of the writer documents, including soft deleted ones
+     */
+    private DirectoryReader historyReader;
+    private IndexWriter historyWriter;
+
+    ChangeFeed(LuceneIndex<?> index, long retainedChanges) {
+        this.index = Objects.requireNonNull(index);
+        if (retainedChanges < 1)
+            throw new IllegalArgumentException("retainedChanges " + retainedChanges + " must be > 0");
+        this.retainedChanges = retainedChanges;
+    }
+
+    /**
+     * @return the sequence of the last change
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * @return the oldest checkpoint that can be polled, changes after this sequence are retained
+     */
+    public long getRetainedSequence() {
+        return Math.max(0, sequence.get() - retainedChanges);
+    }
+
+    /**
+     * @param afterSequence checkpoint of the consumer, 0 to read the retained history from its start
+     * @return the next changes after the checkpoint, ordered by sequence, including not committed changes
+     * @throws IndexException if changes after the checkpoint are not retained anymore, the consumer must rescan
+     *                        the index
+     */
+    public List<IndexChange> poll(long afterSequence, int maxChanges) {
+        // acquire the writer before locking this feed, the writer creation opens the feed with the index lock held
+        final IndexWriter indexWriter = ((LuceneIndexWriter<?>) index.writer()).indexWriter;
+        synchronized (this) {
+            return poll(indexWriter, afterSequence, maxChanges);
+        }
+    }
+
+    private List<IndexChange> poll(IndexWriter indexWriter, long afterSequence, int maxChanges) {
+        if (maxChanges < 1)
+            throw new IllegalArgumentException("maxChanges " + maxChanges + " must be > 0");
+        final long retainedSequence = getRetainedSequence();
+        if (afterSequence < retainedSequence)
+            throw new IndexException("changes of index " + index.getName() + " after " + afterSequence
+                    + " are not retained anymore, oldest checkpoint is " + retainedSequence);
+
+        try {
+            final DirectoryReader reader = historyReader(indexWriter);
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            searcher.setQueryCache(null);
+            final Query query = searcher.rewrite(LongPoint.newRangeQuery(SEQUENCE_FIELD, afterSequence + 1, Long.MAX_VALUE));
+            final Weight weight = searcher.createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1);
+            // only the first changes are kept while collecting, the retained history is not loaded
+            final TopFieldCollector collector = TopFieldCollector.create(SEQUENCE_SORT, maxChanges, Integer.MAX_VALUE);
+            for (LeafReaderContext context : reader.leaves()) {
+                final Scorer scorer = weight.scorer(context);
+                if (scorer != null)
+                    collect(context, scorer, collector);
+            }
+            return changes(reader, collector.topDocs().scoreDocs);
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+    }
+
+    /**
+     * Deliver the changes after a checkpoint to a consumer, then the new changes after each write.<br/>
+     * Changes are delivered in order on the index executor. A subscription that falls out of the retention window
+     * is closed.
+     */
+    public Subscription subscribe(long afterSequence, Consumer<IndexChange> consumer) {
+        final Subscription subscription = new Subscription(afterSequence, consumer);
+        subscriptions.add(subscription);
+        subscription.schedule();
+        return subscription;
+    }
+
+    @Override
+    public synchronized void close() {
+        subscriptions.clear();
+        closeHistoryReader();
+    }
+
+    /**
+     * Keep the soft deleted documents in the retention window when merging
+     */
+    void configure(IndexWriterConfig config) {
+        config.setMergePolicy(new SoftDeletesRetentionMergePolicy(SOFT_DELETES_FIELD,
+                () -> LongPoint.newRangeQuery(SEQUENCE_FIELD, getRetainedSequence() + 1, Long.MAX_VALUE),
+                config.getMergePolicy()));
+    }
+
+    /**
+     * Restore the sequence from the documents of a new writer
+     */
+    synchronized void open(IndexWriter indexWriter) throws IOException {
+        closeHistoryReader();
+        historyReader = DirectoryReader.open(indexWriter);
+        historyWriter = indexWriter;
+        long max = 0;
+        for (LeafReaderContext context : historyReader.leaves()) {
+            final PointValues points = context.reader().getPointValues(SEQUENCE_FIELD);
+            if (points != null)
+                max = Math.max(max, LongPoint.decodeDimension(points.getMaxPackedValue(), 0));
+        }
+        sequence.set(max);
+    }
+
+    /**
+     * Add the change fields to an indexed document
+     */
+    Document track(Document document, String id) {
+        addChangeFields(document, IndexChange.Operation.INDEX, id);
+        return document;
+    }
+
+    /**
+     * @return a soft deleted document recording a change without an indexed document: a deletion, or an in place
+     * update
+     */
+    Document record(IndexChange.Operation operation, String id) {
+        final Document document = new Document();
+        addChangeFields(document, operation, id);
+        document.add(softDeleted());
+        return document;
+    }
+
+    /**
+     * @return the ids of the live documents matching a query, tracked by this feed
+     */
+    synchronized List<String> ids(IndexWriter indexWriter, Query query) throws IOException {
+        final DirectoryReader reader = historyReader(indexWriter);
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+        final List<String> ids = new ArrayList<>();
+        for (LeafReaderContext context : reader.leaves()) {
+            final Scorer scorer = weight.scorer(context);
+            if (scorer == null)
+                continue;
+            final Bits liveDocs = context.reader().getLiveDocs();
+            final BinaryDocValues idValues = DocValues.getBinary(context.reader(), ID_FIELD);
+            final DocIdSetIterator iterator = scorer.iterator();
+            for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                if ((liveDocs == null || liveDocs.get(doc)) && idValues.advanceExact(doc))
+                    ids.add(idValues.binaryValue().utf8ToString());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return true if a live document has the term
+     */
+    synchronized boolean exists(IndexWriter indexWriter, Term term) throws IOException {
+        return new IndexSearcher(historyReader(indexWriter)).count(new TermQuery(term)) > 0;
+    }
+
+    /**
+     * Notify the subscriptions of new changes
+     */
+    void changed() {
+        subscriptions.forEach(Subscription::schedule);
+    }
+
+    static NumericDocValuesField softDeleted() {
+        return new NumericDocValuesField(SOFT_DELETES_FIELD, 1);
+    }
+
+    private void addChangeFields(Document document, IndexChange.Operation operation, String id) {
+        final long changeSequence = sequence.incrementAndGet();
+        document.add(new LongPoint(SEQUENCE_FIELD, changeSequence));
+        document.add(new NumericDocValuesField(SEQUENCE_FIELD, changeSequence));
+        document.add(new NumericDocValuesField(OPERATION_FIELD, operation.ordinal()));
+        if (id != null)
+            document.add(new BinaryDocValuesField(ID_FIELD, new BytesRef(id)));
+    }
+
+    private DirectoryReader historyReader(IndexWriter indexWriter) throws IOException {
+        if (historyWriter != indexWriter) {
+            open(indexWriter);
+            return historyReader;
+        }
+        final DirectoryReader newReader = DirectoryReader.openIfChanged(historyReader, indexWriter);
+        if (newReader != null) {
+            historyReader.close();
+            historyReader = newReader;
+        }
+        return historyReader;
+    }
+
+    private void closeHistoryReader() {
+        if (historyReader != null) {
+            try {
+                historyReader.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing history reader of {}", index.getName(), e);
+            }
+        }
+        historyReader = null;
+        historyWriter = null;
+    }
+
+    /**
+     * Collect the matching documents of a segment, including the soft deleted ones
+     */
+    private static void collect(LeafReaderContext context, Scorer scorer, Collector collector) throws IOException {
+        final Bits liveDocs = hardLiveDocs(context.reader());
+        try {
+            final LeafCollector leafCollector = collector.getLeafCollector(context);
+            leafCollector.setScorer(scorer);
+            final DocIdSetIterator iterator = scorer.iterator();
+            for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                if (liveDocs == null || liveDocs.get(doc))
+                    leafCollector.collect(doc);
+            }
+        } catch (CollectionTerminatedException e) {
+            // no competitive change left in this segment
+        }
+    }
+
+    /**
+     * @return the changes of the collected documents, ordered by sequence
+     */
+    private static List<IndexChange> changes(DirectoryReader reader, ScoreDoc[] hits) throws IOException {
+        // doc values are read in doc id order
+        final ScoreDoc[] docs = hits.clone();
+        Arrays.sort(docs, Comparator.comparingInt(hit -> hit.doc));
+        final List<LeafReaderContext> leaves = reader.leaves();
+        final List<IndexChange> changes = new ArrayList<>(docs.length);
+        LeafReaderContext context = null;
+        NumericDocValues operations = null;
+        BinaryDocValues ids = null;
+        for (ScoreDoc hit : docs) {
+            if (context == null || hit.doc >= context.docBase + context.reader().maxDoc()) {
+                context = leaves.get(ReaderUtil.subIndex(hit.doc, leaves));
+                operations = DocValues.getNumeric(context.reader(), OPERATION_FIELD);
+                ids = DocValues.getBinary(context.reader(), ID_FIELD);
+            }
+            final int doc = hit.doc - context.docBase;
+            if (!operations.advanceExact(doc))
+                continue;
+            final String id = ids.advanceExact(doc) ? ids.binaryValue().utf8ToString() : null;
+            final long sequence = (Long) ((FieldDoc) hit).fields[0];
+            changes.add(new IndexChange(sequence, OPERATIONS[(int) operations.longValue()], id));
+        }
+        changes.sort(Comparator.comparingLong(IndexChange::getSequence));
+        return changes;
+    }
+
+    /**
+     * @return the live docs ignoring soft deletes
+     */
+    private static Bits hardLiveDocs(LeafReader reader) {
+        final LeafReader segmentReader = FilterLeafReader.unwrap(reader);
+        if (segmentReader instanceof SegmentReader)
+            return ((SegmentReader) segmentReader).getHardLiveDocs();
+        return segmentReader.getLiveDocs();
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private final Consumer<IndexChange> consumer;
+        private final AtomicBoolean deliveryPending = new AtomicBoolean();
+        private volatile long sequence;
+
+        private Subscription(long afterSequence, Consumer<IndexChange> consumer) {
+            this.consumer = Objects.requireNonNull(consumer);
+            this.sequence = afterSequence;
+        }
+
+        /**
+         * @return the sequence of the last delivered change
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public boolean isClosed() {
+            return !subscriptions.contains(this);
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Schedule a delivery, unless one is pending: a pending delivery polls all the changes written before it
+         * starts
+         */
+        private void schedule() {
+            if (isClosed() || !deliveryPending.compareAndSet(false, true))
+                return;
+            try {
+                index.getExecutor().execute(() -> {
+                    deliveryPending.set(false);
+                    deliver();
+                });
+            } catch (RejectedExecutionException e) {
+                deliveryPending.set(false);
+                LOGGER.warn("Changes delivery of index {} rejected: {}", index.getName(), e.getMessage());
+            }
+        }
+
+        private synchronized void deliver() {
+            try {
+                List<IndexChange> changes;
+                while (!isClosed() && !(changes = poll(sequence, 1000)).isEmpty()) {
+                    for (IndexChange change : changes) {
+                        consumer.accept(change);
+                        sequence = change.getSequence();
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Error delivering changes of index {} after {}, closing subscription",
+                        index.getName(), sequence, e);
+                close();
+            }
+        }
+    }
+}
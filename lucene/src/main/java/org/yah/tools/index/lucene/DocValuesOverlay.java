@@ -0,0 +1,173 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FloatDocValuesField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.BytesRef;
+import org.yah.tools.index.lucene.mapper.IndexableFieldType;
+import org.yah.tools.index.lucene.mapper.WrappedEntityDocumentMapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Doc values fields updated in place by {@link LuceneIndexWriter#updateFields(String, Map)}.<br/>
+ * The stored source of a partially updated element is stale, so the current doc values of these fields are added to
+ * the loaded documents with the {@link WrappedEntityDocumentMapper#OVERLAY_PREFIX} prefix, and overlaid on the
+ * source by the document mapper. The fields are persisted in the commit user data.
+ */
+final class DocValuesOverlay {
+
+    private static final String USER_DATA_KEY = "overlay.fields";
+
+    private final Map<String, IndexableFieldType> fields = new ConcurrentHashMap<>();
+
+    boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    void load(Map<String, String> userData) {
+        final String value = userData.get(USER_DATA_KEY);
+        if (value == null || value.isEmpty())
+            return;
+        for (String line : value.split("\n")) {
+            final int index = line.lastIndexOf('=');
+            fields.putIfAbsent(line.substring(0, index), IndexableFieldType.valueOf(line.substring(index + 1)));
+        }
+    }
+
+    /**
+     * forget the fields of a replaced index content
+     */
+    void clear() {
+        fields.clear();
+    }
+
+    /**
+     * @return true if the field was not overlaid yet, and the user data must be updated
+     */
+    boolean register(String field, IndexableFieldType type) {
+        final IndexableFieldType previous = fields.putIfAbsent(field, type);
+        if (previous != null && previous != type)
+            throw new IllegalArgumentException("field " + field + " was updated as " + previous + ", not " + type);
+        return previous == null;
+    }
+
+    /**
+     * Lucene creates missing doc values fields on update, reject the fields indexed without updatable doc values.
+     *
+     * @param fieldInfos field infos containing the fields not overlaid yet
+     */
+    void check(Field[] updates, Function<List<String>, FieldInfos> fieldInfos) {
+        final List<String> names = Arrays.stream(updates)
+                .map(Field::name)
+                .filter(name -> !fields.containsKey(name))
+                .collect(Collectors.toList());
+        if (names.isEmpty())
+            return;
+        final FieldInfos infos = fieldInfos.apply(names);
+        for (Field update : updates) {
+            if (!names.contains(update.name()))
+                continue;
+            final FieldInfo fieldInfo = infos.fieldInfo(update.name());
+            final DocValuesType expected = update.fieldType().docValuesType();
+            if (fieldInfo == null || fieldInfo.getDocValuesType() != expected)
+                throw new IllegalArgumentException("field " + update.name() + " is not a " + expected + " doc values field");
+        }
+    }
+
+    void toUserData(Map<String, String> userData) {
+        userData.put(USER_DATA_KEY, fields.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .sorted()
+                .collect(Collectors.joining("\n")));
+    }
+
+    /**
+     * add the overlaid doc values of a document
+     */
+    void apply(IndexSearcher searcher, int doc, Document document) throws IOException {
+        if (fields.isEmpty())
+            return;
+        final LeafReaderContext context = searcher.getIndexReader().leaves()
+                .get(ReaderUtil.subIndex(doc, searcher.getIndexReader().leaves()));
+        final LeafReader reader = context.reader();
+        final int leafDoc = doc - context.docBase;
+        for (Map.Entry<String, IndexableFieldType> entry : fields.entrySet()) {
+            final String name = WrappedEntityDocumentMapper.OVERLAY_PREFIX + entry.getKey();
+            if (entry.getValue() == IndexableFieldType.STRING) {
+                final BinaryDocValues values = reader.getBinaryDocValues(entry.getKey());
+                if (values != null && values.advanceExact(leafDoc))
+                    document.add(new StoredField(name, values.binaryValue().utf8ToString()));
+                continue;
+            }
+
+            final NumericDocValues values = reader.getNumericDocValues(entry.getKey());
+            if (values == null || !values.advanceExact(leafDoc))
+                continue;
+            switch (entry.getValue()) {
+                case FLOAT:
+                    document.add(new StoredField(name, Float.intBitsToFloat((int) values.longValue())));
+                    break;
+                case DOUBLE:
+                    document.add(new StoredField(name, Double.longBitsToDouble(values.longValue())));
+                    break;
+                default:
+                    document.add(new StoredField(name, values.longValue()));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @param type the mapped type of the field
+     * @return the doc values field updating a field with a value, encoded as the indexed doc values
+     * @throws IllegalArgumentException if the value can not be converted to the field type
+     */
+    static Field field(String name, IndexableFieldType type, Object value) {
+        Objects.requireNonNull(value, "value is null");
+        if (type == null)
+            throw new IllegalArgumentException("field " + name + " is not mapped");
+        switch (type) {
+            case STRING:
+                if (value instanceof String)
+                    return new BinaryDocValuesField(name, new BytesRef((String) value));
+                break;
+            case INTEGER:
+            case LONG:
+                if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+                    return new NumericDocValuesField(name, ((Number) value).longValue());
+                break;
+            case FLOAT:
+                if (value instanceof Number)
+                    return new FloatDocValuesField(name, ((Number) value).floatValue());
+                break;
+            case DOUBLE:
+                if (value instanceof Number)
+                    return new DoubleDocValuesField(name, ((Number) value).doubleValue());
+                break;
+            default:
+                throw new IllegalArgumentException("field " + name + " of type " + type + " can not be updated in place");
+        }
+        throw new IllegalArgumentException("value " + value + " of field " + name + " can not be converted to " + type);
+    }
+}
@@ -0,0 +1,108 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Rescorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.TopDocs;
+import org.yah.tools.index.lucene.mapper.IndexableFieldType;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Rescore the first pass hits with a function of their score and of the value of a numeric sorted field.<br/>
+ * The values are read from the field doc values, in doc order, hits without value are rescored with a 0 value.
+ */
+final class DocValuesRescorer extends Rescorer {
+
+    private static final Comparator<ScoreDoc> SCORE_ORDER = Comparator.<ScoreDoc>comparingDouble(hit -> hit.score)
+            .reversed()
+            .thenComparingInt(hit -> hit.doc);
+
+    private final String fieldName;
+    private final SortField.Type type;
+    private final DoubleBinaryOperator function;
+
+    DocValuesRescorer(String fieldName, IndexableFieldType fieldType, DoubleBinaryOperator function) {
+        this.fieldName = fieldName;
+        this.type = sortType(fieldName, fieldType);
+        this.function = function;
+    }
+
+    @Override
+    public TopDocs rescore(IndexSearcher searcher, TopDocs firstPassTopDocs, int topN) throws IOException {
+        final ScoreDoc[] hits = Arrays.stream(firstPassTopDocs.scoreDocs)
+                .map(hit -> new ScoreDoc(hit.doc, hit.score, hit.shardIndex))
+                .sorted(Comparator.comparingInt(hit -> hit.doc))
+                .toArray(ScoreDoc[]::new);
+
+        final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        LeafReaderContext leaf = null;
+        NumericDocValues values = null;
+        for (ScoreDoc hit : hits) {
+            if (leaf == null || hit.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(hit.doc, leaves));
+                values = values(leaf.reader());
+            }
+            hit.score = (float) function.applyAsDouble(hit.score, value(values, hit.doc - leaf.docBase));
+        }
+
+        Arrays.sort(hits, SCORE_ORDER);
+        return new TopDocs(firstPassTopDocs.totalHits, topN < hits.length ? Arrays.copyOf(hits, topN) : hits);
+    }
+
+    @Override
+    public Explanation explain(IndexSearcher searcher, Explanation firstPassExplanation, int docID) throws IOException {
+        final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        final LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docID, leaves));
+        final double value = value(values(leaf.reader()), docID - leaf.docBase);
+        final double score = function.applyAsDouble(firstPassExplanation.getValue().doubleValue(), value);
+        return Explanation.match((float) score, "rescored with " + fieldName + "=" + value, firstPassExplanation);
+    }
+
+    private NumericDocValues values(LeafReader reader) throws IOException {
+        return SortedNumericSelector.wrap(DocValues.getSortedNumeric(reader, fieldName),
+                SortedNumericSelector.Type.MIN, type);
+    }
+
+    private double value(NumericDocValues values, int doc) throws IOException {
+        if (!values.advanceExact(doc))
+            return 0;
+        final long value = values.longValue();
+        switch (type) {
+            case FLOAT:
+                return Float.intBitsToFloat((int) value);
+            case DOUBLE:
+                return Double.longBitsToDouble(value);
+            default:
+                return value;
+        }
+    }
+
+    private static SortField.Type sortType(String fieldName, IndexableFieldType fieldType) {
+        switch (fieldType) {
+            case INTEGER:
+                return SortField.Type.INT;
+            case LONG:
+                return SortField.Type.LONG;
+            case FLOAT:
+                return SortField.Type.FLOAT;
+            case DOUBLE:
+                return SortField.Type.DOUBLE;
+            default:
+                throw new IllegalArgumentException("field " + fieldName + " is a " + fieldType + ", not a number");
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.yah.tools.index.lucene;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Result of a {@link LuceneIndex#backupTo(Path, boolean)}: the files of the backed up commit, and how they were
+ * transferred.
+ */
+public final class IndexBackup {
+
+    /**
+     * file marking a backup directory, whose files not part of the backed up commit can be deleted
+     */
+    public static final String MARKER_FILE = "backup.marker";
+
+    private final Path path;
+    private final long generation;
+    private final List<String> files;
+    private final int copiedFiles;
+    private final long copiedBytes;
+    private final int linkedFiles;
+    private final int reusedFiles;
+
+    IndexBackup(Path path, long generation, List<String> files,
+                int copiedFiles, long copiedBytes, int linkedFiles, int reusedFiles) {
+        this.path = path;
+        this.generation = generation;
+        this.files = List.copyOf(files);
+        this.copiedFiles = copiedFiles;
+        this.copiedBytes = copiedBytes;
+        this.linkedFiles = linkedFiles;
+        this.reusedFiles = reusedFiles;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return generation of the backed up commit
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public int getCopiedFiles() {
+        return copiedFiles;
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    public int getLinkedFiles() {
+        return linkedFiles;
+    }
+
+    /**
+     * @return number of files already present in the backup directory, from a previous backup
+     */
+    public int getReusedFiles() {
+        return reusedFiles;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexBackup{" +
+                "path=" + path +
+                ", generation=" + generation +
+                ", files=" + files.size() +
+                ", copiedFiles=" + copiedFiles +
+                ", copiedBytes=" + copiedBytes +
+                ", linkedFiles=" + linkedFiles +
+                ", reusedFiles=" + reusedFiles +
+                '}';
+    }
+}
@@ -0,0 +1,64 @@
+package org.yah.tools.index.lucene;
+
+import java.util.Objects;
+
+/**
+ * An entry of the {@link ChangeFeed}: an element indexed or deleted, or the index cleared.
+ */
+public final class IndexChange {
+
+    public enum Operation {
+        /**
+         * element added or updated, its current version can be read from the index
+         */
+        INDEX,
+        DELETE,
+        /**
+         * all elements deleted, {@link #getId()} is null. The changes before it are not retained.
+         */
+        CLEAR
+    }
+
+    private final long sequence;
+    private final Operation operation;
+    private final String id;
+
+    IndexChange(long sequence, Operation operation, String id) {
+        this.sequence = sequence;
+        this.operation = Objects.requireNonNull(operation);
+        this.id = id;
+    }
+
+    /**
+     * @return the change sequence, persisted with the index and increasing across restarts
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IndexChange that = (IndexChange) o;
+        return sequence == that.sequence && operation == that.operation && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, operation, id);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexChange{sequence=" + sequence + ", operation=" + operation + ", id=" + id + '}';
+    }
+}
@@ -0,0 +1,81 @@
+package org.yah.tools.index.lucene;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Result of a {@link LuceneIndex#importFrom(Path, org.yah.tools.index.Index.ProgressCallback)}: the count of
+ * imported elements, and the lines that could not be imported.
+ */
+public final class IndexImport {
+
+    private final Path path;
+    private final long lines;
+    private final long importedElements;
+    private final List<LineError> errors;
+
+    IndexImport(Path path, long lines, long importedElements, List<LineError> errors) {
+        this.path = path;
+        this.lines = lines;
+        this.importedElements = importedElements;
+        this.errors = List.copyOf(errors);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return count of lines of the file, including the blank and the failed ones
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    public long getImportedElements() {
+        return importedElements;
+    }
+
+    /**
+     * @return the lines that could not be parsed or indexed, ordered by line number
+     */
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexImport{" +
+                "path=" + path +
+                ", lines=" + lines +
+                ", importedElements=" + importedElements +
+                ", errors=" + errors.size() +
+                '}';
+    }
+
+    public static final class LineError {
+        private final long line;
+        private final String message;
+
+        LineError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * @return line number, starting at 1
+         */
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.search.suggest.DocumentDictionary;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.mapper.IndexableFieldType;
+import org.yah.tools.index.lucene.mapper.SuggestField;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Autocomplete suggesters of an index, one per {@link SuggestField} of its document mapper.<br/>
+ * Each suggester is an in memory FST built from the stored texts of a reader, lookups do not search the index.
+ * An FST can not be updated, so suggesters are rebuilt in the background after each commit changing the documents or
+ * a weight field, and lookups use the last built suggesters until the rebuild completes. A rebuild reads the stored
+ * texts of all the documents: each such commit costs O(index size), and writes should be committed in batches. Suggesters are built by the first lookup, {@link #refresh()} rebuilds
+ * them with the writes not committed yet.<br/>
+ * Texts are analyzed with the index analyzer of the suggester stored field, weights are read from integer doc
+ * values.
+ */
+public final class IndexSuggester implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexSuggester.class);
+
+    private final LuceneIndex<?> index;
+    private final Map<String, SuggestField> fields;
+    private final Map<String, Analyzer> analyzers;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    /**
+     * writes since the last commit could have changed the suggestions
+     */
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    private volatile Map<String, Lookup> lookups;
+    /**
+     * version of the reader the lookups were built from
+     */
+    private long version = -1;
+    private volatile boolean closed;
+
+    /**
+     * @throws IllegalArgumentException if a weight field is not an integer field
+     */
+    IndexSuggester(LuceneIndex<?> index, List<SuggestField> fields) {
+        this.index = Objects.requireNonNull(index);
+        this.fields = fields.stream().collect(Collectors.toMap(SuggestField::getName, Function.identity()));
+        for (SuggestField field : fields) {
+            final String weightField = field.getWeightField();
+            if (weightField == null)
+                continue;
+            final IndexableFieldType weightType = index.documentMapper.getFieldType(weightField);
+            if (weightType != IndexableFieldType.INTEGER && weightType != IndexableFieldType.LONG)
+                throw new IllegalArgumentException("weight field " + weightField + " of suggester " + field.getName()
+                        + " must be an integer doc values field, not " + weightType);
+        }
+        this.analyzers = fields.stream().collect(Collectors.toMap(SuggestField::getName,
+                field -> new FieldAnalyzer(index.getAnalyzer(), field.getStoredField())));
+    }
+
+    public Set<String> getNames() {
+        return fields.keySet();
+    }
+
+    /**
+     * @param name   the suggester name
+     * @param prefix the typed text
+     * @param count  the maximum number of suggestions
+     * @return the suggested texts, by decreasing weight
+     * @throws IllegalArgumentException if the suggester does not exist
+     * @throws IllegalStateException    if the suggester is closed
+     */
+    public List<Suggestion> suggest(String name, String prefix, int count) {
+        if (!fields.containsKey(name))
+            throw new IllegalArgumentException("suggester " + name + " was not found in " + fields.keySet());
+        // read once: close and invalidate reset the lookups
+        Map<String, Lookup> current = lookups;
+        if (current == null)
+            current = build();
+
+        final List<Lookup.LookupResult> results;
+        try {
+            // infix suggesters can match a text more than once
+            results = current.get(name).lookup(prefix, false, count * 2);
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+        final Map<String, Suggestion> suggestions = new LinkedHashMap<>();
+        for (Lookup.LookupResult result : results) {
+            final String text = result.payload != null ? result.payload.utf8ToString() : result.key.toString();
+            suggestions.putIfAbsent(text, new Suggestion(text, result.value));
+        }
+        return suggestions.values().stream().limit(count).collect(Collectors.toList());
+    }
+
+    /**
+     * Rebuild the suggesters from the current index content, if it changed since their last build
+     */
+    public void refresh() {
+        build();
+    }
+
+    /**
+     * @return the suggesters built from the current index content
+     */
+    private synchronized Map<String, Lookup> build() {
+        if (closed)
+            throw new IllegalStateException("suggester of index " + index.getName() + " is closed");
+        final LuceneIndexReader<?> reader = (LuceneIndexReader<?>) index.reader();
+        try (LuceneIndexReader.ReaderInstance readerInstance = reader.open();
+             Directory tempDirectory = new ByteBuffersDirectory()) {
+            final DirectoryReader directoryReader = readerInstance.reader;
+            if (lookups != null && directoryReader.getVersion() == version)
+                return lookups;
+
+            checkWeightFields(directoryReader);
+            final long start = System.nanoTime();
+            final Map<String, Lookup> newLookups = new HashMap<>();
+            for (SuggestField field : fields.values()) {
+                // an exact match of an infix suggester key is only the end of a text, it is not ranked first
+                final int options = field.isInfix()
+                        ? AnalyzingSuggester.PRESERVE_SEP
+                        : AnalyzingSuggester.EXACT_FIRST | AnalyzingSuggester.PRESERVE_SEP;
+                final Analyzer analyzer = analyzers.get(field.getName());
+                final AnalyzingSuggester suggester = new AnalyzingSuggester(tempDirectory, field.getName(),
+                        analyzer, analyzer, options, 256, -1, true);
+                InputIterator iterator = new DocumentDictionary(directoryReader, field.getStoredField(),
+                        field.getWeightField()).getEntryIterator();
+                if (field.isInfix())
+                    iterator = new InfixInputIterator(iterator);
+                suggester.build(iterator);
+                newLookups.put(field.getName(), suggester);
+            }
+            lookups = newLookups;
+            version = directoryReader.getVersion();
+            LOGGER.debug("built suggesters {} of index {} in {}ms", fields.keySet(), index.getName(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return newLookups;
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+    }
+
+    /**
+     * Record a write before the next commit
+     *
+     * @param fields the updated doc values fields, null if documents were written or deleted
+     */
+    void changed(Collection<String> fields) {
+        if (fields == null || fields.stream().anyMatch(this::isWeightField))
+            changed.set(true);
+    }
+
+    /**
+     * Schedule a rebuild after a commit, unless no write changed the suggestions or a rebuild is pending
+     */
+    void committed() {
+        if (closed || lookups == null || !changed.getAndSet(false) || !rebuildPending.compareAndSet(false, true))
+            return;
+        try {
+            index.getExecutor().execute(() -> {
+                rebuildPending.set(false);
+                if (closed)
+                    return;
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error rebuilding suggesters of index {}", index.getName(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuildPending.set(false);
+            LOGGER.warn("Suggesters rebuild of index {} rejected: {}", index.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the suggesters built from a replaced index content, the next lookup rebuilds them
+     */
+    synchronized void invalidate() {
+        lookups = null;
+        version = -1;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        lookups = null;
+    }
+
+    private boolean isWeightField(String field) {
+        return fields.values().stream().anyMatch(suggestField -> field.equals(suggestField.getWeightField()));
+    }
+
+    /**
+     * @throws IndexException if a weight field is indexed without numeric doc values
+     */
+    private void checkWeightFields(DirectoryReader reader) {
+        final FieldInfos fieldInfos = FieldInfos.getMergedFieldInfos(reader);
+        for (SuggestField field : fields.values()) {
+            if (field.getWeightField() == null)
+                continue;
+            final FieldInfo fieldInfo = fieldInfos.fieldInfo(field.getWeightField());
+            if (fieldInfo != null && fieldInfo.getDocValuesType() != DocValuesType.NUMERIC)
+                throw new IndexException("weight field " + field.getWeightField() + " of suggester " + field.getName()
+                        + " of index " + index.getName() + " has " + fieldInfo.getDocValuesType() + " doc values, not NUMERIC");
+        }
+    }
+
+    /**
+     * The index analyzer of a field: a suggester analyzes its texts without field name
+     */
+    private static final class FieldAnalyzer extends Analyzer {
+        private final Analyzer analyzer;
+        private final String field;
+
+        private FieldAnalyzer(Analyzer analyzer, String field) {
+            this.analyzer = analyzer;
+            this.field = field;
+        }
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            final FieldTokenStream tokenStream = new FieldTokenStream();
+            return new TokenStreamComponents(tokenStream::setReader, tokenStream);
+        }
+
+        /**
+         * Copy the tokens of the field token stream
+         */
+        private final class FieldTokenStream extends TokenStream {
+            private TokenStream delegate;
+
+            private void setReader(Reader reader) {
+                delegate = analyzer.tokenStream(field, reader);
+                // same attribute implementations, to copy their states
+                delegate.getAttributeImplsIterator().forEachRemaining(impl -> addAttributeImpl(impl.clone()));
+            }
+
+            @Override
+            public void reset() throws IOException {
+                super.reset();
+                delegate.reset();
+            }
+
+            @Override
+            public boolean incrementToken() throws IOException {
+                clearAttributes();
+                if (!delegate.incrementToken())
+                    return false;
+                delegate.copyTo(this);
+                return true;
+            }
+
+            @Override
+            public void end() throws IOException {
+                super.end();
+                delegate.end();
+                delegate.copyTo(this);
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (delegate != null)
+                    delegate.close();
+                delegate = null;
+            }
+        }
+    }
+
+    /**
+     * Add the suffixes of each text starting with a word as keys, with the whole text as payload
+     */
+    private static final class InfixInputIterator implements InputIterator {
+        private final InputIterator delegate;
+        private final List<BytesRef> keys = new ArrayList<>();
+        private BytesRef text;
+        private long weight;
+        private int keyIndex;
+
+        private InfixInputIterator(InputIterator delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public BytesRef next() throws IOException {
+            if (keyIndex == keys.size()) {
+                final BytesRef next = delegate.next();
+                if (next == null)
+                    return null;
+                text = BytesRef.deepCopyOf(next);
+                weight = delegate.weight();
+                keys.clear();
+                keyIndex = 0;
+                final String value = text.utf8ToString();
+                for (int i = 0; i < value.length(); i++) {
+                    if (!Character.isWhitespace(value.charAt(i)) && (i == 0 || Character.isWhitespace(value.charAt(i - 1))))
+                        keys.add(new BytesRef(value.substring(i)));
+                }
+                if (keys.isEmpty())
+                    return next();
+            }
+            return keys.get(keyIndex++);
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return text;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return true;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
@@ -1,42 +1,165 @@
 package org.yah.tools.index.lucene;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.*;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.yah.tools.index.*;
+import org.yah.tools.index.lucene.directory.DirectoryFactories;
+import org.yah.tools.index.lucene.directory.DirectoryFactory;
+import org.yah.tools.index.lucene.directory.IndexFiles;
 import org.yah.tools.index.lucene.mapper.DocumentMapper;
 import org.yah.tools.index.lucene.mapper.EntityDocumentMapper;
+import org.yah.tools.index.lucene.mapper.IndexSchema;
+import org.yah.tools.index.lucene.mapper.SuggestField;
 import org.yah.tools.index.lucene.mapper.WrappedDocumentMapper;
 import org.yah.tools.index.lucene.mapper.WrappedEntityDocumentMapper;
+import org.yah.tools.index.lucene.metrics.IndexMetrics;
+import org.yah.tools.index.lucene.metrics.SlowQueryLog;
+import org.yah.tools.index.query.IndexQuery;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Objects;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
 
+    public static <T> Builder<T> builder(Analyzer analyzer, DocumentMapper<T> documentMapper) {
+        return new Builder<>(analyzer, documentMapper);
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndex.class);
+
     protected final Path path;
     protected final Analyzer analyzer;
     protected final EntityDocumentMapper<T> documentMapper;
+    protected final DirectoryFactory directoryFactory;
+    protected final String name;
+    final MetricsRecorder metrics;
+    /**
+     * executor of the async reader and writer operations
+     */
+    protected final Executor executor;
+    private final ExecutorService ownedExecutor;
+    /**
+     * analyzed queries builder, shared by all query builders
+     */
+    final QueryBuilder queryBuilder;
+    final ParsedQueryCache parsedQueries;
+    protected final IndexSchema.Validation schemaValidation;
+    /**
+     * feed of the writer changes, null if disabled
+     */
+    final ChangeFeed changeFeed;
+    protected final VersionConflicts versionConflicts;
+    /**
+     * autocomplete suggesters, null if the document mapper has no suggest field
+     */
+    final IndexSuggester suggester;
+    /**
+     * doc values fields updated in place
+     */
+    final DocValuesOverlay overlay = new DocValuesOverlay();
+    /**
+     * nested documents of the elements, null if the elements are indexed as a single document
+     */
+    final BlockJoin blockJoin;
+    /**
+     * warm-up of the new segments
+     */
+    final SegmentWarmer warmer = new SegmentWarmer(this);
+    /**
+     * directory shared by reader and writer when the index is in memory, null otherwise
+     */
+    private final ByteBuffersDirectory memoryDirectory;
+    /**
+     * serialize the backups and the restores, acquired before the index monitor
+     */
+    private final Object backupLock = new Object();
 
     protected LuceneIndexReader<T> reader;
     protected LuceneIndexWriter<T> writer;
 
     public LuceneIndex(Path path, Analyzer analyzer, DocumentMapper<T> documentMapper) {
-        this.path = Objects.requireNonNull(path);
-        this.analyzer = Objects.requireNonNull(analyzer);
-        Objects.requireNonNull(documentMapper, "documentMapper is null");
-        if (documentMapper instanceof EntityDocumentMapper) {
-            this.documentMapper = new WrappedEntityDocumentMapper<>((EntityDocumentMapper<T>) documentMapper);
+        this(builder(analyzer, documentMapper).withPath(path));
+    }
+
+    /**
+     * Create an in memory index
+     */
+    public LuceneIndex(Analyzer analyzer, DocumentMapper<T> documentMapper) {
+        this(builder(analyzer, documentMapper).inMemory());
+    }
+
+    public LuceneIndex(Builder<T> builder) {
+        this.analyzer = Objects.requireNonNull(builder.analyzer);
+        Objects.requireNonNull(builder.documentMapper, "documentMapper is null");
+        if (builder.documentMapper instanceof WrappedEntityDocumentMapper
+                || builder.documentMapper instanceof WrappedDocumentMapper) {
+            // mapper of another index
+            this.documentMapper = (EntityDocumentMapper<T>) builder.documentMapper;
+        } else if (builder.documentMapper instanceof EntityDocumentMapper) {
+            this.documentMapper = new WrappedEntityDocumentMapper<>((EntityDocumentMapper<T>) builder.documentMapper);
+        } else {
+            this.documentMapper = new WrappedDocumentMapper<>(builder.documentMapper);
+        }
+        this.directoryFactory = Objects.requireNonNull(builder.directoryFactory, "directoryFactory is null");
+        if (builder.inMemory) {
+            this.path = null;
+            this.memoryDirectory = new ByteBuffersDirectory();
+            if (builder.path != null)
+                copy(builder.path, memoryDirectory);
         } else {
-            this.documentMapper = new WrappedDocumentMapper<>(documentMapper);
+            this.path = Objects.requireNonNull(builder.path, "path is null");
+            this.memoryDirectory = null;
         }
+        this.name = createName(builder.name, path);
+        this.metrics = new MetricsRecorder(name, Objects.requireNonNull(builder.metrics, "metrics is null"),
+                builder.slowQueryLog);
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+            this.ownedExecutor = null;
+        } else {
+            this.ownedExecutor = newExecutor(name);
+            this.executor = ownedExecutor;
+        }
+        this.queryBuilder = new QueryBuilder(analyzer);
+        this.parsedQueries = new ParsedQueryCache(this, builder.parsedQueryCacheSize);
+        this.schemaValidation = Objects.requireNonNull(builder.schemaValidation, "schemaValidation is null");
+        this.versionConflicts = Objects.requireNonNull(builder.versionConflicts, "versionConflicts is null");
+        if (builder.retainedChanges > 0) {
+            if (!isEntityIndex())
+                throw new IllegalArgumentException("documentMapper " + builder.documentMapper
+                        + " is not an EntityDocumentMapper, it can not have a change feed");
+            this.changeFeed = new ChangeFeed(this, builder.retainedChanges);
+        } else {
+            this.changeFeed = null;
+        }
+        final List<SuggestField> suggestFields = documentMapper.getSuggestFields();
+        this.suggester = suggestFields.isEmpty() ? null : new IndexSuggester(this, suggestFields);
+        this.blockJoin = BlockJoin.create(documentMapper);
+        if (builder.startupWarmUp && path != null)
+            touchFiles();
     }
 
     public boolean isEntityIndex() {
@@ -47,6 +170,10 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
         return path;
     }
 
+    public boolean isInMemory() {
+        return memoryDirectory != null;
+    }
+
     public Analyzer getAnalyzer() {
         return analyzer;
     }
@@ -55,10 +182,178 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
         return documentMapper;
     }
 
+    public DirectoryFactory getDirectoryFactory() {
+        return directoryFactory;
+    }
+
+    /**
+     * @return the name used to report this index metrics
+     */
+    public String getName() {
+        return name;
+    }
+
+    public IndexMetrics getMetrics() {
+        return metrics.getMetrics();
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return metrics.getSlowQueryLog();
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @throws IllegalStateException if the change feed is not enabled, see {@link Builder#withChangeFeed(long)}
+     */
+    public ChangeFeed changeFeed() {
+        if (changeFeed == null)
+            throw new IllegalStateException("change feed is not enabled on index " + name);
+        return changeFeed;
+    }
+
+    /**
+     * @throws IllegalStateException if the document mapper has no suggest field
+     */
+    public IndexSuggester suggester() {
+        if (suggester == null)
+            throw new IllegalStateException("index " + name + " has no suggest field");
+        return suggester;
+    }
+
+    /**
+     * Close reader and writer. An in memory index content is released and can not be used anymore.
+     */
     @Override
     public void close() {
+        if (changeFeed != null)
+            changeFeed.close();
+        if (suggester != null)
+            suggester.close();
         reader = closeSafely(reader);
         writer = closeSafely(writer);
+        if (memoryDirectory != null)
+            closeSafely(memoryDirectory);
+        if (ownedExecutor != null)
+            ownedExecutor.shutdown();
+    }
+
+    /**
+     * Commit pending changes and copy the index files to the target directory, replacing a previous snapshot.<br/>
+     * The files are copied to a new sibling directory of the target, which replaces the target once complete.
+     * The target can then be opened as a file system index, or loaded in memory using {@link Builder#inMemory(Path)}.
+     *
+     * @param target a missing or empty directory, or the directory of a previous snapshot
+     * @throws IllegalArgumentException if the target is not empty and does not contain an index
+     */
+    public synchronized void snapshotTo(Path target) {
+        if (path != null && path.toAbsolutePath().equals(target.toAbsolutePath()))
+            throw new IllegalArgumentException("Can not snapshot index " + path + " to itself");
+        if (writer != null)
+            writer.commit();
+        try {
+            checkSnapshotDirectory(target);
+            final Path parent = target.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            final Path pending = Files.createTempDirectory(parent, target.getFileName() + ".");
+            try (Directory source = openDirectory()) {
+                copy(source, pending);
+            } catch (IOException | RuntimeException e) {
+                delete(pending);
+                throw e;
+            }
+            delete(target);
+            Files.move(pending, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IndexException("Error creating snapshot of index " + name + " in " + target, e);
+        }
+    }
+
+    /**
+     * Commit pending changes and copy the files of this commit to the backup directory, while writes continue.<br/>
+     * The commit is pinned until the copy is complete. Files already present in the backup directory with the same
+     * length and checksum are kept, so backing up again in the same directory only copies the new segments. Files of
+     * the previous backup that are not part of this commit are deleted.
+     *
+     * @param target    an empty directory, or the directory of a previous backup
+     * @param hardLinks link the index files instead of copying them when the index and the backup are on the same
+     *                  file system, falling back to copy if a link can not be created
+     * @throws IllegalArgumentException if the target is not empty and is not a backup directory
+     */
+    public IndexBackup backupTo(Path target, boolean hardLinks) {
+        if (path != null && path.toAbsolutePath().equals(target.toAbsolutePath()))
+            throw new IllegalArgumentException("Can not backup index " + path + " to itself");
+        synchronized (backupLock) {
+            final LuceneIndexWriter<T> writer = (LuceneIndexWriter<T>) writer();
+            writer.commit();
+            final IndexCommit commit = writer.snapshot();
+            try {
+                return backup(writer.directory, commit, target, hardLinks && path != null);
+            } catch (IOException e) {
+                throw new IndexException("Error backing up index " + name + " to " + target, e);
+            } finally {
+                writer.release(commit);
+            }
+        }
+    }
+
+    /**
+     * Replace the index content with a backup created by {@link #backupTo(Path, boolean)}.<br/>
+     * The backup is copied next to the index directory, then swapped with it, the previous index directory is moved
+     * back if the swap fails. Open cursors must be closed first. The suggesters are rebuilt by the next lookup, and
+     * the change feed continues from the last change of the backup.
+     *
+     * @throws IllegalArgumentException if the backup directory does not contain an index
+     */
+    public void restoreFrom(Path backup) {
+        synchronized (backupLock) {
+            synchronized (this) {
+                checkBackupDirectory(backup);
+                reader = closeSafely(reader);
+                writer = closeSafely(writer);
+                if (memoryDirectory != null) {
+                    try {
+                        for (String file : memoryDirectory.listAll()) {
+                            memoryDirectory.deleteFile(file);
+                        }
+                    } catch (IOException e) {
+                        throw new IndexException(e);
+                    }
+                    copy(backup, memoryDirectory);
+                } else {
+                    try {
+                        restore(backup, path);
+                    } catch (IOException e) {
+                        throw new IndexException("Error restoring index " + name + " from " + backup, e);
+                    }
+                }
+
+                // the state loaded from the replaced content
+                overlay.clear();
+                if (suggester != null)
+                    suggester.invalidate();
+                if (changeFeed != null)
+                    writer();
+            }
+        }
+    }
+
+    /**
+     * Discard the uncommitted writes of a writer, if it is still the writer of this index. The next write opens a
+     * new writer.
+     */
+    synchronized void rollback(LuceneIndexWriter<T> rolledBack) {
+        if (writer != rolledBack)
+            return;
+        reader = closeSafely(reader);
+        writer = null;
+        rolledBack.rollback();
+        if (suggester != null)
+            suggester.invalidate();
+        if (changeFeed != null)
+            writer();
     }
 
     @Override
@@ -81,6 +376,76 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
         return reader;
     }
 
+    /**
+     * @return a writer running its operations on this index executor
+     */
+    public AsyncEntityIndexWriter<T> asyncWriter() {
+        return new AsyncEntityIndexWriter<>(this::writer, executor);
+    }
+
+    /**
+     * @return a reader running its operations on this index executor
+     */
+    public AsyncEntityIndexReader<T> asyncReader() {
+        return new AsyncEntityIndexReader<>(this::reader, executor);
+    }
+
+    /**
+     * Stream the JSON sources of the elements matching a query to an output stream as NDJSON, one element per
+     * line, without creating the elements.<br/>
+     * A query without sort, limit or skip is exported in index order.
+     *
+     * @param properties   the dot separated paths of the exported properties, empty to export the whole sources
+     * @param outputStream the stream written by the export, flushed but not closed
+     * @return the count of exported elements
+     */
+    public long exportTo(IndexQuery query, Set<String> properties, OutputStream outputStream) {
+        return ((LuceneIndexReader<T>) reader()).export(LuceneIndexQuery.cast(query), properties, outputStream);
+    }
+
+    /**
+     * Stream the JSON sources of the elements matching a query to a channel, see
+     * {@link #exportTo(IndexQuery, Set, OutputStream)}
+     */
+    public long exportTo(IndexQuery query, Set<String> properties, WritableByteChannel channel) {
+        return exportTo(query, properties, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Add the elements of a NDJSON file, one JSON source per line as written by
+     * {@link #exportTo(IndexQuery, Set, OutputStream)}, then commit the index.<br/>
+     * The file is split in chunks aligned on line boundaries, parsed and written concurrently on this index executor.
+     * The elements are added, not updated: import in an empty index, or elements with new ids. Blank lines are
+     * skipped, the lines that can not be parsed or indexed are reported in the result.<br/>
+     * If the import is aborted, by a read error or a chunk that can not be imported, the index writer is rolled back:
+     * the elements already added are discarded, along with the other writes not committed yet.
+     *
+     * @param progressCallback expects one completion per chunk and one for the commit, called by the workers
+     */
+    public IndexImport importFrom(Path file, ProgressCallback progressCallback) {
+        return SourceImporter.importFrom((LuceneIndexWriter<T>) writer(), documentMapper, executor, file,
+                progressCallback);
+    }
+
+    /**
+     * Register a query run with its sort against the new segments, before they are searched. The doc values of its
+     * collapse field are loaded.<br/>
+     * The segments already searched are not warmed, register the warm-up queries before the first search.
+     *
+     * @throws IllegalArgumentException if the query sort is not valid for this index
+     */
+    public void addWarmUpQuery(IndexQuery query) {
+        warmer.addQuery(LuceneIndexQuery.cast(query));
+    }
+
+    /**
+     * Register doc values fields loaded in the new segments before they are searched, such as the fields used to
+     * sort or group the hits
+     */
+    public void addWarmUpFields(String... fields) {
+        warmer.addFields(List.of(fields));
+    }
+
     @Override
     public <V> void reindex(Index<V> target,
                             Function<T, V> mapper,
@@ -94,23 +459,85 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
                                       Analyzer analyzer,
                                       DocumentMapper<V> documentMapper,
                                       ProgressCallback progressCallback) {
+        final Builder<V> targetBuilder = builder(analyzer, documentMapper)
+                .withDirectoryFactory(directoryFactory)
+                .withName(name)
+                .withMetrics(metrics.getMetrics())
+                .withSlowQueryLog(metrics.getSlowQueryLog())
+                .withExecutor(ownedExecutor == null ? executor : null)
+                .withSchemaValidation(schemaValidation)
+                .withVersionConflicts(versionConflicts);
+        if (isInMemory()) {
+            LuceneIndex<V> target = targetBuilder.inMemory().build();
+            reindex(target, mapper, progressCallback);
+            close();
+            return target;
+        }
+
         Path targetPath = Path.of(path.toString() + "_tmp");
         delete(targetPath);
-        LuceneIndex<V> target = new LuceneIndex<>(targetPath, analyzer, documentMapper);
+        LuceneIndex<V> target = targetBuilder.withPath(targetPath).build();
         reindex(target, mapper, progressCallback);
 
         close();
         target.close();
         target.moveTo(this.path);
-        return new LuceneIndex<>(path, analyzer, documentMapper);
+        return targetBuilder.withPath(path).build();
+    }
+
+    /**
+     * Validate the schema persisted in a commit user data against the document mapper schema.
+     *
+     * @return the persisted schema, null if there is none
+     * @throws IndexException if the schemas differ and schema validation is {@link IndexSchema.Validation#FAIL}
+     */
+    IndexSchema validateSchema(Map<String, String> userData) {
+        final IndexSchema persistedSchema = IndexSchema.fromUserData(userData);
+        final IndexSchema schema = documentMapper.getSchema();
+        if (schema == null || persistedSchema == null)
+            return persistedSchema;
+
+        final List<String> changes = schema.diff(persistedSchema);
+        if (changes.isEmpty())
+            return persistedSchema;
+
+        switch (schemaValidation) {
+            case FAIL:
+                throw new IndexException("index " + name + " schema has changed, it must be reindexed: " + changes);
+            case WARN:
+                LOGGER.warn("index {} schema has changed: {}", name, changes);
+                break;
+            default:
+                break;
+        }
+        return persistedSchema;
+    }
+
+    private void touchFiles() {
+        try (Directory directory = openDirectory()) {
+            SegmentWarmer.touchFiles(directory);
+        } catch (IOException e) {
+            throw new IndexException("Error warming up index " + name, e);
+        }
     }
 
     Directory openDirectory() {
+        if (memoryDirectory != null) {
+            final Directory directory = new SharedDirectory(memoryDirectory);
+            try {
+                tryCreate(directory);
+            } catch (IOException e) {
+                throw new IndexException(e);
+            }
+            return directory;
+        }
+
         Objects.requireNonNull(path);
         Directory directory;
         try {
             Files.createDirectories(path);
-            directory = FSDirectory.open(path);
+            directory = directoryFactory.create(path);
+            LOGGER.debug("opened directory {} for path {}", directory, path);
             tryCreate(directory);
         } catch (IOException e) {
             throw new IndexException(e);
@@ -118,6 +545,14 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
         return directory;
     }
 
+    private static String createName(String name, Path path) {
+        if (name != null)
+            return name;
+        if (path != null && path.getFileName() != null)
+            return path.getFileName().toString();
+        return "memory";
+    }
+
     private void moveTo(Path targetPath) {
         list(targetPath, Files::delete);
         list(path, s -> Files.move(s, targetPath.resolve(s.getFileName())));
@@ -125,7 +560,8 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
     }
 
     private static void tryCreate(Directory directory) throws IOException {
-        try (org.apache.lucene.index.IndexWriter writer = new org.apache.lucene.index.IndexWriter(directory, new IndexWriterConfig())) {
+        try (org.apache.lucene.index.IndexWriter writer = new org.apache.lucene.index.IndexWriter(directory,
+                new IndexWriterConfig().setSoftDeletesField(ChangeFeed.SOFT_DELETES_FIELD))) {
             // simply create index
             writer.commit();
         } catch (LockObtainFailedException e) {
@@ -133,6 +569,191 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
         }
     }
 
+    private void copy(Path source, Directory target) {
+        try (Directory sourceDirectory = directoryFactory.create(source)) {
+            copy(sourceDirectory, target);
+        } catch (IOException e) {
+            throw new IndexException("Error loading index " + source, e);
+        }
+    }
+
+    private void copy(Directory source, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (Directory targetDirectory = directoryFactory.create(target)) {
+            copy(source, targetDirectory);
+        }
+    }
+
+    /**
+     * copy the files of the latest commit
+     */
+    private static void copy(Directory source, Directory target) throws IOException {
+        final SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(source);
+        for (String file : segmentInfos.files(true)) {
+            target.copyFrom(source, file, file, IOContext.READONCE);
+        }
+        target.sync(segmentInfos.files(true));
+        target.syncMetaData();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the backup directory does not contain a readable commit
+     */
+    private void checkBackupDirectory(Path backup) {
+        if (!Files.isDirectory(backup))
+            throw new IllegalArgumentException("Backup " + backup + " is not a directory");
+        try (Directory directory = directoryFactory.create(backup)) {
+            if (!DirectoryReader.indexExists(directory))
+                throw new IllegalArgumentException("Backup " + backup + " does not contain an index");
+            SegmentInfos.readLatestCommit(directory);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Backup " + backup + " can not be read", e);
+        }
+    }
+
+    /**
+     * copy and sync the backup files next to the index directory, then swap the directories
+     */
+    private static void restore(Path backup, Path path) throws IOException {
+        final Path restored = Path.of(path.toString() + "_restore");
+        final Path previous = Path.of(path.toString() + "_previous");
+        delete(restored);
+        delete(previous);
+        Files.createDirectories(restored);
+        list(backup, file -> {
+            if (file.getFileName().toString().equals(IndexBackup.MARKER_FILE))
+                return;
+            final Path target = restored.resolve(file.getFileName());
+            Files.copy(file, target);
+            IOUtils.fsync(target, false);
+        });
+        IOUtils.fsync(restored, true);
+
+        final boolean replaced = Files.exists(path);
+        if (replaced)
+            Files.move(path, previous);
+        try {
+            Files.move(restored, path);
+        } catch (IOException e) {
+            if (replaced) {
+                try {
+                    Files.move(previous, path);
+                } catch (IOException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+            }
+            throw e;
+        }
+        IOUtils.fsync(path.toAbsolutePath().getParent(), true);
+        delete(previous);
+    }
+
+    /**
+     * check that a snapshot target can be replaced: a missing or empty directory, or a directory with an index
+     */
+    private void checkSnapshotDirectory(Path target) throws IOException {
+        if (!Files.exists(target))
+            return;
+        if (!Files.isDirectory(target))
+            throw new IllegalArgumentException("Snapshot target " + target + " is not a directory");
+        try (Stream<Path> files = Files.list(target)) {
+            if (files.findAny().isEmpty())
+                return;
+        }
+        try (Directory directory = directoryFactory.create(target)) {
+            if (!DirectoryReader.indexExists(directory))
+                throw new IllegalArgumentException("Snapshot target " + target + " is not empty and is not an index");
+        }
+    }
+
+    private static IndexBackup backup(Directory source, IndexCommit commit, Path target, boolean hardLinks)
+            throws IOException {
+        createBackupDirectory(target);
+        // copy segments_N last, a partial backup has no commit point
+        final List<String> files = new ArrayList<>(commit.getFileNames());
+        files.remove(commit.getSegmentsFileName());
+        files.add(commit.getSegmentsFileName());
+
+        int copiedFiles = 0, linkedFiles = 0, reusedFiles = 0;
+        long copiedBytes = 0;
+        for (String file : files) {
+            final Path targetFile = target.resolve(file);
+            final long length = source.fileLength(file);
+            if (!file.equals(commit.getSegmentsFileName())
+                    && Files.isRegularFile(targetFile) && Files.size(targetFile) == length
+                    && IndexFiles.isCopy(targetFile, length, checksum(source, file))) {
+                reusedFiles++;
+                continue;
+            }
+
+            Files.deleteIfExists(targetFile);
+            if (hardLinks && link(FilterDirectory.unwrap(source), file, targetFile)) {
+                linkedFiles++;
+                continue;
+            }
+
+            try (IndexInput input = source.openInput(file, IOContext.READONCE);
+                 OutputStream output = Files.newOutputStream(targetFile)) {
+                final byte[] buffer = new byte[64 * 1024];
+                long remaining = input.length();
+                while (remaining > 0) {
+                    final int read = (int) Math.min(buffer.length, remaining);
+                    input.readBytes(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+            IOUtils.fsync(targetFile, false);
+            copiedFiles++;
+            copiedBytes += length;
+        }
+
+        final Set<String> commitFiles = new HashSet<>(files);
+        commitFiles.add(IndexBackup.MARKER_FILE);
+        list(target, file -> {
+            if (Files.isRegularFile(file) && !commitFiles.contains(file.getFileName().toString()))
+                Files.delete(file);
+        });
+        IOUtils.fsync(target, true);
+
+        return new IndexBackup(target, commit.getGeneration(), files, copiedFiles, copiedBytes, linkedFiles, reusedFiles);
+    }
+
+    /**
+     * the files of a backup directory not part of the backed up commit are deleted, refuse a directory that is not
+     * empty and was not created by a backup
+     */
+    private static void createBackupDirectory(Path target) throws IOException {
+        final Path marker = target.resolve(IndexBackup.MARKER_FILE);
+        if (Files.isDirectory(target) && !Files.exists(marker)) {
+            try (Stream<Path> files = Files.list(target)) {
+                if (files.findAny().isPresent())
+                    throw new IllegalArgumentException("Backup directory " + target + " is not empty and is not a backup");
+            }
+        }
+        Files.createDirectories(target);
+        if (!Files.exists(marker))
+            Files.createFile(marker);
+    }
+
+    private static long checksum(Directory directory, String file) throws IOException {
+        try (IndexInput input = directory.openInput(file, IOContext.READONCE)) {
+            return CodecUtil.retrieveChecksum(input);
+        }
+    }
+
+    private static boolean link(Directory source, String file, Path target) {
+        if (!(source instanceof FSDirectory))
+            return false;
+        try {
+            Files.createLink(target, ((FSDirectory) source).getDirectory().resolve(file));
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.debug("Can not link {} to {}, copying it", file, target, e);
+            return false;
+        }
+    }
+
     private static void delete(Path path) {
         if (!Files.exists(path))
             return;
@@ -172,6 +793,43 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
     }
 
 
+    /**
+     * @return the cached daemon thread pool owned by an index without executor
+     */
+    static ExecutorService newExecutor(String name) {
+        return Executors.newCachedThreadPool(new AsyncThreadFactory(name));
+    }
+
+    private static final class AsyncThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger threads = new AtomicInteger();
+
+        private AsyncThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "index-" + name + "-async-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Shared in memory directory, closed by the index
+     */
+    private static final class SharedDirectory extends FilterDirectory {
+        private SharedDirectory(Directory in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // closed by LuceneIndex
+        }
+    }
+
     private interface PathConsumer extends Consumer<Path> {
         default void accept(Path p) {
             try {
@@ -184,4 +842,167 @@ public class LuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
         void acceptPath(Path path) throws IOException;
     }
 
+    public static final class Builder<T> {
+        private final Analyzer analyzer;
+        private final DocumentMapper<T> documentMapper;
+        private Path path;
+        private boolean inMemory;
+        private DirectoryFactory directoryFactory = DirectoryFactories.fs;
+        private String name;
+        private IndexMetrics metrics = IndexMetrics.NOOP;
+        private SlowQueryLog slowQueryLog;
+        private Executor executor;
+        private int parsedQueryCacheSize = 512;
+        private IndexSchema.Validation schemaValidation = IndexSchema.Validation.FAIL;
+        private long retainedChanges;
+        private VersionConflicts versionConflicts = VersionConflicts.FAIL;
+        private boolean startupWarmUp;
+
+        private Builder(Analyzer analyzer, DocumentMapper<T> documentMapper) {
+            this.analyzer = analyzer;
+            this.documentMapper = documentMapper;
+        }
+
+        Executor getExecutor() {
+            return executor;
+        }
+
+        boolean isEntityIndex() {
+            if (documentMapper instanceof WrappedDocumentMapper)
+                return false;
+            return documentMapper instanceof EntityDocumentMapper;
+        }
+
+        /**
+         * @return a builder with the same settings, changed without changing this builder
+         */
+        Builder<T> copy() {
+            final Builder<T> copy = new Builder<>(analyzer, documentMapper);
+            copy.path = path;
+            copy.inMemory = inMemory;
+            copy.directoryFactory = directoryFactory;
+            copy.name = name;
+            copy.metrics = metrics;
+            copy.slowQueryLog = slowQueryLog;
+            copy.executor = executor;
+            copy.parsedQueryCacheSize = parsedQueryCacheSize;
+            copy.schemaValidation = schemaValidation;
+            copy.retainedChanges = retainedChanges;
+            copy.versionConflicts = versionConflicts;
+            copy.startupWarmUp = startupWarmUp;
+            return copy;
+        }
+
+        public Builder<T> withPath(Path path) {
+            this.path = path;
+            this.inMemory = false;
+            return this;
+        }
+
+        /**
+         * Create an empty index backed by a {@link ByteBuffersDirectory}
+         */
+        public Builder<T> inMemory() {
+            return inMemory(null);
+        }
+
+        /**
+         * Create an index backed by a {@link ByteBuffersDirectory}, loaded with the latest commit of the source index.
+         * Changes are not written back to the source index, use {@link LuceneIndex#snapshotTo(Path)}.
+         */
+        public Builder<T> inMemory(Path source) {
+            this.path = source;
+            this.inMemory = true;
+            return this;
+        }
+
+        public Builder<T> withDirectoryFactory(DirectoryFactory directoryFactory) {
+            this.directoryFactory = directoryFactory;
+            return this;
+        }
+
+        /**
+         * @param name name used to report metrics, default to the index directory name
+         */
+        public Builder<T> withName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder<T> withMetrics(IndexMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param slowQueryLog log of the slow query cursors, null to disable it
+         */
+        public Builder<T> withSlowQueryLog(SlowQueryLog slowQueryLog) {
+            this.slowQueryLog = slowQueryLog;
+            return this;
+        }
+
+        /**
+         * @param executor executor of the async reader and writer operations, not shut down on index close.
+         *                 Default to a cached thread pool owned by the index.
+         */
+        public Builder<T> withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param parsedQueryCacheSize max number of parsed query strings kept in cache, 0 to disable the cache
+         */
+        public Builder<T> withParsedQueryCacheSize(int parsedQueryCacheSize) {
+            this.parsedQueryCacheSize = parsedQueryCacheSize;
+            return this;
+        }
+
+        /**
+         * @param schemaValidation action taken when the document mapper schema differs from the index one,
+         *                         default to {@link IndexSchema.Validation#FAIL}
+         */
+        public Builder<T> withSchemaValidation(IndexSchema.Validation schemaValidation) {
+            this.schemaValidation = schemaValidation;
+            return this;
+        }
+
+        /**
+         * @param versionConflicts action taken when updating a versioned entity with a stale version, default to
+         *                         {@link VersionConflicts#FAIL}
+         */
+        public Builder<T> withVersionConflicts(VersionConflicts versionConflicts) {
+            this.versionConflicts = versionConflicts;
+            return this;
+        }
+
+        /**
+         * Enable the {@link ChangeFeed} of an entity index
+         *
+         * @param retainedChanges number of changes kept in the index history, a consumer can resume from a
+         *                        checkpoint up to this number of changes behind
+         */
+        public Builder<T> withChangeFeed(long retainedChanges) {
+            if (retainedChanges < 1)
+                throw new IllegalArgumentException("retainedChanges " + retainedChanges + " must be > 0");
+            this.retainedChanges = retainedChanges;
+            return this;
+        }
+
+        /**
+         * @param startupWarmUp read the terms, postings, doc values, norms and points files of the latest commit when
+         *                      the index is built, to load them in the OS cache before the first searches. Ignored
+         *                      for in memory indices.
+         */
+        public Builder<T> withStartupWarmUp(boolean startupWarmUp) {
+            this.startupWarmUp = startupWarmUp;
+            return this;
+        }
+
+        public LuceneIndex<T> build() {
+            return new LuceneIndex<>(this);
+        }
+    }
+
 }
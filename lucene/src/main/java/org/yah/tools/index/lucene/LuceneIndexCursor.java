@@ -1,16 +1,18 @@
 package org.yah.tools.index.lucene;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.search.*;
 import org.yah.tools.index.lucene.LuceneIndexReader.ReaderInstance;
 import org.yah.tools.index.lucene.mapper.DocumentMapper;
+import org.yah.tools.index.lucene.metrics.QueryPhase;
 import org.yah.tools.index.query.IndexCursor;
 import org.yah.tools.index.query.ScoredElement;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Set;
 import java.util.Spliterator;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -28,11 +30,25 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
                 mapper, false, batchSize);
     }
 
+    /**
+     * @return a cursor of the query hits, whose documents are not loaded
+     */
+    public static IndexCursor<ScoreDoc> createHits(ReaderInstance readerInstance,
+                                                   DocumentMapper<?> documentMapper,
+                                                   LuceneIndexQuery query, int batchSize) {
+        return new LuceneIndexCursor<>(readerInstance,
+                query, query.createLuceneSort(documentMapper),
+                null, false, batchSize);
+    }
+
     public static <T> IndexCursor<ScoredElement<T>> createScored(ReaderInstance readerInstance,
                                                                  DocumentMapper<T> documentMapper,
+                                                                 Analyzer analyzer,
                                                                  LuceneIndexQuery query, int batchSize) {
+        final QueryHighlighter[] highlighters = QueryHighlighter.create(new ReaderInstance[]{readerInstance}, analyzer, query);
         BiFunction<ScoreDoc, Document, ScoredElement<T>> mapper = (scoreDoc, document) ->
-                new ScoredElement<>(documentMapper.toElement(document), scoreDoc.score);
+                new ScoredElement<>(documentMapper.toElement(document), scoreDoc.score,
+                        highlighters == null ? Map.of() : highlighters[0].highlight(scoreDoc.doc));
         return new LuceneIndexCursor<>(readerInstance,
                 query, query.createLuceneSort(documentMapper),
                 mapper, true, batchSize);
@@ -44,13 +60,19 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
     private final Sort sort;
     private final boolean doScores;
 
+    /**
+     * null if the cursor returns the hits
+     */
     private final BiFunction<ScoreDoc, Document, T> mapper;
     private final int batchSize;
 
+    private final QueryProfile profile;
+
     private ScoreDoc[] results;
     private TotalHits totalHits;
     private int index;
     private int remaining;
+    private boolean closed;
 
     LuceneIndexCursor(ReaderInstance readerInstance,
                       LuceneIndexQuery query,
@@ -58,12 +80,17 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
                       BiFunction<ScoreDoc, Document, T> mapper,
                       boolean doScores,
                       int batchSize) {
+        if (query.getCollapseField() != null) {
+            readerInstance.close();
+            throw new IllegalArgumentException("collapsed query " + query.getQuery() + " must be executed by groupedList");
+        }
         this.readerInstance = readerInstance;
         this.query = query;
         this.sort = luceneSort;
         this.batchSize = batchSize;
         this.mapper = mapper;
         this.doScores = doScores;
+        this.profile = readerInstance.metrics.startProfile(readerInstance.metrics.getIndex(), query, luceneSort, batchSize);
         remaining = query.getLimit();
         results = search();
     }
@@ -92,6 +119,11 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
 
     @Override
     public void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (profile != null)
+            profile.finish(totalHits == null ? 0 : totalHits.value);
         readerInstance.close();
     }
 
@@ -105,19 +137,7 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
         if (!hasNext()) throw new NoSuchElementException();
 
         final ScoreDoc scoreDoc = results[index];
-        final IndexSearcher searcher = readerInstance.searcher;
-
-        final Document document;
-        try {
-            final Set<String> projection = query.getProjection();
-            if (projection.isEmpty())
-                document = searcher.doc(scoreDoc.doc);
-            else
-                document = searcher.doc(scoreDoc.doc, projection);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
-        final T element = mapper.apply(scoreDoc, document);
+        final T element = mapper == null ? hit(scoreDoc) : load(scoreDoc);
         index++;
         if (index == results.length) {
             results = search();
@@ -126,6 +146,21 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
         return element;
     }
 
+    private T load(ScoreDoc scoreDoc) {
+        final Document document;
+        try {
+            document = readerInstance.loadDocument(scoreDoc.doc, query.getProjection(), profile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return readerInstance.metrics.hydrate(document, d -> mapper.apply(scoreDoc, d), profile);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T hit(ScoreDoc scoreDoc) {
+        return (T) scoreDoc;
+    }
+
     @Override
     public void forEachRemaining(Consumer<? super T> action) {
         IndexCursor.super.forEachRemaining(action);
@@ -160,16 +195,20 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
 
     private ScoreDoc[] search() {
         try {
+            if (query.getRescorer() != null)
+                return results == null ? rescore() : new ScoreDoc[0];
             if (remaining > 0) {
                 final IndexSearcher searcher = readerInstance.searcher;
                 ScoreDoc lastDoc = null;
                 if (results != null) {
                     lastDoc = results[results.length - 1];
                 } else if (query.getSkip() > 0) {
+                    final long start = readerInstance.metrics.start(profile);
                     final TopFieldDocs skippedDocs = searcher.search(query.getQuery(),
                             query.getSkip(),
                             sort,
                             false);
+                    readerInstance.metrics.recordSearch(QueryPhase.SKIP, start, skippedDocs.scoreDocs.length, profile);
                     if (skippedDocs.scoreDocs.length > 0)
                         lastDoc = skippedDocs.scoreDocs[skippedDocs.scoreDocs.length - 1];
                     else {
@@ -179,8 +218,10 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
                 }
 
                 int maxHits = Math.min(remaining, batchSize);
+                final long start = readerInstance.metrics.start(profile);
                 final TopFieldDocs docs = searcher.searchAfter(lastDoc,
                         query.getQuery(), maxHits, sort, doScores);
+                readerInstance.metrics.recordSearch(QueryPhase.SEARCH, start, docs.scoreDocs.length, profile);
                 totalHits = docs.totalHits;
                 remaining -= docs.scoreDocs.length;
                 return docs.scoreDocs;
@@ -192,4 +233,21 @@ class LuceneIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
         }
     }
 
+    /**
+     * Search the top hits window, rescore it, and return the page of the rescored hits
+     */
+    private ScoreDoc[] rescore() throws IOException {
+        final IndexSearcher searcher = readerInstance.searcher;
+        long start = readerInstance.metrics.start(profile);
+        final TopDocs firstPassDocs = searcher.search(query.getQuery(), query.getRescoreWindow());
+        readerInstance.metrics.recordSearch(QueryPhase.SEARCH, start, firstPassDocs.scoreDocs.length, profile);
+
+        start = readerInstance.metrics.start(profile);
+        final TopDocs docs = query.getRescorer().rescore(searcher, firstPassDocs, query.getRescoreWindow());
+        readerInstance.metrics.recordSearch(QueryPhase.RESCORE, start, docs.scoreDocs.length, profile);
+        totalHits = firstPassDocs.totalHits;
+        remaining = 0;
+        return query.pageRescored(docs.scoreDocs);
+    }
+
 }
@@ -6,19 +6,31 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yah.tools.index.lucene.annotations.DirectoryType;
 import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexDirectory;
 import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.lucene.directory.DirectoryFactories;
+import org.yah.tools.index.lucene.directory.DirectoryFactory;
 import org.yah.tools.index.lucene.mapper.DefaultDocumentMapper;
+import org.yah.tools.index.lucene.mapper.IndexSchema;
 import org.yah.tools.index.lucene.mapper.annotations.IndexAnnotationParser;
+import org.yah.tools.index.lucene.metrics.IndexMetrics;
+import org.yah.tools.index.lucene.metrics.SlowQueryLog;
 
 import java.nio.file.Path;
 import java.time.ZoneOffset;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 public class LuceneIndexFactory {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexFactory.class);
     private static final PropertyNamingStrategy.SnakeCaseStrategy SNAKE_CASE_STRATEGY = new PropertyNamingStrategy.SnakeCaseStrategy();
 
     private final Path indexesDirectory;
@@ -26,6 +38,13 @@ public class LuceneIndexFactory {
     private final ZoneOffset zoneOffset;
     private final Analyzer defaultAnalyzer;
     private final IndexedFieldType defaultStringFieldType;
+    private final int defaultShards;
+    private final DirectoryFactory defaultDirectoryFactory;
+    private final IndexMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
+    private final Executor executor;
+    private final IndexSchema.Validation schemaValidation;
+    private final VersionConflicts versionConflicts;
 
     public LuceneIndexFactory(Builder builder) {
         indexesDirectory = Objects.requireNonNull(builder.indexesDirectory);
@@ -33,14 +52,56 @@ public class LuceneIndexFactory {
         zoneOffset = builder.zoneOffset;
         defaultAnalyzer = builder.defaultAnalyzer == null ? new StandardAnalyzer() : builder.defaultAnalyzer;
         defaultStringFieldType = builder.defaultStringFieldType;
+        defaultShards = builder.defaultShards;
+        defaultDirectoryFactory = Objects.requireNonNull(builder.defaultDirectoryFactory, "defaultDirectoryFactory is null");
+        metrics = Objects.requireNonNull(builder.metrics, "metrics is null");
+        slowQueryLog = builder.slowQueryLog;
+        executor = builder.executor;
+        schemaValidation = Objects.requireNonNull(builder.schemaValidation, "schemaValidation is null");
+        versionConflicts = Objects.requireNonNull(builder.versionConflicts, "versionConflicts is null");
     }
 
     public <T> LuceneIndex<T> buildIndex(Class<T> entityType) {
+        final IndexDefinition<T> definition = define(entityType);
+        Path indexPath = indexesDirectory.resolve(definition.name);
+        LOGGER.info("index {} uses directory {}", definition.name, definition.directoryFactory);
+        return indexBuilder(definition).withPath(indexPath).build();
+    }
+
+    /**
+     * Build an empty index backed by a ByteBuffersDirectory
+     */
+    public <T> LuceneIndex<T> buildInMemoryIndex(Class<T> entityType) {
+        final IndexDefinition<T> definition = define(entityType);
+        LOGGER.info("index {} uses in memory directory", definition.name);
+        return indexBuilder(definition).inMemory().build();
+    }
+
+    /**
+     * Load the latest commit of the index stored in the indexes directory into a ByteBuffersDirectory
+     */
+    public <T> LuceneIndex<T> loadInMemoryIndex(Class<T> entityType) {
+        final IndexDefinition<T> definition = define(entityType);
+        Path indexPath = indexesDirectory.resolve(definition.name);
+        LOGGER.info("index {} loaded in memory from {}", definition.name, indexPath);
+        return indexBuilder(definition).inMemory(indexPath).build();
+    }
+
+    public <T> ShardedLuceneIndex<T> buildShardedIndex(Class<T> entityType) {
+        final IndexDefinition<T> definition = define(entityType);
+        Path indexPath = indexesDirectory.resolve(definition.name);
+        LOGGER.info("index {} uses {} shards with directory {}", definition.name, definition.shards, definition.directoryFactory);
+        return new ShardedLuceneIndex<>(indexPath, definition.shards, indexBuilder(definition));
+    }
+
+    private <T> IndexDefinition<T> define(Class<T> entityType) {
         final Index annotation = entityType.getAnnotation(Index.class);
 
         String name = null;
         Analyzer defaultAnalyzer = this.defaultAnalyzer;
         IndexedFieldType defaultType = defaultStringFieldType;
+        int shards = defaultShards;
+        DirectoryFactory directoryFactory = defaultDirectoryFactory;
         if (annotation != null) {
             if (annotation.defaultAnalyzer() != Index.FactoryDefault.class) {
                 defaultAnalyzer = IndexAnnotationParser.createAnalyzer(annotation.defaultAnalyzer());
@@ -50,6 +111,10 @@ public class LuceneIndexFactory {
                 name = StringUtils.trimToNull(annotation.value());
             if (annotation.defaultTextType() != IndexedFieldType.AUTO)
                 defaultType = annotation.defaultTextType();
+            if (annotation.shards() > 0)
+                shards = annotation.shards();
+            if (annotation.directory().type() != DirectoryType.AUTO)
+                directoryFactory = createDirectoryFactory(annotation.directory());
         }
         if (name == null)
             name = SNAKE_CASE_STRATEGY.translate(entityType.getSimpleName());
@@ -66,8 +131,41 @@ public class LuceneIndexFactory {
 
         final DefaultDocumentMapper<T> documentMapper = parserBuilder.build().parse();
         PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(defaultAnalyzer, fieldAnalyzers);
-        Path indexPath = indexesDirectory.resolve(name);
-        return new LuceneIndex<>(indexPath, analyzer, documentMapper);
+        return new IndexDefinition<>(name, analyzer, documentMapper, shards, directoryFactory);
+    }
+
+    private <T> LuceneIndex.Builder<T> indexBuilder(IndexDefinition<T> definition) {
+        return LuceneIndex.builder(definition.analyzer, definition.documentMapper)
+                .withDirectoryFactory(definition.directoryFactory)
+                .withName(definition.name)
+                .withMetrics(metrics)
+                .withSlowQueryLog(slowQueryLog)
+                .withExecutor(executor)
+                .withSchemaValidation(schemaValidation)
+                .withVersionConflicts(versionConflicts);
+    }
+
+    private static DirectoryFactory createDirectoryFactory(IndexDirectory annotation) {
+        DirectoryFactory directoryFactory;
+        switch (annotation.type()) {
+            case FS:
+                directoryFactory = DirectoryFactories.fs;
+                break;
+            case MMAP:
+                directoryFactory = DirectoryFactories.mmap(Set.of(annotation.preload()));
+                break;
+            case NIOFS:
+                directoryFactory = DirectoryFactories.niofs;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported directory type " + annotation.type());
+        }
+        if (annotation.nrtCaching()) {
+            directoryFactory = DirectoryFactories.nrtCaching(directoryFactory,
+                    annotation.nrtCachingMaxMergeSizeMB(),
+                    annotation.nrtCachingMaxCachedMB());
+        }
+        return directoryFactory;
     }
 
     public static Builder builder(Path indexPath) {
@@ -80,6 +178,13 @@ public class LuceneIndexFactory {
         private ZoneOffset zoneOffset;
         private Analyzer defaultAnalyzer;
         private IndexedFieldType defaultStringFieldType;
+        private int defaultShards = 1;
+        private DirectoryFactory defaultDirectoryFactory = DirectoryFactories.fs;
+        private IndexMetrics metrics = IndexMetrics.NOOP;
+        private SlowQueryLog slowQueryLog;
+        private Executor executor;
+        private IndexSchema.Validation schemaValidation = IndexSchema.Validation.FAIL;
+        private VersionConflicts versionConflicts = VersionConflicts.FAIL;
 
         private Builder(Path indexPath) {
             this.indexesDirectory = indexPath;
@@ -105,9 +210,70 @@ public class LuceneIndexFactory {
             return this;
         }
 
+        public Builder withDefaultShards(int defaultShards) {
+            if (defaultShards <= 0)
+                throw new IllegalArgumentException("defaultShards " + defaultShards + " must be > 0");
+            this.defaultShards = defaultShards;
+            return this;
+        }
+
+        public Builder withDefaultDirectoryFactory(DirectoryFactory defaultDirectoryFactory) {
+            this.defaultDirectoryFactory = defaultDirectoryFactory;
+            return this;
+        }
+
+        /**
+         * @param metrics metrics shared by all indexes built by the factory, recorded using the index name
+         */
+        public Builder withMetrics(IndexMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withSlowQueryLog(SlowQueryLog slowQueryLog) {
+            this.slowQueryLog = slowQueryLog;
+            return this;
+        }
+
+        /**
+         * @param executor executor shared by the async operations of all indexes, each index owns a thread pool
+         *                 if not set
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withSchemaValidation(IndexSchema.Validation schemaValidation) {
+            this.schemaValidation = schemaValidation;
+            return this;
+        }
+
+        public Builder withVersionConflicts(VersionConflicts versionConflicts) {
+            this.versionConflicts = versionConflicts;
+            return this;
+        }
+
         public LuceneIndexFactory build() {
             return new LuceneIndexFactory(this);
         }
     }
 
+    private static final class IndexDefinition<T> {
+        private final String name;
+        private final Analyzer analyzer;
+        private final DefaultDocumentMapper<T> documentMapper;
+        private final int shards;
+        private final DirectoryFactory directoryFactory;
+
+        private IndexDefinition(String name, Analyzer analyzer, DefaultDocumentMapper<T> documentMapper,
+                                int shards, DirectoryFactory directoryFactory) {
+            this.name = name;
+            this.analyzer = analyzer;
+            this.documentMapper = documentMapper;
+            this.shards = shards;
+            this.directoryFactory = directoryFactory;
+        }
+    }
+
 }
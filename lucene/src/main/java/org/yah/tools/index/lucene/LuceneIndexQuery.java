@@ -1,14 +1,19 @@
 package org.yah.tools.index.lucene;
 
+import org.apache.lucene.document.LatLonDocValuesField;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Rescorer;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.yah.tools.index.lucene.mapper.DocumentMapper;
 import org.yah.tools.index.lucene.mapper.IndexableFieldType;
 import org.yah.tools.index.query.IndexQuery;
 import org.yah.tools.index.query.IndexSort;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 
@@ -22,6 +27,12 @@ class LuceneIndexQuery implements IndexQuery {
     private final int limit;
     private final int skip;
     private final Set<String> projection;
+    private final Set<String> highlightedFields;
+    private final int maxPassages;
+    private final Rescorer rescorer;
+    private final int rescoreWindow;
+    private final String collapseField;
+    private final int groupSize;
 
     public LuceneIndexQuery(LuceneIndexQueryBuilder<?> builder) {
         this.query = builder.createLuceneQuery();
@@ -29,6 +40,16 @@ class LuceneIndexQuery implements IndexQuery {
         this.limit = builder.limit;
         this.skip = builder.skip;
         this.projection = Set.copyOf(builder.projection);
+        this.highlightedFields = Set.copyOf(builder.highlightedFields);
+        this.maxPassages = builder.maxPassages;
+        this.rescorer = builder.rescorer;
+        this.rescoreWindow = builder.rescoreWindow;
+        this.collapseField = builder.collapseField;
+        this.groupSize = builder.groupSize;
+        if (rescorer != null && sort != IndexSort.DEFAULT)
+            throw new IllegalArgumentException("rescored queries are sorted by their rescored score, not " + sort);
+        if (rescorer != null && collapseField != null)
+            throw new IllegalArgumentException("collapsed queries can not be rescored");
     }
 
     public LuceneIndexQuery(Query query) {
@@ -37,6 +58,26 @@ class LuceneIndexQuery implements IndexQuery {
         this.limit = Integer.MAX_VALUE;
         this.skip = 0;
         this.projection = Collections.emptySet();
+        this.highlightedFields = Collections.emptySet();
+        this.maxPassages = 0;
+        this.rescorer = null;
+        this.rescoreWindow = 0;
+        this.collapseField = null;
+        this.groupSize = 0;
+    }
+
+    public LuceneIndexQuery(Query query, IndexSort sort, int limit, int skip, Set<String> projection) {
+        this.query = query;
+        this.sort = sort;
+        this.limit = limit;
+        this.skip = skip;
+        this.projection = Set.copyOf(projection);
+        this.highlightedFields = Collections.emptySet();
+        this.maxPassages = 0;
+        this.rescorer = null;
+        this.rescoreWindow = 0;
+        this.collapseField = null;
+        this.groupSize = 0;
     }
 
     public Query getQuery() {
@@ -59,6 +100,45 @@ class LuceneIndexQuery implements IndexQuery {
         return projection;
     }
 
+    public Set<String> getHighlightedFields() {
+        return highlightedFields;
+    }
+
+    public int getMaxPassages() {
+        return maxPassages;
+    }
+
+    /**
+     * @return the second pass rescorer of the top hits, null if this query is not rescored
+     */
+    public Rescorer getRescorer() {
+        return rescorer;
+    }
+
+    public int getRescoreWindow() {
+        return rescoreWindow;
+    }
+
+    /**
+     * @return the sorted field grouping the hits, null if this query is not collapsed
+     */
+    public String getCollapseField() {
+        return collapseField;
+    }
+
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    /**
+     * @return the page of the rescored hits selected by skip and limit
+     */
+    ScoreDoc[] pageRescored(ScoreDoc[] hits) {
+        final int from = Math.min(skip, hits.length);
+        final int to = (int) Math.min(hits.length, (long) from + limit);
+        return Arrays.copyOfRange(hits, from, to);
+    }
+
     public static LuceneIndexQuery cast(IndexQuery query) {
         if (query == IndexQuery.ALL) return LuceneIndexQuery.ALL;
         return (LuceneIndexQuery) query;
@@ -79,10 +159,17 @@ class LuceneIndexQuery implements IndexQuery {
             return SortField.FIELD_SCORE;
         if (field.isIndexOrder())
             return SortField.FIELD_DOC;
+        if (field.isDistance())
+            return LatLonDocValuesField.newDistanceSort(field.getName(), field.getLatitude(), field.getLongitude());
         boolean reverse = field.getDirection() == IndexSort.IndexSortDirection.DESC;
         final IndexableFieldType fieldType = documentMapper.getFieldType(field.getName());
+        if (fieldType == null)
+            throw new IllegalArgumentException("sort field " + field.getName() + " is not mapped");
         final SortField.Type sortType = getSortType(fieldType);
-        return new SortField(field.getName(), sortType, reverse);
+        if (sortType == SortField.Type.STRING)
+            return new SortField(field.getName(), sortType, reverse);
+        // numbers are sorted fields, indexed with sorted numeric doc values
+        return new SortedNumericSortField(field.getName(), sortType, reverse);
     }
 
     private SortField.Type getSortType(IndexableFieldType fieldType) {
@@ -96,7 +183,7 @@ class LuceneIndexQuery implements IndexQuery {
             case FLOAT:
                 return SortField.Type.FLOAT;
             case DOUBLE:
-                return SortField.Type.DOC;
+                return SortField.Type.DOUBLE;
             default:
                 throw new IllegalArgumentException(fieldType + " is not sortable");
         }
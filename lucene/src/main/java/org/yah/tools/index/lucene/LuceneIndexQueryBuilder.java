@@ -1,42 +1,54 @@
 package org.yah.tools.index.lucene;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.FeatureField;
 import org.apache.lucene.document.FloatPoint;
 import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LatLonPoint;
 import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.geo.Polygon;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.*;
-import org.apache.lucene.util.QueryBuilder;
 import org.yah.tools.index.lucene.mapper.IndexableFieldType;
 import org.yah.tools.index.query.IndexQuery;
 import org.yah.tools.index.query.IndexQueryBuilder;
 import org.yah.tools.index.query.IndexSort;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
 
 class LuceneIndexQueryBuilder<T> implements IndexQueryBuilder {
     protected final Set<String> projection = new HashSet<>();
+    protected final Set<String> highlightedFields = new HashSet<>();
     protected final LuceneIndex<T> index;
 
     private final BooleanQuery.Builder queryBuilder;
-    private final QueryBuilder fieldQueryBuilder;
-    private final Function<String, IndexableFieldType> fieldTypeSource;
+    private final List<Query> rankFeatures = new ArrayList<>();
 
     protected IndexSort sort = IndexSort.DEFAULT;
     protected int limit = Integer.MAX_VALUE;
     protected int skip = 0;
+    protected int maxPassages = 0;
+    protected Rescorer rescorer;
+    protected int rescoreWindow;
+    protected String collapseField;
+    protected int groupSize;
 
     LuceneIndexQueryBuilder(LuceneIndex<T> index) {
         this.index = Objects.requireNonNull(index);
         queryBuilder = new BooleanQuery.Builder();
-        fieldQueryBuilder = new QueryBuilder(index.analyzer);
-        fieldTypeSource = index.documentMapper::getFieldType;
     }
 
     @Override
@@ -71,6 +83,50 @@ class LuceneIndexQueryBuilder<T> implements IndexQueryBuilder {
         return this;
     }
 
+    @Override
+    public IndexQueryBuilder highlight(Set<String> fields, int maxPassages) {
+        if (maxPassages <= 0) throw new IllegalArgumentException("maxPassages " + maxPassages + " must be > 0");
+        this.highlightedFields.addAll(fields);
+        this.maxPassages = maxPassages;
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder collapse(String fieldName, int groupSize) {
+        if (groupSize <= 0) throw new IllegalArgumentException("groupSize " + groupSize + " must be > 0");
+        final IndexableFieldType fieldType = index.documentMapper.getFieldType(fieldName);
+        if (fieldType != IndexableFieldType.STRING)
+            throw new IllegalArgumentException("field " + fieldName + " is a " + fieldType + ", not a sorted string field");
+        this.collapseField = fieldName;
+        this.groupSize = groupSize;
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder rescore(int windowSize, IndexQuery rescoreQuery, float queryWeight, float rescoreQueryWeight) {
+        final Query query = LuceneIndexQuery.cast(rescoreQuery).getQuery();
+        return rescore(windowSize, new QueryRescorer(query) {
+            @Override
+            protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore) {
+                final float score = queryWeight * firstPassScore;
+                return secondPassMatches ? score + rescoreQueryWeight * secondPassScore : score;
+            }
+        });
+    }
+
+    @Override
+    public IndexQueryBuilder rescore(int windowSize, String fieldName, DoubleBinaryOperator function) {
+        final IndexableFieldType fieldType = index.documentMapper.getFieldType(fieldName);
+        return rescore(windowSize, new DocValuesRescorer(fieldName, fieldType, Objects.requireNonNull(function)));
+    }
+
+    private IndexQueryBuilder rescore(int windowSize, Rescorer rescorer) {
+        if (windowSize <= 0) throw new IllegalArgumentException("windowSize " + windowSize + " must be > 0");
+        this.rescorer = rescorer;
+        this.rescoreWindow = windowSize;
+        return this;
+    }
+
     @Override
     public IndexQueryBuilder withTerm(String fieldName, String term, Occur occur, float boost) {
         queryBuilder.add(boost(new TermQuery(new Term(fieldName, term)), boost), createLuceneOccur(occur));
@@ -79,88 +135,194 @@ class LuceneIndexQueryBuilder<T> implements IndexQueryBuilder {
 
     @Override
     public IndexQueryBuilder withTerms(String fieldName, String terms, Occur occur, TermOccur termsOccur, float boost) {
-        final Query termsQuery = fieldQueryBuilder.createBooleanQuery(fieldName, terms, createLuceneOccur(termsOccur));
+        final Query termsQuery = index.queryBuilder.createBooleanQuery(fieldName, terms, createLuceneOccur(termsOccur));
         queryBuilder.add(boost(termsQuery, boost), createLuceneOccur(occur));
         return this;
     }
 
+    @Override
+    public IndexQueryBuilder withFuzzyTerm(String fieldName, String term, Occur occur,
+                                           int maxEdits, int prefixLength, int maxExpansions, float boost) {
+        final Query fuzzyQuery = new FuzzyQuery(new Term(fieldName, term), maxEdits, prefixLength, maxExpansions, true);
+        queryBuilder.add(boost(fuzzyQuery, boost), createLuceneOccur(occur));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withFuzzyTerms(String fieldName, String terms, Occur occur, TermOccur termsOccur,
+                                            int maxEdits, int prefixLength, int maxExpansions, float boost) {
+        final BooleanQuery.Builder termsQuery = new BooleanQuery.Builder();
+        for (String term : analyze(index.analyzer, fieldName, terms)) {
+            termsQuery.add(new FuzzyQuery(new Term(fieldName, term), maxEdits, prefixLength, maxExpansions, true),
+                    createLuceneOccur(termsOccur));
+        }
+        queryBuilder.add(boost(termsQuery.build(), boost), createLuceneOccur(occur));
+        return this;
+    }
+
     @Override
     public IndexQueryBuilder withPhrase(String fieldName, String phrase, Occur occur, int slope, float boost) {
-        final Query termsQuery = fieldQueryBuilder.createPhraseQuery(fieldName, phrase, slope);
+        final Query termsQuery = index.queryBuilder.createPhraseQuery(fieldName, phrase, slope);
         queryBuilder.add(boost(termsQuery, boost), createLuceneOccur(occur));
         return this;
     }
 
     @Override
     public <R> IndexQueryBuilder withRange(String fieldName, R min, R max, Occur occur, float boost) {
+        final Query rangeQuery = createRangeQuery(fieldName, min, max);
+        queryBuilder.add(boost(rangeQuery, boost), createLuceneOccur(occur));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withGeoDistance(String fieldName, double latitude, double longitude,
+                                             double radiusMeters, Occur occur) {
+        queryBuilder.add(LatLonPoint.newDistanceQuery(fieldName, latitude, longitude, radiusMeters),
+                createLuceneOccur(occur));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withGeoBoundingBox(String fieldName, double minLatitude, double maxLatitude,
+                                                double minLongitude, double maxLongitude, Occur occur) {
+        queryBuilder.add(LatLonPoint.newBoxQuery(fieldName, minLatitude, maxLatitude, minLongitude, maxLongitude),
+                createLuceneOccur(occur));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withGeoPolygon(String fieldName, double[] latitudes, double[] longitudes, Occur occur) {
+        queryBuilder.add(LatLonPoint.newPolygonQuery(fieldName, new Polygon(latitudes, longitudes)),
+                createLuceneOccur(occur));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withRankFeature(String fieldName, float weight) {
+        checkRankFeature(fieldName);
+        rankFeatures.add(boost(FeatureField.newSaturationQuery(fieldName, fieldName), weight));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withRankFeature(String fieldName, float weight, float pivot) {
+        checkRankFeature(fieldName);
+        rankFeatures.add(FeatureField.newSaturationQuery(fieldName, fieldName, weight, pivot));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withLogRankFeature(String fieldName, float weight, float scalingFactor) {
+        checkRankFeature(fieldName);
+        rankFeatures.add(FeatureField.newLogQuery(fieldName, fieldName, weight, scalingFactor));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withSigmoidRankFeature(String fieldName, float weight, float pivot, float exponent) {
+        checkRankFeature(fieldName);
+        rankFeatures.add(FeatureField.newSigmoidQuery(fieldName, fieldName, weight, pivot, exponent));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withNested(String path, IndexQuery nestedQuery, Occur occur, NestedScoreMode scoreMode) {
+        if (index.blockJoin == null)
+            throw new IllegalArgumentException("index " + index.getName() + " has no nested documents");
+        final Query query = index.blockJoin.join(path, LuceneIndexQuery.cast(nestedQuery).getQuery(),
+                createScoreMode(scoreMode));
+        queryBuilder.add(query, createLuceneOccur(occur));
+        return this;
+    }
+
+    @Override
+    public IndexQueryBuilder withQuery(IndexQuery query, Occur occur, float boost) {
+        LuceneIndexQuery luceneIndexQuery = LuceneIndexQuery.cast(query);
+        return withQuery(luceneIndexQuery.getQuery(), occur, boost);
+    }
+
+    @Override
+    public IndexQueryBuilder withQuery(String defaultField, String query, Occur occur, float boost) {
+        withQuery(index.parsedQueries.parse(defaultField, query), occur, boost);
+        return this;
+    }
+
+    @Override
+    public IndexQuery build() {
+        return new LuceneIndexQuery(this);
+    }
+
+    /**
+     * Rank features are optional clauses of a query requiring the built query, they only change the scores
+     */
+    Query createLuceneQuery() {
+        final BooleanQuery booleanQuery = queryBuilder.build();
+        final Query query = booleanQuery.clauses().isEmpty() ? new MatchAllDocsQuery() : booleanQuery;
+        if (rankFeatures.isEmpty())
+            return query;
+
+        final BooleanQuery.Builder rankedQuery = new BooleanQuery.Builder().add(query, BooleanClause.Occur.MUST);
+        rankFeatures.forEach(feature -> rankedQuery.add(feature, BooleanClause.Occur.SHOULD));
+        return rankedQuery.build();
+    }
+
+    private void checkRankFeature(String fieldName) {
+        final IndexableFieldType fieldType = index.documentMapper.getFieldType(fieldName);
+        if (fieldType != IndexableFieldType.RANK_FEATURE)
+            throw new IllegalArgumentException("field " + fieldName + " is a " + fieldType + ", not a rank feature");
+    }
+
+    private IndexQueryBuilder withQuery(Query query, Occur occur, float boost) {
+        queryBuilder.add(boost(query, boost), createLuceneOccur(occur));
+        return this;
+    }
+
+    static Query createRangeQuery(String fieldName, Object min, Object max) {
         if (min == null && max == null)
             throw new IllegalArgumentException("min and max are null");
         Class<?> type = min != null ? min.getClass() : max.getClass();
-        Query rangeQuery;
         if (Integer.class.isAssignableFrom(type)) {
-            rangeQuery = IntPoint.newRangeQuery(fieldName,
+            return IntPoint.newRangeQuery(fieldName,
                     cast(min, Integer.MIN_VALUE),
                     cast(max, Integer.MAX_VALUE));
         } else if (Long.class.isAssignableFrom(type)) {
-            rangeQuery = LongPoint.newRangeQuery(fieldName,
+            return LongPoint.newRangeQuery(fieldName,
                     cast(min, Long.MIN_VALUE),
                     cast(max, Long.MAX_VALUE));
         } else if (Float.class.isAssignableFrom(type)) {
-            rangeQuery = FloatPoint.newRangeQuery(fieldName,
+            return FloatPoint.newRangeQuery(fieldName,
                     cast(min, Float.MIN_VALUE),
                     cast(max, Float.MAX_VALUE));
         } else if (Double.class.isAssignableFrom(type)) {
-            rangeQuery = DoublePoint.newRangeQuery(fieldName,
+            return DoublePoint.newRangeQuery(fieldName,
                     cast(min, Double.MIN_VALUE),
                     cast(max, Double.MAX_VALUE));
         } else if (LocalDate.class.isAssignableFrom(type)) {
-            rangeQuery = LongPoint.newRangeQuery(fieldName,
+            return LongPoint.newRangeQuery(fieldName,
                     cast(min, LocalDate::toEpochDay, Long.MIN_VALUE),
                     cast(max, LocalDate::toEpochDay, Long.MAX_VALUE));
         } else if (Instant.class.isAssignableFrom(type)) {
-            rangeQuery = LongPoint.newRangeQuery(fieldName,
+            return LongPoint.newRangeQuery(fieldName,
                     cast(min, Instant::toEpochMilli, Long.MIN_VALUE),
                     cast(max, Instant::toEpochMilli, Long.MAX_VALUE));
         } else {
             throw new IllegalArgumentException("Unhandled RangeQuery type " + type.getName());
         }
-        queryBuilder.add(boost(rangeQuery, boost), createLuceneOccur(occur));
-        return this;
-    }
-
-    @Override
-    public IndexQueryBuilder withQuery(IndexQuery query, Occur occur, float boost) {
-        LuceneIndexQuery luceneIndexQuery = LuceneIndexQuery.cast(query);
-        return withQuery(luceneIndexQuery.getQuery(), occur, boost);
     }
 
-    @Override
-    public IndexQueryBuilder withQuery(String defaultField, String query, Occur occur, float boost) {
-        final Query parsedQuery;
-        try {
-            parsedQuery = new MappedEntityQueryParser(defaultField, index.analyzer, fieldTypeSource).parse(query);
-        } catch (ParseException e) {
-            throw new IllegalArgumentException(e);
+    static List<String> analyze(Analyzer analyzer, String fieldName, String text) {
+        final List<String> terms = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(fieldName, text)) {
+            final CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                terms.add(termAttribute.toString());
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        withQuery(parsedQuery, occur, boost);
-        return this;
-    }
-
-    @Override
-    public IndexQuery build() {
-        return new LuceneIndexQuery(this);
-    }
-
-    Query createLuceneQuery() {
-        final BooleanQuery query = queryBuilder.build();
-        if (query.clauses().isEmpty())
-            return new MatchAllDocsQuery();
-        return query;
-    }
-
-    private IndexQueryBuilder withQuery(Query query, Occur occur, float boost) {
-        queryBuilder.add(boost(query, boost), createLuceneOccur(occur));
-        return this;
+        return terms;
     }
 
     private static Query boost(Query query, float boost) {
@@ -169,7 +331,7 @@ class LuceneIndexQueryBuilder<T> implements IndexQueryBuilder {
         return query;
     }
 
-    private static BooleanClause.Occur createLuceneOccur(Occur occur) {
+    static BooleanClause.Occur createLuceneOccur(Occur occur) {
         switch (occur) {
             case MUST:
                 return BooleanClause.Occur.MUST;
@@ -184,7 +346,7 @@ class LuceneIndexQueryBuilder<T> implements IndexQueryBuilder {
         }
     }
 
-    private static BooleanClause.Occur createLuceneOccur(TermOccur termsOccur) {
+    static BooleanClause.Occur createLuceneOccur(TermOccur termsOccur) {
         switch (termsOccur) {
             case MUST:
                 return BooleanClause.Occur.MUST;
@@ -195,6 +357,23 @@ class LuceneIndexQueryBuilder<T> implements IndexQueryBuilder {
         }
     }
 
+    static org.apache.lucene.search.join.ScoreMode createScoreMode(NestedScoreMode scoreMode) {
+        switch (scoreMode) {
+            case NONE:
+                return org.apache.lucene.search.join.ScoreMode.None;
+            case AVG:
+                return org.apache.lucene.search.join.ScoreMode.Avg;
+            case MAX:
+                return org.apache.lucene.search.join.ScoreMode.Max;
+            case MIN:
+                return org.apache.lucene.search.join.ScoreMode.Min;
+            case TOTAL:
+                return org.apache.lucene.search.join.ScoreMode.Total;
+            default:
+                throw new IllegalArgumentException("Unsupported " + scoreMode);
+        }
+    }
+
     private static <T> T cast(Object value, T defaultValue) {
         if (value == null) return defaultValue;
         //noinspection unchecked
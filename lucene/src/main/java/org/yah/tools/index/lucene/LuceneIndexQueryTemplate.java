@@ -0,0 +1,198 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+import org.yah.tools.index.query.IndexQueryBuilder.TermOccur;
+import org.yah.tools.index.query.IndexQueryTemplate;
+import org.yah.tools.index.query.IndexQueryTemplateBuilder;
+import org.yah.tools.index.query.IndexSort;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.yah.tools.index.lucene.LuceneIndexQueryBuilder.createLuceneOccur;
+import static org.yah.tools.index.lucene.LuceneIndexQueryBuilder.createRangeQuery;
+
+/**
+ * Constant clauses are built once, parameter clauses are built from the bound values, using the index shared
+ * query builder and parsed queries cache.
+ */
+class LuceneIndexQueryTemplate implements IndexQueryTemplate {
+
+    private final List<TemplateClause> clauses;
+    private final IndexSort sort;
+    private final int limit;
+    private final int skip;
+    private final Set<String> projection;
+
+    private LuceneIndexQueryTemplate(Builder<?> builder) {
+        this.clauses = List.copyOf(builder.clauses);
+        this.sort = builder.sort;
+        this.limit = builder.limit;
+        this.skip = builder.skip;
+        this.projection = Set.copyOf(builder.projection);
+    }
+
+    @Override
+    public Binding bind() {
+        return new LuceneBinding();
+    }
+
+    private final class LuceneBinding implements Binding {
+        private final Map<String, Object> parameters = new HashMap<>();
+        private int limit = LuceneIndexQueryTemplate.this.limit;
+        private int skip = LuceneIndexQueryTemplate.this.skip;
+
+        @Override
+        public Binding set(String parameter, Object value) {
+            parameters.put(Objects.requireNonNull(parameter), value);
+            return this;
+        }
+
+        @Override
+        public Binding limit(int limit) {
+            if (limit <= 0) throw new IllegalArgumentException("limit " + limit + " must be > 0");
+            this.limit = limit;
+            return this;
+        }
+
+        @Override
+        public Binding skip(int skip) {
+            if (skip < 0) throw new IllegalArgumentException("skip " + skip + " must be >= 0");
+            this.skip = skip;
+            return this;
+        }
+
+        @Override
+        public IndexQuery build() {
+            final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            for (TemplateClause clause : clauses) {
+                final Query query = clause.factory.apply(parameters);
+                if (query != null)
+                    builder.add(query, clause.occur);
+            }
+            BooleanQuery query = builder.build();
+            return new LuceneIndexQuery(query.clauses().isEmpty() ? new MatchAllDocsQuery() : query,
+                    sort, limit, skip, projection);
+        }
+    }
+
+    private static final class TemplateClause {
+        private final BooleanClause.Occur occur;
+        /**
+         * create the clause query from the parameters, null if its parameters are not set
+         */
+        private final Function<Map<String, Object>, Query> factory;
+
+        private TemplateClause(Occur occur, Function<Map<String, Object>, Query> factory) {
+            this.occur = createLuceneOccur(occur);
+            this.factory = factory;
+        }
+    }
+
+    static final class Builder<T> implements IndexQueryTemplateBuilder {
+        private final LuceneIndex<T> index;
+        private final List<TemplateClause> clauses = new ArrayList<>();
+        private final Set<String> projection = new HashSet<>();
+        private IndexSort sort = IndexSort.DEFAULT;
+        private int limit = Integer.MAX_VALUE;
+        private int skip = 0;
+
+        Builder(LuceneIndex<T> index) {
+            this.index = Objects.requireNonNull(index);
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder withProjection(Set<String> projection) {
+            this.projection.clear();
+            this.projection.addAll(projection);
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder limit(int limit) {
+            if (limit <= 0) throw new IllegalArgumentException("limit " + limit + " must be > 0");
+            this.limit = limit;
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder skip(int skip) {
+            if (skip < 0) throw new IllegalArgumentException("skip " + skip + " must be >= 0");
+            this.skip = skip;
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder sort(IndexSort sort) {
+            this.sort = Objects.requireNonNull(sort);
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder withQuery(IndexQuery query, Occur occur) {
+            final Query luceneQuery = LuceneIndexQuery.cast(query).getQuery();
+            clauses.add(new TemplateClause(occur, parameters -> luceneQuery));
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder withQuery(String defaultField, String query, Occur occur) {
+            final Query parsedQuery = index.parsedQueries.parse(defaultField, query);
+            clauses.add(new TemplateClause(occur, parameters -> parsedQuery));
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder withTermParameter(String fieldName, String parameter, Occur occur) {
+            clauses.add(new TemplateClause(occur, parameters -> {
+                final Object value = parameters.get(parameter);
+                return value == null ? null : new TermQuery(new Term(fieldName, value.toString()));
+            }));
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder withTermsParameter(String fieldName, String parameter,
+                                                            Occur occur, TermOccur termsOccur) {
+            final BooleanClause.Occur luceneTermsOccur = createLuceneOccur(termsOccur);
+            clauses.add(new TemplateClause(occur, parameters -> {
+                final Object value = parameters.get(parameter);
+                return value == null ? null
+                        : index.queryBuilder.createBooleanQuery(fieldName, value.toString(), luceneTermsOccur);
+            }));
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder withRangeParameter(String fieldName, String minParameter, String maxParameter,
+                                                            Occur occur) {
+            clauses.add(new TemplateClause(occur, parameters -> {
+                final Object min = minParameter == null ? null : parameters.get(minParameter);
+                final Object max = maxParameter == null ? null : parameters.get(maxParameter);
+                return min == null && max == null ? null : createRangeQuery(fieldName, min, max);
+            }));
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplateBuilder withQueryParameter(String defaultField, String parameter, Occur occur) {
+            clauses.add(new TemplateClause(occur, parameters -> {
+                final Object value = parameters.get(parameter);
+                return value == null ? null : index.parsedQueries.parse(defaultField, value.toString());
+            }));
+            return this;
+        }
+
+        @Override
+        public IndexQueryTemplate build() {
+            return new LuceneIndexQueryTemplate(this);
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package org.yah.tools.index.lucene;
 
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SoftDeletesDirectoryReaderWrapper;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.slf4j.Logger;
@@ -12,18 +16,28 @@ import org.slf4j.LoggerFactory;
 import org.yah.tools.index.EntityIndexReader;
 import org.yah.tools.index.Index.ProgressCallback;
 import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.metrics.IndexOperation;
+import org.yah.tools.index.lucene.metrics.QueryPhase;
 import org.yah.tools.index.query.IndexCursor;
+import org.yah.tools.index.query.IndexGroups;
 import org.yah.tools.index.query.IndexQuery;
 import org.yah.tools.index.query.IndexQueryBuilder;
+import org.yah.tools.index.query.IndexQueryTemplateBuilder;
 import org.yah.tools.index.query.ScoredElement;
+import org.yah.tools.index.query.SearchRequest;
+import org.yah.tools.index.query.SearchResult;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 import static org.apache.lucene.search.BooleanClause.Occur.SHOULD;
@@ -34,6 +48,10 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
 
     private final IndexWriter indexWriter;
     private final Directory directory;
+    /**
+     * held while a refreshed reader is opened and warmed
+     */
+    private final ReentrantLock refreshLock = new ReentrantLock();
     private ReaderInstance readerInstance;
 
     LuceneIndexReader(LuceneIndex<T> index) {
@@ -52,10 +70,18 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
     @Override
     public int count() {
         try (ReaderInstance readerInstance = open()) {
-            return readerInstance.reader.numDocs();
+            final long start = index.metrics.start();
+            final int count = index.blockJoin == null ? readerInstance.reader.numDocs() : count(readerInstance);
+            index.metrics.record(IndexOperation.COUNT, start, count);
+            return count;
         }
     }
 
+    @Override
+    public IndexQueryTemplateBuilder prepareTemplate() {
+        return new LuceneIndexQueryTemplate.Builder<>(index);
+    }
+
     @Override
     public IndexQueryBuilder prepareQuery() {
         return new LuceneIndexQueryBuilder<>(index);
@@ -103,9 +129,7 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
     public int count(IndexQuery query) {
         final LuceneIndexQuery luceneQuery = LuceneIndexQuery.cast(query);
         try (ReaderInstance readerInstance = open()) {
-            return readerInstance.searcher.count(luceneQuery.getQuery());
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            return count(readerInstance, luceneQuery);
         }
     }
 
@@ -113,7 +137,7 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
     public IndexCursor<ScoredElement<T>> scoredQuery(IndexQuery query, int batchSize) {
         final ReaderInstance readerInstance = open();
 
-        return LuceneIndexCursor.createScored(readerInstance, index.documentMapper,
+        return LuceneIndexCursor.createScored(readerInstance, index.documentMapper, index.getAnalyzer(),
                 LuceneIndexQuery.cast(query), batchSize);
     }
 
@@ -127,10 +151,47 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
     }
 
     @Override
-    public synchronized void close() {
-        if (readerInstance != null) {
-            readerInstance.forceClose();
-            readerInstance = null;
+    public IndexGroups<T> groupedList(IndexQuery query) {
+        try (ReaderInstance readerInstance = open()) {
+            return QueryGrouping.search(new ReaderInstance[]{readerInstance}, index.documentMapper, index.getAnalyzer(),
+                    LuceneIndexQuery.cast(query));
+        }
+    }
+
+    @Override
+    public Optional<String> didYouMean(String fieldName, String text) {
+        try (ReaderInstance readerInstance = open()) {
+            return TermsSpellChecker.didYouMean(readerInstance.reader, index.analyzer, fieldName, text);
+        }
+    }
+
+    long export(LuceneIndexQuery query, Set<String> properties, OutputStream outputStream) {
+        return SourceExporter.export(index.getName(), new ReaderInstance[]{open()}, index.documentMapper,
+                query, properties, outputStream);
+    }
+
+    /**
+     * Execute all requests on the same reader instance, opened once.
+     */
+    @Override
+    public List<SearchResult<T>> multiSearch(List<SearchRequest> requests, Executor executor) {
+        try (ReaderInstance readerInstance = open()) {
+            return SearchResult.executeAll(requests, executor, request -> search(readerInstance, request));
+        }
+    }
+
+    @Override
+    public void close() {
+        refreshLock.lock();
+        try {
+            synchronized (this) {
+                if (readerInstance != null) {
+                    readerInstance.forceClose();
+                    readerInstance = null;
+                }
+            }
+        } finally {
+            refreshLock.unlock();
         }
 
         if (directory != null) {
@@ -140,7 +201,14 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
     }
 
     public <V> void reindex(org.yah.tools.index.IndexWriter<V> target, Function<T, V> mapper, ProgressCallback progressCallback) {
-        final int count = count();
+        reindex(this, target, mapper, progressCallback);
+    }
+
+    static <T, V> void reindex(org.yah.tools.index.IndexReader<T> source,
+                               org.yah.tools.index.IndexWriter<V> target,
+                               Function<T, V> mapper,
+                               ProgressCallback progressCallback) {
+        final int count = source.count();
         int batchSize = 50000;
         int chunkCount = (int) Math.ceil(count / (float) batchSize);
 
@@ -150,7 +218,7 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
         if (count == 0)
             return;
 
-        try (final IndexCursor<T> cursor = query(IndexQuery.ALL, 5000)) {
+        try (final IndexCursor<T> cursor = source.query(IndexQuery.ALL, 5000)) {
             cursor.stream().map(mapper).forEach(t -> {
                 chunk.add(t);
                 pc.addCompleted();
@@ -167,8 +235,121 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
         }
     }
 
-    private synchronized ReaderInstance open() {
-        DirectoryReader newReader;
+    private Object search(ReaderInstance readerInstance, SearchRequest request) {
+        final LuceneIndexQuery query = LuceneIndexQuery.cast(request.getQuery());
+        switch (request.getType()) {
+            case LIST:
+                readerInstance.register();
+                return toList(LuceneIndexCursor.create(readerInstance, index.documentMapper, query, 1000));
+            case COUNT:
+                return count(readerInstance, query);
+            case FIRST:
+                readerInstance.register();
+                try (IndexCursor<T> cursor = LuceneIndexCursor.create(readerInstance, index.documentMapper, query, 1)) {
+                    return cursor.hasNext() ? Optional.of(cursor.next()) : Optional.empty();
+                }
+            case SCORED_LIST:
+                readerInstance.register();
+                return toList(LuceneIndexCursor.createScored(readerInstance, index.documentMapper, index.getAnalyzer(), query, 1000));
+            default:
+                throw new IllegalArgumentException("Unsupported request type " + request.getType());
+        }
+    }
+
+    /**
+     * @return the count of the parent documents
+     */
+    private static int count(ReaderInstance readerInstance) {
+        try {
+            return readerInstance.searcher.count(new MatchAllDocsQuery());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static int count(ReaderInstance readerInstance, LuceneIndexQuery query) {
+        final QueryProfile profile = readerInstance.metrics.startProfile(readerInstance.metrics.getIndex(), query,
+                null, 0);
+        final int count = count(readerInstance, query, profile);
+        if (profile != null)
+            profile.finish(count);
+        return count;
+    }
+
+    /**
+     * @param profile profile of the count, finished by the caller, or null if it is not sampled
+     */
+    static int count(ReaderInstance readerInstance, LuceneIndexQuery query, QueryProfile profile) {
+        try {
+            final long start = readerInstance.metrics.start(profile);
+            final int count = readerInstance.searcher.count(query.getQuery());
+            readerInstance.metrics.record(IndexOperation.COUNT, start, count);
+            if (profile != null)
+                profile.add(QueryPhase.SEARCH, System.nanoTime() - start);
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static <E> List<E> toList(IndexCursor<E> cursor) {
+        try (cursor) {
+            List<E> res = new ArrayList<>((int) cursor.getMinTotalHits());
+            cursor.forEachRemaining(res::add);
+            return res;
+        }
+    }
+
+    /**
+     * @return the field infos of the current reader, refreshed only if some fields are missing from it
+     */
+    FieldInfos fieldInfos(Collection<String> fields) {
+        final ReaderInstance current = acquireCurrent();
+        if (current != null) {
+            try (current) {
+                final FieldInfos fieldInfos = FieldInfos.getMergedFieldInfos(current.reader);
+                if (fields.stream().allMatch(field -> fieldInfos.fieldInfo(field) != null))
+                    return fieldInfos;
+            }
+        }
+        try (ReaderInstance refreshed = open()) {
+            return FieldInfos.getMergedFieldInfos(refreshed.reader);
+        }
+    }
+
+    /**
+     * Refresh the reader instance if the index changed, then register a reference to it.<br/>
+     * A refreshed reader is opened and warmed outside of this reader monitor, by one caller at a time: while a
+     * refresh is running, the other callers are served by the current reader instance.
+     */
+    ReaderInstance open() {
+        if (!refreshLock.tryLock()) {
+            final ReaderInstance current = acquireCurrent();
+            if (current != null)
+                return current;
+            refreshLock.lock();
+        }
+        try {
+            refresh();
+            return acquireCurrent();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private synchronized ReaderInstance acquireCurrent() {
+        if (readerInstance != null)
+            readerInstance.register();
+        return readerInstance;
+    }
+
+    /**
+     * open and warm the new reader, then swap the reader instance. The reader instance is only replaced by the
+     * refresh lock owner.
+     */
+    private void refresh() {
+        final long start = index.metrics.start();
+        final DirectoryReader newReader;
         try {
             if (indexWriter != null) {
                 newReader = open(indexWriter);
@@ -178,21 +359,43 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
         } catch (IOException e) {
             throw new IndexException(e);
         }
+        if (readerInstance != null && newReader == readerInstance.reader)
+            return;
 
-        DirectoryReader currentReader = readerInstance == null ? null : readerInstance.reader;
-        if (newReader != currentReader) {
-            if (readerInstance != null)
-                readerInstance.close();
-            readerInstance = new ReaderInstance(newReader);
-            readerInstance.register();
+        try {
+            index.warmer.warm(newReader);
+        } catch (IOException e) {
+            closeSafely(newReader);
+            throw new IndexException(e);
+        } catch (RuntimeException e) {
+            closeSafely(newReader);
+            throw e;
         }
-        readerInstance.register();
-        return readerInstance;
+        final ReaderInstance refreshed = new ReaderInstance(newReader, index.metrics, index.overlay, index.blockJoin);
+        refreshed.register();
+        final ReaderInstance previous;
+        synchronized (this) {
+            previous = readerInstance;
+            readerInstance = refreshed;
+        }
+        if (previous != null)
+            previous.close();
+        index.metrics.record(IndexOperation.REFRESH, start, newReader.numDocs());
+        index.metrics.recordSegments(newReader.leaves().size());
     }
 
     private DirectoryReader open(Directory directory) throws IOException {
         if (readerInstance == null) {
-            final DirectoryReader res = DirectoryReader.open(directory);
+            // the writer applies soft deletes to its readers, a directory reader must hide them
+            final DirectoryReader res = new SoftDeletesDirectoryReaderWrapper(DirectoryReader.open(directory),
+                    ChangeFeed.SOFT_DELETES_FIELD);
+            try {
+                index.validateSchema(res.getIndexCommit().getUserData());
+                index.overlay.load(res.getIndexCommit().getUserData());
+            } catch (IndexException e) {
+                closeSafely(res);
+                throw e;
+            }
             LOGGER.debug("opened new reader {} for path {}",
                     System.identityHashCode(res),
                     index.path);
@@ -203,6 +406,12 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
         if (newReader == null) {
             return readerInstance.reader;
         }
+        try {
+            index.overlay.load(newReader.getIndexCommit().getUserData());
+        } catch (IOException | RuntimeException e) {
+            closeSafely(newReader);
+            throw e;
+        }
         LOGGER.debug("opened updated reader {} for path {}",
                 System.identityHashCode(newReader),
                 index.path);
@@ -232,27 +441,58 @@ class LuceneIndexReader<T> extends LuceneSupportObject<T> implements EntityIndex
 
         final DirectoryReader reader;
         final IndexSearcher searcher;
+        final MetricsRecorder metrics;
+        final DocValuesOverlay overlay;
 
         private final AtomicInteger reference = new AtomicInteger(0);
 
-        public ReaderInstance(DirectoryReader reader) {
+        ReaderInstance(DirectoryReader reader, MetricsRecorder metrics, DocValuesOverlay overlay, BlockJoin blockJoin) {
             this.reader = reader;
-            this.searcher = new IndexSearcher(reader);
+            this.searcher = blockJoin == null ? new IndexSearcher(reader) : blockJoin.searcher(reader);
+            this.metrics = metrics;
+            this.overlay = overlay;
         }
 
+        /**
+         * @return the stored fields of a document, with its overlaid doc values
+         */
+        Document loadDocument(int doc, Set<String> projection, QueryProfile profile) throws IOException {
+            final Document document = metrics.loadDocument(searcher, doc, projection, profile);
+            overlay.apply(searcher, doc, document);
+            return document;
+        }
+
+        /**
+         * Release a reference, the reader is closed with the last one. Does nothing once the reader is force closed.
+         */
         @Override
         public void close() {
-            if (reference.decrementAndGet() == 0) {
-                forceClose();
-            }
+            final int references = reference.getAndUpdate(r -> Math.max(0, r - 1));
+            if (references == 0)
+                return;
+            metrics.readerReleased(1);
+            if (references == 1)
+                closeReader();
         }
 
+        /**
+         * Release all the references and close the reader, the references still held are then ignored.
+         */
         public void forceClose() {
+            final int references = reference.getAndSet(0);
+            if (references == 0)
+                return;
+            metrics.readerReleased(references);
+            closeReader();
+        }
+
+        private void closeReader() {
             LOGGER.debug("Closing reader {}", System.identityHashCode(reader));
             closeSafely(reader);
         }
 
         void register() {
+            metrics.readerAcquired();
             reference.incrementAndGet();
         }
     }
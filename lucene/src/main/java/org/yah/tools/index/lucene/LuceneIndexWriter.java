@@ -1,19 +1,35 @@
 package org.yah.tools.index.lucene;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocValuesFieldExistsQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yah.tools.index.EntityIndexWriter;
 import org.yah.tools.index.IndexException;
+import org.yah.tools.index.VersionConflictException;
+import org.yah.tools.index.lucene.mapper.IndexSchema;
+import org.yah.tools.index.lucene.metrics.IndexOperation;
 import org.yah.tools.index.query.IndexQuery;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 class LuceneIndexWriter<T> extends LuceneSupportObject<T> implements EntityIndexWriter<T>, AutoCloseable {
@@ -23,90 +39,452 @@ class LuceneIndexWriter<T> extends LuceneSupportObject<T> implements EntityIndex
 
     Directory directory;
     IndexWriter indexWriter;
+    private final SnapshotDeletionPolicy snapshotPolicy = new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+
+    /**
+     * serialize the writes tracked by the change feed or the version map, null if writes are not tracked
+     */
+    private final Object writeLock;
+    private VersionMap versions;
 
     public LuceneIndexWriter(LuceneIndex<T> index) {
         super(index);
+        writeLock = index.changeFeed != null || index.documentMapper.isVersioned() ? new Object() : null;
         open();
     }
 
     @Override
-    public void add(Collection<T> elements) {
-        final Collection<Document> documents = elements.stream()
-                .map(this::toDocument)
-                .collect(Collectors.toCollection(() -> new ArrayList<>(elements.size())));
+    public long add(Collection<T> elements) {
+        final long start = index.metrics.start();
+        final List<List<Document>> blocks = toDocuments(elements);
+        final List<Document> documents = flatten(blocks);
+        final long seqNo;
         try {
-            indexWriter.addDocuments(documents);
+            if (writeLock == null) {
+                seqNo = indexWriter.addDocuments(documents);
+            } else {
+                synchronized (writeLock) {
+                    if (index.changeFeed != null) {
+                        int i = 0;
+                        for (T element : elements) {
+                            index.changeFeed.track(parent(blocks.get(i++)), index.documentMapper.getElementId(element));
+                        }
+                    }
+                    seqNo = indexWriter.addDocuments(documents);
+                    if (versions != null) {
+                        for (T element : elements) {
+                            versions.put(index.documentMapper.getElementId(element),
+                                    index.documentMapper.getElementVersion(element));
+                        }
+                    }
+                }
+            }
+            changed();
         } catch (IOException e) {
             throw new IndexException(e);
         }
+        index.metrics.record(IndexOperation.ADD, start, elements.size());
+        return seqNo;
     }
 
+    /**
+     * Replace the indexed elements with the same ids.<br/>
+     * If the elements are versioned, an element is only written if its version is greater than the indexed one,
+     * stale elements are handled according to the index {@link VersionConflicts}.
+     */
     @Override
-    public void update(Collection<T> elements) {
-        elements.forEach(this::update);
+    public long update(Collection<T> elements) {
+        final long start = index.metrics.start();
+        final List<List<Document>> blocks = toDocuments(elements);
+        long seqNo = -1;
+        try {
+            if (writeLock == null) {
+                int i = 0;
+                for (T element : elements) {
+                    seqNo = updateDocuments(extractId(element), blocks.get(i++));
+                }
+            } else {
+                synchronized (writeLock) {
+                    final List<T> elementsList = new ArrayList<>(elements);
+                    seqNo = indexWriter.getMaxCompletedSequenceNumber();
+                    for (int i : checkVersions(elementsList)) {
+                        final T element = elementsList.get(i);
+                        seqNo = updateDocuments(extractId(element), blocks.get(i));
+                        if (versions != null)
+                            versions.put(index.documentMapper.getElementId(element),
+                                    index.documentMapper.getElementVersion(element));
+                    }
+                }
+            }
+            changed();
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+        index.metrics.record(IndexOperation.UPDATE, start, elements.size());
+        return seqNo;
     }
 
     @Override
-    public void update(T element) {
-        final Term id = extractId(element);
+    public long delete(Collection<String> ids) {
+        final long start = index.metrics.start();
+        final List<String> distinctIds = ids.stream()
+                .distinct()
+                .collect(Collectors.toList());
+        final long seqNo;
         try {
-            indexWriter.updateDocument(id, toDocument(element));
+            if (writeLock == null) {
+                seqNo = indexWriter.deleteDocuments(idTerms(distinctIds));
+            } else {
+                synchronized (writeLock) {
+                    if (index.changeFeed != null)
+                        seqNo = deleteTracked(distinctIds);
+                    else
+                        seqNo = indexWriter.deleteDocuments(idTerms(distinctIds));
+                    if (versions != null) {
+                        for (String id : distinctIds) {
+                            versions.put(id, null);
+                        }
+                    }
+                }
+            }
+            changed();
         } catch (IOException e) {
             throw new IndexException(e);
         }
+        index.metrics.record(IndexOperation.DELETE, start, distinctIds.size());
+        return seqNo;
     }
 
+    /**
+     * Update doc values fields of an element using {@link IndexWriter#updateDocValues(Term, Field...)}.<br/>
+     * Only the fields indexed as numeric or binary doc values can be updated ({@code longDocValues},
+     * {@code doubleDocValues}, {@code stringDocValues}...), sorted doc values can not. The values are converted to
+     * the mapped field types. The element stored source is not rewritten, the updated values are overlaid on it when
+     * the element is read, so the field names must be the source property paths.<br/>
+     * Updating a missing element has no effect, unless the index has a change feed: the update is then rejected.
+     *
+     * @throws IllegalArgumentException if a field is not an updatable doc values field, or a value can not be
+     *                                  converted to its type
+     */
     @Override
-    public void delete(Collection<String> ids) {
-        final Term[] terms = ids.stream()
-                .distinct()
-                .map(this::idTerm)
-                .toArray(Term[]::new);
+    public long updateFields(String id, Map<String, ?> values) {
+        final long start = index.metrics.start();
+        final Field[] fields = values.entrySet().stream()
+                .map(e -> DocValuesOverlay.field(e.getKey(), index.documentMapper.getFieldType(e.getKey()), e.getValue()))
+                .toArray(Field[]::new);
+        index.overlay.check(fields, ((LuceneIndexReader<T>) index.reader())::fieldInfos);
+        final long seqNo;
         try {
-            indexWriter.deleteDocuments(terms);
+            if (writeLock == null) {
+                seqNo = indexWriter.updateDocValues(idTerm(id), fields);
+            } else {
+                synchronized (writeLock) {
+                    if (index.changeFeed != null && !index.changeFeed.exists(indexWriter, idTerm(id)))
+                        throw new IndexException("element " + id + " of index " + index.getName() + " does not exist");
+                    seqNo = indexWriter.updateDocValues(idTerm(id), fields);
+                    if (index.changeFeed != null)
+                        indexWriter.addDocument(index.changeFeed.record(IndexChange.Operation.INDEX, id));
+                }
+            }
+            registerOverlay(values);
+            changed(values.keySet());
         } catch (IOException e) {
             throw new IndexException(e);
         }
+        index.metrics.record(IndexOperation.UPDATE, start, 1);
+        return seqNo;
     }
 
     @Override
-    public void delete(IndexQuery query) {
+    public long delete(IndexQuery query) {
         LuceneIndexQuery luceneIndexQuery = (LuceneIndexQuery) query;
+        final long start = index.metrics.start();
+        final long seqNo;
         try {
-            indexWriter.deleteDocuments(luceneIndexQuery.getQuery());
+            if (writeLock == null) {
+                seqNo = indexWriter.deleteDocuments(blocks(luceneIndexQuery.getQuery()));
+            } else {
+                synchronized (writeLock) {
+                    if (index.changeFeed != null) {
+                        deleteTracked(index.changeFeed.ids(indexWriter, luceneIndexQuery.getQuery()));
+                        // documents indexed before the change feed was enabled are not tracked
+                        seqNo = indexWriter.deleteDocuments(blocks(new BooleanQuery.Builder()
+                                .add(luceneIndexQuery.getQuery(), BooleanClause.Occur.MUST)
+                                .add(new DocValuesFieldExistsQuery(ChangeFeed.SEQUENCE_FIELD), BooleanClause.Occur.MUST_NOT)
+                                .build()));
+                    } else {
+                        seqNo = indexWriter.deleteDocuments(blocks(luceneIndexQuery.getQuery()));
+                    }
+                    if (versions != null)
+                        versions.refresh();
+                }
+            }
+            changed();
         } catch (IOException e) {
             throw new IndexException(e);
         }
+        index.metrics.record(IndexOperation.DELETE, start, 0);
+        return seqNo;
     }
 
+    /**
+     * Delete all the elements.<br/>
+     * With a change feed, the documents are soft deleted instead, so the changes written before the CLEAR change
+     * stay in the retention window, and the clear costs one doc values update per element.
+     */
     @Override
-    public void clear() {
+    public long clear() {
+        final long start = index.metrics.start();
+        long seqNo;
+        try {
+            if (writeLock == null) {
+                seqNo = indexWriter.deleteAll();
+            } else {
+                synchronized (writeLock) {
+                    if (index.changeFeed != null)
+                        seqNo = clearTracked();
+                    else
+                        seqNo = indexWriter.deleteAll();
+                    if (versions != null)
+                        versions.refresh();
+                }
+            }
+            changed();
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+        index.metrics.record(IndexOperation.CLEAR, start, 0);
+        return seqNo;
+    }
+
+    void commit() {
+        final long start = index.metrics.start();
         try {
-            indexWriter.deleteAll();
+            indexWriter.commit();
         } catch (IOException e) {
             throw new IndexException(e);
         }
+        index.metrics.record(IndexOperation.COMMIT, start, 0);
+        if (index.suggester != null)
+            index.suggester.committed();
+    }
+
+    /**
+     * Pin the last commit, its files are not deleted until it is released
+     */
+    IndexCommit snapshot() {
+        try {
+            return snapshotPolicy.snapshot();
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+    }
+
+    void release(IndexCommit commit) {
+        try {
+            snapshotPolicy.release(commit);
+            indexWriter.deleteUnusedFiles();
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+    }
+
+    /**
+     * Discard the writes since the last commit, then close this writer
+     */
+    void rollback() {
+        try {
+            indexWriter.rollback();
+        } catch (IOException e) {
+            throw new IndexException(e);
+        } finally {
+            close();
+        }
     }
 
     @Override
     public void close() {
+        closeSafely(versions);
         closeSafely(indexWriter);
         closeSafely(directory);
         LOGGER.debug("closed writer {} for path {}", System.identityHashCode(indexWriter), index.path);
     }
 
+    /**
+     * replace the block of documents of an element, its nested documents are indexed with its id
+     */
+    private long updateDocuments(Term id, List<Document> block) throws IOException {
+        if (index.changeFeed == null)
+            return indexWriter.updateDocuments(id, block);
+        index.changeFeed.track(parent(block), id.text());
+        return indexWriter.softUpdateDocuments(id, block, ChangeFeed.softDeleted());
+    }
+
+    /**
+     * @return the query matching the parent documents of a query, with their nested documents
+     */
+    private Query blocks(Query query) {
+        return index.blockJoin == null ? query : index.blockJoin.blocks(query);
+    }
+
+    /**
+     * register the overlaid fields, and persist them with the next commit
+     */
+    private void registerOverlay(Map<String, ?> values) {
+        boolean registered = false;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            registered |= index.overlay.register(entry.getKey(), index.documentMapper.getFieldType(entry.getKey()));
+        }
+        if (registered) {
+            synchronized (this) {
+                final Map<String, String> userData = new HashMap<>();
+                indexWriter.getLiveCommitData().forEach(e -> userData.put(e.getKey(), e.getValue()));
+                index.overlay.toUserData(userData);
+                indexWriter.setLiveCommitData(userData.entrySet());
+            }
+        }
+    }
+
+    /**
+     * @return the indices of the elements newer than the indexed ones
+     * @throws VersionConflictException if an element is stale and conflicts are {@link VersionConflicts#FAIL}
+     */
+    private List<Integer> checkVersions(List<T> elements) throws IOException {
+        final List<Integer> accepted = new ArrayList<>(elements.size());
+        if (versions == null) {
+            for (int i = 0; i < elements.size(); i++) accepted.add(i);
+            return accepted;
+        }
+
+        // versions of the elements of this update, an element can be updated more than once
+        final Map<String, Long> updatedVersions = new HashMap<>();
+        final List<String> staleIds = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i++) {
+            final T element = elements.get(i);
+            final String id = index.documentMapper.getElementId(element);
+            final Long version = index.documentMapper.getElementVersion(element);
+            if (version != null) {
+                final Long updatedVersion = updatedVersions.get(id);
+                final long currentVersion = updatedVersion != null ? updatedVersion : versions.get(id);
+                if (version <= currentVersion) {
+                    staleIds.add(id);
+                    continue;
+                }
+            }
+            updatedVersions.put(id, version == null ? VersionMap.NO_VERSION : version);
+            accepted.add(i);
+        }
+
+        if (!staleIds.isEmpty()) {
+            if (index.versionConflicts == VersionConflicts.FAIL)
+                throw new VersionConflictException("index " + index.getName() + " has newer versions of " + staleIds, staleIds);
+            LOGGER.debug("skipped stale versions of {} in index {}", staleIds, index.getName());
+        }
+        return accepted;
+    }
+
+    /**
+     * replace the documents with soft deleted tombstones
+     */
+    private long deleteTracked(List<String> ids) throws IOException {
+        long seqNo = indexWriter.getMaxCompletedSequenceNumber();
+        for (String id : ids) {
+            seqNo = indexWriter.softUpdateDocument(idTerm(id), index.changeFeed.record(IndexChange.Operation.DELETE, id),
+                    ChangeFeed.softDeleted());
+        }
+        return seqNo;
+    }
+
+    /**
+     * soft delete the live documents, deleting all the documents would also drop the retained changes
+     */
+    private long clearTracked() throws IOException {
+        for (String id : index.changeFeed.ids(indexWriter, new MatchAllDocsQuery())) {
+            indexWriter.updateDocValues(idTerm(id), ChangeFeed.softDeleted());
+        }
+        // documents indexed before the change feed was enabled are not tracked
+        indexWriter.deleteDocuments(blocks(new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                .add(new DocValuesFieldExistsQuery(ChangeFeed.SEQUENCE_FIELD), BooleanClause.Occur.MUST_NOT)
+                .build()));
+        return indexWriter.addDocument(index.changeFeed.record(IndexChange.Operation.CLEAR, null));
+    }
+
+    private void changed() {
+        changed(null);
+    }
+
+    /**
+     * @param fields the updated doc values fields, null if documents were written
+     */
+    private void changed(Set<String> fields) {
+        if (index.changeFeed != null)
+            index.changeFeed.changed();
+        if (index.suggester != null)
+            index.suggester.changed(fields);
+    }
+
     private Term extractId(T element) {
         return idTerm(index.documentMapper.getElementId(element));
     }
 
-    private Document toDocument(T element) {
-        return index.documentMapper.toDocument(element);
+    private Term[] idTerms(List<String> ids) {
+        return ids.stream().map(this::idTerm).toArray(Term[]::new);
+    }
+
+    private List<List<Document>> toDocuments(Collection<T> elements) {
+        return elements.stream()
+                .map(index.documentMapper::toDocuments)
+                .collect(Collectors.toCollection(() -> new ArrayList<>(elements.size())));
+    }
+
+    private static Document parent(List<Document> block) {
+        return block.get(block.size() - 1);
+    }
+
+    private static List<Document> flatten(List<List<Document>> blocks) {
+        return blocks.stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * validate the index schema, and persist the mapper schema with the next commit
+     */
+    private void updateSchema() {
+        final Map<String, String> userData = new HashMap<>();
+        indexWriter.getLiveCommitData().forEach(e -> userData.put(e.getKey(), e.getValue()));
+        final IndexSchema persistedSchema;
+        try {
+            persistedSchema = index.validateSchema(userData);
+        } catch (IndexException e) {
+            closeSafely(indexWriter);
+            closeSafely(directory);
+            throw e;
+        }
+
+        index.overlay.load(userData);
+        final IndexSchema schema = index.documentMapper.getSchema();
+        if (schema != null && !schema.equals(persistedSchema)) {
+            userData.putAll(schema.toUserData());
+            indexWriter.setLiveCommitData(userData.entrySet());
+        }
     }
 
     private void open() {
         try {
             directory = index.openDirectory();
-            indexWriter = new IndexWriter(directory, new IndexWriterConfig(index.analyzer));
+            final IndexWriterConfig config = new IndexWriterConfig(index.analyzer);
+            config.setIndexDeletionPolicy(snapshotPolicy);
+            config.setSoftDeletesField(ChangeFeed.SOFT_DELETES_FIELD);
+            if (index.changeFeed != null)
+                index.changeFeed.configure(config);
+            index.metrics.configure(config);
+            config.setMergedSegmentWarmer(index.warmer);
+            indexWriter = new IndexWriter(directory, config);
+            updateSchema();
+            if (index.changeFeed != null)
+                index.changeFeed.open(indexWriter);
+            if (index.documentMapper.isVersioned())
+                versions = new VersionMap(indexWriter, index.documentMapper.getIdField());
             LOGGER.debug("opened writer {} for path {}", System.identityHashCode(indexWriter), index.path);
         } catch (IOException e) {
             throw new IndexException(e);
@@ -5,7 +5,9 @@ import org.apache.lucene.document.DoublePoint;
 import org.apache.lucene.document.FloatPoint;
 import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.Query;
 import org.yah.tools.index.lucene.mapper.IndexableFieldType;
 
@@ -13,12 +15,27 @@ import java.util.function.Function;
 
 public class MappedEntityQueryParser extends QueryParser {
 
+    /**
+     * maximum number of terms a fuzzy query expands to
+     */
+    public static final int MAX_FUZZY_EXPANSIONS = 50;
+
     private final Function<String, IndexableFieldType> fieldTypeSource;
 
     public MappedEntityQueryParser(String f, Analyzer a, Function<String, IndexableFieldType> fieldTypeSource) {
         super(f, a);
         this.fieldTypeSource = fieldTypeSource;
         setAutoGeneratePhraseQueries(false);
+        // fuzzy queries enumerating all the terms of a field have an unpredictable cost
+        setFuzzyPrefixLength(1);
+    }
+
+    @Override
+    protected Query newFuzzyQuery(Term term, float minimumSimilarity, int prefixLength) {
+        // the parent query resolves the edit distance, only the expansion limit is replaced
+        final FuzzyQuery query = (FuzzyQuery) super.newFuzzyQuery(term, minimumSimilarity, prefixLength);
+        return new FuzzyQuery(term, query.getMaxEdits(), query.getPrefixLength(), MAX_FUZZY_EXPANSIONS,
+                query.getTranspositions());
     }
 
     @Override
@@ -0,0 +1,198 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.util.InfoStream;
+import org.yah.tools.index.lucene.metrics.IndexMetrics;
+import org.yah.tools.index.lucene.metrics.IndexOperation;
+import org.yah.tools.index.lucene.metrics.QueryPhase;
+import org.yah.tools.index.lucene.metrics.SlowQueryLog;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Record the operations of an index in its {@link IndexMetrics}, without any timing overhead when metrics are disabled and
+ * the query is not profiled.
+ */
+final class MetricsRecorder {
+
+    private final String index;
+    private final IndexMetrics metrics;
+    private final boolean enabled;
+    private final SlowQueryLog slowQueryLog;
+    private final AtomicInteger readerReferences = new AtomicInteger();
+
+    MetricsRecorder(String index, IndexMetrics metrics, SlowQueryLog slowQueryLog) {
+        this.index = Objects.requireNonNull(index);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.enabled = metrics != IndexMetrics.NOOP;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    String getIndex() {
+        return index;
+    }
+
+    IndexMetrics getMetrics() {
+        return metrics;
+    }
+
+    SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * @param index name of the queried index, may differ from this index when querying shards
+     * @param sort  null for a count
+     * @return the profile of a new query cursor or count, or null if it is not sampled
+     */
+    QueryProfile startProfile(String index, LuceneIndexQuery query, Sort sort, int batchSize) {
+        return QueryProfile.start(slowQueryLog, index, query, sort, batchSize);
+    }
+
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void record(IndexOperation operation, long start, long documents) {
+        if (enabled)
+            metrics.recordOperation(index, operation, System.nanoTime() - start, documents);
+    }
+
+    void readerAcquired() {
+        final int references = readerReferences.incrementAndGet();
+        if (enabled)
+            metrics.recordReaderReferences(index, references);
+    }
+
+    void readerReleased(int released) {
+        final int references = readerReferences.addAndGet(-released);
+        if (enabled)
+            metrics.recordReaderReferences(index, references);
+    }
+
+    void recordSegments(int segments) {
+        if (enabled)
+            metrics.recordSegments(index, segments);
+    }
+
+    long start(QueryProfile profile) {
+        return enabled || profile != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record a search of a query cursor
+     */
+    void recordSearch(QueryPhase phase, long start, int hits, QueryProfile profile) {
+        if (!enabled && profile == null)
+            return;
+        final long duration = System.nanoTime() - start;
+        if (enabled)
+            metrics.recordOperation(index, IndexOperation.QUERY, duration, hits);
+        if (profile != null)
+            profile.add(phase, duration);
+    }
+
+    Document loadDocument(IndexSearcher searcher, int doc, Set<String> projection, QueryProfile profile) throws IOException {
+        if (!enabled && profile == null) {
+            if (projection.isEmpty())
+                return searcher.doc(doc);
+            return searcher.doc(doc, projection);
+        }
+
+        final long start = System.nanoTime();
+        final CountingStoredFieldVisitor visitor = projection.isEmpty()
+                ? new CountingStoredFieldVisitor()
+                : new CountingStoredFieldVisitor(projection);
+        searcher.doc(doc, visitor);
+        final long duration = System.nanoTime() - start;
+        if (enabled) {
+            metrics.recordOperation(index, IndexOperation.FETCH, duration, 1);
+            metrics.recordStoredFieldsRead(index, visitor.bytes);
+        }
+        if (profile != null)
+            profile.add(QueryPhase.FETCH, duration);
+        return visitor.getDocument();
+    }
+
+    <R> R hydrate(Document document, Function<Document, R> mapper, QueryProfile profile) {
+        final long start = start(profile);
+        final R res = mapper.apply(document);
+        if (enabled || profile != null) {
+            final long duration = System.nanoTime() - start;
+            if (enabled)
+                metrics.recordOperation(index, IndexOperation.HYDRATE, duration, 1);
+            if (profile != null) {
+                profile.add(QueryPhase.DESERIALIZE, duration);
+                profile.returned();
+            }
+        }
+        return res;
+    }
+
+    void configure(IndexWriterConfig config) {
+        if (!enabled)
+            return;
+        config.setInfoStream(new MetricsInfoStream());
+        config.setMergeScheduler(new MetricsMergeScheduler());
+    }
+
+    private static final class CountingStoredFieldVisitor extends DocumentStoredFieldVisitor {
+        private long bytes;
+
+        private CountingStoredFieldVisitor() {
+        }
+
+        private CountingStoredFieldVisitor(Set<String> fieldsToAdd) {
+            super(fieldsToAdd);
+        }
+
+        @Override
+        public void binaryField(FieldInfo fieldInfo, byte[] value) throws IOException {
+            bytes += value.length;
+            super.binaryField(fieldInfo, value);
+        }
+
+        @Override
+        public void stringField(FieldInfo fieldInfo, byte[] value) throws IOException {
+            bytes += value.length;
+            super.stringField(fieldInfo, value);
+        }
+    }
+
+    private final class MetricsInfoStream extends InfoStream {
+        @Override
+        public void message(String component, String message) {
+            metrics.infoStreamMessage(index, component, message);
+        }
+
+        @Override
+        public boolean isEnabled(String component) {
+            return metrics.isInfoStreamEnabled(component);
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    private final class MetricsMergeScheduler extends ConcurrentMergeScheduler {
+        @Override
+        protected void doMerge(MergeSource mergeSource, MergePolicy.OneMerge merge) throws IOException {
+            final long start = System.nanoTime();
+            super.doMerge(mergeSource, merge);
+            metrics.recordMerge(index, System.nanoTime() - start, merge.segments.size(), merge.totalNumDocs());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * LRU cache of the queries parsed by {@link MappedEntityQueryParser}, keyed by default field and query text.<br/>
+ * Lucene queries are immutable, so a cached query can be shared by concurrent requests.
+ */
+final class ParsedQueryCache {
+
+    private final LuceneIndex<?> index;
+    private final int maxSize;
+    private final Map<Key, Query> queries;
+
+    ParsedQueryCache(LuceneIndex<?> index, int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize " + maxSize + " must be >= 0");
+        this.index = index;
+        this.maxSize = maxSize;
+        this.queries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Query> eldest) {
+                return size() > ParsedQueryCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query can not be parsed
+     */
+    Query parse(String defaultField, String text) {
+        if (maxSize == 0)
+            return doParse(defaultField, text);
+
+        final Key key = new Key(defaultField, text);
+        synchronized (queries) {
+            final Query query = queries.get(key);
+            if (query != null)
+                return query;
+        }
+        final Query query = doParse(defaultField, text);
+        synchronized (queries) {
+            queries.put(key, query);
+        }
+        return query;
+    }
+
+    int size() {
+        synchronized (queries) {
+            return queries.size();
+        }
+    }
+
+    private Query doParse(String defaultField, String text) {
+        try {
+            return new MappedEntityQueryParser(defaultField, index.analyzer, index.documentMapper::getFieldType)
+                    .parse(text);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static final class Key {
+        private final String defaultField;
+        private final String text;
+
+        private Key(String defaultField, String text) {
+            this.defaultField = defaultField;
+            this.text = Objects.requireNonNull(text);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(defaultField, key.defaultField) && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(defaultField, text);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.CachingCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.search.grouping.AllGroupsCollector;
+import org.apache.lucene.search.grouping.FirstPassGroupingCollector;
+import org.apache.lucene.search.grouping.GroupDocs;
+import org.apache.lucene.search.grouping.SearchGroup;
+import org.apache.lucene.search.grouping.TermGroupSelector;
+import org.apache.lucene.search.grouping.TopGroups;
+import org.apache.lucene.search.grouping.TopGroupsCollector;
+import org.apache.lucene.util.BytesRef;
+import org.yah.tools.index.lucene.LuceneIndexReader.ReaderInstance;
+import org.yah.tools.index.lucene.mapper.DocumentMapper;
+import org.yah.tools.index.lucene.metrics.QueryPhase;
+import org.yah.tools.index.query.IndexGroup;
+import org.yah.tools.index.query.IndexGroups;
+import org.yah.tools.index.query.ScoredElement;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Execute a collapsed query on one or more shards.<br/>
+ * The query is run once per shard: its hits are collected by the first pass grouping and all groups collectors,
+ * and cached to be replayed to the second pass collector of the top groups. The top groups of the shards are merged
+ * before their second pass, so each shard returns the hits of the same groups.
+ */
+final class QueryGrouping {
+
+    /**
+     * the maximum memory used to cache the hits of a shard, the query is run again by the second pass above it
+     */
+    private static final double MAX_CACHE_MB = 16;
+
+    /**
+     * the number of groups of a query without limit: the first pass collects the top groups in a priority queue
+     */
+    static final int DEFAULT_GROUPS = 10;
+
+    static <T> IndexGroups<T> search(ReaderInstance[] readerInstances,
+                                     DocumentMapper<T> documentMapper,
+                                     Analyzer analyzer,
+                                     LuceneIndexQuery query) {
+        if (query.getCollapseField() == null)
+            throw new IllegalArgumentException("query " + query.getQuery() + " is not collapsed");
+        try {
+            return new QueryGrouping(readerInstances, query.createLuceneSort(documentMapper), query)
+                    .search(documentMapper, analyzer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final ReaderInstance[] readerInstances;
+    private final Sort sort;
+    private final LuceneIndexQuery query;
+    private final CachingCollector[] cachedHits;
+    private long totalHits;
+
+    private QueryGrouping(ReaderInstance[] readerInstances, Sort sort, LuceneIndexQuery query) {
+        this.readerInstances = readerInstances;
+        this.sort = sort;
+        this.query = query;
+        this.cachedHits = new CachingCollector[readerInstances.length];
+    }
+
+    private <T> IndexGroups<T> search(DocumentMapper<T> documentMapper, Analyzer analyzer) throws IOException {
+        final List<Collection<SearchGroup<BytesRef>>> shardGroups = new ArrayList<>(readerInstances.length);
+        final Set<BytesRef> allGroups = new HashSet<>();
+        int maxDoc = 0;
+        for (int shardIndex = 0; shardIndex < readerInstances.length; shardIndex++) {
+            maxDoc += readerInstances[shardIndex].reader.maxDoc();
+            shardGroups.add(firstPass(shardIndex, allGroups));
+        }
+
+        final Collection<SearchGroup<BytesRef>> groups = shardGroups.size() == 1
+                ? shardGroups.get(0)
+                : SearchGroup.merge(shardGroups, query.getSkip(), (int) Math.max(1, Math.min(limit(), maxDoc)), sort);
+        if (groups == null || groups.isEmpty())
+            return new IndexGroups<>(totalHits, allGroups.size(), List.of());
+
+        final TopGroups<BytesRef> topGroups = secondPass(groups);
+        final QueryHighlighter[] highlighters = QueryHighlighter.create(readerInstances, analyzer, query);
+        final List<IndexGroup<T>> res = new ArrayList<>(topGroups.groups.length);
+        for (GroupDocs<BytesRef> group : topGroups.groups) {
+            final List<ScoredElement<T>> elements = new ArrayList<>(group.scoreDocs.length);
+            for (ScoreDoc scoreDoc : group.scoreDocs) {
+                elements.add(load(documentMapper, highlighters, scoreDoc));
+            }
+            res.add(new IndexGroup<>(group.groupValue == null ? null : group.groupValue.utf8ToString(),
+                    group.totalHits.value, elements));
+        }
+        return new IndexGroups<>(totalHits, allGroups.size(), res);
+    }
+
+    /**
+     * Collect the top groups of a shard, skipped if there is a single shard, the values of all its groups and its
+     * hits count
+     */
+    private Collection<SearchGroup<BytesRef>> firstPass(int shardIndex, Set<BytesRef> allGroups) throws IOException {
+        final ReaderInstance readerInstance = readerInstances[shardIndex];
+        final IndexSearcher searcher = readerInstance.searcher;
+        final int topGroups = topGroups(readerInstance.reader.maxDoc());
+        final FirstPassGroupingCollector<BytesRef> firstPassCollector = new FirstPassGroupingCollector<>(
+                new TermGroupSelector(query.getCollapseField()), sort, topGroups);
+        final AllGroupsCollector<BytesRef> allGroupsCollector = new AllGroupsCollector<>(
+                new TermGroupSelector(query.getCollapseField()));
+        final TotalHitCountCollector totalHitCountCollector = new TotalHitCountCollector();
+        cachedHits[shardIndex] = CachingCollector.create(
+                MultiCollector.wrap(firstPassCollector, allGroupsCollector, totalHitCountCollector), true, MAX_CACHE_MB);
+
+        final long start = readerInstance.metrics.start(null);
+        searcher.search(query.getQuery(), cachedHits[shardIndex]);
+        readerInstance.metrics.recordSearch(QueryPhase.SEARCH, start, totalHitCountCollector.getTotalHits(), null);
+        totalHits += totalHitCountCollector.getTotalHits();
+
+        allGroups.addAll(allGroupsCollector.getGroups());
+        return firstPassCollector.getTopGroups(readerInstances.length == 1 ? query.getSkip() : 0);
+    }
+
+    private TopGroups<BytesRef> secondPass(Collection<SearchGroup<BytesRef>> groups) throws IOException {
+        @SuppressWarnings("unchecked") final TopGroups<BytesRef>[] shardTopGroups = new TopGroups[readerInstances.length];
+        for (int shardIndex = 0; shardIndex < readerInstances.length; shardIndex++) {
+            final ReaderInstance readerInstance = readerInstances[shardIndex];
+            final TopGroupsCollector<BytesRef> collector = new TopGroupsCollector<>(
+                    new TermGroupSelector(query.getCollapseField()), groups, sort, sort, query.getGroupSize(), false);
+
+            final long start = readerInstance.metrics.start(null);
+            if (cachedHits[shardIndex].isCached())
+                cachedHits[shardIndex].replay(collector);
+            else
+                readerInstance.searcher.search(query.getQuery(), collector);
+            final TopGroups<BytesRef> topGroups = collector.getTopGroups(0);
+            readerInstance.metrics.recordSearch(QueryPhase.SEARCH, start, topGroups.totalGroupedHitCount, null);
+            shardTopGroups[shardIndex] = topGroups;
+        }
+        if (shardTopGroups.length == 1)
+            return shardTopGroups[0];
+        return TopGroups.merge(shardTopGroups, sort, sort, 0, query.getGroupSize(), TopGroups.ScoreMergeMode.None);
+    }
+
+    private <T> ScoredElement<T> load(DocumentMapper<T> documentMapper, QueryHighlighter[] highlighters,
+                                      ScoreDoc scoreDoc) throws IOException {
+        final int shardIndex = readerInstances.length == 1 ? 0 : scoreDoc.shardIndex;
+        final ReaderInstance readerInstance = readerInstances[shardIndex];
+        final Document document = readerInstance.loadDocument(scoreDoc.doc, query.getProjection(), null);
+        final T element = readerInstance.metrics.hydrate(document, documentMapper::toElement, null);
+        return new ScoredElement<>(element, scoreDoc.score,
+                highlighters == null ? Map.of() : highlighters[shardIndex].highlight(scoreDoc.doc));
+    }
+
+    /**
+     * @return the number of groups collected by the first pass, bounded by the number of documents
+     */
+    private int topGroups(int maxDoc) {
+        final long topGroups = (long) query.getSkip() + limit();
+        return (int) Math.max(1, Math.min(topGroups, maxDoc));
+    }
+
+    private int limit() {
+        return query.getLimit() == Integer.MAX_VALUE ? DEFAULT_GROUPS : query.getLimit();
+    }
+
+}
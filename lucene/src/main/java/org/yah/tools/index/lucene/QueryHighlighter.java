@@ -0,0 +1,94 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.Passage;
+import org.apache.lucene.search.uhighlight.PassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Highlight the text fields of a query hits.<br/>
+ * Fields indexed with offsets (see {@link org.yah.tools.index.lucene.mapper.IndexableFieldFactories#textWithOffsets})
+ * are highlighted from their postings, without analyzing their stored text again.
+ */
+final class QueryHighlighter extends UnifiedHighlighter {
+
+    /**
+     * @return a highlighter per reader instance, null if the query does not highlight any field
+     */
+    static QueryHighlighter[] create(LuceneIndexReader.ReaderInstance[] readerInstances,
+                                     Analyzer analyzer, LuceneIndexQuery query) {
+        if (query.getHighlightedFields().isEmpty())
+            return null;
+        return Arrays.stream(readerInstances)
+                .map(readerInstance -> new QueryHighlighter(readerInstance.searcher, analyzer, query))
+                .toArray(QueryHighlighter[]::new);
+    }
+
+    private final LuceneIndexQuery query;
+    private final String[] fields;
+    private final int[] maxPassages;
+
+    QueryHighlighter(IndexSearcher searcher, Analyzer analyzer, LuceneIndexQuery query) {
+        super(searcher, analyzer);
+        this.query = query;
+        this.fields = query.getHighlightedFields().toArray(String[]::new);
+        this.maxPassages = new int[fields.length];
+        Arrays.fill(maxPassages, query.getMaxPassages());
+        setFormatter(new PassagesFormatter());
+    }
+
+    /**
+     * @return the best passages of each highlighted field of a document
+     */
+    Map<String, List<String>> highlight(int doc) {
+        final Map<String, Object[]> highlights;
+        try {
+            highlights = highlightFieldsAsObjects(fields, query.getQuery(), new int[]{doc}, maxPassages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Map<String, List<String>> res = new HashMap<>(highlights.size());
+        highlights.forEach((field, values) -> {
+            if (values[0] != null)
+                res.put(field, ((Passages) values[0]).passages);
+        });
+        return res;
+    }
+
+    /**
+     * Format each passage separately, instead of joining them with an ellipsis
+     */
+    private static final class PassagesFormatter extends PassageFormatter {
+        private final DefaultPassageFormatter delegate = new DefaultPassageFormatter();
+
+        @Override
+        public Passages format(Passage[] passages, String content) {
+            final List<String> res = new ArrayList<>(passages.length);
+            for (Passage passage : passages) {
+                res.add(delegate.format(new Passage[]{passage}, content).trim());
+            }
+            return new Passages(res);
+        }
+    }
+
+    /**
+     * The formatted passages of a field, typed to be read back from the highlighter objects
+     */
+    private static final class Passages {
+        private final List<String> passages;
+
+        private Passages(List<String> passages) {
+            this.passages = passages;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.search.Sort;
+import org.yah.tools.index.lucene.metrics.QueryPhase;
+import org.yah.tools.index.lucene.metrics.SlowQuery;
+import org.yah.tools.index.lucene.metrics.SlowQueryLog;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Time spent by a sampled query cursor or count in each {@link QueryPhase}, reported to the {@link SlowQueryLog} when
+ * the cursor is closed or the count is done.
+ */
+final class QueryProfile {
+
+    /**
+     * @return null if there is no slow query log, or the query is not sampled
+     */
+    static QueryProfile start(SlowQueryLog slowQueryLog, String index, LuceneIndexQuery query, Sort sort, int batchSize) {
+        if (slowQueryLog == null || !slowQueryLog.sample())
+            return null;
+        return new QueryProfile(slowQueryLog, index, query, sort, batchSize);
+    }
+
+    private final SlowQueryLog slowQueryLog;
+    private final String index;
+    private final LuceneIndexQuery query;
+    private final Sort sort;
+    private final int batchSize;
+    private final long[] phaseNanos = new long[QueryPhase.values().length];
+    private int returned;
+
+    private QueryProfile(SlowQueryLog slowQueryLog, String index, LuceneIndexQuery query, Sort sort, int batchSize) {
+        this.slowQueryLog = slowQueryLog;
+        this.index = index;
+        this.query = query;
+        this.sort = sort;
+        this.batchSize = batchSize;
+    }
+
+    void add(QueryPhase phase, long durationNanos) {
+        phaseNanos[phase.ordinal()] += durationNanos;
+    }
+
+    void returned() {
+        returned++;
+    }
+
+    void finish(long totalHits) {
+        final Map<QueryPhase, Long> phases = new EnumMap<>(QueryPhase.class);
+        for (QueryPhase phase : QueryPhase.values()) {
+            phases.put(phase, phaseNanos[phase.ordinal()]);
+        }
+        slowQueryLog.record(new SlowQuery(index, query.getQuery().toString(), String.valueOf(sort),
+                query.getSkip(), query.getLimit(), batchSize,
+                totalHits, returned, phases));
+    }
+}
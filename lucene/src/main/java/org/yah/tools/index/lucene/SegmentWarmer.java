@@ -0,0 +1,193 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yah.tools.index.lucene.metrics.IndexOperation;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Warm the new segments of an index before they are searched: the registered queries are run with their sort, and
+ * the registered doc values fields are loaded.<br/>
+ * Merged segments are warmed by the {@link IndexWriter} before the merge is committed, flushed segments are warmed
+ * when a refreshed reader is opened, before it is published to the searches. A segment is warmed once.
+ */
+final class SegmentWarmer implements IndexWriter.IndexReaderWarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentWarmer.class);
+
+    private static final int HITS = 10;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * terms, postings, doc values, norms, points and compound files
+     */
+    private static final Set<String> HOT_EXTENSIONS = Set.of("tim", "tip", "doc", "dvd", "dvm", "nvd", "nvm",
+            "kdd", "kdi", "kdm", "cfs", "cfe");
+
+    private final LuceneIndex<?> index;
+    private final List<LuceneIndexQuery> queries = new CopyOnWriteArrayList<>();
+    private final Set<String> fields = new CopyOnWriteArraySet<>();
+    /**
+     * core cache keys of the warmed segments
+     */
+    private final Set<Object> warmedSegments = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    SegmentWarmer(LuceneIndex<?> index) {
+        this.index = index;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query can not be sorted, instead of failing each refresh
+     */
+    void addQuery(LuceneIndexQuery query) {
+        query.createLuceneSort(index.documentMapper);
+        queries.add(query);
+        if (query.getCollapseField() != null)
+            fields.add(query.getCollapseField());
+    }
+
+    void addFields(List<String> fields) {
+        this.fields.addAll(fields);
+    }
+
+    /**
+     * warm a merged segment
+     */
+    @Override
+    public void warm(LeafReader reader) throws IOException {
+        if (isEmpty())
+            return;
+        final long start = index.metrics.start();
+        if (warmSegment(reader))
+            index.metrics.record(IndexOperation.WARM_UP, start, reader.maxDoc());
+    }
+
+    /**
+     * warm the segments of a reader that were not warmed yet
+     */
+    void warm(DirectoryReader reader) throws IOException {
+        if (isEmpty())
+            return;
+        final long start = index.metrics.start();
+        long warmedDocs = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            if (warmSegment(leaf.reader()))
+                warmedDocs += leaf.reader().maxDoc();
+        }
+        if (warmedDocs > 0)
+            index.metrics.record(IndexOperation.WARM_UP, start, warmedDocs);
+    }
+
+    /**
+     * Read the hot files of the latest commit, to load them in the OS cache
+     *
+     * @return count of bytes read
+     */
+    static long touchFiles(Directory directory) throws IOException {
+        if (!DirectoryReader.indexExists(directory))
+            return 0;
+        final SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long bytes = 0;
+        for (String file : segmentInfos.files(false)) {
+            if (!HOT_EXTENSIONS.contains(file.substring(file.lastIndexOf('.') + 1)))
+                continue;
+            try (IndexInput input = directory.openInput(file, IOContext.READONCE)) {
+                final long length = input.length();
+                while (input.getFilePointer() < length) {
+                    final int read = (int) Math.min(buffer.length, length - input.getFilePointer());
+                    input.readBytes(buffer, 0, read);
+                }
+                bytes += length;
+            }
+        }
+        LOGGER.debug("touched {} bytes of {} hot files", bytes, directory);
+        return bytes;
+    }
+
+    private boolean isEmpty() {
+        return queries.isEmpty() && fields.isEmpty();
+    }
+
+    private boolean warmSegment(LeafReader reader) throws IOException {
+        final IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+        if (cacheHelper != null && !warmedSegments.add(cacheHelper.getKey()))
+            return false;
+
+        final IndexSearcher searcher = index.blockJoin == null ? new IndexSearcher(reader) : index.blockJoin.searcher(reader);
+        for (LuceneIndexQuery query : queries) {
+            searcher.search(query.getQuery(), HITS, query.createLuceneSort(index.documentMapper));
+        }
+        for (String field : fields) {
+            loadDocValues(reader, field);
+        }
+        return true;
+    }
+
+    private static void loadDocValues(LeafReader reader, String field) throws IOException {
+        final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null)
+            return;
+        switch (fieldInfo.getDocValuesType()) {
+            case NUMERIC:
+                final NumericDocValues numeric = reader.getNumericDocValues(field);
+                while (numeric.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    numeric.longValue();
+                }
+                break;
+            case BINARY:
+                final BinaryDocValues binary = reader.getBinaryDocValues(field);
+                while (binary.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    binary.binaryValue();
+                }
+                break;
+            case SORTED:
+                final SortedDocValues sorted = reader.getSortedDocValues(field);
+                while (sorted.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    sorted.ordValue();
+                }
+                break;
+            case SORTED_NUMERIC:
+                final SortedNumericDocValues sortedNumeric = reader.getSortedNumericDocValues(field);
+                while (sortedNumeric.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    for (int i = 0; i < sortedNumeric.docValueCount(); i++) {
+                        sortedNumeric.nextValue();
+                    }
+                }
+                break;
+            case SORTED_SET:
+                final SortedSetDocValues sortedSet = reader.getSortedSetDocValues(field);
+                while (sortedSet.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    while (sortedSet.nextOrd() != SortedSetDocValues.NO_MORE_ORDS) {
+                        // load the ords
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.*;
+import org.yah.tools.index.lucene.LuceneIndexReader.ReaderInstance;
+import org.yah.tools.index.lucene.mapper.DocumentMapper;
+import org.yah.tools.index.lucene.metrics.QueryPhase;
+import org.yah.tools.index.query.IndexCursor;
+import org.yah.tools.index.query.ScoredElement;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scatter-gather cursor: each batch is searched on every shard after the last returned hit, and merged using
+ * {@link TopDocs#merge(Sort, int, TopFieldDocs[])}.
+ */
+class ShardedIndexCursor<T> implements IndexCursor<T>, Spliterator<T> {
+
+    public static <T> IndexCursor<T> create(String indexName,
+                                            ReaderInstance[] readerInstances,
+                                            DocumentMapper<T> documentMapper,
+                                            LuceneIndexQuery query, int batchSize) {
+        BiFunction<ScoreDoc, Document, T> mapper = (ignore, document) -> documentMapper.toElement(document);
+        return new ShardedIndexCursor<>(indexName, readerInstances,
+                query, query.createLuceneSort(documentMapper),
+                mapper, false, batchSize);
+    }
+
+    /**
+     * @return a cursor of the query hits, whose documents are not loaded, {@link ScoreDoc#shardIndex} is the
+     * index of the hit reader instance
+     */
+    public static IndexCursor<ScoreDoc> createHits(String indexName,
+                                                   ReaderInstance[] readerInstances,
+                                                   DocumentMapper<?> documentMapper,
+                                                   LuceneIndexQuery query, int batchSize) {
+        return new ShardedIndexCursor<>(indexName, readerInstances,
+                query, query.createLuceneSort(documentMapper),
+                null, false, batchSize);
+    }
+
+    public static <T> IndexCursor<ScoredElement<T>> createScored(String indexName,
+                                                                 ReaderInstance[] readerInstances,
+                                                                 DocumentMapper<T> documentMapper,
+                                                                 Analyzer analyzer,
+                                                                 LuceneIndexQuery query, int batchSize) {
+        final QueryHighlighter[] highlighters = QueryHighlighter.create(readerInstances, analyzer, query);
+        BiFunction<ScoreDoc, Document, ScoredElement<T>> mapper = (scoreDoc, document) ->
+                new ScoredElement<>(documentMapper.toElement(document), scoreDoc.score,
+                        highlighters == null ? Map.of() : highlighters[scoreDoc.shardIndex].highlight(scoreDoc.doc));
+        return new ShardedIndexCursor<>(indexName, readerInstances,
+                query, query.createLuceneSort(documentMapper),
+                mapper, true, batchSize);
+    }
+
+    private final ReaderInstance[] readerInstances;
+
+    private final LuceneIndexQuery query;
+    private final Sort sort;
+    private final boolean doScores;
+
+    /**
+     * null if the cursor returns the hits
+     */
+    private final BiFunction<ScoreDoc, Document, T> mapper;
+    private final int batchSize;
+
+    private final QueryProfile profile;
+
+    private ScoreDoc[] results;
+    private TotalHits totalHits;
+    private int index;
+    private int remaining;
+    private boolean closed;
+
+    ShardedIndexCursor(String indexName,
+                       ReaderInstance[] readerInstances,
+                       LuceneIndexQuery query,
+                       Sort luceneSort,
+                       BiFunction<ScoreDoc, Document, T> mapper,
+                       boolean doScores,
+                       int batchSize) {
+        if (query.getCollapseField() != null) {
+            Arrays.stream(readerInstances).forEach(ReaderInstance::close);
+            throw new IllegalArgumentException("collapsed query " + query.getQuery() + " must be executed by groupedList");
+        }
+        this.readerInstances = readerInstances;
+        this.query = query;
+        this.sort = luceneSort;
+        this.batchSize = batchSize;
+        this.mapper = mapper;
+        this.doScores = doScores;
+        this.profile = readerInstances[0].metrics.startProfile(indexName, query, luceneSort, batchSize);
+        remaining = query.getLimit();
+        results = search();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return StreamSupport.stream(this, false);
+    }
+
+    @Override
+    public long getTotalHits() {
+        if (totalHits.relation == TotalHits.Relation.EQUAL_TO)
+            return totalHits.value;
+
+        try {
+            long count = 0;
+            for (ReaderInstance readerInstance : readerInstances) {
+                count += readerInstance.searcher.count(query.getQuery());
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long getMinTotalHits() {
+        return totalHits.value;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (profile != null)
+            profile.finish(totalHits == null ? 0 : totalHits.value);
+        for (ReaderInstance readerInstance : readerInstances) {
+            readerInstance.close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return results.length > 0;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        final ScoreDoc scoreDoc = results[index];
+        final T element = mapper == null ? hit(scoreDoc) : load(scoreDoc);
+        index++;
+        if (index == results.length) {
+            results = search();
+            index = 0;
+        }
+        return element;
+    }
+
+    private T load(ScoreDoc scoreDoc) {
+        final ReaderInstance readerInstance = readerInstances[scoreDoc.shardIndex];
+        final Document document;
+        try {
+            document = readerInstance.loadDocument(scoreDoc.doc, query.getProjection(), profile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return readerInstance.metrics.hydrate(document, d -> mapper.apply(scoreDoc, d), profile);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T hit(ScoreDoc scoreDoc) {
+        return (T) scoreDoc;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        IndexCursor.super.forEachRemaining(action);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (hasNext()) {
+            action.accept(next());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.min(getMinTotalHits(), remaining);
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.DISTINCT |
+                Spliterator.IMMUTABLE |
+                Spliterator.ORDERED;
+    }
+
+    private ScoreDoc[] search() {
+        try {
+            if (query.getRescorer() != null)
+                return results == null ? rescore() : new ScoreDoc[0];
+            if (remaining > 0) {
+                FieldDoc lastDoc = null;
+                if (results != null) {
+                    lastDoc = (FieldDoc) results[results.length - 1];
+                } else if (query.getSkip() > 0) {
+                    final TopFieldDocs skippedDocs = searchShards(QueryPhase.SKIP, null, query.getSkip(), false);
+                    if (skippedDocs.scoreDocs.length > 0)
+                        lastDoc = (FieldDoc) skippedDocs.scoreDocs[skippedDocs.scoreDocs.length - 1];
+                    else {
+                        remaining = 0;
+                        return new ScoreDoc[0];
+                    }
+                }
+
+                int maxHits = Math.min(remaining, batchSize);
+                final TopFieldDocs docs = searchShards(QueryPhase.SEARCH, lastDoc, maxHits, doScores);
+                totalHits = docs.totalHits;
+                remaining -= docs.scoreDocs.length;
+                return docs.scoreDocs;
+            } else {
+                return new ScoreDoc[0];
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rescore the top hits window of each shard, and return the page of the merged rescored hits
+     */
+    private ScoreDoc[] rescore() throws IOException {
+        final TopDocs[] shardDocs = new TopDocs[readerInstances.length];
+        for (int shardIndex = 0; shardIndex < readerInstances.length; shardIndex++) {
+            final ReaderInstance readerInstance = readerInstances[shardIndex];
+            final IndexSearcher searcher = readerInstance.searcher;
+            long start = readerInstance.metrics.start(profile);
+            final TopDocs firstPassDocs = searcher.search(query.getQuery(), query.getRescoreWindow());
+            readerInstance.metrics.recordSearch(QueryPhase.SEARCH, start, firstPassDocs.scoreDocs.length, profile);
+
+            start = readerInstance.metrics.start(profile);
+            shardDocs[shardIndex] = query.getRescorer().rescore(searcher, firstPassDocs, query.getRescoreWindow());
+            readerInstance.metrics.recordSearch(QueryPhase.RESCORE, start, shardDocs[shardIndex].scoreDocs.length, profile);
+        }
+        final TopDocs docs = TopDocs.merge(query.getRescoreWindow(), shardDocs);
+        totalHits = docs.totalHits;
+        remaining = 0;
+        return query.pageRescored(docs.scoreDocs);
+    }
+
+    private TopFieldDocs searchShards(QueryPhase phase, FieldDoc after, int maxHits, boolean doScores) throws IOException {
+        final TopFieldDocs[] shardDocs = new TopFieldDocs[readerInstances.length];
+        for (int shardIndex = 0; shardIndex < readerInstances.length; shardIndex++) {
+            final ReaderInstance readerInstance = readerInstances[shardIndex];
+            final IndexSearcher searcher = readerInstance.searcher;
+            final long start = readerInstance.metrics.start(profile);
+            shardDocs[shardIndex] = searcher.searchAfter(shardAfter(after, shardIndex, searcher),
+                    query.getQuery(), maxHits, sort, doScores);
+            readerInstance.metrics.recordSearch(phase, start, shardDocs[shardIndex].scoreDocs.length, profile);
+        }
+        return TopDocs.merge(sort, maxHits, shardDocs);
+    }
+
+    /**
+     * Translate the last merged hit to a shard local "after" hit.<br/>
+     * Merged hits with equal sort values are ordered by shard, then by doc, so on shards before the last hit
+     * shard all ties were already returned, and on shards after it none were.
+     */
+    private static FieldDoc shardAfter(FieldDoc after, int shardIndex, IndexSearcher searcher) {
+        if (after == null)
+            return null;
+        final int doc;
+        if (shardIndex < after.shardIndex)
+            doc = searcher.getIndexReader().maxDoc() - 1;
+        else if (shardIndex == after.shardIndex)
+            doc = after.doc;
+        else
+            doc = -1;
+        return new FieldDoc(doc, after.score, after.fields);
+    }
+
+}
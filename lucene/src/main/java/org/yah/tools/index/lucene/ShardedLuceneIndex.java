@@ -0,0 +1,221 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.yah.tools.index.*;
+import org.yah.tools.index.lucene.directory.DirectoryFactory;
+import org.yah.tools.index.lucene.mapper.DocumentMapper;
+import org.yah.tools.index.query.IndexQuery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * An {@link EntityIndex} split in N {@link LuceneIndex} shards, each one with its own directory and writer.<br/>
+ * Elements are routed to a shard using their id hash, queries are executed on all shards and merged.
+ */
+public class ShardedLuceneIndex<T> implements EntityIndex<T>, AutoCloseable {
+
+    private static final String SHARD_PREFIX = "shard_";
+    private static final Pattern SHARD_PATTERN = Pattern.compile(SHARD_PREFIX + "\\d+");
+
+    protected final Path path;
+    protected final List<LuceneIndex<T>> shards;
+
+    private final ShardedLuceneIndexReader<T> reader;
+    private final ShardedLuceneIndexWriter<T> writer;
+    private final ExecutorService ownedExecutor;
+
+    public ShardedLuceneIndex(Path path, int shardCount, Analyzer analyzer, DocumentMapper<T> documentMapper) {
+        this(path, shardCount, LuceneIndex.builder(analyzer, documentMapper));
+    }
+
+    /**
+     * @param shardBuilder settings of the shards, copied for each shard with the shard directory as path and name.
+     *                     Without executor, the shards share a thread pool owned by this index.
+     */
+    public ShardedLuceneIndex(Path path, int shardCount, LuceneIndex.Builder<T> shardBuilder) {
+        this.path = Objects.requireNonNull(path);
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("shardCount " + shardCount + " must be > 0");
+        if (!shardBuilder.isEntityIndex())
+            throw new IllegalArgumentException("documentMapper of " + path + " is not an EntityDocumentMapper");
+        checkShardCount(path, shardCount);
+
+        final Executor executor = shardBuilder.getExecutor();
+        this.ownedExecutor = executor == null ? LuceneIndex.newExecutor(getName()) : null;
+        final List<LuceneIndex<T>> shards = new ArrayList<>(shardCount);
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(shardBuilder.copy()
+                        .withPath(path.resolve(SHARD_PREFIX + i))
+                        .withName(path.getFileName() + "/" + SHARD_PREFIX + i)
+                        .withExecutor(executor == null ? ownedExecutor : executor)
+                        .build());
+            }
+        } catch (RuntimeException e) {
+            shards.forEach(LuceneIndex::close);
+            if (ownedExecutor != null)
+                ownedExecutor.shutdown();
+            throw e;
+        }
+        this.shards = List.copyOf(shards);
+        this.reader = new ShardedLuceneIndexReader<>(this);
+        this.writer = new ShardedLuceneIndexWriter<>(this);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return path.getFileName().toString();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public List<LuceneIndex<T>> getShards() {
+        return shards;
+    }
+
+    public DirectoryFactory getDirectoryFactory() {
+        return shards.get(0).getDirectoryFactory();
+    }
+
+    /**
+     * @return a writer routing the elements to their shard, its operations return -1 since the shards sequence
+     * numbers are not comparable
+     */
+    @Override
+    public EntityIndexWriter<T> writer() {
+        return writer;
+    }
+
+    @Override
+    public EntityIndexReader<T> reader() {
+        return reader;
+    }
+
+    /**
+     * @return a writer running its operations on the shards executor
+     */
+    public AsyncEntityIndexWriter<T> asyncWriter() {
+        return new AsyncEntityIndexWriter<>(this::writer, shards.get(0).getExecutor());
+    }
+
+    /**
+     * @return a reader running its operations on the shards executor
+     */
+    public AsyncEntityIndexReader<T> asyncReader() {
+        return new AsyncEntityIndexReader<>(this::reader, shards.get(0).getExecutor());
+    }
+
+    /**
+     * Stream the JSON sources of the elements matching a query to an output stream as NDJSON, one element per
+     * line, without creating the elements.<br/>
+     * A query without sort, limit or skip is exported in index order, one shard after the other.
+     *
+     * @param properties   the dot separated paths of the exported properties, empty to export the whole sources
+     * @param outputStream the stream written by the export, flushed but not closed
+     * @return the count of exported elements
+     */
+    public long exportTo(IndexQuery query, Set<String> properties, OutputStream outputStream) {
+        return reader.export(LuceneIndexQuery.cast(query), properties, outputStream);
+    }
+
+    /**
+     * Stream the JSON sources of the elements matching a query to a channel, see
+     * {@link #exportTo(IndexQuery, Set, OutputStream)}
+     */
+    public long exportTo(IndexQuery query, Set<String> properties, WritableByteChannel channel) {
+        return exportTo(query, properties, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Register a warm-up query on each shard, see {@link LuceneIndex#addWarmUpQuery(IndexQuery)}
+     */
+    public void addWarmUpQuery(IndexQuery query) {
+        shards.forEach(shard -> shard.addWarmUpQuery(query));
+    }
+
+    /**
+     * Register warm-up doc values fields on each shard, see {@link LuceneIndex#addWarmUpFields(String...)}
+     */
+    public void addWarmUpFields(String... fields) {
+        shards.forEach(shard -> shard.addWarmUpFields(fields));
+    }
+
+    /**
+     * Backup each shard in its own directory of the target, see {@link LuceneIndex#backupTo(Path, boolean)}.<br/>
+     * Shards are backed up one after the other, the backup is not a point in time copy of all shards.
+     */
+    public List<IndexBackup> backupTo(Path target, boolean hardLinks) {
+        final List<IndexBackup> backups = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            backups.add(shards.get(i).backupTo(target.resolve(SHARD_PREFIX + i), hardLinks));
+        }
+        return backups;
+    }
+
+    public void restoreFrom(Path backup) {
+        checkShardCount(backup, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).restoreFrom(backup.resolve(SHARD_PREFIX + i));
+        }
+    }
+
+    @Override
+    public <V> void reindex(Index<V> target, Function<T, V> mapper, ProgressCallback progressCallback) {
+        LuceneIndexReader.reindex(reader, target.writer(), mapper, progressCallback);
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(LuceneIndex::close);
+        if (ownedExecutor != null)
+            ownedExecutor.shutdown();
+    }
+
+    int shardIndex(String id) {
+        return Math.floorMod(id.hashCode(), shards.size());
+    }
+
+    LuceneIndex<T> shard(String id) {
+        return shards.get(shardIndex(id));
+    }
+
+    String elementId(T element) {
+        return shards.get(0).documentMapper.getElementId(element);
+    }
+
+    private static void checkShardCount(Path path, int shardCount) {
+        if (!Files.isDirectory(path))
+            return;
+
+        final long existingShards;
+        try (Stream<Path> stream = Files.list(path)) {
+            existingShards = stream.filter(Files::isDirectory)
+                    .map(p -> p.getFileName().toString())
+                    .filter(name -> SHARD_PATTERN.matcher(name).matches())
+                    .count();
+        } catch (IOException e) {
+            throw new IndexException(e);
+        }
+        if (existingShards > 0 && existingShards != shardCount) {
+            throw new IndexException("index " + path + " was created with " + existingShards
+                    + " shards, can not open it with " + shardCount + " shards");
+        }
+    }
+
+}
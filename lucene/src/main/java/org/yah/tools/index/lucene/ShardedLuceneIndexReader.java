@@ -0,0 +1,212 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.index.MultiReader;
+import org.yah.tools.index.EntityIndexReader;
+import org.yah.tools.index.lucene.LuceneIndexReader.ReaderInstance;
+import org.yah.tools.index.lucene.mapper.DocumentMapper;
+import org.yah.tools.index.query.IndexCursor;
+import org.yah.tools.index.query.IndexGroups;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder;
+import org.yah.tools.index.query.IndexQueryTemplateBuilder;
+import org.yah.tools.index.query.ScoredElement;
+import org.yah.tools.index.query.SearchRequest;
+import org.yah.tools.index.query.SearchResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+class ShardedLuceneIndexReader<T> implements EntityIndexReader<T> {
+
+    private final ShardedLuceneIndex<T> index;
+
+    ShardedLuceneIndexReader(ShardedLuceneIndex<T> index) {
+        this.index = Objects.requireNonNull(index);
+    }
+
+    @Override
+    public int count() {
+        return index.shards.stream()
+                .mapToInt(shard -> shard.reader().count())
+                .sum();
+    }
+
+    @Override
+    public IndexQueryTemplateBuilder prepareTemplate() {
+        return new LuceneIndexQueryTemplate.Builder<>(index.shards.get(0));
+    }
+
+    @Override
+    public IndexQueryBuilder prepareQuery() {
+        return new LuceneIndexQueryBuilder<>(index.shards.get(0));
+    }
+
+    @Override
+    public Collection<T> find(Collection<String> ids) {
+        final Map<Integer, List<String>> shardIds = new HashMap<>();
+        ids.forEach(id -> shardIds.computeIfAbsent(index.shardIndex(id), i -> new ArrayList<>()).add(id));
+        final Collection<T> res = new ArrayList<>(ids.size());
+        shardIds.forEach((shardIndex, idsList) -> res.addAll(index.shards.get(shardIndex).reader().find(idsList)));
+        return res;
+    }
+
+    @Override
+    public IndexCursor<T> query(IndexQuery query, int batchSize) {
+        final LuceneIndex<T> firstShard = index.shards.get(0);
+        return ShardedIndexCursor.create(index.getName(), open(), firstShard.documentMapper,
+                LuceneIndexQuery.cast(query), batchSize);
+    }
+
+    @Override
+    public List<T> list(IndexQuery query) {
+        try (IndexCursor<T> cursor = query(query, 1000)) {
+            List<T> res = new ArrayList<>((int) cursor.getMinTotalHits());
+            cursor.forEachRemaining(res::add);
+            return res;
+        }
+    }
+
+    @Override
+    public Optional<T> findFirst(IndexQuery query) {
+        try (IndexCursor<T> cursor = query(query, 1)) {
+            if (cursor.hasNext()) return Optional.of(cursor.next());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public int count(IndexQuery query) {
+        final ReaderInstance[] readerInstances = open();
+        try {
+            return count(readerInstances, LuceneIndexQuery.cast(query));
+        } finally {
+            Arrays.stream(readerInstances).forEach(ReaderInstance::close);
+        }
+    }
+
+    @Override
+    public IndexCursor<ScoredElement<T>> scoredQuery(IndexQuery query, int batchSize) {
+        final LuceneIndex<T> firstShard = index.shards.get(0);
+        return ShardedIndexCursor.createScored(index.getName(), open(), firstShard.documentMapper,
+                firstShard.getAnalyzer(), LuceneIndexQuery.cast(query), batchSize);
+    }
+
+    @Override
+    public List<ScoredElement<T>> scoredList(IndexQuery query) {
+        try (IndexCursor<ScoredElement<T>> cursor = scoredQuery(query, 1000)) {
+            List<ScoredElement<T>> res = new ArrayList<>((int) cursor.getMinTotalHits());
+            cursor.forEachRemaining(res::add);
+            return res;
+        }
+    }
+
+    /**
+     * Merge the top groups of all shards, see {@link QueryGrouping}
+     */
+    @Override
+    public IndexGroups<T> groupedList(IndexQuery query) {
+        final ReaderInstance[] readerInstances = open();
+        try {
+            final LuceneIndex<T> firstShard = index.shards.get(0);
+            return QueryGrouping.search(readerInstances, firstShard.documentMapper, firstShard.getAnalyzer(),
+                    LuceneIndexQuery.cast(query));
+        } finally {
+            Arrays.stream(readerInstances).forEach(ReaderInstance::close);
+        }
+    }
+
+    /**
+     * Correct the text using the terms of all shards
+     */
+    @Override
+    public Optional<String> didYouMean(String fieldName, String text) {
+        final ReaderInstance[] readerInstances = open();
+        try (MultiReader reader = new MultiReader(Arrays.stream(readerInstances)
+                .map(readerInstance -> readerInstance.reader)
+                .toArray(org.apache.lucene.index.IndexReader[]::new), false)) {
+            return TermsSpellChecker.didYouMean(reader, index.shards.get(0).getAnalyzer(), fieldName, text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            Arrays.stream(readerInstances).forEach(ReaderInstance::close);
+        }
+    }
+
+    long export(LuceneIndexQuery query, Set<String> properties, OutputStream outputStream) {
+        return SourceExporter.export(index.getName(), open(), index.shards.get(0).documentMapper,
+                query, properties, outputStream);
+    }
+
+    /**
+     * Execute all requests on the same shards reader instances, opened once.
+     */
+    @Override
+    public List<SearchResult<T>> multiSearch(List<SearchRequest> requests, Executor executor) {
+        final ReaderInstance[] readerInstances = open();
+        try {
+            return SearchResult.executeAll(requests, executor, request -> search(readerInstances, request));
+        } finally {
+            Arrays.stream(readerInstances).forEach(ReaderInstance::close);
+        }
+    }
+
+    private Object search(ReaderInstance[] readerInstances, SearchRequest request) {
+        final LuceneIndexQuery query = LuceneIndexQuery.cast(request.getQuery());
+        final DocumentMapper<T> documentMapper = index.shards.get(0).documentMapper;
+        switch (request.getType()) {
+            case LIST:
+                return LuceneIndexReader.toList(ShardedIndexCursor.create(index.getName(), register(readerInstances),
+                        documentMapper, query, 1000));
+            case COUNT:
+                return count(readerInstances, query);
+            case FIRST:
+                try (IndexCursor<T> cursor = ShardedIndexCursor.create(index.getName(), register(readerInstances),
+                        documentMapper, query, 1)) {
+                    return cursor.hasNext() ? Optional.of(cursor.next()) : Optional.empty();
+                }
+            case SCORED_LIST:
+                return LuceneIndexReader.toList(ShardedIndexCursor.createScored(index.getName(), register(readerInstances),
+                        documentMapper, index.shards.get(0).getAnalyzer(), query, 1000));
+            default:
+                throw new IllegalArgumentException("Unsupported request type " + request.getType());
+        }
+    }
+
+    /**
+     * count the hits of all shards, profiled as one query
+     */
+    private int count(ReaderInstance[] readerInstances, LuceneIndexQuery query) {
+        final QueryProfile profile = readerInstances[0].metrics.startProfile(index.getName(), query, null, 0);
+        int count = 0;
+        for (ReaderInstance readerInstance : readerInstances) {
+            count += LuceneIndexReader.count(readerInstance, query, profile);
+        }
+        if (profile != null)
+            profile.finish(count);
+        return count;
+    }
+
+    private static ReaderInstance[] register(ReaderInstance[] readerInstances) {
+        Arrays.stream(readerInstances).forEach(ReaderInstance::register);
+        return readerInstances;
+    }
+
+    private ReaderInstance[] open() {
+        final ReaderInstance[] readerInstances = new ReaderInstance[index.shards.size()];
+        try {
+            for (int i = 0; i < readerInstances.length; i++) {
+                readerInstances[i] = ((LuceneIndexReader<T>) index.shards.get(i).reader()).open();
+            }
+        } catch (RuntimeException e) {
+            Arrays.stream(readerInstances)
+                    .filter(Objects::nonNull)
+                    .forEach(ReaderInstance::close);
+            throw e;
+        }
+        return readerInstances;
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.yah.tools.index.lucene;
+
+import org.yah.tools.index.EntityIndexWriter;
+import org.yah.tools.index.query.IndexQuery;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Each shard has its own sequence numbers, a write on several shards has no sequence number comparable with the
+ * other writes: write operations return {@link #NO_SEQUENCE_NUMBER}. The sequence numbers of a shard are returned by
+ * the shard writer, see {@link ShardedLuceneIndex#getShards()}.
+ */
+class ShardedLuceneIndexWriter<T> implements EntityIndexWriter<T> {
+
+    static final long NO_SEQUENCE_NUMBER = -1;
+
+    private final ShardedLuceneIndex<T> index;
+
+    ShardedLuceneIndexWriter(ShardedLuceneIndex<T> index) {
+        this.index = Objects.requireNonNull(index);
+    }
+
+    @Override
+    public long add(Collection<T> elements) {
+        return route(elements, index::elementId, EntityIndexWriter::add);
+    }
+
+    @Override
+    public long update(Collection<T> elements) {
+        return route(elements, index::elementId, EntityIndexWriter::update);
+    }
+
+    @Override
+    public long delete(Collection<String> ids) {
+        return route(ids, Function.identity(), EntityIndexWriter::delete);
+    }
+
+    @Override
+    public long updateFields(String id, Map<String, ?> values) {
+        index.shard(id).writer().updateFields(id, values);
+        return NO_SEQUENCE_NUMBER;
+    }
+
+    @Override
+    public long delete(IndexQuery query) {
+        index.shards.forEach(shard -> shard.writer().delete(query));
+        return NO_SEQUENCE_NUMBER;
+    }
+
+    @Override
+    public long clear() {
+        index.shards.forEach(shard -> shard.writer().clear());
+        return NO_SEQUENCE_NUMBER;
+    }
+
+    private <E> long route(Collection<E> elements,
+                           Function<E, String> idProvider,
+                           ToLongBiFunction<EntityIndexWriter<T>, Collection<E>> action) {
+        final Map<Integer, List<E>> shardElements = new HashMap<>();
+        for (E element : elements) {
+            final int shardIndex = index.shardIndex(idProvider.apply(element));
+            shardElements.computeIfAbsent(shardIndex, i -> new ArrayList<>()).add(element);
+        }
+        for (Map.Entry<Integer, List<E>> entry : shardElements.entrySet()) {
+            action.applyAsLong(index.shards.get(entry.getKey()).writer(), entry.getValue());
+        }
+        return NO_SEQUENCE_NUMBER;
+    }
+
+}
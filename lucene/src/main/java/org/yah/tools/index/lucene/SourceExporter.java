@@ -0,0 +1,160 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.LuceneIndexReader.ReaderInstance;
+import org.yah.tools.index.lucene.mapper.DocumentMapper;
+import org.yah.tools.index.lucene.mapper.WrappedEntityDocumentMapper;
+import org.yah.tools.index.lucene.metrics.QueryPhase;
+import org.yah.tools.index.query.IndexCursor;
+import org.yah.tools.index.query.IndexSort;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Export the JSON sources of a query hits as NDJSON, one element per line.<br/>
+ * The stored sources are copied without creating the elements. A query without sort, limit or skip is exported
+ * in index order in a single pass, other queries are exported by batches of hits, the memory used does not depend
+ * on the count of hits.
+ */
+final class SourceExporter {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param readerInstances the reader instance of each shard, closed by the export
+     * @return the count of exported elements
+     */
+    static long export(String indexName, ReaderInstance[] readerInstances, DocumentMapper<?> documentMapper,
+                       LuceneIndexQuery query, Set<String> properties, OutputStream outputStream) {
+        final SourceExporter exporter;
+        try {
+            exporter = new SourceExporter(documentMapper, properties, outputStream);
+        } catch (RuntimeException e) {
+            Arrays.stream(readerInstances).forEach(ReaderInstance::close);
+            throw e;
+        }
+        try {
+            if (isUnsorted(query))
+                exporter.exportAll(readerInstances, query);
+            else
+                exporter.exportHits(indexName, readerInstances, query);
+            exporter.outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return exporter.count;
+    }
+
+    private static boolean isUnsorted(LuceneIndexQuery query) {
+        return query.getSort() == IndexSort.DEFAULT
+                && query.getLimit() == Integer.MAX_VALUE
+                && query.getSkip() == 0
+                && query.getRescorer() == null
+                && query.getCollapseField() == null;
+    }
+
+    private final DocumentMapper<?> documentMapper;
+    private final String sourceField;
+    private final Set<String> properties;
+    private final OutputStream outputStream;
+    private long count;
+
+    private SourceExporter(DocumentMapper<?> documentMapper, Set<String> properties, OutputStream outputStream) {
+        this.documentMapper = documentMapper;
+        this.sourceField = documentMapper.getSourceField();
+        if (sourceField == null)
+            throw new UnsupportedOperationException("documentMapper " + documentMapper + " has no JSON source");
+        this.properties = Set.copyOf(properties);
+        this.outputStream = new BufferedOutputStream(Objects.requireNonNull(outputStream, "outputStream is null"),
+                BUFFER_SIZE);
+    }
+
+    private void exportAll(ReaderInstance[] readerInstances, LuceneIndexQuery query) throws IOException {
+        try {
+            for (ReaderInstance readerInstance : readerInstances) {
+                final long start = readerInstance.metrics.start();
+                final long shardCount = count;
+                readerInstance.searcher.search(query.getQuery(), new SimpleCollector() {
+                    private int docBase;
+
+                    @Override
+                    protected void doSetNextReader(LeafReaderContext context) {
+                        docBase = context.docBase;
+                    }
+
+                    @Override
+                    public void collect(int doc) throws IOException {
+                        write(readerInstance, docBase + doc);
+                    }
+
+                    @Override
+                    public ScoreMode scoreMode() {
+                        return ScoreMode.COMPLETE_NO_SCORES;
+                    }
+                });
+                readerInstance.metrics.recordSearch(QueryPhase.SEARCH, start, (int) (count - shardCount), null);
+            }
+        } finally {
+            Arrays.stream(readerInstances).forEach(ReaderInstance::close);
+        }
+    }
+
+    private void exportHits(String indexName, ReaderInstance[] readerInstances, LuceneIndexQuery query) throws IOException {
+        try (IndexCursor<ScoreDoc> cursor = readerInstances.length == 1
+                ? LuceneIndexCursor.createHits(readerInstances[0], documentMapper, query, BATCH_SIZE)
+                : ShardedIndexCursor.createHits(indexName, readerInstances, documentMapper, query, BATCH_SIZE)) {
+            while (cursor.hasNext()) {
+                final ScoreDoc hit = cursor.next();
+                write(readerInstances[readerInstances.length == 1 ? 0 : hit.shardIndex], hit.doc);
+            }
+        }
+    }
+
+    private void write(ReaderInstance readerInstance, int doc) throws IOException {
+        final SourceVisitor visitor = new SourceVisitor();
+        readerInstance.searcher.doc(doc, visitor);
+        if (visitor.source == null)
+            throw new IndexException("missing json field " + sourceField);
+
+        final Document overlaid = new Document();
+        readerInstance.overlay.apply(readerInstance.searcher, doc, overlaid);
+        final Map<String, Object> overlay = WrappedEntityDocumentMapper.getOverlay(overlaid);
+        documentMapper.writeSource(visitor.source, overlay == null ? Map.of() : overlay, properties, outputStream);
+        outputStream.write('\n');
+        count++;
+    }
+
+    /**
+     * load the stored source bytes, without decoding them
+     */
+    private final class SourceVisitor extends StoredFieldVisitor {
+        private byte[] source;
+
+        @Override
+        public void stringField(FieldInfo fieldInfo, byte[] value) {
+            source = value;
+        }
+
+        @Override
+        public Status needsField(FieldInfo fieldInfo) {
+            if (source != null)
+                return Status.STOP;
+            return fieldInfo.name.equals(sourceField) ? Status.YES : Status.NO;
+        }
+    }
+}
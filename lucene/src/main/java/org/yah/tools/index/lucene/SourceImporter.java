@@ -0,0 +1,251 @@
+package org.yah.tools.index.lucene;
+
+import org.yah.tools.index.Index.ProgressCallback;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.IndexImport.LineError;
+import org.yah.tools.index.lucene.mapper.DocumentMapper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Import the elements of a NDJSON file, one JSON source per line, as written by the {@link SourceExporter}.<br/>
+ * The file is split in chunks of fixed size, each worker aligns its chunk on the next line boundary, then reads,
+ * parses and adds the lines starting in the chunk to the index. The line numbers of the errors are resolved once all
+ * the chunks are imported. The memory used does not depend on the file size.
+ */
+final class SourceImporter<T> {
+
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int SCAN_SIZE = 8 * 1024;
+
+    /**
+     * @param executor runs the workers, one per available processor
+     */
+    static <T> IndexImport importFrom(LuceneIndexWriter<T> writer, DocumentMapper<T> documentMapper,
+                                      Executor executor, Path file, ProgressCallback progressCallback) {
+        return importFrom(writer, documentMapper, executor, file, progressCallback, CHUNK_SIZE);
+    }
+
+    static <T> IndexImport importFrom(LuceneIndexWriter<T> writer, DocumentMapper<T> documentMapper,
+                                      Executor executor, Path file, ProgressCallback progressCallback,
+                                      int chunkSize) {
+        final ProgressCallback pc = progressCallback == null ? ProgressCallback.NOOP : progressCallback;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final SourceImporter<T> importer = new SourceImporter<>(writer, documentMapper, channel, pc, chunkSize);
+            pc.setExpected(importer.chunks.length + 1);
+            try {
+                importer.run(executor);
+            } catch (RuntimeException e) {
+                // the added elements would be published by the next commit
+                writer.index.rollback(writer);
+                throw e;
+            }
+            writer.commit();
+            pc.addCompleted();
+            return importer.result(file);
+        } catch (IOException e) {
+            throw new IndexException("Error importing " + file, e);
+        } catch (IndexException e) {
+            throw new IndexException("Error importing " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private final LuceneIndexWriter<T> writer;
+    private final DocumentMapper<T> documentMapper;
+    private final FileChannel channel;
+    private final ProgressCallback progressCallback;
+    private final long size;
+    private final int chunkSize;
+
+    private final ChunkResult[] chunks;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final AtomicLong importedElements = new AtomicLong();
+    private volatile boolean aborted;
+
+    private SourceImporter(LuceneIndexWriter<T> writer, DocumentMapper<T> documentMapper, FileChannel channel,
+                           ProgressCallback progressCallback, int chunkSize) throws IOException {
+        this.writer = writer;
+        this.documentMapper = documentMapper;
+        this.channel = channel;
+        this.progressCallback = progressCallback;
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+        this.chunks = new ChunkResult[(int) ((size + chunkSize - 1) / chunkSize)];
+    }
+
+    private void run(Executor executor) {
+        final int workers = Math.max(1, Math.min(chunks.length, Runtime.getRuntime().availableProcessors()));
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            futures[i] = CompletableFuture.runAsync(this::importChunks, executor);
+        }
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IndexException)
+                throw (IndexException) e.getCause();
+            throw new IndexException(e.getCause());
+        }
+    }
+
+    /**
+     * number the lines of all chunks, the chunk errors are numbered from the first line of their chunk
+     */
+    private IndexImport result(Path file) {
+        final List<LineError> errors = new ArrayList<>();
+        long lines = 0;
+        for (ChunkResult chunk : chunks) {
+            for (LineError error : chunk.errors) {
+                errors.add(new LineError(lines + error.getLine(), error.getMessage()));
+            }
+            lines += chunk.lines;
+        }
+        return new IndexImport(file, lines, importedElements.get(), errors);
+    }
+
+    /**
+     * @throws IndexException with the offset of the chunk that could not be imported
+     */
+    private void importChunks() {
+        int index = -1;
+        try {
+            while (!aborted && (index = nextChunk.getAndIncrement()) < chunks.length) {
+                chunks[index] = importChunk(index);
+                progressCallback.addCompleted();
+            }
+        } catch (IOException | RuntimeException e) {
+            aborted = true;
+            throw new IndexException("chunk at offset " + (long) index * chunkSize + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * import the lines starting in a chunk, the last one may end in the next chunk
+     */
+    private ChunkResult importChunk(int index) throws IOException {
+        final long position = (long) index * chunkSize;
+        final long chunkStart = lineStart(position);
+        final long chunkEnd = lineStart(Math.min(size, position + chunkSize));
+        if (chunkEnd - chunkStart > Integer.MAX_VALUE)
+            throw new IndexException("line at offset " + chunkStart + " is too long");
+        final byte[] bytes = read(chunkStart, (int) (chunkEnd - chunkStart));
+        final List<T> elements = new ArrayList<>();
+        final List<Long> elementLines = new ArrayList<>();
+        final List<LineError> chunkErrors = new ArrayList<>();
+        long line = 1;
+        int start = 0;
+        while (start < bytes.length) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            int length = end - start;
+            if (length > 0 && bytes[end - 1] == '\r')
+                length--;
+            if (!isBlank(bytes, start, length)) {
+                try {
+                    elements.add(documentMapper.readSource(bytes, start, length));
+                    elementLines.add(line);
+                } catch (IOException | RuntimeException e) {
+                    chunkErrors.add(new LineError(line, e.getMessage()));
+                }
+            }
+            line++;
+            start = end + 1;
+        }
+
+        add(elements, elementLines, chunkErrors);
+        chunkErrors.sort(Comparator.comparingLong(LineError::getLine));
+        return new ChunkResult(line - 1, chunkErrors);
+    }
+
+    /**
+     * @return the position of the first line starting at or after a position
+     */
+    private long lineStart(long position) throws IOException {
+        if (position == 0 || position >= size)
+            return Math.min(position, size);
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long scanned = position - 1;
+        while (scanned < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, scanned);
+            if (read < 0)
+                throw new EOFException("file truncated during the import");
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return scanned + i + 1;
+            }
+            scanned += read;
+        }
+        return size;
+    }
+
+    /**
+     * add the elements of a chunk at once, or one by one to find the failing lines if the chunk is rejected
+     */
+    private void add(List<T> elements, List<Long> elementLines, List<LineError> chunkErrors) {
+        if (elements.isEmpty())
+            return;
+        try {
+            writer.add(elements);
+            importedElements.addAndGet(elements.size());
+            return;
+        } catch (RuntimeException e) {
+            if (!writer.indexWriter.isOpen())
+                throw e;
+        }
+
+        for (int i = 0; i < elements.size(); i++) {
+            try {
+                writer.add(List.of(elements.get(i)));
+                importedElements.incrementAndGet();
+            } catch (RuntimeException e) {
+                if (!writer.indexWriter.isOpen())
+                    throw e;
+                chunkErrors.add(new LineError(elementLines.get(i), e.getMessage()));
+            }
+        }
+    }
+
+    private byte[] read(long position, int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("file truncated during the import");
+        }
+        return bytes;
+    }
+
+    private static boolean isBlank(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t')
+                return false;
+        }
+        return true;
+    }
+
+    private static final class ChunkResult {
+        private final long lines;
+        private final List<LineError> errors;
+
+        private ChunkResult(long lines, List<LineError> errors) {
+            this.lines = lines;
+            this.errors = errors;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.yah.tools.index.lucene;
+
+import java.util.Objects;
+
+/**
+ * A text suggested by an {@link IndexSuggester}, with the weight of its document.
+ */
+public final class Suggestion {
+
+    private final String text;
+    private final long weight;
+
+    Suggestion(String text, long weight) {
+        this.text = Objects.requireNonNull(text);
+        this.weight = weight;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Suggestion that = (Suggestion) o;
+        return weight == that.weight && text.equals(that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, weight);
+    }
+
+    @Override
+    public String toString() {
+        return "Suggestion{text=" + text + ", weight=" + weight + '}';
+    }
+}
@@ -0,0 +1,55 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.spell.DirectSpellChecker;
+import org.apache.lucene.search.spell.SuggestMode;
+import org.apache.lucene.search.spell.SuggestWord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
+/**
+ * Correct misspelled words using the terms dictionary of the index, without a separate spelling index.<br/>
+ * Like fuzzy queries, corrections share a prefix with the misspelled word, and the number of inspected terms is
+ * bounded.
+ */
+final class TermsSpellChecker {
+
+    private TermsSpellChecker() {
+    }
+
+    static Optional<String> didYouMean(IndexReader reader, Analyzer analyzer, String fieldName, String text) {
+        final DirectSpellChecker spellChecker = new DirectSpellChecker();
+        final StringBuilder corrected = new StringBuilder(text.length());
+        int end = 0;
+        boolean changed = false;
+        try (TokenStream tokenStream = analyzer.tokenStream(fieldName, text)) {
+            final CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            final OffsetAttribute offsetAttribute = tokenStream.addAttribute(OffsetAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                final Term term = new Term(fieldName, termAttribute.toString());
+                final SuggestWord[] words = spellChecker.suggestSimilar(term, 1, reader,
+                        SuggestMode.SUGGEST_WHEN_NOT_IN_INDEX);
+                if (words.length > 0 && offsetAttribute.startOffset() >= end) {
+                    corrected.append(text, end, offsetAttribute.startOffset()).append(words[0].string);
+                    end = offsetAttribute.endOffset();
+                    changed = true;
+                }
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!changed)
+            return Optional.empty();
+        return Optional.of(corrected.append(text, end, text.length()).toString());
+    }
+
+}
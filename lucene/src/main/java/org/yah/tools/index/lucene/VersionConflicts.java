@@ -0,0 +1,17 @@
+package org.yah.tools.index.lucene;
+
+import org.yah.tools.index.VersionConflictException;
+
+/**
+ * Action taken when an update of a versioned entity is not newer than the indexed version
+ */
+public enum VersionConflicts {
+    /**
+     * reject the whole update with a {@link VersionConflictException}
+     */
+    FAIL,
+    /**
+     * ignore the stale elements, apply the others
+     */
+    SKIP
+}
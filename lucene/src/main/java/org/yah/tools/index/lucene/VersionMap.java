@@ -0,0 +1,102 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.yah.tools.index.lucene.mapper.WrappedEntityDocumentMapper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexed versions of a writer entities.<br/>
+ * Versions are read from the doc values of a near real time reader, versions written since this reader was opened
+ * are kept in memory until the next refresh. Callers must hold the lock of this map from the version check to the
+ * write.
+ */
+final class VersionMap implements AutoCloseable {
+
+    /**
+     * version of a missing or not versioned document, any version is newer
+     */
+    static final long NO_VERSION = Long.MIN_VALUE;
+
+    private static final int MAX_PENDING_VERSIONS = 4096;
+
+    private final IndexWriter indexWriter;
+    private final String idField;
+    private final Map<String, Long> pendingVersions = new HashMap<>();
+    private DirectoryReader reader;
+
+    VersionMap(IndexWriter indexWriter, String idField) {
+        this.indexWriter = indexWriter;
+        this.idField = idField;
+    }
+
+    long get(String id) throws IOException {
+        final Long pending = pendingVersions.get(id);
+        if (pending != null)
+            return pending;
+        return indexedVersion(id);
+    }
+
+    void put(String id, Long version) throws IOException {
+        pendingVersions.put(id, version == null ? NO_VERSION : version);
+        if (pendingVersions.size() >= MAX_PENDING_VERSIONS)
+            refresh();
+    }
+
+    /**
+     * Refresh the reader after a write that is not tracked by id
+     */
+    void refresh() throws IOException {
+        if (reader != null) {
+            final DirectoryReader newReader = DirectoryReader.openIfChanged(reader, indexWriter);
+            if (newReader != null) {
+                reader.close();
+                reader = newReader;
+            }
+        }
+        pendingVersions.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null)
+            reader.close();
+        reader = null;
+    }
+
+    private long indexedVersion(String id) throws IOException {
+        if (reader == null)
+            reader = DirectoryReader.open(indexWriter);
+
+        final BytesRef term = new BytesRef(id);
+        long version = NO_VERSION;
+        PostingsEnum postings = null;
+        for (LeafReaderContext context : reader.leaves()) {
+            final Terms terms = context.reader().terms(idField);
+            if (terms == null)
+                continue;
+            final TermsEnum termsEnum = terms.iterator();
+            if (!termsEnum.seekExact(term))
+                continue;
+            final Bits liveDocs = context.reader().getLiveDocs();
+            final NumericDocValues versions = context.reader().getNumericDocValues(WrappedEntityDocumentMapper.VERSION_FIELD);
+            postings = termsEnum.postings(postings, PostingsEnum.NONE);
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                if ((liveDocs == null || liveDocs.get(doc)) && versions != null && versions.advanceExact(doc))
+                    version = Math.max(version, versions.longValue());
+            }
+        }
+        return version;
+    }
+}
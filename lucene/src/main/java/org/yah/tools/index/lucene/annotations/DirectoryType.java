@@ -0,0 +1,20 @@
+package org.yah.tools.index.lucene.annotations;
+
+public enum DirectoryType {
+    /**
+     * use the factory default directory
+     */
+    AUTO,
+    /**
+     * let lucene choose the FSDirectory implementation
+     */
+    FS,
+    /**
+     * memory mapped files
+     */
+    MMAP,
+    /**
+     * positional reads using FileChannel
+     */
+    NIOFS
+}
@@ -25,6 +25,13 @@ public @interface Index {
 
     IndexedFieldType defaultTextType() default IndexedFieldType.AUTO;
 
+    /**
+     * number of shards used by a sharded index, default (0) to the factory default shards
+     */
+    int shards() default 0;
+
+    IndexDirectory directory() default @IndexDirectory;
+
     class FactoryDefault extends Analyzer {
         private FactoryDefault() {
         }
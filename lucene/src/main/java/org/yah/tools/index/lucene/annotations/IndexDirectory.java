@@ -0,0 +1,30 @@
+package org.yah.tools.index.lucene.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target({})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface IndexDirectory {
+
+    /**
+     * The directory implementation, default to factory default directory, other attributes are then ignored
+     */
+    DirectoryType type() default DirectoryType.AUTO;
+
+    /**
+     * Wrap the directory in a NRTCachingDirectory
+     */
+    boolean nrtCaching() default false;
+
+    double nrtCachingMaxMergeSizeMB() default 5;
+
+    double nrtCachingMaxCachedMB() default 60;
+
+    /**
+     * Extensions of files to preload when using a MMAP directory
+     */
+    String[] preload() default {};
+
+}
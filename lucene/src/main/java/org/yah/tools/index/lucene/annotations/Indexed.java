@@ -19,4 +19,11 @@ public @interface Indexed {
     String name() default "";
 
     boolean flatten() default false;
+
+    /**
+     * Index the elements of a collection or an array as nested documents, matched by the nested queries
+     * of {@link org.yah.tools.index.query.IndexQueryBuilder#withNested}.<br/>
+     * Nested documents can not have nested documents.
+     */
+    boolean nested() default false;
 }
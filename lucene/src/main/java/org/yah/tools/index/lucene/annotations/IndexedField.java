@@ -28,4 +28,9 @@ public @interface IndexedField {
 
     Class<? extends Analyzer> analyzer() default AutoAnalyzer.class;
 
+    /**
+     * Store a TEXT field and index its offsets, to highlight it. Default to false
+     */
+    boolean offsets() default false;
+
 }
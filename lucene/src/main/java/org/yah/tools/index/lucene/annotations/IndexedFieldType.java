@@ -24,5 +24,9 @@ public enum IndexedFieldType {
     /**
      * doc values
      */
-    DOC_VALUES
+    DOC_VALUES,
+    /**
+     * latitude/longitude point, filtered by distance, bounding box or polygon, sorted by distance
+     */
+    GEO_POINT
 }
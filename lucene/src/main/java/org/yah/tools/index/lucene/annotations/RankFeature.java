@@ -0,0 +1,32 @@
+package org.yah.tools.index.lucene.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Index a numeric property as a static rank feature, blended in the query scores with
+ * {@link org.yah.tools.index.query.IndexQueryBuilder#withRankFeature(String, float)}.<br/>
+ * Values are indexed with about 3 significant digits, non positive values are not indexed.
+ */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RankFeature {
+
+    /**
+     * Alias of name()
+     */
+    String value() default "";
+
+    /**
+     * The indexed field name, default to bean property name
+     */
+    String name() default "";
+
+    /**
+     * Whether greater values increase the score, otherwise the inverse of the value is indexed. Default to true
+     */
+    boolean positiveScoreImpact() default true;
+
+}
@@ -0,0 +1,37 @@
+package org.yah.tools.index.lucene.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Build an autocomplete suggester from the text of a property, see
+ * {@link org.yah.tools.index.lucene.IndexSuggester}
+ */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Suggest {
+
+    /**
+     * Alias of name()
+     */
+    String value() default "";
+
+    /**
+     * The suggester name, default to bean property name
+     */
+    String name() default "";
+
+    /**
+     * The numeric doc values field weighting the suggestions, default to none
+     */
+    String weightField() default "";
+
+    /**
+     * Suggest the texts containing a word starting with the prefix, instead of the texts starting with the prefix.
+     * Default to false
+     */
+    boolean infix() default false;
+
+}
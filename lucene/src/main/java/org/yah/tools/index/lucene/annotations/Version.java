@@ -0,0 +1,15 @@
+package org.yah.tools.index.lucene.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Numeric version of an entity: an update is only applied if the element version is greater than the indexed one.
+ * A null version is not checked.
+ */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Version {
+}
@@ -0,0 +1,71 @@
+package org.yah.tools.index.lucene.directory;
+
+import org.apache.lucene.store.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Set;
+
+public final class DirectoryFactories {
+
+    /**
+     * Let lucene choose the best {@link FSDirectory} implementation for the current platform.
+     */
+    public static final DirectoryFactory fs = newFactory("FSDirectory", FSDirectory::open);
+
+    public static final DirectoryFactory mmap = newFactory("MMapDirectory", MMapDirectory::new);
+
+    public static final DirectoryFactory niofs = newFactory("NIOFSDirectory", NIOFSDirectory::new);
+
+    private DirectoryFactories() {
+    }
+
+    /**
+     * {@link MMapDirectory} loading files with given extensions (ie: "tim", "dvd") into physical memory when opened.
+     */
+    public static DirectoryFactory mmap(Set<String> preloadExtensions) {
+        if (preloadExtensions.isEmpty())
+            return mmap;
+        final Set<String> extensions = Set.copyOf(preloadExtensions);
+        return newFactory("MMapDirectory(preload=" + extensions + ")",
+                path -> new PreloadingDirectory(new MMapDirectory(path), new MMapDirectory(path), extensions));
+    }
+
+    /**
+     * Cache small newly flushed segments in memory, useful for frequent small writes with NRT reopens.
+     *
+     * @param maxMergeSizeMB max size of a merged segment to cache
+     * @param maxCachedMB    max total size of cached segments
+     */
+    public static DirectoryFactory nrtCaching(DirectoryFactory delegate, double maxMergeSizeMB, double maxCachedMB) {
+        Objects.requireNonNull(delegate, "delegate is null");
+        return newFactory(String.format("NRTCachingDirectory(%s, maxMergeSizeMB=%s, maxCachedMB=%s)",
+                delegate, maxMergeSizeMB, maxCachedMB),
+                path -> new NRTCachingDirectory(delegate.create(path), maxMergeSizeMB, maxCachedMB));
+    }
+
+    private static DirectoryFactory newFactory(String description, DirectoryFactory factory) {
+        return new DefaultDirectoryFactory(description, factory);
+    }
+
+    private static final class DefaultDirectoryFactory implements DirectoryFactory {
+        private final String description;
+        private final DirectoryFactory factory;
+
+        private DefaultDirectoryFactory(String description, DirectoryFactory factory) {
+            this.description = description;
+            this.factory = factory;
+        }
+
+        @Override
+        public Directory create(Path path) throws IOException {
+            return factory.create(path);
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.yah.tools.index.lucene.directory;
+
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface DirectoryFactory {
+
+    Directory create(Path path) throws IOException;
+
+}
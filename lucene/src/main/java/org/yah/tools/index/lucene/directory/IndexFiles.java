@@ -0,0 +1,60 @@
+package org.yah.tools.index.lucene.directory;
+
+import org.apache.lucene.codecs.CodecUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Index files copied between directories.<br/>
+ * Segment names restart when an index is recreated or restored, so a file with the same name and length may have a
+ * different content: files are compared with the checksum of their codec footer.
+ */
+public final class IndexFiles {
+
+    private IndexFiles() {
+    }
+
+    /**
+     * @return the checksum of the codec footer of an index file, null if the file has no valid footer
+     */
+    public static Long checksum(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final int footerLength = CodecUtil.footerLength();
+            final long size = channel.size();
+            if (size < footerLength)
+                return null;
+            final ByteBuffer footer = ByteBuffer.allocate(footerLength);
+            while (footer.hasRemaining()) {
+                if (channel.read(footer, size - footerLength + footer.position()) < 0)
+                    throw new EOFException(file.toString());
+            }
+            if (footer.getInt(0) != CodecUtil.FOOTER_MAGIC || footer.getInt(4) != 0)
+                return null;
+            return footer.getLong(8);
+        }
+    }
+
+    /**
+     * @return true if the target file exists, with the given length and checksum
+     */
+    public static boolean isCopy(Path target, long length, long checksum) throws IOException {
+        if (!Files.isRegularFile(target) || Files.size(target) != length)
+            return false;
+        final Long targetChecksum = checksum(target);
+        return targetChecksum != null && targetChecksum == checksum;
+    }
+
+    /**
+     * @return true if the target file is a copy of the source file
+     */
+    public static boolean isCopy(Path target, Path source) throws IOException {
+        final Long sourceChecksum = checksum(source);
+        return sourceChecksum != null && isCopy(target, Files.size(source), sourceChecksum);
+    }
+}
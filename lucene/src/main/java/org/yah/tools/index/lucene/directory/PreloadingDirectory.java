@@ -0,0 +1,43 @@
+package org.yah.tools.index.lucene.directory;
+
+import org.apache.lucene.store.*;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * {@link MMapDirectory} preloading only files with given extensions (MMapDirectory preload is all or nothing).
+ */
+class PreloadingDirectory extends FilterDirectory {
+
+    private final Set<String> extensions;
+    private final MMapDirectory preloadedDirectory;
+
+    PreloadingDirectory(MMapDirectory directory, MMapDirectory preloadedDirectory, Set<String> extensions) {
+        super(directory);
+        this.preloadedDirectory = preloadedDirectory;
+        this.extensions = Set.copyOf(extensions);
+        preloadedDirectory.setPreload(true);
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        if (extensions.contains(FileSwitchDirectory.getExtension(name)))
+            return preloadedDirectory.openInput(name, context);
+        return super.openInput(name, context);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            preloadedDirectory.close();
+        } finally {
+            super.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PreloadingDirectory(" + in + ", extensions=" + extensions + ")";
+    }
+}
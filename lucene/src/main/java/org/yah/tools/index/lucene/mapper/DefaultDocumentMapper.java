@@ -3,17 +3,25 @@ package org.yah.tools.index.lucene.mapper;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yah.tools.index.IndexException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
 
@@ -29,9 +37,13 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
     private final Class<T> type;
     private final ObjectMapper objectMapper;
     private final List<IndexedField<T>> indexedFields;
+    private final IndexSchema schema;
+    private final List<SuggestField> suggestFields;
+    private final List<NestedDocuments<T, ?>> nestedDocuments;
 
     private final String idField;
     private final Function<T, String> elementIdProvider;
+    private final Function<T, ? extends Number> elementVersionProvider;
 
     public DefaultDocumentMapper(Builder<T> builder) {
         this.type = Objects.requireNonNull(builder.type);
@@ -39,6 +51,10 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
         this.indexedFields = List.copyOf(builder.indexedFields);
         this.elementIdProvider = builder.elementIdProvider;
         this.idField = builder.idField;
+        this.elementVersionProvider = builder.elementVersionProvider;
+        this.nestedDocuments = List.copyOf(builder.nestedDocuments);
+        this.schema = createSchema(idField, indexedFields, nestedDocuments);
+        this.suggestFields = List.copyOf(builder.suggestFields);
     }
 
     @Override
@@ -49,6 +65,19 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
         return document;
     }
 
+    /**
+     * The nested documents only have indexed fields, their elements are read from the element source
+     */
+    @Override
+    public List<Document> toDocuments(T element) {
+        if (nestedDocuments.isEmpty())
+            return List.of(toDocument(element));
+        final List<Document> documents = new ArrayList<>();
+        nestedDocuments.forEach(nested -> nested.addDocuments(element, documents));
+        documents.add(toDocument(element));
+        return documents;
+    }
+
     @Override
     public T toElement(Document document) {
         final String json = document.get(JSON_FIELD);
@@ -62,6 +91,59 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
         }
     }
 
+    /**
+     * Overlay the values on the JSON source, field names are dot separated property paths
+     */
+    @Override
+    public T toElement(Document document, Map<String, Object> overlay) {
+        final String json = document.get(JSON_FIELD);
+        if (json == null)
+            throw new IndexException("missing json field " + JSON_FIELD);
+
+        try {
+            final JsonNode tree = objectMapper.readTree(json);
+            if (!(tree instanceof ObjectNode))
+                throw new IndexException("json source " + json + " is not an object");
+            overlay.forEach((field, value) -> setProperty((ObjectNode) tree, field, value));
+            return objectMapper.treeToValue(tree, type);
+        } catch (JsonProcessingException e) {
+            throw new IndexException(e);
+        }
+    }
+
+    @Override
+    public String getSourceField() {
+        return JSON_FIELD;
+    }
+
+    /**
+     * The source is written as it is stored, unless it is overlaid or projected
+     */
+    @Override
+    public void writeSource(byte[] source, Map<String, Object> overlay, Set<String> properties,
+                            OutputStream outputStream) throws IOException {
+        if (overlay.isEmpty() && properties.isEmpty()) {
+            outputStream.write(source);
+            return;
+        }
+
+        final JsonNode tree;
+        try {
+            tree = objectMapper.readTree(source);
+        } catch (JsonProcessingException e) {
+            throw new IndexException(e);
+        }
+        if (!(tree instanceof ObjectNode))
+            throw new IndexException("json source " + new String(source, StandardCharsets.UTF_8) + " is not an object");
+        overlay.forEach((field, value) -> setProperty((ObjectNode) tree, field, value));
+        outputStream.write(objectMapper.writeValueAsBytes(properties.isEmpty() ? tree : project((ObjectNode) tree, properties)));
+    }
+
+    @Override
+    public T readSource(byte[] source, int offset, int length) throws IOException {
+        return objectMapper.readValue(source, offset, length, type);
+    }
+
     @Override
     public String getIdField() {
         return idField;
@@ -74,23 +156,58 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
         return elementIdProvider.apply(element);
     }
 
+    @Override
+    public boolean isVersioned() {
+        return elementVersionProvider != null;
+    }
+
+    @Override
+    public Long getElementVersion(T element) {
+        if (elementVersionProvider == null)
+            return null;
+        final Number version = elementVersionProvider.apply(element);
+        return version == null ? null : version.longValue();
+    }
+
     public boolean isEntityDocumentMapper() {
         return elementIdProvider != null;
     }
 
     @Override
     public IndexableFieldType getFieldType(String field) {
-        return indexedFields.stream()
-                .filter(f -> f.getName().equals(field))
-                .findFirst()
-                .map(IndexedField::getType)
-                .orElseThrow(() -> new IllegalArgumentException("field '" + field + "' was not found"));
+        return schema.getFieldType(field);
+    }
+
+    @Override
+    public IndexSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public List<SuggestField> getSuggestFields() {
+        return suggestFields;
+    }
+
+    @Override
+    public List<String> getNestedPaths() {
+        return nestedDocuments.stream().map(nested -> nested.path).collect(Collectors.toList());
     }
 
     Collection<IndexedField<T>> getIndexedFields() {
         return List.copyOf(indexedFields);
     }
 
+    /**
+     * fields indexed more than once keep the type of their first definition
+     */
+    private static <T> IndexSchema createSchema(String idField, List<IndexedField<T>> indexedFields,
+                                                List<NestedDocuments<T, ?>> nestedDocuments) {
+        final Map<String, IndexableFieldType> fieldTypes = new LinkedHashMap<>();
+        indexedFields.forEach(f -> fieldTypes.putIfAbsent(f.getName(), f.getType()));
+        nestedDocuments.forEach(nested -> nested.fields.forEach(f -> fieldTypes.putIfAbsent(f.getName(), f.getType())));
+        return new IndexSchema(idField, fieldTypes);
+    }
+
     private static ObjectMapper createDefaultObjectMapper() {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.disable(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES);
@@ -121,6 +238,36 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
         objectMapper.registerModule(module);
     }
 
+    private void setProperty(ObjectNode node, String path, Object value) {
+        final String[] names = path.split("\\.");
+        ObjectNode parent = node;
+        for (int i = 0; i < names.length - 1; i++) {
+            final JsonNode child = parent.get(names[i]);
+            parent = child instanceof ObjectNode ? (ObjectNode) child : parent.putObject(names[i]);
+        }
+        parent.set(names[names.length - 1], objectMapper.valueToTree(value));
+    }
+
+    private ObjectNode project(ObjectNode node, Set<String> properties) {
+        final ObjectNode res = objectMapper.createObjectNode();
+        for (String path : properties) {
+            final String[] names = path.split("\\.");
+            JsonNode value = node;
+            for (String name : names) {
+                value = value.path(name);
+            }
+            if (value.isMissingNode())
+                continue;
+            ObjectNode parent = res;
+            for (int i = 0; i < names.length - 1; i++) {
+                final JsonNode child = parent.get(names[i]);
+                parent = child instanceof ObjectNode ? (ObjectNode) child : parent.putObject(names[i]);
+            }
+            parent.set(names[names.length - 1], value);
+        }
+        return res;
+    }
+
     private void addJSON(T element, Document document) {
         final String json;
         try {
@@ -136,10 +283,13 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
 
         private final Class<T> type;
         private final Collection<IndexedField<T>> indexedFields = new ArrayList<>();
+        private final List<SuggestField> suggestFields = new ArrayList<>();
+        private final List<NestedDocuments<T, ?>> nestedDocuments = new ArrayList<>();
         private ObjectMapper objectMapper;
 
         private String idField;
         private Function<T, String> elementIdProvider;
+        private Function<T, ? extends Number> elementVersionProvider;
 
         private Builder(Class<T> type) {
             this.type = type;
@@ -210,6 +360,43 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
             return this;
         }
 
+        /**
+         * @param elementVersionProvider version of the elements, checked by updates
+         */
+        public Builder<T> withVersion(Function<T, ? extends Number> elementVersionProvider) {
+            this.elementVersionProvider = Objects.requireNonNull(elementVersionProvider, "elementVersionProvider is null");
+            return this;
+        }
+
+        /**
+         * Build a suggester from stored texts, added to the documents as {@link SuggestField#getStoredField()}
+         * using {@link IndexableFieldFactories#storedString}
+         */
+        public Builder<T> withSuggestField(SuggestField suggestField) {
+            this.suggestFields.add(Objects.requireNonNull(suggestField, "suggestField is null"));
+            return this;
+        }
+
+        /**
+         * Index the elements of a collection as nested documents, in the same block as the element document, so
+         * that their fields are matched together by the nested queries.
+         *
+         * @param path     path of the nested documents
+         * @param provider the nested elements of an element
+         * @param mapper   fields of the nested elements, their names must start with the path
+         */
+        public <V> Builder<T> withNestedDocuments(String path,
+                                                  Function<T, ? extends Collection<V>> provider,
+                                                  DefaultDocumentMapper<V> mapper) {
+            Objects.requireNonNull(path, "path is null");
+            if (nestedDocuments.stream().anyMatch(nested -> nested.path.equals(path)))
+                throw new IllegalArgumentException("duplicate nested documents path " + path);
+            if (!mapper.nestedDocuments.isEmpty())
+                throw new IllegalArgumentException("nested documents " + path + " can not have nested documents");
+            nestedDocuments.add(new NestedDocuments<>(path, provider, mapper.indexedFields));
+            return this;
+        }
+
         public DefaultDocumentMapper<T> build() {
             return new DefaultDocumentMapper<>(this);
         }
@@ -223,4 +410,30 @@ public class DefaultDocumentMapper<T> implements EntityDocumentMapper<T> {
             return new IndexedField<>(delegate.getName(), delegate.getType(), updater);
         }
     }
+
+    private static final class NestedDocuments<T, V> {
+        private final String path;
+        private final Function<T, ? extends Collection<V>> provider;
+        private final List<IndexedField<V>> fields;
+
+        private NestedDocuments(String path, Function<T, ? extends Collection<V>> provider, List<IndexedField<V>> fields) {
+            this.path = path;
+            this.provider = Objects.requireNonNull(provider, "provider is null");
+            this.fields = fields;
+        }
+
+        private void addDocuments(T element, List<Document> documents) {
+            final Collection<V> values = provider.apply(element);
+            if (values == null)
+                return;
+            for (V value : values) {
+                if (value == null)
+                    continue;
+                final Document document = new Document();
+                document.add(new StringField(NESTED_FIELD, path, Field.Store.NO));
+                fields.forEach(field -> field.update(value, document));
+                documents.add(document);
+            }
+        }
+    }
 }
@@ -4,14 +4,90 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.search.SortField;
 
 import javax.print.Doc;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface DocumentMapper<T> {
 
+    /**
+     * string field of the nested documents, indexing their path
+     */
+    String NESTED_FIELD = "_nested";
+
     Document toDocument(T element);
 
+    /**
+     * @return the block of documents of an element: its nested documents, each one with a {@link #NESTED_FIELD},
+     * followed by the element document
+     */
+    default List<Document> toDocuments(T element) {
+        return List.of(toDocument(element));
+    }
+
     T toElement(Document document);
 
+    /**
+     * Create an element from a document whose stored source is older than some of its doc values fields
+     *
+     * @param overlay current values of the fields updated in place, by field name
+     */
+    default T toElement(Document document, Map<String, Object> overlay) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support in place updates");
+    }
+
+    /**
+     * @return the stored field holding the elements JSON source, null if the elements have no JSON source
+     */
+    default String getSourceField() {
+        return null;
+    }
+
+    /**
+     * Write the JSON source of an element, without creating the element
+     *
+     * @param source     the UTF-8 JSON source stored in the {@link #getSourceField()}
+     * @param overlay    current values of the fields updated in place, by field name
+     * @param properties the dot separated paths of the written properties, empty to write the whole source
+     */
+    default void writeSource(byte[] source, Map<String, Object> overlay, Set<String> properties,
+                             OutputStream outputStream) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " has no JSON source");
+    }
+
+    /**
+     * Create an element from a JSON source, as written by {@link #writeSource}
+     *
+     * @param source UTF-8 JSON source of the element, from offset to offset + length
+     */
+    default T readSource(byte[] source, int offset, int length) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " has no JSON source");
+    }
+
     IndexableFieldType getFieldType(String field);
 
+    /**
+     * @return the schema persisted and validated by the index, null if this mapper has no fixed schema
+     */
+    default IndexSchema getSchema() {
+        return null;
+    }
+
+    /**
+     * @return the suggesters built from the documents stored texts
+     */
+    default List<SuggestField> getSuggestFields() {
+        return List.of();
+    }
+
+    /**
+     * @return the paths of the nested documents, empty if the elements are indexed as a single document
+     */
+    default List<String> getNestedPaths() {
+        return List.of();
+    }
+
 }
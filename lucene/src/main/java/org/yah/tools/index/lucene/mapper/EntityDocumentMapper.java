@@ -6,4 +6,18 @@ public interface EntityDocumentMapper<T> extends DocumentMapper<T> {
 
     String getElementId(T element);
 
+    /**
+     * @return true if elements have a version checked by updates
+     */
+    default boolean isVersioned() {
+        return false;
+    }
+
+    /**
+     * @return the element version, null if the element has no version
+     */
+    default Long getElementVersion(T element) {
+        return null;
+    }
+
 }
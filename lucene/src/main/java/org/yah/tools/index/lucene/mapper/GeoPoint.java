@@ -0,0 +1,54 @@
+package org.yah.tools.index.lucene.mapper;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.lucene.geo.GeoUtils;
+
+import java.util.Objects;
+
+/**
+ * A latitude/longitude point, in decimal degrees, indexed in a BKD tree to filter and sort by distance.
+ */
+public final class GeoPoint {
+
+    private final double latitude;
+    private final double longitude;
+
+    @JsonCreator
+    public GeoPoint(@JsonProperty("latitude") double latitude, @JsonProperty("longitude") double longitude) {
+        GeoUtils.checkLatitude(latitude);
+        GeoUtils.checkLongitude(longitude);
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GeoPoint geoPoint = (GeoPoint) o;
+        return Double.compare(geoPoint.latitude, latitude) == 0 &&
+                Double.compare(geoPoint.longitude, longitude) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(latitude, longitude);
+    }
+
+    @Override
+    public String toString() {
+        return "GeoPoint{" +
+                "latitude=" + latitude +
+                ", longitude=" + longitude +
+                '}';
+    }
+}
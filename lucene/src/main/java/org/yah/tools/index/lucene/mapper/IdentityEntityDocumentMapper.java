@@ -1,6 +1,7 @@
 package org.yah.tools.index.lucene.mapper;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexableField;
 
 import java.util.Collections;
@@ -46,6 +47,22 @@ public class IdentityEntityDocumentMapper implements EntityDocumentMapper<Docume
         return document;
     }
 
+    @Override
+    public Document toElement(Document document, Map<String, Object> overlay) {
+        overlay.forEach((name, value) -> {
+            document.removeFields(name);
+            if (value instanceof String)
+                document.add(new StoredField(name, (String) value));
+            else if (value instanceof Float)
+                document.add(new StoredField(name, (Float) value));
+            else if (value instanceof Double)
+                document.add(new StoredField(name, (Double) value));
+            else
+                document.add(new StoredField(name, ((Number) value).longValue()));
+        });
+        return document;
+    }
+
     @Override
     public IndexableFieldType getFieldType(String field) {
         final IndexableFieldType type = fieldTypes.get(field);
@@ -0,0 +1,125 @@
+package org.yah.tools.index.lucene.mapper;
+
+import java.util.*;
+
+/**
+ * Immutable indexed fields types of a {@link DocumentMapper}, persisted in the index commit user data to detect
+ * mapping changes when an index is opened.
+ */
+public final class IndexSchema {
+
+    public enum Validation {
+        /**
+         * throw an IndexException when the persisted schema differs
+         */
+        FAIL,
+        /**
+         * log the schema differences and replace the persisted schema
+         */
+        WARN,
+        /**
+         * replace the persisted schema
+         */
+        IGNORE
+    }
+
+    private static final String FIELDS_KEY = "schema.fields";
+    private static final String ID_FIELD_KEY = "schema.idField";
+
+    /**
+     * @return the schema persisted in the commit user data, or null if none was persisted
+     */
+    public static IndexSchema fromUserData(Map<String, String> userData) {
+        final String fields = userData.get(FIELDS_KEY);
+        if (fields == null)
+            return null;
+        final Map<String, IndexableFieldType> fieldTypes = new LinkedHashMap<>();
+        for (String line : fields.split("\n")) {
+            if (line.isEmpty())
+                continue;
+            final int separator = line.lastIndexOf('=');
+            if (separator < 0)
+                throw new IllegalArgumentException("Invalid schema field '" + line + "'");
+            fieldTypes.put(line.substring(0, separator), IndexableFieldType.valueOf(line.substring(separator + 1)));
+        }
+        return new IndexSchema(userData.get(ID_FIELD_KEY), fieldTypes);
+    }
+
+    private final String idField;
+    private final Map<String, IndexableFieldType> fieldTypes;
+
+    /**
+     * @param fieldTypes field types, iteration order is kept
+     */
+    public IndexSchema(String idField, Map<String, IndexableFieldType> fieldTypes) {
+        this.idField = idField;
+        this.fieldTypes = Collections.unmodifiableMap(new LinkedHashMap<>(fieldTypes));
+    }
+
+    public String getIdField() {
+        return idField;
+    }
+
+    public Map<String, IndexableFieldType> getFieldTypes() {
+        return fieldTypes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the field is not in the schema
+     */
+    public IndexableFieldType getFieldType(String field) {
+        final IndexableFieldType type = fieldTypes.get(field);
+        if (type == null)
+            throw new IllegalArgumentException("field '" + field + "' was not found");
+        return type;
+    }
+
+    public Map<String, String> toUserData() {
+        final StringBuilder fields = new StringBuilder();
+        fieldTypes.forEach((name, type) -> fields.append(name).append('=').append(type.name()).append('\n'));
+        final Map<String, String> userData = new LinkedHashMap<>();
+        userData.put(FIELDS_KEY, fields.toString());
+        if (idField != null)
+            userData.put(ID_FIELD_KEY, idField);
+        return userData;
+    }
+
+    /**
+     * @return the changes from the previous schema to this one, empty if the schemas are equals
+     */
+    public List<String> diff(IndexSchema previous) {
+        final List<String> changes = new ArrayList<>();
+        if (!Objects.equals(previous.idField, idField))
+            changes.add("id field changed from " + previous.idField + " to " + idField);
+        previous.fieldTypes.forEach((name, type) -> {
+            final IndexableFieldType newType = fieldTypes.get(name);
+            if (newType == null)
+                changes.add("field " + name + " (" + type + ") removed");
+            else if (newType != type)
+                changes.add("field " + name + " type changed from " + type + " to " + newType);
+        });
+        fieldTypes.forEach((name, type) -> {
+            if (!previous.fieldTypes.containsKey(name))
+                changes.add("field " + name + " (" + type + ") added");
+        });
+        return changes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IndexSchema that = (IndexSchema) o;
+        return Objects.equals(idField, that.idField) && fieldTypes.equals(that.fieldTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(idField, fieldTypes);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexSchema{idField=" + idField + ", fieldTypes=" + fieldTypes + '}';
+    }
+}
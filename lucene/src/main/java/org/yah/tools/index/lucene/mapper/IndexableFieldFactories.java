@@ -1,6 +1,7 @@
 package org.yah.tools.index.lucene.mapper;
 
 import org.apache.lucene.document.*;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
@@ -10,8 +11,24 @@ import java.util.function.BiFunction;
 
 public class IndexableFieldFactories {
 
+    private static final FieldType TEXT_WITH_OFFSETS_TYPE = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        TEXT_WITH_OFFSETS_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_WITH_OFFSETS_TYPE.freeze();
+    }
+
     public static final IndexableFieldFactory<String> string = newFactory(IndexableFieldType.STRING, IndexableFieldFactories::stringField);
     public static final IndexableFieldFactory<String> text = newFactory(IndexableFieldType.STRING, IndexableFieldFactories::textField);
+    /**
+     * A stored text field with offsets in its postings, to highlight it without analyzing it again
+     */
+    public static final IndexableFieldFactory<String> textWithOffsets = newFactory(IndexableFieldType.STRING, IndexableFieldFactories::textFieldWithOffsets);
+
+    /**
+     * A stored only text, not indexed
+     */
+    public static final IndexableFieldFactory<String> storedString = newFactory(IndexableFieldType.STRING, StoredField::new);
 
     public static final IndexableFieldFactory<Integer> intPoint = newFactory(IndexableFieldType.INTEGER, IntPoint::new);
     public static final IndexableFieldFactory<Long> longPoint = newFactory(IndexableFieldType.LONG, LongPoint::new);
@@ -23,10 +40,28 @@ public class IndexableFieldFactories {
     public static final IndexableFieldFactory<Range<Float>> floatRange = newFactory(IndexableFieldType.INTEGER, IndexableFieldFactories::floatRange);
     public static final IndexableFieldFactory<Range<Double>> doubleRange = newFactory(IndexableFieldType.INTEGER, IndexableFieldFactories::doubleRange);
 
+    /**
+     * A point indexed in a BKD tree, matched by distance, bounding box or polygon queries
+     */
+    public static final IndexableFieldFactory<GeoPoint> geoPoint = newFactory(IndexableFieldType.GEO_POINT, IndexableFieldFactories::latLonPoint);
+    /**
+     * The doc values of a {@link #geoPoint}, to sort by distance
+     */
+    public static final IndexableFieldFactory<GeoPoint> geoPointDocValues = newFactory(IndexableFieldType.GEO_POINT, IndexableFieldFactories::latLonDocValuesField);
+
+    /**
+     * A static rank feature, named after its field, non positive values are not indexed
+     */
+    public static final IndexableFieldFactory<Number> rankFeature = newFactory(IndexableFieldType.RANK_FEATURE, IndexableFieldFactories::featureField);
+    /**
+     * A static rank feature indexing the inverse of the value, for features with a negative impact on the score
+     */
+    public static final IndexableFieldFactory<Number> inverseRankFeature = newFactory(IndexableFieldType.RANK_FEATURE, IndexableFieldFactories::inverseFeatureField);
+
     public static final IndexableFieldFactory<String> stringDocValues = newFactory(IndexableFieldType.STRING, IndexableFieldFactories::binaryDocValuesField);
-    public static final IndexableFieldFactory<Long> longDocValues = newFactory(IndexableFieldType.STRING, NumericDocValuesField::new);
-    public static final IndexableFieldFactory<Float> floatDocValues = newFactory(IndexableFieldType.STRING, FloatDocValuesField::new);
-    public static final IndexableFieldFactory<Double> doubleDocValues = newFactory(IndexableFieldType.STRING, DoubleDocValuesField::new);
+    public static final IndexableFieldFactory<Long> longDocValues = newFactory(IndexableFieldType.LONG, NumericDocValuesField::new);
+    public static final IndexableFieldFactory<Float> floatDocValues = newFactory(IndexableFieldType.FLOAT, FloatDocValuesField::new);
+    public static final IndexableFieldFactory<Double> doubleDocValues = newFactory(IndexableFieldType.DOUBLE, DoubleDocValuesField::new);
 
     public static final IndexableFieldFactory<String> sortedText = newFactory(IndexableFieldType.STRING, IndexableFieldFactories::sortedString);
     public static final IndexableFieldFactory<Integer> sortedInt = newFactory(IndexableFieldType.INTEGER, IndexableFieldFactories::sortedInt);
@@ -157,6 +192,28 @@ public class IndexableFieldFactories {
         return new TextField(name, value, Field.Store.NO);
     }
 
+    private static IndexableField textFieldWithOffsets(String name, String value) {
+        return new Field(name, value, TEXT_WITH_OFFSETS_TYPE);
+    }
+
+    private static IndexableField latLonPoint(String name, GeoPoint point) {
+        return new LatLonPoint(name, point.getLatitude(), point.getLongitude());
+    }
+
+    private static IndexableField latLonDocValuesField(String name, GeoPoint point) {
+        return new LatLonDocValuesField(name, point.getLatitude(), point.getLongitude());
+    }
+
+    private static IndexableField featureField(String name, Number value) {
+        final float feature = value.floatValue();
+        return feature > 0 ? new FeatureField(name, name, feature) : null;
+    }
+
+    private static IndexableField inverseFeatureField(String name, Number value) {
+        final float feature = value.floatValue();
+        return feature > 0 ? new FeatureField(name, name, 1 / feature) : null;
+    }
+
     private static IndexableField doubleRange(String name, Range<Double> range) {
         return new DoubleRange(name, new double[]{range.min()}, new double[]{range.max()});
     }
@@ -5,7 +5,9 @@ public enum IndexableFieldType {
     INTEGER,
     LONG,
     FLOAT,
-    DOUBLE;
+    DOUBLE,
+    GEO_POINT,
+    RANK_FEATURE;
 
     static IndexableFieldType fromClass(Class<?> type) {
         if (type == String.class) return STRING;
@@ -13,6 +15,7 @@ public enum IndexableFieldType {
         if (type == Long.class) return LONG;
         if (type == Float.class) return FLOAT;
         if (type == Double.class) return DOUBLE;
+        if (type == GeoPoint.class) return GEO_POINT;
         throw new IllegalArgumentException("No type from " + type.getName());
     }
 }
@@ -0,0 +1,55 @@
+package org.yah.tools.index.lucene.mapper;
+
+import java.util.Objects;
+
+/**
+ * A suggester built from the text of a field, see {@link org.yah.tools.index.lucene.annotations.Suggest}.
+ */
+public final class SuggestField {
+
+    /**
+     * prefix of the stored fields holding the suggested texts
+     */
+    public static final String STORED_PREFIX = "_suggest.";
+
+    private final String name;
+    private final String weightField;
+    private final boolean infix;
+
+    /**
+     * @param name        the suggester name
+     * @param weightField the numeric doc values field weighting the suggestions, null if not weighted
+     * @param infix       true to suggest texts containing a word starting with the prefix, false to suggest texts
+     *                    starting with the prefix
+     */
+    public SuggestField(String name, String weightField, boolean infix) {
+        this.name = Objects.requireNonNull(name, "name is null");
+        this.weightField = weightField;
+        this.infix = infix;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStoredField() {
+        return STORED_PREFIX + name;
+    }
+
+    public String getWeightField() {
+        return weightField;
+    }
+
+    public boolean isInfix() {
+        return infix;
+    }
+
+    @Override
+    public String toString() {
+        return "SuggestField{" +
+                "name='" + name + '\'' +
+                ", weightField='" + weightField + '\'' +
+                ", infix=" + infix +
+                '}';
+    }
+}
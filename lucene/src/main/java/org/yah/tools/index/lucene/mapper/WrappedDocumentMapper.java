@@ -2,6 +2,12 @@ package org.yah.tools.index.lucene.mapper;
 
 import org.apache.lucene.document.Document;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class WrappedDocumentMapper<T> implements EntityDocumentMapper<T> {
 
     private final DocumentMapper<T> delegate;
@@ -25,14 +31,50 @@ public class WrappedDocumentMapper<T> implements EntityDocumentMapper<T> {
         return delegate.toDocument(element);
     }
 
+    @Override
+    public List<Document> toDocuments(T element) {
+        return delegate.toDocuments(element);
+    }
+
     @Override
     public T toElement(Document document) {
         return delegate.toElement(document);
     }
 
+    @Override
+    public String getSourceField() {
+        return delegate.getSourceField();
+    }
+
+    @Override
+    public void writeSource(byte[] source, Map<String, Object> overlay, Set<String> properties,
+                            OutputStream outputStream) throws IOException {
+        delegate.writeSource(source, overlay, properties, outputStream);
+    }
+
+    @Override
+    public T readSource(byte[] source, int offset, int length) throws IOException {
+        return delegate.readSource(source, offset, length);
+    }
+
     @Override
     public IndexableFieldType getFieldType(String field) {
         return delegate.getFieldType(field);
     }
 
+    @Override
+    public IndexSchema getSchema() {
+        return delegate.getSchema();
+    }
+
+    @Override
+    public List<SuggestField> getSuggestFields() {
+        return delegate.getSuggestFields();
+    }
+
+    @Override
+    public List<String> getNestedPaths() {
+        return delegate.getNestedPaths();
+    }
+
 }
@@ -2,10 +2,29 @@ package org.yah.tools.index.lucene.mapper;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexableField;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class WrappedEntityDocumentMapper<T> implements EntityDocumentMapper<T> {
 
+    /**
+     * doc values field of the element version
+     */
+    public static final String VERSION_FIELD = "_version";
+
+    /**
+     * prefix of the fields holding the current values of the fields updated in place
+     */
+    public static final String OVERLAY_PREFIX = "_overlay.";
+
     private final EntityDocumentMapper<T> delegate;
 
     public WrappedEntityDocumentMapper(EntityDocumentMapper<T> delegate) {
@@ -22,20 +41,109 @@ public class WrappedEntityDocumentMapper<T> implements EntityDocumentMapper<T> {
         return delegate.getElementId(element);
     }
 
+    @Override
+    public boolean isVersioned() {
+        return delegate.isVersioned();
+    }
+
+    @Override
+    public Long getElementVersion(T element) {
+        return delegate.getElementVersion(element);
+    }
+
     @Override
     public Document toDocument(T element) {
         final Document document = delegate.toDocument(element);
         document.add(new StringField(getIdField(), getElementId(element), Field.Store.NO));
+        addVersion(element, document);
         return document;
     }
 
+    /**
+     * The nested documents are indexed with the element id, so that updating or deleting the element id term
+     * replaces the whole block
+     */
+    @Override
+    public List<Document> toDocuments(T element) {
+        final List<Document> documents = delegate.toDocuments(element);
+        final String id = getElementId(element);
+        documents.forEach(document -> document.add(new StringField(getIdField(), id, Field.Store.NO)));
+        addVersion(element, documents.get(documents.size() - 1));
+        return documents;
+    }
+
+    /**
+     * @return the overlaid values of a document, by field name, null if the document has no overlaid field
+     */
+    public static Map<String, Object> getOverlay(Document document) {
+        Map<String, Object> overlay = null;
+        for (IndexableField field : document) {
+            if (field.name().startsWith(OVERLAY_PREFIX)) {
+                if (overlay == null)
+                    overlay = new HashMap<>();
+                final Object value = field.numericValue() != null ? field.numericValue() : field.stringValue();
+                overlay.put(field.name().substring(OVERLAY_PREFIX.length()), value);
+            }
+        }
+        return overlay;
+    }
+
     @Override
     public T toElement(Document document) {
-        return delegate.toElement(document);
+        final Map<String, Object> overlay = getOverlay(document);
+        if (overlay == null)
+            return delegate.toElement(document);
+        overlay.keySet().forEach(name -> document.removeFields(OVERLAY_PREFIX + name));
+        return delegate.toElement(document, overlay);
+    }
+
+    @Override
+    public T toElement(Document document, Map<String, Object> overlay) {
+        return delegate.toElement(document, overlay);
+    }
+
+    @Override
+    public String getSourceField() {
+        return delegate.getSourceField();
+    }
+
+    @Override
+    public void writeSource(byte[] source, Map<String, Object> overlay, Set<String> properties,
+                            OutputStream outputStream) throws IOException {
+        delegate.writeSource(source, overlay, properties, outputStream);
+    }
+
+    @Override
+    public T readSource(byte[] source, int offset, int length) throws IOException {
+        return delegate.readSource(source, offset, length);
     }
 
     @Override
     public IndexableFieldType getFieldType(String field) {
         return delegate.getFieldType(field);
     }
+
+    @Override
+    public IndexSchema getSchema() {
+        return delegate.getSchema();
+    }
+
+    @Override
+    public List<SuggestField> getSuggestFields() {
+        return delegate.getSuggestFields();
+    }
+
+    @Override
+    public List<String> getNestedPaths() {
+        return delegate.getNestedPaths();
+    }
+
+    private void addVersion(T element, Document document) {
+        if (isVersioned()) {
+            final Long version = getElementVersion(element);
+            if (version != null)
+                document.add(new NumericDocValuesField(VERSION_FIELD, version));
+        }
+    }
+
 }
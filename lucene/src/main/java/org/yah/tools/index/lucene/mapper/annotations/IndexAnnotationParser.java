@@ -8,8 +8,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yah.tools.index.lucene.annotations.*;
 import org.yah.tools.index.lucene.mapper.DefaultDocumentMapper;
+import org.yah.tools.index.lucene.mapper.GeoPoint;
 import org.yah.tools.index.lucene.mapper.IndexableFieldFactories;
 import org.yah.tools.index.lucene.mapper.IndexableFieldFactory;
+import org.yah.tools.index.lucene.mapper.SuggestField;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
@@ -45,6 +47,10 @@ public final class IndexAnnotationParser<T> {
     private final IndexedFieldType defaultStringFieldType;
     private final ZoneOffset zoneOffset;
     private final Map<String, Class<? extends Analyzer>> analyzersClasses = new HashMap<>();
+    /**
+     * path of the nested documents parsed by this parser, null for the root documents
+     */
+    private final String nestedPath;
 
     private final LinkedList<NestedBeanSource> beanSources = new LinkedList<>();
     private AnnotatedIdSource idSource;
@@ -54,6 +60,16 @@ public final class IndexAnnotationParser<T> {
         this.analyzers = Objects.requireNonNull(builder.analyzers);
         this.defaultStringFieldType = Objects.requireNonNull(builder.defaultStringFieldType);
         this.zoneOffset = Objects.requireNonNull(builder.zoneOffset);
+        this.nestedPath = null;
+    }
+
+    private IndexAnnotationParser(IndexAnnotationParser<?> parent, DefaultDocumentMapper.Builder<T> builder,
+                                  String nestedPath) {
+        this.builder = builder;
+        this.analyzers = parent.analyzers;
+        this.defaultStringFieldType = parent.defaultStringFieldType;
+        this.zoneOffset = parent.zoneOffset;
+        this.nestedPath = nestedPath;
     }
 
     public DefaultDocumentMapper<T> parse() {
@@ -80,6 +96,7 @@ public final class IndexAnnotationParser<T> {
 
     private Stream<AnnotatedSource> createSources(AnnotatedElement element) {
         final Id id = element.getAnnotation(Id.class);
+        final Version version = element.getAnnotation(Version.class);
         final Collection<IndexedField> fields = annotationsList(element,
                 IndexedFields.class,
                 IndexedField.class,
@@ -88,6 +105,8 @@ public final class IndexAnnotationParser<T> {
                 SortedFields.class,
                 SortedField.class,
                 SortedFields::value);
+        final Suggest suggest = element.getAnnotation(Suggest.class);
+        final RankFeature rankFeature = element.getAnnotation(RankFeature.class);
 
         List<AnnotatedSource> sources = new ArrayList<>();
         if (id != null) {
@@ -99,6 +118,8 @@ public final class IndexAnnotationParser<T> {
                 sources.add(idSource);
             }
         }
+        if (version != null)
+            sources.add(new AnnotatedVersionSource(element));
 
         fields.stream()
                 .map(a -> new IndexFieldSource(element, a))
@@ -106,10 +127,16 @@ public final class IndexAnnotationParser<T> {
         sortedFields.stream()
                 .map(a -> new SortedFieldSource(element, a))
                 .forEach(sources::add);
+        if (suggest != null)
+            sources.add(new SuggestFieldSource(element, suggest));
+        if (rankFeature != null)
+            sources.add(new RankFeatureSource(element, rankFeature));
 
         if (sources.isEmpty()) {
             final Indexed indexed = element.getAnnotation(Indexed.class);
-            if (indexed != null) {
+            if (indexed != null && indexed.nested()) {
+                sources.add(new NestedDocumentsSource(element, indexed));
+            } else if (indexed != null) {
                 sources.add(new NestedBeanSource(element, indexed));
             }
         }
@@ -223,6 +250,14 @@ public final class IndexAnnotationParser<T> {
         return (IndexedFieldSource<T, ?>) res;
     }
 
+    /**
+     * @return the name of the bean or the nested documents containing the parsed fields, null for the root bean
+     */
+    private String parentFieldName() {
+        final NestedBeanSource parent = beanSources.peekLast();
+        return parent != null ? parent.fieldName : nestedPath;
+    }
+
     private static Class<?> getDeclaringClass(AnnotatedElement element) {
         return ((Member) element).getDeclaringClass();
     }
@@ -238,10 +273,10 @@ public final class IndexAnnotationParser<T> {
         private AnnotatedSource(AnnotatedElement element, String... names) {
             this.element = Objects.requireNonNull(element, "element is null");
             this.fieldSource = createFieldSource(element);
-            final NestedBeanSource parent = beanSources.peekLast();
+            final String parentFieldName = parentFieldName();
             List<String> parts = new ArrayList<>();
-            if (parent != null && parent.fieldName != null)
-                parts.add(parent.fieldName);
+            if (parentFieldName != null)
+                parts.add(parentFieldName);
             parts.add(fieldName(names));
             this.fieldName = String.join(".", parts);
         }
@@ -284,6 +319,20 @@ public final class IndexAnnotationParser<T> {
 
     }
 
+    private class AnnotatedVersionSource extends AnnotatedSource {
+        public AnnotatedVersionSource(AnnotatedElement element) {
+            super(element);
+        }
+
+        @Override
+        public void createFields() {
+            final Class<?> type = box(TypeUtils.getRawType(fieldSource.type(), null));
+            if (!Number.class.isAssignableFrom(type))
+                throw new IllegalArgumentException("version " + element + " must be a number");
+            builder.withVersion(cast(fieldSource.accessor()));
+        }
+    }
+
     private abstract class AnnotatedFieldSource extends AnnotatedSource {
 
         public AnnotatedFieldSource(AnnotatedElement element, String... names) {
@@ -321,14 +370,20 @@ public final class IndexAnnotationParser<T> {
                     mapper = Function.identity();
                 }
 
-                if (collection) {
-                    builder.withCollection(fieldName, cast(accessor), cast(mapper), fieldFactory.factory);
-                } else {
-                    builder.withNullableField(fieldName, cast(accessor.andThen(mapper)), fieldFactory.factory);
+                for (IndexableFieldFactory<?> factory : fieldFactory.factories) {
+                    if (collection) {
+                        builder.withCollection(indexedFieldName(), cast(accessor), cast(mapper), factory);
+                    } else {
+                        builder.withNullableField(indexedFieldName(), cast(accessor.andThen(mapper)), factory);
+                    }
                 }
             }
         }
 
+        protected String indexedFieldName() {
+            return fieldName;
+        }
+
         protected abstract ResolvedFieldFactory<?> createFieldFactory(Type forType, boolean collection);
 
         protected final boolean isPointType(Type type) {
@@ -395,10 +450,10 @@ public final class IndexAnnotationParser<T> {
 
         public NestedBeanSource(AnnotatedElement element, Indexed indexed) {
             super(element);
-            final NestedBeanSource parent = beanSources.peekLast();
+            final String parentFieldName = parentFieldName();
             List<String> names = new ArrayList<>();
-            if (parent != null && parent.fieldName != null)
-                names.add(parent.fieldName);
+            if (parentFieldName != null)
+                names.add(parentFieldName);
             if (!indexed.flatten())
                 names.add(fieldName(indexed.name(), indexed.value()));
             if (names.isEmpty())
@@ -420,6 +475,41 @@ public final class IndexAnnotationParser<T> {
         }
     }
 
+    /**
+     * Collection of beans indexed as nested documents, parsed by their own parser
+     */
+    private class NestedDocumentsSource extends AnnotatedSource {
+
+        public NestedDocumentsSource(AnnotatedElement element, Indexed indexed) {
+            super(element, indexed.name(), indexed.value());
+        }
+
+        @Override
+        public void createFields() {
+            if (nestedPath != null)
+                throw new IllegalArgumentException("nested documents " + fieldName + " can not be nested in " + nestedPath);
+
+            Type type = fieldSource.type();
+            Function<T, ?> accessor = fieldSource.accessor();
+            final Type componentType = TypeUtils.getArrayComponentType(type);
+            if (componentType != null) {
+                type = componentType;
+                accessor = accessor.andThen(a -> a == null ? null : Arrays.asList((Object[]) a));
+            } else if (isAssignable(type, Collection.class)) {
+                type = getFirstArgument(type, Collection.class);
+            } else {
+                throw new IllegalArgumentException("nested documents " + fieldName + " must be a collection or an array, not " + type);
+            }
+            withNestedDocuments(TypeUtils.getRawType(type, null), cast(accessor));
+        }
+
+        private <V> void withNestedDocuments(Class<V> type, Function<T, Collection<V>> accessor) {
+            final IndexAnnotationParser<V> parser = new IndexAnnotationParser<>(IndexAnnotationParser.this,
+                    DefaultDocumentMapper.builder(type), fieldName);
+            builder.withNestedDocuments(fieldName, accessor, parser.parse());
+        }
+    }
+
     private class IndexFieldSource extends AnnotatedFieldSource {
         private final IndexedField indexField;
 
@@ -432,7 +522,12 @@ public final class IndexAnnotationParser<T> {
         protected ResolvedFieldFactory<?> createFieldFactory(Type forType, boolean collection) {
             IndexedFieldType fieldType;
             if (indexField.type() == IndexedFieldType.AUTO) {
-                fieldType = isPointType(forType) ? IndexedFieldType.POINT : defaultStringFieldType;
+                if (isPointType(forType))
+                    fieldType = IndexedFieldType.POINT;
+                else if (isAssignable(forType, GeoPoint.class))
+                    fieldType = IndexedFieldType.GEO_POINT;
+                else
+                    fieldType = defaultStringFieldType;
             } else {
                 fieldType = indexField.type();
             }
@@ -443,12 +538,17 @@ public final class IndexAnnotationParser<T> {
                 putAnalyzer(fieldName, KeywordAnalyzer.class);
             }
 
+            if (indexField.offsets() && fieldType != IndexedFieldType.TEXT)
+                throw new IllegalArgumentException("offsets of field " + fieldName + " require a TEXT field, not " + fieldType);
+
             switch (fieldType) {
                 case KEYWORD:
                 case STRING:
                     return ResolvedFieldFactory.fromString(IndexableFieldFactories.string);
                 case TEXT:
-                    return ResolvedFieldFactory.fromString(IndexableFieldFactories.text);
+                    return ResolvedFieldFactory.fromString(indexField.offsets()
+                            ? IndexableFieldFactories.textWithOffsets
+                            : IndexableFieldFactories.text);
                 case POINT:
                     Class<? extends Number> numberType = numberType(forType);
                     if (numberType == null)
@@ -468,6 +568,10 @@ public final class IndexAnnotationParser<T> {
                             return ResolvedFieldFactory.fromNumber(IndexableFieldFactories.doubleDocValues);
                     }
                     throw new IllegalArgumentException("type " + forType + " can not be converted to number");
+                case GEO_POINT:
+                    if (!isAssignable(forType, GeoPoint.class))
+                        throw new IllegalArgumentException("geo point field " + fieldName + " must be a " + GeoPoint.class.getName() + ", not " + forType);
+                    return ResolvedFieldFactory.fromGeoPoint();
                 default:
                     throw new IllegalArgumentException(fieldType.toString());
             }
@@ -501,13 +605,65 @@ public final class IndexAnnotationParser<T> {
 
     }
 
+    private class SuggestFieldSource extends AnnotatedFieldSource {
+
+        private final SuggestField suggestField;
+
+        public SuggestFieldSource(AnnotatedElement element, Suggest suggest) {
+            super(element, suggest.name(), suggest.value());
+            this.suggestField = new SuggestField(fieldName, trimToNull(suggest.weightField()), suggest.infix());
+        }
+
+        @Override
+        public void createFields() {
+            builder.withSuggestField(suggestField);
+            super.createFields();
+        }
+
+        @Override
+        protected String indexedFieldName() {
+            return suggestField.getStoredField();
+        }
+
+        @Override
+        protected ResolvedFieldFactory<?> createFieldFactory(Type forType, boolean collection) {
+            if (!isAssignable(forType, String.class))
+                throw new IllegalArgumentException("suggested field " + fieldName + " must be a String, not " + forType);
+            return ResolvedFieldFactory.fromString(IndexableFieldFactories.storedString);
+        }
+
+    }
+
+    private class RankFeatureSource extends AnnotatedFieldSource {
+
+        private final boolean positiveScoreImpact;
+
+        public RankFeatureSource(AnnotatedElement element, RankFeature rankFeature) {
+            super(element, rankFeature.name(), rankFeature.value());
+            this.positiveScoreImpact = rankFeature.positiveScoreImpact();
+        }
+
+        @Override
+        protected ResolvedFieldFactory<?> createFieldFactory(Type forType, boolean collection) {
+            if (collection)
+                throw new IllegalArgumentException("rank feature " + fieldName + " can not be a collection");
+            if (numberType(forType) == null)
+                throw new IllegalArgumentException("rank feature " + fieldName + " must be a number, not " + forType);
+            return ResolvedFieldFactory.fromNumber(positiveScoreImpact
+                    ? IndexableFieldFactories.rankFeature
+                    : IndexableFieldFactories.inverseRankFeature);
+        }
+
+    }
+
     private static class ResolvedFieldFactory<V> {
         private final Class<? super V> inputType;
-        private final IndexableFieldFactory<V> factory;
+        private final List<IndexableFieldFactory<V>> factories;
 
-        private ResolvedFieldFactory(Class<? super V> inputType, IndexableFieldFactory<V> factory) {
+        @SafeVarargs
+        private ResolvedFieldFactory(Class<? super V> inputType, IndexableFieldFactory<V>... factories) {
             this.inputType = inputType;
-            this.factory = factory;
+            this.factories = List.of(factories);
         }
 
         static ResolvedFieldFactory<String> fromString(IndexableFieldFactory<String> factory) {
@@ -518,6 +674,15 @@ public final class IndexAnnotationParser<T> {
             return new ResolvedFieldFactory<>(Number.class, factory);
         }
 
+        /**
+         * the indexed point is used by the geo queries, its doc values by the distance sort
+         */
+        static ResolvedFieldFactory<GeoPoint> fromGeoPoint() {
+            return new ResolvedFieldFactory<>(GeoPoint.class,
+                    IndexableFieldFactories.geoPoint,
+                    IndexableFieldFactories.geoPointDocValues);
+        }
+
     }
 
     public static final class Builder<T> {
@@ -0,0 +1,49 @@
+package org.yah.tools.index.lucene.metrics;
+
+/**
+ * Metrics SPI, implement it to bridge index metrics to a metrics library.<br/>
+ * Methods are called from indexing and search threads, implementations must be thread safe and fast.
+ */
+public interface IndexMetrics {
+
+    IndexMetrics NOOP = new IndexMetrics() {
+    };
+
+    /**
+     * @param documents number of documents written, deleted, returned or counted by the operation
+     */
+    default void recordOperation(String index, IndexOperation operation, long durationNanos, long documents) {
+        // no op
+    }
+
+    default void recordStoredFieldsRead(String index, long bytes) {
+        // no op
+    }
+
+    /**
+     * @param references open references to the current and previous readers not yet released
+     */
+    default void recordReaderReferences(String index, int references) {
+        // no op
+    }
+
+    default void recordSegments(String index, int segments) {
+        // no op
+    }
+
+    default void recordMerge(String index, long durationNanos, int segments, long documents) {
+        // no op
+    }
+
+    /**
+     * @return true to receive lucene IndexWriter InfoStream messages of this component, this has a cost
+     */
+    default boolean isInfoStreamEnabled(String component) {
+        return false;
+    }
+
+    default void infoStreamMessage(String index, String component, String message) {
+        // no op
+    }
+
+}
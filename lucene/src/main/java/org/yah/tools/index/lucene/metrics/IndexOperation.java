@@ -0,0 +1,30 @@
+package org.yah.tools.index.lucene.metrics;
+
+public enum IndexOperation {
+    ADD,
+    UPDATE,
+    DELETE,
+    CLEAR,
+    COMMIT,
+    /**
+     * reopen of the index reader
+     */
+    REFRESH,
+    /**
+     * warm-up of new segments, before they are searched
+     */
+    WARM_UP,
+    /**
+     * search of a query result batch
+     */
+    QUERY,
+    COUNT,
+    /**
+     * stored fields loading
+     */
+    FETCH,
+    /**
+     * stored document to element conversion
+     */
+    HYDRATE
+}
@@ -0,0 +1,100 @@
+package org.yah.tools.index.lucene.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram using power of 2 nanoseconds buckets.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long durationNanos, long documents) {
+        final long nanos = Math.max(0, durationNanos);
+        buckets.incrementAndGet(bucket(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        this.documents.add(documents);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        final long count = getCount();
+        return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    /**
+     * @return documents processed per second of operation time
+     */
+    public double getDocumentsPerSecond() {
+        final long nanos = getTotalNanos();
+        return nanos == 0 ? 0 : getDocuments() / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * @param percentile [0-1]
+     * @return the upper bound of the bucket containing the percentile
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 1)
+            throw new IllegalArgumentException("percentile " + percentile + " must be in [0,1]");
+        final long count = getCount();
+        if (count == 0)
+            return 0;
+        final long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0)
+                return Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms, docs/s=%.1f",
+                getCount(),
+                millis(getMeanNanos()),
+                millis(getPercentileNanos(0.5)),
+                millis(getPercentileNanos(0.99)),
+                millis(getMaxNanos()),
+                getDocumentsPerSecond());
+    }
+
+    /**
+     * bucket i contains durations in [2^i, 2^(i+1)[, 0 is in bucket 0
+     */
+    private static int bucket(long nanos) {
+        return Math.max(0, BUCKETS - 1 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
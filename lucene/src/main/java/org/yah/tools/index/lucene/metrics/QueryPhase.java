@@ -0,0 +1,24 @@
+package org.yah.tools.index.lucene.metrics;
+
+public enum QueryPhase {
+    /**
+     * search of the skipped hits
+     */
+    SKIP,
+    /**
+     * search of the result batches
+     */
+    SEARCH,
+    /**
+     * rescoring of the first pass hits window
+     */
+    RESCORE,
+    /**
+     * stored fields loading
+     */
+    FETCH,
+    /**
+     * stored document to element conversion
+     */
+    DESERIALIZE
+}
@@ -0,0 +1,117 @@
+package org.yah.tools.index.lucene.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory {@link IndexMetrics}, for applications without metrics library or as a reference implementation.
+ */
+public class SimpleIndexMetrics implements IndexMetrics {
+
+    private final ConcurrentMap<String, IndexStats> indexStats = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordOperation(String index, IndexOperation operation, long durationNanos, long documents) {
+        stats(index).histograms.get(operation).record(durationNanos, documents);
+    }
+
+    @Override
+    public void recordStoredFieldsRead(String index, long bytes) {
+        stats(index).storedFieldsBytes.add(bytes);
+    }
+
+    @Override
+    public void recordReaderReferences(String index, int references) {
+        stats(index).readerReferences = references;
+    }
+
+    @Override
+    public void recordSegments(String index, int segments) {
+        stats(index).segments = segments;
+    }
+
+    @Override
+    public void recordMerge(String index, long durationNanos, int segments, long documents) {
+        final IndexStats stats = stats(index);
+        stats.merges.record(durationNanos, documents);
+        stats.mergedSegments.add(segments);
+    }
+
+    public Set<String> getIndexes() {
+        return Set.copyOf(indexStats.keySet());
+    }
+
+    public IndexStats getStats(String index) {
+        return stats(index);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        indexStats.forEach((index, stats) -> sb.append(index).append(System.lineSeparator()).append(stats));
+        return sb.toString();
+    }
+
+    private IndexStats stats(String index) {
+        return indexStats.computeIfAbsent(index, i -> new IndexStats());
+    }
+
+    public static final class IndexStats {
+        private final Map<IndexOperation, LatencyHistogram> histograms = new EnumMap<>(IndexOperation.class);
+        private final LongAdder storedFieldsBytes = new LongAdder();
+        private final LatencyHistogram merges = new LatencyHistogram();
+        private final LongAdder mergedSegments = new LongAdder();
+        private volatile int readerReferences;
+        private volatile int segments;
+
+        private IndexStats() {
+            for (IndexOperation operation : IndexOperation.values()) {
+                histograms.put(operation, new LatencyHistogram());
+            }
+        }
+
+        public LatencyHistogram getHistogram(IndexOperation operation) {
+            return histograms.get(operation);
+        }
+
+        public long getStoredFieldsBytes() {
+            return storedFieldsBytes.sum();
+        }
+
+        public LatencyHistogram getMerges() {
+            return merges;
+        }
+
+        public long getMergedSegments() {
+            return mergedSegments.sum();
+        }
+
+        public int getReaderReferences() {
+            return readerReferences;
+        }
+
+        public int getSegments() {
+            return segments;
+        }
+
+        @Override
+        public String toString() {
+            final String ls = System.lineSeparator();
+            final StringBuilder sb = new StringBuilder();
+            histograms.forEach((operation, histogram) -> {
+                if (histogram.getCount() > 0)
+                    sb.append("  ").append(operation).append(": ").append(histogram).append(ls);
+            });
+            sb.append("  MERGE: ").append(merges).append(", segments=").append(getMergedSegments()).append(ls);
+            sb.append("  storedFieldsBytes=").append(getStoredFieldsBytes())
+                    .append(", segments=").append(segments)
+                    .append(", readerReferences=").append(readerReferences)
+                    .append(ls);
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.yah.tools.index.lucene.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A query cursor or count that spent more than the {@link SlowQueryLog} threshold in the index.
+ */
+public final class SlowQuery {
+
+    private final String index;
+    private final String query;
+    private final String sort;
+    private final int skip;
+    private final int limit;
+    private final int batchSize;
+    private final long totalHits;
+    private final int returned;
+    private final Map<QueryPhase, Long> phaseNanos;
+
+    public SlowQuery(String index, String query, String sort,
+                     int skip, int limit, int batchSize,
+                     long totalHits, int returned,
+                     Map<QueryPhase, Long> phaseNanos) {
+        this.index = index;
+        this.query = query;
+        this.sort = sort;
+        this.skip = skip;
+        this.limit = limit;
+        this.batchSize = batchSize;
+        this.totalHits = totalHits;
+        this.returned = returned;
+        this.phaseNanos = Collections.unmodifiableMap(new EnumMap<>(phaseNanos));
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public int getSkip() {
+        return skip;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return number of elements returned by the cursor, 0 for a count
+     */
+    public int getReturned() {
+        return returned;
+    }
+
+    public long getPhaseNanos(QueryPhase phase) {
+        return phaseNanos.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * @return time spent in the index, excluding the time spent by the caller between elements
+     */
+    public long getTotalNanos() {
+        return phaseNanos.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("index=").append(index)
+                .append(" took=").append(millis(getTotalNanos())).append("ms");
+        for (QueryPhase phase : QueryPhase.values()) {
+            sb.append(' ').append(phase.name().toLowerCase()).append('=')
+                    .append(millis(getPhaseNanos(phase))).append("ms");
+        }
+        sb.append(" totalHits=").append(totalHits)
+                .append(" returned=").append(returned)
+                .append(" skip=").append(skip)
+                .append(" limit=").append(limit)
+                .append(" batchSize=").append(batchSize)
+                .append(" sort=").append(sort)
+                .append(" query=").append(query);
+        return sb.toString();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,70 @@
+package org.yah.tools.index.lucene.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log queries spending more than a threshold in the index.<br/>
+ * Only a sample of the queries is timed, so it can stay enabled under load. Override {@link #log(SlowQuery)} to
+ * send slow queries somewhere else than the slf4j logger.
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+
+    /**
+     * @param sampleRate ratio of queries timed, from 0 (none) to 1 (all)
+     */
+    public SlowQueryLog(Duration threshold, double sampleRate) {
+        Objects.requireNonNull(threshold, "threshold is null");
+        if (threshold.isNegative())
+            throw new IllegalArgumentException("threshold " + threshold + " must be >= 0");
+        if (sampleRate < 0 || sampleRate > 1)
+            throw new IllegalArgumentException("sampleRate " + sampleRate + " must be in [0, 1]");
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleRate = sampleRate;
+    }
+
+    public SlowQueryLog(Duration threshold) {
+        this(threshold, 1);
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return true if a new query must be timed
+     */
+    public boolean sample() {
+        if (sampleRate >= 1)
+            return true;
+        if (sampleRate <= 0)
+            return false;
+        return ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Called when a sampled query cursor is closed, or a sampled count is done
+     */
+    public void record(SlowQuery query) {
+        if (query.getTotalNanos() >= thresholdNanos)
+            log(query);
+    }
+
+    protected void log(SlowQuery query) {
+        LOGGER.warn("slow query {}", query);
+    }
+
+}
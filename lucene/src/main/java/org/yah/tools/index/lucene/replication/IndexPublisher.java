@@ -0,0 +1,97 @@
+package org.yah.tools.index.lucene.replication;
+
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.IndexBackup;
+import org.yah.tools.index.lucene.LuceneIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Publish the commits of a primary index to a replication directory, read by {@link IndexReplica}s.<br/>
+ * Each commit is published as a revision directory, holding hard links to (or copies of) the commit files, and the
+ * latest revision is referenced by a {@value Revision#CURRENT_FILE} file replaced atomically.
+ */
+public class IndexPublisher {
+
+    private final LuceneIndex<?> index;
+    private final Path replicationDirectory;
+    private final int keptRevisions;
+
+    /**
+     * id of the last published commit
+     */
+    private byte[] publishedId;
+
+    /**
+     * @param keptRevisions number of revisions kept in the replication directory, older revisions are deleted once
+     *                      replicas had time to copy a newer one
+     */
+    public IndexPublisher(LuceneIndex<?> index, Path replicationDirectory, int keptRevisions) {
+        this.index = Objects.requireNonNull(index);
+        this.replicationDirectory = Objects.requireNonNull(replicationDirectory);
+        if (keptRevisions < 1)
+            throw new IllegalArgumentException("keptRevisions " + keptRevisions + " must be > 0");
+        this.keptRevisions = keptRevisions;
+    }
+
+    public IndexPublisher(LuceneIndex<?> index, Path replicationDirectory) {
+        this(index, replicationDirectory, 3);
+    }
+
+    public Path getReplicationDirectory() {
+        return replicationDirectory;
+    }
+
+    /**
+     * Commit the primary index and publish the commit if it was not published yet.
+     *
+     * @return the published commit generation
+     */
+    public synchronized long publish() {
+        try {
+            Files.createDirectories(replicationDirectory);
+            final Path pending = replicationDirectory.resolve("pending_revision");
+            final IndexBackup backup = index.backupTo(pending, true);
+            final byte[] id = Revision.commitId(pending, backup.getGeneration());
+            if (Arrays.equals(id, publishedId)) {
+                Revision.delete(pending);
+                return backup.getGeneration();
+            }
+
+            final Revision current = Revision.readCurrent(replicationDirectory);
+            final Revision revision = new Revision(current == null ? 1 : current.getSequence() + 1,
+                    backup.getGeneration());
+            final Path revisionDirectory = revision.resolve(replicationDirectory);
+            Revision.delete(revisionDirectory);
+            Files.move(pending, revisionDirectory);
+            revision.writeCurrent(replicationDirectory);
+            publishedId = id;
+            deleteOldRevisions();
+            return revision.getGeneration();
+        } catch (IOException e) {
+            throw new IndexException("Error publishing index " + index.getName() + " to " + replicationDirectory, e);
+        }
+    }
+
+    private void deleteOldRevisions() throws IOException {
+        final List<Revision> revisions;
+        try (Stream<Path> stream = Files.list(replicationDirectory)) {
+            revisions = stream.map(Revision::parse)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingLong(Revision::getSequence).reversed())
+                    .collect(Collectors.toList());
+        }
+        for (Revision revision : revisions.subList(Math.min(keptRevisions, revisions.size()), revisions.size())) {
+            Revision.delete(revision.resolve(replicationDirectory));
+        }
+    }
+
+}
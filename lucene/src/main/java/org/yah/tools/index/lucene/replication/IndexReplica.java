@@ -0,0 +1,176 @@
+package org.yah.tools.index.lucene.replication;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.IndexBackup;
+import org.yah.tools.index.lucene.LuceneIndex;
+import org.yah.tools.index.lucene.directory.IndexFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Copy the revisions published by an {@link IndexPublisher} to a read only index.<br/>
+ * Only the files missing from the replica directory, or with a different checksum, are copied. The commit file is
+ * copied last so the replica readers see the new commit on their next query. Files of older commits are deleted one
+ * update later, to let open cursors complete. The replica index must not be written.<br/>
+ * A revision is installed when its commit id differs from the replica commit id, including a revision with an older
+ * generation published after the primary was restored from a backup.
+ */
+public class IndexReplica {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexReplica.class);
+
+    private final LuceneIndex<?> index;
+    private final Path replicationDirectory;
+
+    /**
+     * files of the commit replaced by the last update, kept until the next one
+     */
+    private Set<String> previousFiles;
+
+    public IndexReplica(LuceneIndex<?> index, Path replicationDirectory) {
+        this.index = Objects.requireNonNull(index);
+        if (index.isInMemory())
+            throw new IllegalArgumentException("replica index " + index.getName() + " must be stored on disk");
+        this.replicationDirectory = Objects.requireNonNull(replicationDirectory);
+        try {
+            final SegmentInfos localCommit = localCommit(index.getPath());
+            previousFiles = localCommit == null ? Set.of() : Set.copyOf(localCommit.files(true));
+        } catch (IOException e) {
+            throw new IndexException("Error reading replica " + index.getName() + " commit", e);
+        }
+    }
+
+    /**
+     * Copy the current published revision if it is not the replica commit.
+     *
+     * @return true if the replica was updated
+     */
+    public synchronized boolean update() {
+        final Path path = index.getPath();
+        try {
+            final Revision revision = Revision.readCurrent(replicationDirectory);
+            if (revision == null)
+                return false;
+
+            final Path revisionDirectory = revision.resolve(replicationDirectory);
+            final List<String> files = list(revisionDirectory);
+            files.remove(IndexBackup.MARKER_FILE);
+            final String segmentsFile = Revision.segmentsFile(revision.getGeneration());
+            if (!files.contains(segmentsFile))
+                throw new IndexException("revision " + revisionDirectory + " has no " + segmentsFile);
+            final SegmentInfos localCommit = localCommit(path);
+            if (localCommit != null
+                    && Arrays.equals(localCommit.getId(), Revision.commitId(revisionDirectory, revision.getGeneration())))
+                return false;
+
+            Files.createDirectories(path);
+            for (String file : files) {
+                if (file.equals(segmentsFile))
+                    continue;
+                final Path source = revisionDirectory.resolve(file);
+                final Path target = path.resolve(file);
+                if (IndexFiles.isCopy(target, source))
+                    continue;
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+                IOUtils.fsync(target, false);
+            }
+            final Path pendingSegments = path.resolve("pending_" + segmentsFile);
+            Files.copy(revisionDirectory.resolve(segmentsFile), pendingSegments, StandardCopyOption.REPLACE_EXISTING);
+            IOUtils.fsync(pendingSegments, false);
+            Files.move(pendingSegments, path.resolve(segmentsFile),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteNewerCommits(path, revision.getGeneration());
+            IOUtils.fsync(path, true);
+
+            deleteObsoleteFiles(path, new HashSet<>(files));
+            LOGGER.debug("replica {} updated to generation {}", index.getName(), revision.getGeneration());
+            return true;
+        } catch (IOException e) {
+            throw new IndexException("Error updating replica " + index.getName() + " from " + replicationDirectory, e);
+        }
+    }
+
+    /**
+     * Schedule {@link #update()} at fixed delay, errors are logged and retried on next update
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, Duration delay) {
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                update();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error updating replica {}", index.getName(), e);
+            }
+        }, 0, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * delete the files not used by the current and previous commits
+     */
+    private void deleteObsoleteFiles(Path path, Set<String> currentFiles) throws IOException {
+        for (String file : list(path)) {
+            if (currentFiles.contains(file) || previousFiles.contains(file) || file.equals("write.lock"))
+                continue;
+            try {
+                Files.delete(path.resolve(file));
+            } catch (IOException e) {
+                LOGGER.debug("Can not delete replica file {}", file, e);
+            }
+        }
+        previousFiles = currentFiles;
+    }
+
+    /**
+     * delete the commits of a newer generation than the installed revision, readers would open them instead of the
+     * revision commit
+     */
+    private static void deleteNewerCommits(Path path, long generation) throws IOException {
+        for (String file : list(path)) {
+            if (file.startsWith(IndexFileNames.SEGMENTS + "_")
+                    && SegmentInfos.generationFromSegmentsFileName(file) > generation)
+                Files.delete(path.resolve(file));
+        }
+    }
+
+    /**
+     * @return the latest commit of the replica, null if the replica has no commit
+     */
+    private static SegmentInfos localCommit(Path path) throws IOException {
+        if (!Files.isDirectory(path))
+            return null;
+        try (Directory directory = new NIOFSDirectory(path)) {
+            if (!DirectoryReader.indexExists(directory))
+                return null;
+            return SegmentInfos.readLatestCommit(directory);
+        }
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(Files::isRegularFile)
+                    .map(p -> p.getFileName().toString())
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.yah.tools.index.lucene.replication;
+
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.NIOFSDirectory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+/**
+ * A published commit of the primary index, stored in the replication directory.<br/>
+ * Revisions are numbered in publication order: the primary commit generation goes back when the primary is
+ * restored from a backup, so a commit is identified by its segments id, not by its generation.
+ */
+final class Revision {
+
+    static final String CURRENT_FILE = "current";
+    private static final String PREFIX = "revision_";
+
+    /**
+     * @return the revision of a revision directory, null if the path is not a revision directory
+     */
+    static Revision parse(Path path) {
+        final String name = path.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !Files.isDirectory(path))
+            return null;
+        try {
+            return new Revision(Long.parseLong(name.substring(PREFIX.length())), -1);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the current revision, null if nothing was published yet
+     */
+    static Revision readCurrent(Path replicationDirectory) throws IOException {
+        final Path current = replicationDirectory.resolve(CURRENT_FILE);
+        if (!Files.exists(current))
+            return null;
+        final String[] values = Files.readString(current, StandardCharsets.UTF_8).trim().split(" ");
+        return new Revision(Long.parseLong(values[0]), Long.parseLong(values[1]));
+    }
+
+    /**
+     * @return the id of a commit, unique to its content
+     */
+    static byte[] commitId(Path directory, long generation) throws IOException {
+        try (Directory commitDirectory = new NIOFSDirectory(directory)) {
+            return SegmentInfos.readCommit(commitDirectory, segmentsFile(generation)).getId();
+        }
+    }
+
+    static String segmentsFile(long generation) {
+        return IndexFileNames.fileNameFromGeneration(IndexFileNames.SEGMENTS, "", generation);
+    }
+
+    static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory))
+            return;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private final long sequence;
+    private final long generation;
+
+    /**
+     * @param sequence   publication number of this revision
+     * @param generation generation of the published commit
+     */
+    Revision(long sequence, long generation) {
+        this.sequence = sequence;
+        this.generation = generation;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    Path resolve(Path replicationDirectory) {
+        return replicationDirectory.resolve(PREFIX + sequence);
+    }
+
+    void writeCurrent(Path replicationDirectory) throws IOException {
+        final Path pending = replicationDirectory.resolve(CURRENT_FILE + ".pending");
+        Files.writeString(pending, sequence + " " + generation, StandardCharsets.UTF_8);
+        Files.move(pending, replicationDirectory.resolve(CURRENT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
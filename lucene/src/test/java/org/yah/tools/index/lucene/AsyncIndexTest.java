@@ -0,0 +1,170 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+import org.yah.tools.index.query.AsyncIndexCursor;
+import org.yah.tools.index.query.IndexCursor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class AsyncIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndex<TestEntity> index;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factory(temporaryFolder);
+        index = factory.buildInMemoryIndex(TestEntity.class);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+        executor.shutdown();
+    }
+
+    @Test
+    public void writesAndReadsOnTheExecutor() throws Exception {
+        final List<TestEntity> entities = TestIndexes.entities(42, 10);
+        index.asyncWriter().add(entities).get();
+        index.asyncWriter().update(entities.subList(0, 3)).get();
+        index.asyncWriter().delete(entities.get(5).getId()).get();
+
+        assertThat(index.asyncReader().count().get(), is(9));
+        assertThat(index.asyncReader().find(entities.get(2).getId()).get().get().getLastName(),
+                is(entities.get(2).getLastName()));
+        assertThat(index.asyncReader().find(entities.get(5).getId()).get().isPresent(), is(false));
+    }
+
+    @Test
+    public void deliversBatchesInRequestOrder() throws Exception {
+        final ListCursor cursor = new ListCursor(IntStream.range(0, 100).boxed().collect(Collectors.toList()), -1);
+        try (AsyncIndexCursor<Integer> asyncCursor = new AsyncIndexCursor<>(cursor, executor, 30)) {
+            final List<CompletableFuture<List<Integer>>> batches = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                batches.add(asyncCursor.nextBatch());
+            }
+            final List<Integer> elements = new ArrayList<>();
+            for (CompletableFuture<List<Integer>> batch : batches) {
+                elements.addAll(batch.get(10, TimeUnit.SECONDS));
+            }
+            assertThat(elements, is(cursor.elements));
+            assertThat(batches.get(3).get(), hasSize(10));
+            assertThat(batches.get(4).get(), empty());
+        }
+    }
+
+    @Test
+    public void failsOnlyTheFailedBatch() throws Exception {
+        final ListCursor cursor = new ListCursor(IntStream.range(0, 10).boxed().collect(Collectors.toList()), 5);
+        try (AsyncIndexCursor<Integer> asyncCursor = new AsyncIndexCursor<>(cursor, executor, 5)) {
+            final CompletableFuture<List<Integer>> first = asyncCursor.nextBatch();
+            final CompletableFuture<List<Integer>> failed = asyncCursor.nextBatch();
+            final CompletableFuture<List<Integer>> next = asyncCursor.nextBatch();
+            assertThat(first.get(10, TimeUnit.SECONDS), contains(0, 1, 2, 3, 4));
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+            assertThat(e.getCause().getMessage(), is("element 5 failed"));
+            assertThat(next.get(10, TimeUnit.SECONDS), contains(5, 6, 7, 8, 9));
+        }
+    }
+
+    @Test
+    public void closesAfterThePendingBatch() throws Exception {
+        final ListCursor cursor = new ListCursor(List.of(1, 2, 3), -1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AsyncIndexCursor<Integer> asyncCursor = new AsyncIndexCursor<>(cursor, task -> executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.run();
+        }), 2);
+        final CompletableFuture<List<Integer>> batch = asyncCursor.nextBatch();
+        asyncCursor.close();
+        assertThat(cursor.closed, is(false));
+
+        release.countDown();
+        assertThat(batch.get(10, TimeUnit.SECONDS), contains(1, 2));
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!cursor.closed && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(cursor.closed, is(true));
+    }
+
+    /**
+     * cursor over a list, failing once when reaching an element
+     */
+    private static final class ListCursor implements IndexCursor<Integer> {
+        private final List<Integer> elements;
+        private final Iterator<Integer> iterator;
+        private int failure;
+        private int position;
+        private volatile boolean closed;
+
+        private ListCursor(List<Integer> elements, int failure) {
+            this.elements = elements;
+            this.iterator = elements.iterator();
+            this.failure = failure;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Integer next() {
+            if (position == failure) {
+                failure = -1;
+                throw new IllegalStateException("element " + position + " failed");
+            }
+            position++;
+            return iterator.next();
+        }
+
+        @Override
+        public Stream<Integer> stream() {
+            return elements.stream();
+        }
+
+        @Override
+        public long getTotalHits() {
+            return elements.size();
+        }
+
+        @Override
+        public long getMinTotalHits() {
+            return elements.size();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
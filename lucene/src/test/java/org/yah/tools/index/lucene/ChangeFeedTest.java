@@ -0,0 +1,133 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.IndexChange.Operation;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ChangeFeedTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndex.Builder<TestEntity> builder;
+    private List<TestEntity> entities;
+
+    @Before
+    public void setUp() throws Exception {
+        builder = TestIndexes.builder(temporaryFolder, TestEntity.class).withPath(temporaryFolder.newFolder().toPath());
+        entities = TestIndexes.entities(31, 10);
+    }
+
+    @Test
+    public void pollsChangesAfterRestart() {
+        try (LuceneIndex<TestEntity> index = builder.withChangeFeed(1000).build()) {
+            final long addSeqNo = index.writer().add(entities);
+            final long updateSeqNo = index.writer().update(entities.get(0));
+            assertThat(updateSeqNo, greaterThan(addSeqNo));
+            index.writer().delete(List.of(entities.get(1).getId(), entities.get(2).getId()));
+            assertThat(index.reader().count(), is(entities.size() - 2));
+
+            final List<IndexChange> changes = index.changeFeed().poll(0, 100);
+            assertThat(changes, hasSize(13));
+            assertThat(changes.get(10), is(new IndexChange(11, Operation.INDEX, entities.get(0).getId())));
+            assertThat(changes.get(12), is(new IndexChange(13, Operation.DELETE, entities.get(2).getId())));
+            assertThat(index.changeFeed().poll(0, 5), hasSize(5));
+        }
+
+        try (LuceneIndex<TestEntity> index = builder.withChangeFeed(1000).build()) {
+            assertThat(index.reader().count(), is(entities.size() - 2));
+            assertThat(index.changeFeed().poll(11, 100).stream().map(IndexChange::getOperation)
+                    .collect(Collectors.toList()), contains(Operation.DELETE, Operation.DELETE));
+            assertThat(index.changeFeed().getSequence(), is(13L));
+
+            index.writer().delete(index.reader().prepareQuery().withTerm("id", entities.get(3).getId()).build());
+            assertThat(index.changeFeed().poll(13, 100),
+                    contains(new IndexChange(14, Operation.DELETE, entities.get(3).getId())));
+            index.writer().clear();
+            assertThat(index.changeFeed().poll(14, 100), contains(new IndexChange(15, Operation.CLEAR, null)));
+            assertThat(index.changeFeed().poll(0, 100), hasSize(15));
+            assertThat(index.reader().count(), is(0));
+        }
+    }
+
+    @Test
+    public void pollsChangesByPages() {
+        try (LuceneIndex<TestEntity> index = builder.withChangeFeed(1000).build()) {
+            // each poll flushes a new segment
+            for (TestEntity entity : entities) {
+                index.writer().add(entity);
+                index.changeFeed().poll(0, 1);
+            }
+            index.writer().update(entities.get(0));
+            index.writer().delete(entities.get(1).getId());
+
+            final List<Long> sequences = new ArrayList<>();
+            long checkpoint = 0;
+            List<IndexChange> changes;
+            while (!(changes = index.changeFeed().poll(checkpoint, 3)).isEmpty()) {
+                assertThat(changes.size(), lessThanOrEqualTo(3));
+                changes.forEach(change -> sequences.add(change.getSequence()));
+                checkpoint = sequences.get(sequences.size() - 1);
+            }
+            assertThat(sequences, contains(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L));
+        }
+    }
+
+    @Test
+    public void subscriptionReceivesNewChanges() throws Exception {
+        try (LuceneIndex<TestEntity> index = builder.withChangeFeed(1000).build()) {
+            index.writer().add(entities.subList(0, 5));
+            final List<IndexChange> received = new CopyOnWriteArrayList<>();
+            try (ChangeFeed.Subscription subscription = index.changeFeed().subscribe(3, received::add)) {
+                index.writer().add(entities.subList(5, 10));
+                final long deadline = System.currentTimeMillis() + 5000;
+                while (subscription.getSequence() < 10 && System.currentTimeMillis() < deadline)
+                    Thread.sleep(10);
+                assertThat(received.stream().map(IndexChange::getSequence).collect(Collectors.toList()),
+                        contains(4L, 5L, 6L, 7L, 8L, 9L, 10L));
+            }
+        }
+    }
+
+    @Test
+    public void keepsChangesBeforeClear() {
+        try (LuceneIndex<TestEntity> index = builder.withChangeFeed(1000).build()) {
+            index.writer().add(entities);
+            index.writer().delete(entities.get(1).getId());
+            final long clearSeqNo = index.writer().clear();
+            assertThat(index.reader().count(), is(0));
+            index.writer().add(entities.get(1));
+            assertThat(clearSeqNo, greaterThan(0L));
+        }
+
+        try (LuceneIndex<TestEntity> index = builder.withChangeFeed(1000).build()) {
+            assertThat(index.reader().count(), is(1));
+            final List<IndexChange> changes = index.changeFeed().poll(0, 100);
+            assertThat(changes.stream().map(IndexChange::getSequence).collect(Collectors.toList()),
+                    contains(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L));
+            assertThat(changes.get(11), is(new IndexChange(12, Operation.CLEAR, null)));
+            assertThat(changes.get(12), is(new IndexChange(13, Operation.INDEX, entities.get(1).getId())));
+        }
+    }
+
+    @Test(expected = IndexException.class)
+    public void rejectsCheckpointOutOfRetention() {
+        try (LuceneIndex<TestEntity> index = builder.withChangeFeed(5).build()) {
+            index.writer().add(entities);
+            index.changeFeed().poll(2, 100);
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package org.yah.tools.index.lucene;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.lucene.annotations.SortedField;
+import org.yah.tools.index.lucene.mapper.DefaultDocumentMapper;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+import org.yah.tools.index.query.IndexSort;
+import org.yah.tools.index.query.IndexSort.IndexSortDirection;
+import org.yah.tools.index.query.IndexSort.IndexSortField;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ExportTest {
+
+    private static final int PRODUCTS = 2500;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Product> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 3);
+        index = factory.buildInMemoryIndex(Product.class);
+        index.writer().add(products());
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void exportsStoredSources() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertThat(index.exportTo(IndexQuery.ALL, Set.of(), outputStream), is((long) PRODUCTS));
+
+        final List<Product> exported = parse(outputStream).stream()
+                .map(ExportTest::toProduct)
+                .collect(Collectors.toList());
+        assertThat(exported, hasSize(PRODUCTS));
+        assertThat(exported.get(42).getName(), is("product 42"));
+        assertThat(exported.get(42).getPrice(), is(42 % 100));
+    }
+
+    @Test
+    public void exportsSortedAndProjectedHits() {
+        final IndexQuery query = index.reader().prepareQuery()
+                .withRange("price", 50, null, Occur.FILTER)
+                .sort(new IndexSort(IndexSortField.property("price", IndexSortDirection.DESC)))
+                .skip(5)
+                .limit(1200)
+                .build();
+        final List<String> expected = index.reader().list(query).stream()
+                .map(Product::getId)
+                .collect(Collectors.toList());
+        assertThat(expected, hasSize(1200));
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertThat(index.exportTo(query, Set.of("id", "price"), Channels.newChannel(outputStream)), is(1200L));
+        final List<JsonNode> exported = parse(outputStream);
+        assertThat(exported.stream().map(node -> node.get("id").asText()).collect(Collectors.toList()),
+                is(expected));
+        assertThat(exported.get(0).has("name"), is(false));
+        assertThat(exported.get(0).get("price").asInt(), is(99));
+    }
+
+    @Test
+    public void exportsOverlaidFields() {
+        index.writer().updateFields("3", Map.of("stock", 12L));
+        final IndexQuery query = index.reader().prepareQuery().withTerm("id", "3").build();
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        index.exportTo(query, Set.of(), outputStream);
+        final Product product = toProduct(parse(outputStream).get(0));
+        assertThat(product.getStock(), is(12L));
+        assertThat(product.getName(), is("product 3"));
+    }
+
+    @Test
+    public void exportsShards() {
+        try (ShardedLuceneIndex<Product> shardedIndex = factory.buildShardedIndex(Product.class)) {
+            shardedIndex.writer().add(products());
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            assertThat(shardedIndex.exportTo(IndexQuery.ALL, Set.of(), outputStream), is((long) PRODUCTS));
+            assertThat(parse(outputStream).stream().map(node -> node.get("id").asText()).distinct().count(),
+                    is((long) PRODUCTS));
+
+            final IndexQuery sorted = shardedIndex.reader().prepareQuery()
+                    .sort(new IndexSort(IndexSortField.property("price", IndexSortDirection.ASC)))
+                    .build();
+            outputStream = new ByteArrayOutputStream();
+            shardedIndex.exportTo(sorted, Set.of("price"), outputStream);
+            final List<Integer> prices = parse(outputStream).stream()
+                    .map(node -> node.get("price").asInt())
+                    .collect(Collectors.toList());
+            assertThat(prices, hasSize(PRODUCTS));
+            final List<Integer> sortedPrices = new ArrayList<>(prices);
+            sortedPrices.sort(Integer::compare);
+            assertThat(prices, is(sortedPrices));
+        }
+    }
+
+    private static List<JsonNode> parse(ByteArrayOutputStream outputStream) {
+        final String ndjson = outputStream.toString(StandardCharsets.UTF_8);
+        assertThat(ndjson, endsWith("\n"));
+        return Arrays.stream(ndjson.split("\n"))
+                .map(line -> {
+                    try {
+                        return DefaultDocumentMapper.DEFAULT_OBJECT_MAPPER.readTree(line);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static Product toProduct(JsonNode node) {
+        try {
+            return DefaultDocumentMapper.DEFAULT_OBJECT_MAPPER.treeToValue(node, Product.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Product> products() {
+        final List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new Product(Integer.toString(i), "product " + i, i % 100, i % 10));
+        }
+        return products;
+    }
+
+    @Index(name = "products")
+    public static class Product {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.KEYWORD)
+        private String name;
+
+        @IndexedField
+        @SortedField
+        private int price;
+
+        @IndexedField(type = IndexedFieldType.DOC_VALUES)
+        private long stock;
+
+        public Product() {
+        }
+
+        Product(String id, String name, int price, long stock) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.stock = stock;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getPrice() {
+            return price;
+        }
+
+        public void setPrice(int price) {
+            this.price = price;
+        }
+
+        public long getStock() {
+            return stock;
+        }
+
+        public void setStock(long stock) {
+            this.stock = stock;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+import org.yah.tools.index.query.IndexQueryBuilder.TermOccur;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class FuzzySearchTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Book> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 2);
+        index = factory.buildInMemoryIndex(Book.class);
+        index.writer().add(books());
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void matchesFuzzyTerms() {
+        assertThat(ids(index.reader().prepareQuery().withFuzzyTerm("title", "hobit", Occur.MUST).build()),
+                contains("1"));
+        assertThat(ids(index.reader().prepareQuery()
+                        .withFuzzyTerms("title", "Lord Rigns", Occur.MUST, TermOccur.MUST)
+                        .build()),
+                contains("2"));
+        // the first letter is not fuzzy
+        assertThat(ids(index.reader().prepareQuery().withFuzzyTerm("title", "gobbit", Occur.MUST).build()),
+                empty());
+        assertThat(ids(index.reader().prepareQuery()
+                        .withFuzzyTerm("title", "gobbit", Occur.MUST, 2, 0, 10, 1)
+                        .build()),
+                contains("1"));
+    }
+
+    @Test
+    public void boundsParsedFuzzyQueries() {
+        assertThat(ids(index.reader().prepareQuery().withQuery("title", "hobit~").build()), contains("1"));
+        assertThat(ids(index.reader().prepareQuery().withQuery("title", "gobbit~").build()), empty());
+    }
+
+    @Test
+    public void correctsMisspelledWords() {
+        assertThat(index.reader().didYouMean("title", "The Lord of the Rigns"), is(Optional.of("The Lord of the rings")));
+        assertThat(index.reader().didYouMean("title", "hobbit"), is(Optional.empty()));
+
+        try (ShardedLuceneIndex<Book> shardedIndex = factory.buildShardedIndex(Book.class)) {
+            shardedIndex.writer().add(books());
+            assertThat(shardedIndex.reader().didYouMean("title", "silmarilion hobit"),
+                    is(Optional.of("silmarillion hobbit")));
+        }
+    }
+
+    private List<String> ids(IndexQuery query) {
+        return index.reader().list(query).stream().map(Book::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static List<Book> books() {
+        return List.of(new Book("1", "The Hobbit"),
+                new Book("2", "The Lord of the Rings"),
+                new Book("3", "The Silmarillion"));
+    }
+
+    @Index(name = "books")
+    public static class Book {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.TEXT)
+        private String title;
+
+        public Book() {
+        }
+
+        Book(String id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.EntityIndex;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.mapper.GeoPoint;
+import org.yah.tools.index.query.IndexQueryBuilder;
+import org.yah.tools.index.query.IndexSort;
+import org.yah.tools.index.query.IndexSort.IndexSortField;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class GeoSearchTest {
+
+    // Paris
+    private static final double LATITUDE = 48.8566;
+    private static final double LONGITUDE = 2.3522;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Store> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 2);
+        index = factory.buildInMemoryIndex(Store.class);
+        index.writer().add(stores());
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void filtersByDistance() {
+        assertThat(ids(index, index.reader().prepareQuery()
+                        .withGeoDistance("location", LATITUDE, LONGITUDE, 150_000)),
+                containsInAnyOrder("paris", "versailles", "reims"));
+        assertThat(ids(index, index.reader().prepareQuery()
+                        .withGeoDistance("location", LATITUDE, LONGITUDE, 30_000)),
+                containsInAnyOrder("paris", "versailles"));
+    }
+
+    @Test
+    public void filtersByShape() {
+        assertThat(ids(index, index.reader().prepareQuery()
+                        .withGeoBoundingBox("location", 45, 46, 4, 6)),
+                contains("lyon"));
+        // a triangle around Paris, Reims and Lyon, excluding Marseille
+        assertThat(ids(index, index.reader().prepareQuery()
+                        .withGeoPolygon("location",
+                                new double[]{49.5, 49.5, 44.5, 49.5},
+                                new double[]{1.5, 4.5, 5.5, 1.5})),
+                containsInAnyOrder("paris", "versailles", "reims", "lyon"));
+    }
+
+    @Test
+    public void sortsByDistance() {
+        final IndexSort sort = new IndexSort(IndexSortField.distance("location", LATITUDE, LONGITUDE));
+        final List<String> expected = List.of("paris", "versailles", "reims", "lyon", "marseille");
+        assertThat(ids(index, index.reader().prepareQuery().sort(sort)), is(expected));
+
+        try (ShardedLuceneIndex<Store> shardedIndex = factory.buildShardedIndex(Store.class)) {
+            shardedIndex.writer().add(stores());
+            assertThat(ids(shardedIndex, shardedIndex.reader().prepareQuery().sort(sort)), is(expected));
+            assertThat(ids(shardedIndex, shardedIndex.reader().prepareQuery()
+                            .withGeoDistance("location", LATITUDE, LONGITUDE, 150_000)
+                            .sort(sort)),
+                    is(expected.subList(0, 3)));
+        }
+    }
+
+    private static List<String> ids(EntityIndex<Store> index, IndexQueryBuilder queryBuilder) {
+        return index.reader().list(queryBuilder.build()).stream()
+                .map(Store::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Store> stores() {
+        return List.of(new Store("marseille", new GeoPoint(43.2965, 5.3698)),
+                new Store("reims", new GeoPoint(49.2583, 4.0317)),
+                new Store("paris", new GeoPoint(48.8606, 2.3376)),
+                new Store("lyon", new GeoPoint(45.7640, 4.8357)),
+                new Store("versailles", new GeoPoint(48.8049, 2.1204)));
+    }
+
+    @Index(name = "stores")
+    public static class Store {
+        @Id
+        private String id;
+
+        @IndexedField
+        private GeoPoint location;
+
+        public Store() {
+        }
+
+        Store(String id, GeoPoint location) {
+            this.id = id;
+            this.location = location;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public GeoPoint getLocation() {
+            return location;
+        }
+
+        public void setLocation(GeoPoint location) {
+            this.location = location;
+        }
+    }
+}
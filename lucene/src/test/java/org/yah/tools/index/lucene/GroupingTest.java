@@ -0,0 +1,180 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.EntityIndex;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.lucene.annotations.SortedField;
+import org.yah.tools.index.query.IndexGroup;
+import org.yah.tools.index.query.IndexGroups;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder;
+import org.yah.tools.index.query.IndexSort;
+import org.yah.tools.index.query.IndexSort.IndexSortDirection;
+import org.yah.tools.index.query.IndexSort.IndexSortField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class GroupingTest {
+
+    private static final IndexSort PRICE_SORT = new IndexSort(IndexSortField.property("price", IndexSortDirection.ASC));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Offer> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 3);
+        index = factory.buildInMemoryIndex(Offer.class);
+        index.writer().add(offers());
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void collapsesOnSortedField() {
+        verifyGroups(index);
+    }
+
+    @Test
+    public void collapsesShards() {
+        try (ShardedLuceneIndex<Offer> shardedIndex = factory.buildShardedIndex(Offer.class)) {
+            shardedIndex.writer().add(offers());
+            verifyGroups(shardedIndex);
+        }
+    }
+
+    @Test
+    public void rejectsCollapsedCursors() {
+        final IndexQuery query = index.reader().prepareQuery().collapse("seller").build();
+        assertThrows(IllegalArgumentException.class, () -> index.reader().list(query));
+        assertThrows(IllegalArgumentException.class, () -> index.reader().groupedList(IndexQuery.ALL));
+        assertThrows(IllegalArgumentException.class, () -> index.reader().prepareQuery().collapse("price"));
+        assertThat(index.reader().count(), is(12));
+    }
+
+    @Test
+    public void limitsGroupsOfUnlimitedQueries() {
+        final List<Offer> offers = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            offers.add(new Offer("seller" + i, "seller" + i, i));
+        }
+        index.writer().add(offers);
+        final IndexGroups<Offer> groups = index.reader().groupedList(query(index).collapse("seller").build());
+        assertThat(groups.getTotalGroups(), is(19));
+        assertThat(groups.getGroups(), hasSize(QueryGrouping.DEFAULT_GROUPS));
+        assertThat(index.reader().groupedList(query(index).collapse("seller").limit(15).build()).getGroups(),
+                hasSize(15));
+    }
+
+    private static void verifyGroups(EntityIndex<Offer> index) {
+        // top hit per seller, groups sorted by their cheapest offer
+        IndexGroups<Offer> groups = index.reader().groupedList(query(index).collapse("seller").build());
+        assertThat(groups.getTotalHits(), is(12L));
+        assertThat(groups.getTotalGroups(), is(4));
+        assertThat(values(groups), contains("c", "a", "d", "b"));
+        assertThat(groups.getGroups().stream().map(g -> g.getTopElement().getElement().getPrice())
+                .collect(Collectors.toList()), contains(1, 2, 3, 5));
+        assertThat(groups.getGroups().stream().map(IndexGroup::getTotalHits)
+                .collect(Collectors.toList()), contains(2L, 3L, 3L, 4L));
+
+        // top 2 per seller, paged
+        groups = index.reader().groupedList(query(index).collapse("seller", 2).skip(1).limit(2).build());
+        assertThat(groups.getTotalGroups(), is(4));
+        assertThat(values(groups), contains("a", "d"));
+        assertThat(groups.getGroups().get(0).getElements().stream()
+                .map(e -> e.getElement().getPrice())
+                .collect(Collectors.toList()), contains(2, 6));
+
+        groups = index.reader().groupedList(query(index).withTerm("seller", "b").collapse("seller", 10).build());
+        assertThat(values(groups), contains("b"));
+        assertThat(groups.getGroups().get(0).getElements(), hasSize(4));
+
+        groups = index.reader().groupedList(query(index).collapse("seller").skip(10).build());
+        assertThat(groups.getGroups(), empty());
+        assertThat(groups.getTotalHits(), is(12L));
+    }
+
+    private static IndexQueryBuilder query(EntityIndex<Offer> index) {
+        return index.reader().prepareQuery().sort(PRICE_SORT);
+    }
+
+    private static List<String> values(IndexGroups<Offer> groups) {
+        return groups.getGroups().stream().map(IndexGroup::getValue).collect(Collectors.toList());
+    }
+
+    private static List<Offer> offers() {
+        final int[][] prices = {{2, 6, 9}, {5, 7, 8, 12}, {1, 10}, {3, 4, 11}};
+        final List<Offer> offers = new ArrayList<>();
+        for (int seller = 0; seller < prices.length; seller++) {
+            for (int price : prices[seller]) {
+                offers.add(new Offer(Integer.toString(offers.size()), String.valueOf((char) ('a' + seller)), price));
+            }
+        }
+        return offers;
+    }
+
+    @Index(name = "offers")
+    public static class Offer {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.KEYWORD)
+        @SortedField
+        private String seller;
+
+        @SortedField
+        private int price;
+
+        public Offer() {
+        }
+
+        Offer(String id, String seller, int price) {
+            this.id = id;
+            this.seller = seller;
+            this.price = price;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getSeller() {
+            return seller;
+        }
+
+        public void setSeller(String seller) {
+            this.seller = seller;
+        }
+
+        public int getPrice() {
+            return price;
+        }
+
+        public void setPrice(int price) {
+            this.price = price;
+        }
+    }
+}
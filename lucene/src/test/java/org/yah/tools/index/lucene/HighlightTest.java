@@ -0,0 +1,129 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.ScoredElement;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class HighlightTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Article> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 2);
+        index = factory.buildInMemoryIndex(Article.class);
+        index.writer().add(articles());
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void highlightsBestPassages() {
+        final IndexQuery query = index.reader().prepareQuery()
+                .withTerms("body", "fox")
+                .highlight(Set.of("body"), 2)
+                .build();
+        final List<ScoredElement<Article>> results = index.reader().scoredList(query);
+        assertThat(results, hasSize(2));
+
+        final ScoredElement<Article> first = results.stream()
+                .filter(e -> e.getElement().getId().equals("1"))
+                .findFirst().orElseThrow();
+        assertThat(first.getHighlights("body"), contains(
+                "The quick brown <b>fox</b> jumps over the lazy dog.",
+                "A <b>fox</b> is not a dog."));
+        assertThat(first.getHighlights("title"), empty());
+    }
+
+    @Test
+    public void shardedIndexHighlights() {
+        try (ShardedLuceneIndex<Article> shardedIndex = factory.buildShardedIndex(Article.class)) {
+            shardedIndex.writer().add(articles());
+            final IndexQuery query = shardedIndex.reader().prepareQuery()
+                    .withTerms("body", "cat")
+                    .highlight("body")
+                    .build();
+            final List<ScoredElement<Article>> results = shardedIndex.reader().scoredList(query);
+            assertThat(results, hasSize(1));
+            assertThat(results.get(0).getHighlights("body"), contains("The <b>cat</b> sleeps."));
+        }
+    }
+
+    @Test
+    public void noHighlightsByDefault() {
+        final IndexQuery query = index.reader().prepareQuery().withTerms("body", "fox").build();
+        index.reader().scoredList(query).forEach(e -> assertThat(e.getHighlights().isEmpty(), is(true)));
+    }
+
+    private static List<Article> articles() {
+        return List.of(new Article("1", "Foxes", "The quick brown fox jumps over the lazy dog. Nothing else happens. A fox is not a dog."),
+                new Article("2", "Cats", "The cat sleeps. It does not care about the fox."),
+                new Article("3", "Dogs", "The dog barks."));
+    }
+
+    @Index(name = "articles")
+    public static class Article {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.KEYWORD)
+        private String title;
+
+        @IndexedField(type = IndexedFieldType.TEXT, offsets = true)
+        private String body;
+
+        public Article() {
+        }
+
+        Article(String id, String title, String body) {
+            this.id = id;
+            this.title = title;
+            this.body = body;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public void setBody(String body) {
+            this.body = body;
+        }
+    }
+}
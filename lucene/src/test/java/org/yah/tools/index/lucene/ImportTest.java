@@ -0,0 +1,181 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.Index.ProgressCallback;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.ExportTest.Product;
+import org.yah.tools.index.lucene.IndexImport.LineError;
+import org.yah.tools.index.query.IndexQuery;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class ImportTest {
+
+    private static final int PRODUCTS = 100_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Product> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder);
+        index = factory.buildIndex(Product.class);
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void importsAllChunks() throws IOException {
+        final Path file = temporaryFolder.newFile().toPath();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < PRODUCTS; i++) {
+                writer.write("{\"id\":\"" + i + "\",\"name\":\"product " + i + "\",\"price\":" + (i % 100) + "}\n");
+            }
+        }
+        assertThat(Files.size(file), greaterThan(4L * 1024 * 1024));
+
+        final Progress progress = new Progress();
+        final IndexImport result = index.importFrom(file, progress);
+        assertThat(result.getLines(), is((long) PRODUCTS));
+        assertThat(result.getImportedElements(), is((long) PRODUCTS));
+        assertThat(result.getErrors(), empty());
+        final long chunks = (Files.size(file) + SourceImporter.CHUNK_SIZE - 1) / SourceImporter.CHUNK_SIZE;
+        assertThat(progress.expected, is(chunks + 1));
+        assertThat(progress.completed.get(), is(chunks + 1));
+
+        assertThat(index.reader().count(), is(PRODUCTS));
+        final IndexQuery query = index.reader().prepareQuery().withTerm("id", "54321").build();
+        assertThat(index.reader().list(query).get(0).getName(), is("product 54321"));
+    }
+
+    @Test
+    public void reportsErrorLines() throws IOException {
+        final Path file = temporaryFolder.newFile().toPath();
+        Files.writeString(file, "{\"id\":\"1\",\"name\":\"a\",\"price\":1}\r\n" +
+                "\n" +
+                "{\"id\":\"2\",\"name\":\"b\",\"price\":\n" +
+                "  \n" +
+                "{\"id\":\"3\",\"name\":\"c\",\"price\":\"three\"}\n" +
+                "{\"id\":\"4\",\"name\":\"d\",\"price\":4}", StandardCharsets.UTF_8);
+
+        final IndexImport result = index.importFrom(file, null);
+        assertThat(result.getLines(), is(6L));
+        assertThat(result.getImportedElements(), is(2L));
+        assertThat(result.getErrors().stream().map(LineError::getLine).collect(Collectors.toList()),
+                contains(3L, 5L));
+        assertThat(index.reader().list(IndexQuery.ALL).stream().map(Product::getId).collect(Collectors.toList()),
+                containsInAnyOrder("1", "4"));
+    }
+
+    @Test
+    public void numbersErrorLinesAcrossChunks() throws IOException {
+        final Path file = temporaryFolder.newFile().toPath();
+        Files.writeString(file, "{\"id\":\"1\",\"name\":\"a\",\"price\":1}\n" +
+                "\n" +
+                "{\"id\":\"2\",\"name\":\"b\",\"price\":\n" +
+                "{\"id\":\"3\",\"name\":\"c\",\"price\":3}\n" +
+                "{\"id\":\"4\",\"name\":\"d\",\"price\":\"four\"}\n" +
+                "\n", StandardCharsets.UTF_8);
+
+        // chunks smaller than the lines: most chunks do not contain a line start
+        final IndexImport result = SourceImporter.importFrom((LuceneIndexWriter<Product>) index.writer(),
+                index.getDocumentMapper(), ForkJoinPool.commonPool(), file, null, 7);
+        assertThat(result.getLines(), is(6L));
+        assertThat(result.getImportedElements(), is(2L));
+        assertThat(result.getErrors().stream().map(LineError::getLine).collect(Collectors.toList()),
+                contains(3L, 5L));
+        assertThat(index.reader().list(IndexQuery.ALL).stream().map(Product::getId).collect(Collectors.toList()),
+                containsInAnyOrder("1", "3"));
+    }
+
+    @Test
+    public void rollsBackAbortedImport() throws IOException {
+        final Path file = temporaryFolder.newFile().toPath();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write("{\"id\":\"" + i + "\",\"name\":\"product " + i + "\",\"price\":" + i + "}\n");
+            }
+        }
+        final ProgressCallback failingProgress = new Progress() {
+            @Override
+            public void addCompleted() {
+                if (completed.incrementAndGet() == 3)
+                    throw new IllegalStateException("progress failed");
+            }
+        };
+
+        final IndexException e = assertThrows(IndexException.class, () -> SourceImporter.importFrom(
+                (LuceneIndexWriter<Product>) index.writer(), index.getDocumentMapper(), ForkJoinPool.commonPool(),
+                file, failingProgress, 512));
+        assertThat(e.getMessage(), allOf(startsWith("Error importing " + file), containsString("chunk at offset"),
+                containsString("progress failed")));
+        assertThat(index.reader().count(), is(0));
+
+        index.writer().add(new Product("100", "product 100", 100, 0));
+        ((LuceneIndexWriter<Product>) index.writer()).commit();
+        assertThat(index.reader().list(IndexQuery.ALL).stream().map(Product::getId).collect(Collectors.toList()),
+                contains("100"));
+    }
+
+    @Test
+    public void importsExportedSources() throws IOException {
+        final List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            products.add(new Product(Integer.toString(i), "product " + i, i, i % 10));
+        }
+        index.writer().add(products);
+        final Path file = temporaryFolder.newFile().toPath();
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            index.exportTo(IndexQuery.ALL, Set.of(), outputStream);
+        }
+
+        try (LuceneIndex<Product> target = factory.buildInMemoryIndex(Product.class)) {
+            final IndexImport result = target.importFrom(file, ProgressCallback.NOOP);
+            assertThat(result.getImportedElements(), is(100L));
+            final IndexQuery query = target.reader().prepareQuery().withTerm("id", "42").build();
+            final Product product = target.reader().list(query).get(0);
+            assertThat(product.getPrice(), is(42));
+            assertThat(product.getStock(), is(2L));
+        }
+    }
+
+    private static class Progress implements ProgressCallback {
+        private volatile long expected;
+        final AtomicLong completed = new AtomicLong();
+
+        @Override
+        public void setExpected(long expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public void addCompleted() {
+            completed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.lucene.annotations.Suggest;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class IndexSuggesterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndex<Product> index;
+
+    @Before
+    public void setUp() throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factory(temporaryFolder);
+        index = factory.buildInMemoryIndex(Product.class);
+        index.writer().add(List.of(new Product("1", "Quick brown fox", 10),
+                new Product("2", "Quiet keyboard", 50),
+                new Product("3", "Red fox plush", 30),
+                new Product("4", "Keyboard cover", 5)));
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void suggestsPrefixesByWeight() {
+        assertThat(texts(index.suggester().suggest("name", "qui", 5)), contains("Quiet keyboard", "Quick brown fox"));
+        assertThat(index.suggester().suggest("name", "qui", 1).get(0).getWeight(), is(50L));
+        assertThat(index.suggester().suggest("name", "fox", 5), empty());
+    }
+
+    @Test
+    public void suggestsInfixes() {
+        assertThat(texts(index.suggester().suggest("keywords", "fox", 5)), contains("Red fox plush", "Quick brown fox"));
+        assertThat(texts(index.suggester().suggest("keywords", "key", 5)), contains("Quiet keyboard", "Keyboard cover"));
+    }
+
+    @Test
+    public void rebuildsAfterWrites() {
+        assertThat(index.suggester().suggest("name", "sil", 5), empty());
+        index.writer().add(new Product("5", "Silent keyboard", 100));
+        index.writer().delete("2");
+        index.suggester().refresh();
+        assertThat(texts(index.suggester().suggest("name", "sil", 5)), contains("Silent keyboard"));
+        assertThat(texts(index.suggester().suggest("keywords", "keyb", 5)), contains("Silent keyboard", "Keyboard cover"));
+    }
+
+    @Test
+    public void rebuildsAfterCommit() throws Exception {
+        assertThat(index.suggester().suggest("name", "sil", 5), empty());
+        index.writer().add(new Product("5", "Silent keyboard", 100));
+        ((LuceneIndexWriter<Product>) index.writer()).commit();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (index.suggester().suggest("name", "sil", 5).isEmpty() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(texts(index.suggester().suggest("name", "sil", 5)), contains("Silent keyboard"));
+    }
+
+    @Test
+    public void rebuildsAfterWeightUpdate() throws Exception {
+        assertThat(index.suggester().suggest("name", "qui", 1).get(0).getWeight(), is(50L));
+        index.writer().updateFields("1", Map.of("popularity", 80L));
+        ((LuceneIndexWriter<Product>) index.writer()).commit();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (index.suggester().suggest("name", "qui", 1).get(0).getWeight() != 80L && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(texts(index.suggester().suggest("name", "qui", 5)), contains("Quick brown fox", "Quiet keyboard"));
+    }
+
+    @Test
+    public void forgetsSuggestionsOfRestoredIndex() throws Exception {
+        final Path backup = temporaryFolder.newFolder().toPath();
+        index.backupTo(backup, false);
+        index.writer().add(new Product("5", "Silent keyboard", 100));
+        index.suggester().refresh();
+        assertThat(texts(index.suggester().suggest("name", "sil", 5)), contains("Silent keyboard"));
+
+        index.restoreFrom(backup);
+        assertThat(index.suggester().suggest("name", "sil", 5), empty());
+        assertThat(texts(index.suggester().suggest("name", "qui", 5)), contains("Quiet keyboard", "Quick brown fox"));
+    }
+
+    @Test
+    public void analyzesWithTheIndexAnalyzer() {
+        try (LuceneIndex<Product> caseSensitiveIndex = LuceneIndex.builder(new WhitespaceAnalyzer(), index.getDocumentMapper())
+                .inMemory()
+                .build()) {
+            caseSensitiveIndex.writer().add(List.of(new Product("1", "Quick brown fox", 10),
+                    new Product("2", "quiet keyboard", 50)));
+            assertThat(texts(caseSensitiveIndex.suggester().suggest("name", "Qui", 5)), contains("Quick brown fox"));
+            assertThat(texts(caseSensitiveIndex.suggester().suggest("name", "qui", 5)), contains("quiet keyboard"));
+        }
+    }
+
+    @Test
+    public void rejectsTextWeightField() throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factory(temporaryFolder);
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> factory.buildInMemoryIndex(TextWeightProduct.class));
+        assertThat(e.getMessage(), startsWith("weight field category"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsLookupsOnceClosed() {
+        index.suggester().suggest("name", "qui", 5);
+        index.close();
+        index.suggester().suggest("name", "qui", 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownSuggester() {
+        index.suggester().suggest("description", "qui", 5);
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getText).collect(Collectors.toList());
+    }
+
+    @Index(name = "text_weight_products")
+    public static class TextWeightProduct {
+        @Id
+        public String id;
+
+        @Suggest(weightField = "category")
+        public String name;
+
+        @IndexedField(type = IndexedFieldType.DOC_VALUES)
+        public String category;
+    }
+
+    @Index(name = "products")
+    public static class Product {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.TEXT)
+        @Suggest(weightField = "popularity")
+        private String name;
+
+        @IndexedField(type = IndexedFieldType.DOC_VALUES)
+        private long popularity;
+
+        public Product() {
+        }
+
+        Product(String id, String name, long popularity) {
+            this.id = id;
+            this.name = name;
+            this.popularity = popularity;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Suggest(name = "keywords", weightField = "popularity", infix = true)
+        public String getKeywords() {
+            return name;
+        }
+
+        public long getPopularity() {
+            return popularity;
+        }
+
+        public void setPopularity(long popularity) {
+            this.popularity = popularity;
+        }
+    }
+}
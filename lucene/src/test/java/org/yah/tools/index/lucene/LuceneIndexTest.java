@@ -0,0 +1,274 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+import org.yah.tools.index.query.AsyncIndexCursor;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+import org.yah.tools.index.query.IndexQueryTemplate;
+import org.yah.tools.index.query.IndexSort;
+import org.yah.tools.index.query.IndexSort.IndexSortDirection;
+import org.yah.tools.index.query.IndexSort.IndexSortField;
+import org.yah.tools.index.query.SearchRequest;
+import org.yah.tools.index.query.SearchResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class LuceneIndexTest {
+
+    private static final int ENTITIES = 200;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path indexesDirectory;
+    private LuceneIndexFactory factory;
+    private LuceneIndex<TestEntity> index;
+    private List<TestEntity> entities;
+
+    @Before
+    public void setUp() throws Exception {
+        indexesDirectory = temporaryFolder.newFolder().toPath();
+        factory = LuceneIndexFactory.builder(indexesDirectory).build();
+        index = factory.buildInMemoryIndex(TestEntity.class);
+
+        entities = TestIndexes.entities(123456789, ENTITIES);
+        index.writer().add(entities);
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void inMemoryIndex() {
+        assertThat(index.isInMemory(), is(true));
+        assertThat(index.getPath(), nullValue());
+        assertThat(index.reader().count(), is(ENTITIES));
+
+        final TestEntity entity = entities.get(42);
+        assertThat(index.reader().get(entity.getId()).getFullName(), is(entity.getFullName()));
+
+        index.writer().delete(entity.getId());
+        assertThat(index.reader().find(entity.getId()).isPresent(), is(false));
+    }
+
+    @Test
+    public void multiSearch() {
+        final IndexQuery sorted = index.reader().prepareQuery()
+                .sort(new IndexSort(IndexSortField.property("sortedName", IndexSortDirection.ASC)))
+                .limit(10)
+                .build();
+        final List<SearchRequest> requests = List.of(
+                SearchRequest.count(IndexQuery.ALL),
+                SearchRequest.list(sorted),
+                SearchRequest.first(sorted),
+                SearchRequest.scoredList(sorted),
+                SearchRequest.count(new IndexQuery() {
+                    @Override
+                    public IndexSort getSort() {
+                        return null;
+                    }
+
+                    @Override
+                    public int getLimit() {
+                        return 0;
+                    }
+
+                    @Override
+                    public int getSkip() {
+                        return 0;
+                    }
+
+                    @Override
+                    public Set<String> getProjection() {
+                        return Set.of();
+                    }
+                }));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (List<SearchResult<TestEntity>> results : List.of(index.reader().multiSearch(requests),
+                    index.reader().multiSearch(requests, executor))) {
+                assertThat(results, hasSize(requests.size()));
+                assertThat(results.get(0).getCount(), is(ENTITIES));
+                assertThat(results.get(1).getList(), hasSize(10));
+                assertThat(results.get(2).getFirst().orElseThrow().getId(), is(results.get(1).getList().get(0).getId()));
+                assertThat(results.get(3).getScoredList(), hasSize(10));
+                assertThat(results.get(4).isFailed(), is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void asyncReaderAndWriter() throws Exception {
+        final TestEntity entity = entities.get(7);
+        index.asyncWriter().delete(entity.getId()).get();
+        assertThat(index.asyncReader().count().get(), is(ENTITIES - 1));
+        assertThat(index.asyncReader().find(entity.getId()).get().isPresent(), is(false));
+
+        final List<TestEntity> all = new ArrayList<>();
+        try (AsyncIndexCursor<TestEntity> cursor = index.asyncReader().query(IndexQuery.ALL, 30).get()) {
+            List<TestEntity> batch;
+            while (!(batch = cursor.nextBatch().get()).isEmpty()) {
+                assertThat(batch.size(), lessThanOrEqualTo(30));
+                all.addAll(batch);
+            }
+        }
+        assertThat(all, hasSize(ENTITIES - 1));
+    }
+
+    @Test
+    public void queryTemplateMatchesQueryBuilder() {
+        final IndexQueryTemplate template = index.reader().prepareTemplate()
+                .withQueryParameter(null, "text", Occur.MUST)
+                .withRangeParameter("theSize", "minSize", "maxSize", Occur.FILTER)
+                .withTermParameter("firstName", "firstName", Occur.MUST)
+                .build();
+
+        final IndexQuery expected = index.reader().prepareQuery()
+                .withQuery(null, "nestedBean1.text:(ale beer)", Occur.MUST)
+                .withRange("theSize", 10, 50, Occur.FILTER)
+                .build();
+        final IndexQuery bound = template.bind()
+                .set("text", "nestedBean1.text:(ale beer)")
+                .set("minSize", 10)
+                .set("maxSize", 50)
+                .build();
+        assertThat(index.reader().count(expected), greaterThan(0));
+        assertThat(index.reader().count(bound), is(index.reader().count(expected)));
+
+        final TestEntity entity = entities.get(3);
+        final List<TestEntity> byFirstName = index.reader().list(template.bind()
+                .set("firstName", entity.getFirstName())
+                .build());
+        assertThat(byFirstName, not(empty()));
+        assertThat(byFirstName, everyItem(hasProperty("firstName", is(entity.getFirstName()))));
+
+        assertThat(index.reader().count(template.bind().build()), is(ENTITIES));
+    }
+
+    @Test
+    public void incrementalBackupAndRestore() throws Exception {
+        final Path backup = temporaryFolder.newFolder().toPath();
+        try (LuceneIndex<TestEntity> diskIndex = factory.buildIndex(TestEntity.class)) {
+            diskIndex.writer().add(entities);
+            final IndexBackup fullBackup = diskIndex.backupTo(backup, false);
+            assertThat(fullBackup.getCopiedFiles(), is(fullBackup.getFiles().size()));
+            assertThat(fullBackup.getReusedFiles(), is(0));
+
+            diskIndex.writer().add(TestEntity.randomEntity(new Random(1)));
+            final IndexBackup incrementalBackup = diskIndex.backupTo(backup, false);
+            assertThat(incrementalBackup.getGeneration(), greaterThan(fullBackup.getGeneration()));
+            assertThat(incrementalBackup.getReusedFiles(), greaterThan(0));
+
+            final IndexBackup linkedBackup = diskIndex.backupTo(temporaryFolder.newFolder().toPath(), true);
+            assertThat(linkedBackup.getLinkedFiles() + linkedBackup.getCopiedFiles(), is(linkedBackup.getFiles().size()));
+
+            diskIndex.writer().clear();
+            assertThat(diskIndex.reader().count(), is(0));
+            diskIndex.restoreFrom(backup);
+            assertThat(diskIndex.reader().count(), is(ENTITIES + 1));
+        }
+
+        index.restoreFrom(backup);
+        assertThat(index.reader().count(), is(ENTITIES + 1));
+    }
+
+    @Test
+    public void restoreRejectsADirectoryWithoutIndex() throws Exception {
+        final Path backup = temporaryFolder.newFolder().toPath();
+        Files.writeString(backup.resolve("notes.txt"), "not an index");
+        try (LuceneIndex<TestEntity> diskIndex = factory.buildIndex(TestEntity.class)) {
+            diskIndex.writer().add(entities);
+            assertThrows(IllegalArgumentException.class, () -> diskIndex.restoreFrom(backup));
+            assertThat(diskIndex.reader().count(), is(ENTITIES));
+        }
+        assertThrows(IllegalArgumentException.class, () -> index.restoreFrom(backup));
+        assertThat(index.reader().count(), is(ENTITIES));
+    }
+
+    @Test
+    public void backupComparesFileChecksums() throws Exception {
+        final Path backup = temporaryFolder.newFolder().toPath();
+        try (LuceneIndex<TestEntity> diskIndex = factory.buildIndex(TestEntity.class)) {
+            diskIndex.writer().add(entities);
+            final IndexBackup fullBackup = diskIndex.backupTo(backup, false);
+
+            // same name and length, different content
+            final Path file = backup.resolve(fullBackup.getFiles().get(0));
+            final byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(file, bytes);
+
+            final IndexBackup nextBackup = diskIndex.backupTo(backup, false);
+            assertThat(nextBackup.getCopiedFiles(), is(2));
+            assertThat(nextBackup.getReusedFiles(), is(fullBackup.getFiles().size() - 2));
+        }
+    }
+
+    @Test
+    public void refusesBackupToANonBackupDirectory() throws Exception {
+        final Path target = temporaryFolder.newFolder().toPath();
+        Files.writeString(target.resolve("notes.txt"), "keep me");
+        try (LuceneIndex<TestEntity> diskIndex = factory.buildIndex(TestEntity.class)) {
+            diskIndex.writer().add(entities);
+            assertThrows(IllegalArgumentException.class, () -> diskIndex.backupTo(target, false));
+        }
+        assertThat(Files.exists(target.resolve("notes.txt")), is(true));
+    }
+
+    @Test
+    public void snapshotAndLoad() {
+        final Path snapshot = indexesDirectory.resolve("test");
+        index.snapshotTo(snapshot);
+
+        try (LuceneIndex<TestEntity> diskIndex = factory.buildIndex(TestEntity.class)) {
+            assertThat(diskIndex.getPath(), is(snapshot));
+            assertThat(diskIndex.reader().count(), is(ENTITIES));
+            diskIndex.writer().delete(entities.get(0).getId());
+        }
+
+        try (LuceneIndex<TestEntity> loadedIndex = factory.loadInMemoryIndex(TestEntity.class)) {
+            assertThat(loadedIndex.isInMemory(), is(true));
+            assertThat(loadedIndex.reader().count(), is(ENTITIES - 1));
+        }
+    }
+
+    @Test
+    public void snapshotReplacesPreviousSnapshotOnly() throws Exception {
+        final Path snapshot = indexesDirectory.resolve("snapshot");
+        index.snapshotTo(snapshot);
+        index.writer().delete(entities.get(0).getId());
+        index.snapshotTo(snapshot);
+        try (LuceneIndex<TestEntity> snapshotIndex = TestIndexes.builder(index)
+                .inMemory(snapshot)
+                .build()) {
+            assertThat(snapshotIndex.reader().count(), is(ENTITIES - 1));
+        }
+
+        final Path directory = Files.createDirectories(indexesDirectory.resolve("documents"));
+        Files.writeString(directory.resolve("notes.txt"), "not an index");
+        assertThrows(IllegalArgumentException.class, () -> index.snapshotTo(directory));
+        assertThat(Files.exists(directory.resolve("notes.txt")), is(true));
+    }
+
+}
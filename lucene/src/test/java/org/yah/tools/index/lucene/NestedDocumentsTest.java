@@ -0,0 +1,217 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.EntityIndex;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.Indexed;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class NestedDocumentsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Order> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 2);
+        index = factory.buildInMemoryIndex(Order.class);
+        index.writer().add(orders());
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void matchesFieldsOfTheSameNestedElement() {
+        verifyJoins(index);
+    }
+
+    @Test
+    public void matchesNestedElementsOfShards() {
+        try (ShardedLuceneIndex<Order> shardedIndex = factory.buildShardedIndex(Order.class)) {
+            shardedIndex.writer().add(orders());
+            verifyJoins(shardedIndex);
+        }
+    }
+
+    @Test
+    public void replacesNestedDocuments() {
+        index.writer().update(new Order("2", "b", new LineItem("Z", 3)));
+        assertThat(index.reader().count(), is(4));
+        assertThat(ids(index, itemQuery(index, "X", 5)), empty());
+        assertThat(ids(index, itemQuery(index, "Z", 0)), contains("2"));
+
+        index.writer().delete("1");
+        assertThat(ids(index, itemQuery(index, "Y", 0)), contains("3"));
+
+        // orphan nested documents would be joined to the next block parent
+        index.writer().delete(index.reader().prepareQuery().withTerm("customer", "c").build());
+        assertThat(index.reader().count(), is(2));
+        assertThat(ids(index, itemQuery(index, "Y", 0)), empty());
+        assertThat(ids(index, IndexQuery.ALL), containsInAnyOrder("2", "4"));
+    }
+
+    @Test
+    public void replacesNestedDocumentsWithChangeFeed() {
+        try (LuceneIndex<Order> feedIndex = TestIndexes.builder(index)
+                .inMemory()
+                .withChangeFeed(100)
+                .build()) {
+            feedIndex.writer().add(orders());
+            feedIndex.writer().update(new Order("1", "a", new LineItem("X", 7)));
+            assertThat(ids(feedIndex, itemQuery(feedIndex, "X", 5)), containsInAnyOrder("1", "2"));
+            assertThat(ids(feedIndex, itemQuery(feedIndex, "Y", 0)), contains("3"));
+
+            feedIndex.writer().delete(feedIndex.reader().prepareQuery().withTerm("customer", "c").build());
+            assertThat(ids(feedIndex, itemQuery(feedIndex, "Y", 0)), empty());
+            assertThat(feedIndex.reader().count(), is(3));
+        }
+    }
+
+    @Test
+    public void rejectsUnknownNestedPath() {
+        final IndexQuery nestedQuery = index.reader().prepareQuery().withTerm("items.sku", "X").build();
+        assertThrows(IllegalArgumentException.class,
+                () -> index.reader().prepareQuery().withNested("customer", nestedQuery, Occur.MUST));
+    }
+
+    private static void verifyJoins(EntityIndex<Order> index) {
+        assertThat(index.reader().count(), is(4));
+        final List<Order> orders = index.reader().list(IndexQuery.ALL);
+        assertThat(orders, hasSize(4));
+        assertThat(orders.stream().mapToInt(o -> o.getItems().size()).sum(), is(4));
+
+        // both clauses must be matched by the same line item
+        assertThat(ids(index, itemQuery(index, "X", 5)), contains("2"));
+        assertThat(ids(index, itemQuery(index, "Y", 0)), containsInAnyOrder("1", "3"));
+
+        final IndexQuery flattened = index.reader().prepareQuery()
+                .withNested("items", index.reader().prepareQuery().withTerm("items.sku", "X").build(), Occur.MUST)
+                .withNested("items", index.reader().prepareQuery().withRange("items.qty", 6, null).build(), Occur.MUST)
+                .build();
+        assertThat(ids(index, flattened), containsInAnyOrder("1", "2"));
+
+        // nested fields are not matched by the parent documents
+        assertThat(index.reader().count(index.reader().prepareQuery().withTerm("items.sku", "X", Occur.MUST).build()),
+                is(0));
+        assertThat(index.reader().count(index.reader().prepareQuery().withTerm("customer", "d", Occur.MUST).build()),
+                is(1));
+    }
+
+    private static IndexQuery itemQuery(EntityIndex<Order> index, String sku, int minQty) {
+        final IndexQuery itemQuery = index.reader().prepareQuery()
+                .withTerm("items.sku", sku, Occur.MUST)
+                .withRange("items.qty", minQty + 1, null, Occur.MUST)
+                .build();
+        return index.reader().prepareQuery().withNested("items", itemQuery, Occur.MUST).build();
+    }
+
+    private static List<String> ids(EntityIndex<Order> index, IndexQuery query) {
+        return index.reader().list(query).stream().map(Order::getId).collect(Collectors.toList());
+    }
+
+    private static List<Order> orders() {
+        return List.of(new Order("1", "a", new LineItem("X", 1), new LineItem("Y", 10)),
+                new Order("2", "b", new LineItem("X", 8)),
+                new Order("3", "c", new LineItem("Y", 2)),
+                new Order("4", "d"));
+    }
+
+    @Index(name = "orders")
+    public static class Order {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.KEYWORD)
+        private String customer;
+
+        @Indexed(nested = true)
+        private List<LineItem> items = new ArrayList<>();
+
+        public Order() {
+        }
+
+        Order(String id, String customer, LineItem... items) {
+            this.id = id;
+            this.customer = customer;
+            this.items = List.of(items);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getCustomer() {
+            return customer;
+        }
+
+        public void setCustomer(String customer) {
+            this.customer = customer;
+        }
+
+        public List<LineItem> getItems() {
+            return items;
+        }
+
+        public void setItems(List<LineItem> items) {
+            this.items = items;
+        }
+    }
+
+    public static class LineItem {
+        @IndexedField(type = IndexedFieldType.KEYWORD)
+        private String sku;
+
+        @IndexedField
+        private int qty;
+
+        public LineItem() {
+        }
+
+        LineItem(String sku, int qty) {
+            this.sku = sku;
+            this.qty = qty;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public void setSku(String sku) {
+            this.sku = sku;
+        }
+
+        public int getQty() {
+            return qty;
+        }
+
+        public void setQty(int qty) {
+            this.qty = qty;
+        }
+    }
+}
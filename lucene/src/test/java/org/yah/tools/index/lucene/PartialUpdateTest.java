@@ -0,0 +1,151 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class PartialUpdateTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder);
+    }
+
+    @Test
+    public void overlaysUpdatedDocValues() {
+        try (LuceneIndex<Post> index = factory.buildIndex(Post.class)) {
+            index.writer().add(new Post("a", "first post", 1, 0.5));
+            index.writer().add(new Post("b", "second post", 3, 1.5));
+            index.writer().updateFields("a", Map.of("likes", 42L, "score", 2.5));
+
+            final Post post = index.reader().get("a");
+            assertThat(post.getTitle(), is("first post"));
+            assertThat(post.getLikes(), is(42L));
+            assertThat(post.getScore(), is(2.5));
+            assertThat(index.reader().get("b").getLikes(), is(3L));
+        }
+
+        // overlaid fields are persisted with the commit
+        try (LuceneIndex<Post> index = factory.buildIndex(Post.class)) {
+            assertThat(index.reader().get("a").getLikes(), is(42L));
+
+            index.writer().update(new Post("a", "edited post", 7, 0));
+            assertThat(index.reader().get("a").getLikes(), is(7L));
+            assertThat(index.reader().get("a").getTitle(), is("edited post"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFieldsWithoutDocValues() {
+        try (LuceneIndex<Post> index = factory.buildInMemoryIndex(Post.class)) {
+            index.writer().add(new Post("a", "first post", 1, 0.5));
+            index.writer().updateFields("a", Map.of("title", "new title"));
+        }
+    }
+
+    @Test
+    public void convertsValuesToTheMappedTypes() {
+        try (LuceneIndex<Post> index = factory.buildInMemoryIndex(Post.class)) {
+            index.writer().add(new Post("a", "first post", 1, 0.5));
+            index.writer().updateFields("a", Map.of("score", 42, "likes", 5));
+            assertThat(index.reader().get("a").getScore(), is(42.0));
+            assertThat(index.reader().get("a").getLikes(), is(5L));
+
+            assertThrows(IllegalArgumentException.class, () -> index.writer().updateFields("a", Map.of("likes", 2.5)));
+            assertThrows(IllegalArgumentException.class, () -> index.writer().updateFields("a", Map.of("score", "high")));
+            index.writer().updateFields("a", Map.of("score", 1.5));
+            assertThat(index.reader().get("a").getScore(), is(1.5));
+        }
+    }
+
+    @Test
+    public void rejectsMissingElementsWithChangeFeed() {
+        try (LuceneIndex<Post> template = factory.buildInMemoryIndex(Post.class);
+             LuceneIndex<Post> index = TestIndexes.builder(template)
+                     .inMemory()
+                     .withChangeFeed(100)
+                     .build()) {
+            index.writer().add(new Post("a", "first post", 1, 0.5));
+            final long sequence = index.changeFeed().getSequence();
+            assertThrows(IndexException.class, () -> index.writer().updateFields("b", Map.of("likes", 2L)));
+            assertThat(index.changeFeed().getSequence(), is(sequence));
+
+            index.writer().updateFields("a", Map.of("likes", 2L));
+            assertThat(index.changeFeed().getSequence(), is(sequence + 1));
+        }
+    }
+
+    @Index(name = "posts")
+    public static class Post {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.KEYWORD)
+        private String title;
+
+        @IndexedField(type = IndexedFieldType.DOC_VALUES)
+        private long likes;
+
+        @IndexedField(type = IndexedFieldType.DOC_VALUES)
+        private double score;
+
+        public Post() {
+        }
+
+        Post(String id, String title, long likes, double score) {
+            this.id = id;
+            this.title = title;
+            this.likes = likes;
+            this.score = score;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public long getLikes() {
+            return likes;
+        }
+
+        public void setLikes(long likes) {
+            this.likes = likes;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+    }
+}
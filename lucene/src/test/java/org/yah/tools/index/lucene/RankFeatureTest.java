@@ -0,0 +1,132 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.lucene.annotations.RankFeature;
+import org.yah.tools.index.query.IndexQueryBuilder;
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class RankFeatureTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndex<Article> index;
+
+    @Before
+    public void setUp() throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factory(temporaryFolder);
+        index = factory.buildInMemoryIndex(Article.class);
+        index.writer().add(List.of(
+                new Article("1", "lucene scoring", 10, 300),
+                new Article("2", "lucene scoring", 5000, 200),
+                new Article("3", "lucene scoring", 200, 1),
+                new Article("4", "lucene indexing", 0, 10),
+                new Article("5", "database indexing", 100000, 1)));
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void boostsByRankFeatures() {
+        assertThat(ids(query().withRankFeature("popularity")), contains("2", "3", "1", "4"));
+        assertThat(ids(query().withRankFeature("popularity", 1, 100)), contains("2", "3", "1", "4"));
+        assertThat(ids(query().withLogRankFeature("popularity", 1, 1)), contains("2", "3", "1", "4"));
+        // age has a negative impact
+        assertThat(ids(query().withSigmoidRankFeature("age", 1, 0.1f, 1)), contains("3", "4", "2", "1"));
+    }
+
+    @Test
+    public void rankFeaturesOnlyChangeScores() {
+        assertThat(index.reader().count(index.reader().prepareQuery().withRankFeature("popularity").build()), is(5));
+        assertThat(index.reader().count(query().withRankFeature("popularity", 10).build()), is(4));
+        assertThrows(IllegalArgumentException.class, () -> query().withRankFeature("title"));
+    }
+
+    private IndexQueryBuilder query() {
+        return index.reader().prepareQuery().withTerms("title", "lucene", Occur.MUST);
+    }
+
+    private List<String> ids(IndexQueryBuilder queryBuilder) {
+        return index.reader().list(queryBuilder.build()).stream()
+                .map(Article::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Index(name = "articles")
+    public static class Article {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.TEXT)
+        private String title;
+
+        @RankFeature
+        private int popularity;
+
+        /**
+         * in days
+         */
+        @RankFeature(positiveScoreImpact = false)
+        private int age;
+
+        public Article() {
+        }
+
+        Article(String id, String title, int popularity, int age) {
+            this.id = id;
+            this.title = title;
+            this.popularity = popularity;
+            this.age = age;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public int getPopularity() {
+            return popularity;
+        }
+
+        public void setPopularity(int popularity) {
+            this.popularity = popularity;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.EntityIndex;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.lucene.annotations.SortedField;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexQueryBuilder;
+import org.yah.tools.index.query.IndexQueryBuilder.Occur;
+import org.yah.tools.index.query.IndexSort;
+import org.yah.tools.index.query.ScoredElement;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class RescoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<Post> index;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 2);
+        index = factory.buildInMemoryIndex(Post.class);
+        index.writer().add(posts());
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void rescoresWithQuery() {
+        assertThat(ids(index, query(index)).get(0), not("3"));
+        final IndexQuery phrase = index.reader().prepareQuery().withPhrase("title", "engine search", Occur.MUST, 0).build();
+        final List<String> ids = ids(index, query(index).rescore(10, phrase, 1, 10));
+        assertThat(ids, hasSize(5));
+        assertThat(ids.get(0), is("3"));
+    }
+
+    @Test
+    public void rescoresWithDocValuesFunction() {
+        // the window is the top 3 hits by relevance, the post 5 is out of it
+        final IndexQueryBuilder query = query(index).rescore(3, "likes", (score, likes) -> likes);
+        assertThat(ids(index, query), contains("3", "1", "2"));
+        assertThat(index.reader().scoredList(query.build()).stream().map(ScoredElement::getScore)
+                .collect(Collectors.toList()), contains(30f, 20f, 10f));
+        assertThat(ids(index, query(index).rescore(3, "likes", (score, likes) -> likes).skip(1).limit(1)),
+                contains("1"));
+
+        assertThrows(IllegalArgumentException.class, () -> query(index).rescore(3, "title", (score, likes) -> likes));
+        assertThrows(IllegalArgumentException.class, () -> query(index)
+                .rescore(3, "likes", (score, likes) -> likes)
+                .sort(IndexSort.indexOrder())
+                .build());
+    }
+
+    @Test
+    public void rescoresShards() {
+        try (ShardedLuceneIndex<Post> shardedIndex = factory.buildShardedIndex(Post.class)) {
+            shardedIndex.writer().add(posts());
+            final IndexQueryBuilder query = query(shardedIndex).rescore(10, "likes", (score, likes) -> likes);
+            assertThat(ids(shardedIndex, query), contains("5", "3", "1", "2", "4"));
+            assertThat(ids(shardedIndex, query(shardedIndex).rescore(10, "likes", (score, likes) -> likes).skip(3)),
+                    contains("2", "4"));
+        }
+    }
+
+    private static IndexQueryBuilder query(EntityIndex<Post> index) {
+        return index.reader().prepareQuery().withTerms("title", "search engine", Occur.MUST);
+    }
+
+    private static List<String> ids(EntityIndex<Post> index, IndexQueryBuilder query) {
+        return index.reader().scoredList(query.build()).stream()
+                .map(e -> e.getElement().getId())
+                .collect(Collectors.toList());
+    }
+
+    private static List<Post> posts() {
+        return List.of(new Post("1", "search engine", 20),
+                new Post("2", "a search engine", 10),
+                new Post("3", "engine search", 30),
+                new Post("4", "the search engine internals", 5),
+                new Post("5", "a search for the best database, and a blazing fast storage engine", 100));
+    }
+
+    @Index(name = "posts")
+    public static class Post {
+        @Id
+        private String id;
+
+        @IndexedField(type = IndexedFieldType.TEXT)
+        private String title;
+
+        @SortedField
+        private int likes;
+
+        public Post() {
+        }
+
+        Post(String id, String title, int likes) {
+            this.id = id;
+            this.title = title;
+            this.likes = likes;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public int getLikes() {
+            return likes;
+        }
+
+        public void setLikes(int likes) {
+            this.likes = likes;
+        }
+    }
+}
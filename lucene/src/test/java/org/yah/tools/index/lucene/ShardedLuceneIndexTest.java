@@ -0,0 +1,138 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexSort;
+import org.yah.tools.index.query.IndexSort.IndexSortDirection;
+import org.yah.tools.index.query.IndexSort.IndexSortField;
+import org.yah.tools.index.query.SearchRequest;
+import org.yah.tools.index.query.SearchResult;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThrows;
+
+public class ShardedLuceneIndexTest {
+
+    private static final int ENTITIES = 500;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+    private LuceneIndex<TestEntity> index;
+    private ShardedLuceneIndex<TestEntity> shardedIndex;
+    private List<TestEntity> entities;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder, 4);
+        index = factory.buildIndex(TestEntity.class);
+        shardedIndex = factory.buildShardedIndex(TestEntity.class);
+
+        entities = TestIndexes.entities(987654321, ENTITIES);
+        index.writer().add(entities);
+        shardedIndex.writer().add(entities);
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+        shardedIndex.close();
+    }
+
+    @Test
+    public void routesElementsToAllShards() {
+        assertThat(shardedIndex.getShardCount(), is(4));
+        assertThat(shardedIndex.reader().count(), is(ENTITIES));
+        shardedIndex.getShards().forEach(shard -> assertThat(shard.reader().count(), greaterThan(0)));
+    }
+
+    @Test
+    public void shardsShareOneExecutor() {
+        final Executor executor = shardedIndex.getShards().get(0).getExecutor();
+        shardedIndex.getShards().forEach(shard -> assertThat(shard.getExecutor(), sameInstance(executor)));
+    }
+
+    @Test
+    public void sortedQueryMatchesSingleIndex() {
+        final IndexQuery query = sortedQuery().build();
+        assertThat(names(shardedIndex.reader().list(query)), contains(names(index.reader().list(query)).toArray()));
+    }
+
+    @Test
+    public void paginatesWithSmallBatches() {
+        final IndexQuery query = sortedQuery().skip(37).limit(200).build();
+        final List<String> expected = names(index.reader().list(query));
+        final List<String> actual = new ArrayList<>();
+        shardedIndex.reader().query(query, 7).forEachRemaining(e -> actual.add(e.getFullName()));
+        assertThat(actual, contains(expected.toArray()));
+    }
+
+    @Test
+    public void countsAndScoresLikeSingleIndex() {
+        final IndexQuery query = index.reader().prepareQuery()
+                .withTerms("nestedBean1.text", "ale beer")
+                .build();
+        assertThat(shardedIndex.reader().count(query), is(index.reader().count(query)));
+        assertThat(shardedIndex.reader().scoredList(query), hasSize(index.reader().count(query)));
+    }
+
+    @Test
+    public void findsAndDeletesByIds() {
+        final List<String> ids = entities.subList(10, 30).stream()
+                .map(TestEntity::getId)
+                .collect(Collectors.toList());
+        assertThat(shardedIndex.reader().find(ids), hasSize(ids.size()));
+
+        shardedIndex.writer().delete(ids);
+        assertThat(shardedIndex.reader().find(ids), empty());
+        assertThat(shardedIndex.reader().count(), is(ENTITIES - ids.size()));
+    }
+
+    @Test
+    public void multiSearchMatchesSingleIndex() {
+        final IndexQuery query = sortedQuery().limit(20).build();
+        final List<SearchRequest> requests = List.of(SearchRequest.list(query), SearchRequest.count(query));
+        final List<SearchResult<TestEntity>> expected = index.reader().multiSearch(requests);
+        final List<SearchResult<TestEntity>> actual = shardedIndex.reader().multiSearch(requests);
+        assertThat(names(actual.get(0).getList()), contains(names(expected.get(0).getList()).toArray()));
+        assertThat(actual.get(1).getCount(), is(expected.get(1).getCount()));
+    }
+
+    @Test(expected = IndexException.class)
+    public void rejectsDifferentShardCount() {
+        shardedIndex.close();
+        new ShardedLuceneIndex<>(shardedIndex.getPath(), 3,
+                shardedIndex.getShards().get(0).getAnalyzer(),
+                shardedIndex.getShards().get(0).getDocumentMapper());
+    }
+
+    @Test
+    public void keepsTheShardBuilderUnchanged() throws Exception {
+        final LuceneIndex.Builder<TestEntity> builder = TestIndexes.builder(index);
+        new ShardedLuceneIndex<>(temporaryFolder.newFolder().toPath(), 2, builder).close();
+        // the builder has still no path
+        assertThrows(NullPointerException.class, builder::build);
+    }
+
+    private org.yah.tools.index.query.IndexQueryBuilder sortedQuery() {
+        return index.reader().prepareQuery()
+                .sort(new IndexSort(IndexSortField.property("sortedName", IndexSortDirection.DESC)));
+    }
+
+    private static List<String> names(Collection<TestEntity> entities) {
+        return entities.stream().map(TestEntity::getFullName).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Indexes and entities shared by the tests
+ */
+public final class TestIndexes {
+
+    private TestIndexes() {
+    }
+
+    /**
+     * @return a factory builder storing the indexes in a new folder
+     */
+    public static LuceneIndexFactory.Builder factoryBuilder(TemporaryFolder temporaryFolder) throws IOException {
+        return LuceneIndexFactory.builder(temporaryFolder.newFolder().toPath());
+    }
+
+    public static LuceneIndexFactory factory(TemporaryFolder temporaryFolder) throws IOException {
+        return factoryBuilder(temporaryFolder).build();
+    }
+
+    public static LuceneIndexFactory factory(TemporaryFolder temporaryFolder, int defaultShards) throws IOException {
+        return factoryBuilder(temporaryFolder).withDefaultShards(defaultShards).build();
+    }
+
+    /**
+     * @return a builder of indexes with the analyzer and document mapper of an index
+     */
+    public static <T> LuceneIndex.Builder<T> builder(LuceneIndex<T> template) {
+        return LuceneIndex.builder(template.getAnalyzer(), template.getDocumentMapper());
+    }
+
+    /**
+     * @return a builder of indexes of an annotated type, without path
+     */
+    public static <T> LuceneIndex.Builder<T> builder(TemporaryFolder temporaryFolder, Class<T> type) throws IOException {
+        try (LuceneIndex<T> template = factory(temporaryFolder).buildInMemoryIndex(type)) {
+            return builder(template);
+        }
+    }
+
+    /**
+     * @return random entities generated from a seed, with random ids
+     */
+    public static List<TestEntity> entities(long seed, int count) {
+        final Supplier<TestEntity> supplier = TestEntity.randomEntities(new Random(seed));
+        final List<TestEntity> entities = new ArrayList<>(count);
+        while (entities.size() < count) entities.add(supplier.get());
+        return entities;
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.yah.tools.index.lucene;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.VersionConflictException;
+import org.yah.tools.index.lucene.annotations.Id;
+import org.yah.tools.index.lucene.annotations.Index;
+import org.yah.tools.index.lucene.annotations.IndexedField;
+import org.yah.tools.index.lucene.annotations.IndexedFieldType;
+import org.yah.tools.index.lucene.annotations.Version;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class VersionedUpdateTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndexFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = TestIndexes.factory(temporaryFolder);
+    }
+
+    @Test
+    public void rejectsStaleUpdates() {
+        try (LuceneIndex<VersionedEntity> index = factory.buildIndex(VersionedEntity.class)) {
+            index.writer().add(new VersionedEntity("a", 1, "first"));
+            index.writer().update(new VersionedEntity("a", 2, "second"));
+            assertConflict(index, new VersionedEntity("a", 2, "stale"));
+            assertThat(index.reader().get("a").getName(), is("second"));
+
+            index.writer().update(List.of(new VersionedEntity("b", 1, "b1"), new VersionedEntity("b", 3, "b3")));
+            assertConflict(index, new VersionedEntity("b", 2, "stale"));
+        }
+
+        // versions are read from the index doc values after reopening
+        try (LuceneIndex<VersionedEntity> index = factory.buildIndex(VersionedEntity.class)) {
+            assertConflict(index, new VersionedEntity("a", 1, "stale"));
+            index.writer().update(new VersionedEntity("a", 5, "fifth"));
+            assertThat(index.reader().get("a").getName(), is("fifth"));
+
+            index.writer().delete("b");
+            index.writer().update(new VersionedEntity("b", 1, "recreated"));
+            assertThat(index.reader().get("b").getName(), is("recreated"));
+        }
+    }
+
+    @Test
+    public void skipsStaleUpdates() {
+        final LuceneIndex<VersionedEntity> source = factory.buildInMemoryIndex(VersionedEntity.class);
+        try (LuceneIndex<VersionedEntity> index = TestIndexes.builder(source)
+                .inMemory()
+                .withVersionConflicts(VersionConflicts.SKIP)
+                .build()) {
+            source.close();
+            index.writer().add(List.of(new VersionedEntity("a", 2, "a2"), new VersionedEntity("b", 2, "b2")));
+            index.writer().update(List.of(new VersionedEntity("a", 3, "a3"), new VersionedEntity("b", 1, "b1")));
+            assertThat(index.reader().get("a").getName(), is("a3"));
+            assertThat(index.reader().get("b").getName(), is("b2"));
+            assertThat(index.reader().count(), is(2));
+        }
+    }
+
+    private static void assertConflict(LuceneIndex<VersionedEntity> index, VersionedEntity entity) {
+        try {
+            index.writer().update(entity);
+            fail("expected a version conflict on " + entity.getId());
+        } catch (VersionConflictException e) {
+            assertThat(e.getIds(), contains(entity.getId()));
+        }
+    }
+
+    @Index(name = "versioned")
+    public static class VersionedEntity {
+        @Id
+        private String id;
+
+        @Version
+        private long version;
+
+        @IndexedField(type = IndexedFieldType.KEYWORD)
+        private String name;
+
+        public VersionedEntity() {
+        }
+
+        VersionedEntity(String id, long version, String name) {
+            this.id = id;
+            this.version = version;
+            this.name = name;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public void setVersion(long version) {
+            this.version = version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
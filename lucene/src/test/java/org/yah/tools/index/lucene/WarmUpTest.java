@@ -0,0 +1,210 @@
+package org.yah.tools.index.lucene;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.ExportTest.Product;
+import org.yah.tools.index.lucene.metrics.IndexOperation;
+import org.yah.tools.index.lucene.metrics.SimpleIndexMetrics;
+import org.yah.tools.index.query.IndexQuery;
+import org.yah.tools.index.query.IndexSort;
+import org.yah.tools.index.query.IndexSort.IndexSortDirection;
+import org.yah.tools.index.query.IndexSort.IndexSortField;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class WarmUpTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LuceneIndex<Product> template;
+    private SimpleIndexMetrics metrics;
+    private Path path;
+
+    @Before
+    public void setUp() throws Exception {
+        template = TestIndexes.factory(temporaryFolder)
+                .buildInMemoryIndex(Product.class);
+        metrics = new SimpleIndexMetrics();
+        path = temporaryFolder.newFolder().toPath();
+    }
+
+    @After
+    public void tearDown() {
+        template.close();
+    }
+
+    @Test
+    public void warmsNewSegmentsOnce() {
+        try (LuceneIndex<Product> index = build(false)) {
+            registerWarmUps(index);
+            assertThat(warmedDocuments(), is(0L));
+
+            index.writer().add(products(0, 100));
+            assertThat(index.reader().count(), is(100));
+            assertThat(warmedDocuments(), is(100L));
+
+            // the segments of the current reader are not warmed again
+            index.writer().add(products(100, 50));
+            assertThat(index.reader().count(), is(150));
+            assertThat(warmedDocuments(), is(150L));
+            assertThat(index.reader().count(), is(150));
+            assertThat(warmedDocuments(), is(150L));
+        }
+    }
+
+    @Test
+    public void warmsMergedSegments() throws Exception {
+        try (LuceneIndex<Product> index = build(false)) {
+            registerWarmUps(index);
+            for (int i = 0; i < 3; i++) {
+                index.writer().add(products(i * 100, 100));
+                assertThat(index.reader().count(), is((i + 1) * 100));
+            }
+            assertThat(warmedDocuments(), is(300L));
+
+            ((LuceneIndexWriter<Product>) index.writer()).indexWriter.forceMerge(1);
+            assertThat(warmedDocuments(), is(600L));
+            assertThat(index.reader().count(), is(300));
+            assertThat(warmedDocuments(), is(600L));
+        }
+    }
+
+    @Test
+    public void touchesHotFilesAtStartup() {
+        try (LuceneIndex<Product> index = build(false)) {
+            index.writer().add(products(0, 100));
+            ((LuceneIndexWriter<Product>) index.writer()).commit();
+            try (Directory directory = index.openDirectory()) {
+                assertThat(SegmentWarmer.touchFiles(directory), greaterThan(0L));
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        try (LuceneIndex<Product> index = build(true)) {
+            assertThat(index.reader().count(), is(100));
+        }
+    }
+
+    @Test
+    public void servesCurrentReaderDuringWarmUp() throws Exception {
+        final BlockingQuery blockingQuery = new BlockingQuery();
+        try (LuceneIndex<Product> index = build(false)) {
+            index.writer().add(products(0, 100));
+            assertThat(index.reader().count(), is(100));
+            index.addWarmUpQuery(new LuceneIndexQuery(blockingQuery));
+
+            index.writer().add(products(100, 50));
+            blockingQuery.armed.set(true);
+            final CompletableFuture<Integer> refreshed = CompletableFuture.supplyAsync(() -> index.reader().count());
+            try {
+                assertThat(blockingQuery.warming.await(10, TimeUnit.SECONDS), is(true));
+                // the warm-up is blocked, the current reader still answers
+                assertThat(CompletableFuture.supplyAsync(() -> index.reader().count()).get(10, TimeUnit.SECONDS),
+                        is(100));
+                assertThat(refreshed.isDone(), is(false));
+            } finally {
+                blockingQuery.release.countDown();
+            }
+            assertThat(refreshed.get(10, TimeUnit.SECONDS), is(150));
+            assertThat(index.reader().count(), is(150));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsortableWarmUpQuery() {
+        try (LuceneIndex<Product> index = build(false)) {
+            index.addWarmUpQuery(index.reader().prepareQuery()
+                    .sort(new IndexSort(IndexSortField.property("missing", IndexSortDirection.ASC)))
+                    .build());
+        }
+    }
+
+    /**
+     * A match all query blocking its first search once armed
+     */
+    private static final class BlockingQuery extends Query {
+        private final AtomicBoolean armed = new AtomicBoolean();
+        private final CountDownLatch warming = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+            if (armed.compareAndSet(true, false)) {
+                warming.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            return new MatchAllDocsQuery().createWeight(searcher, scoreMode, boost);
+        }
+
+        @Override
+        public String toString(String field) {
+            return "blocking";
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    private LuceneIndex<Product> build(boolean startupWarmUp) {
+        return TestIndexes.builder(template)
+                .withPath(path)
+                .withName("products")
+                .withMetrics(metrics)
+                .withStartupWarmUp(startupWarmUp)
+                .build();
+    }
+
+    private static void registerWarmUps(LuceneIndex<Product> index) {
+        final IndexQuery query = index.reader().prepareQuery()
+                .sort(new IndexSort(IndexSortField.property("price", IndexSortDirection.DESC)))
+                .build();
+        index.addWarmUpQuery(query);
+        index.addWarmUpFields("stock");
+    }
+
+    private long warmedDocuments() {
+        final SimpleIndexMetrics.IndexStats stats = metrics.getStats("products");
+        return stats == null ? 0 : stats.getHistogram(IndexOperation.WARM_UP).getDocuments();
+    }
+
+    private static List<Product> products(int from, int count) {
+        final List<Product> products = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            products.add(new Product(Integer.toString(i), "product " + i, i % 100, i % 10));
+        }
+        return products;
+    }
+}
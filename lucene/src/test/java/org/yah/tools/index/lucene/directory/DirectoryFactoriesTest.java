@@ -0,0 +1,67 @@
+package org.yah.tools.index.lucene.directory;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.LuceneIndex;
+import org.yah.tools.index.lucene.mapper.IdentityEntityDocumentMapper;
+import org.yah.tools.index.lucene.mapper.IndexableFieldType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DirectoryFactoriesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void mmapWithPreload() throws IOException {
+        assertIndexing(DirectoryFactories.mmap(Set.of("tim", "si")));
+    }
+
+    @Test
+    public void niofs() throws IOException {
+        assertIndexing(DirectoryFactories.niofs);
+    }
+
+    @Test
+    public void nrtCaching() throws IOException {
+        final DirectoryFactory factory = DirectoryFactories.nrtCaching(DirectoryFactories.mmap, 5, 60);
+        assertThat(factory.toString(), containsString("NRTCachingDirectory(MMapDirectory"));
+        assertIndexing(factory);
+    }
+
+    private void assertIndexing(DirectoryFactory directoryFactory) throws IOException {
+        final LuceneIndex.Builder<Document> builder = LuceneIndex.builder(new StandardAnalyzer(),
+                IdentityEntityDocumentMapper.entityMapper("id", IndexableFieldType.STRING))
+                .withPath(temporaryFolder.newFolder().toPath())
+                .withDirectoryFactory(directoryFactory);
+        try (LuceneIndex<Document> index = builder.build()) {
+            assertThat(index.getDirectoryFactory(), sameInstance(directoryFactory));
+            List<Document> documents = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                final Document document = new Document();
+                document.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+                documents.add(document);
+            }
+            index.writer().add(documents);
+            assertThat(index.reader().count(), is(100));
+        }
+        // reopen from committed files
+        try (LuceneIndex<Document> index = builder.build()) {
+            assertThat(index.reader().count(), is(100));
+            assertThat(index.reader().find("42").isPresent(), is(true));
+        }
+    }
+
+}
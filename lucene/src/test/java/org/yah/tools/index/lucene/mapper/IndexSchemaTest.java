@@ -0,0 +1,85 @@
+package org.yah.tools.index.lucene.mapper;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.IndexException;
+import org.yah.tools.index.lucene.LuceneIndex;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IndexSchemaTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void userDataRoundTripAndDiff() {
+        final IndexSchema schema = mapper(false).getSchema();
+        assertThat(IndexSchema.fromUserData(schema.toUserData()), is(schema));
+        assertThat(schema.getFieldType("size"), is(IndexableFieldType.INTEGER));
+
+        final IndexSchema changed = mapper(true).getSchema();
+        assertThat(changed.diff(schema), contains("field lastName (STRING) added"));
+        assertThat(schema.diff(changed), contains("field lastName (STRING) removed"));
+        assertThat(IndexSchema.fromUserData(Map.of()), nullValue());
+    }
+
+    @Test
+    public void validatesSchemaOnOpen() throws Exception {
+        final Path path = temporaryFolder.newFolder().toPath();
+        try (LuceneIndex<TestEntity> index = builder(false).withPath(path).build()) {
+            index.writer().add(TestEntity.randomEntity(new Random(12)));
+        }
+
+        try (LuceneIndex<TestEntity> index = builder(false).withPath(path).build()) {
+            assertThat(index.reader().count(), is(1));
+        }
+
+        try (LuceneIndex<TestEntity> index = builder(true).withPath(path).build()) {
+            assertThrows(() -> index.reader().count());
+            assertThrows(index::writer);
+        }
+
+        try (LuceneIndex<TestEntity> index = builder(true).withPath(path)
+                .withSchemaValidation(IndexSchema.Validation.WARN)
+                .build()) {
+            index.writer().add(TestEntity.randomEntity(new Random(13)));
+        }
+
+        try (LuceneIndex<TestEntity> index = builder(true).withPath(path).build()) {
+            assertThat(index.reader().count(), is(2));
+        }
+    }
+
+    private static void assertThrows(Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (IndexException e) {
+            assertThat(e.getMessage(), containsString("field lastName (STRING) added"));
+            return;
+        }
+        throw new AssertionError("IndexException expected");
+    }
+
+    private static LuceneIndex.Builder<TestEntity> builder(boolean withLastName) {
+        return LuceneIndex.builder(new StandardAnalyzer(), mapper(withLastName));
+    }
+
+    private static DefaultDocumentMapper<TestEntity> mapper(boolean withLastName) {
+        final DefaultDocumentMapper.Builder<TestEntity> builder = DefaultDocumentMapper.builder(TestEntity.class)
+                .withIdField("id", TestEntity::getId)
+                .withNullableField("firstName", TestEntity::getFirstName, IndexableFieldFactories.string)
+                .withIndexedField("size", TestEntity::getSize, IndexableFieldFactories.intPoint);
+        if (withLastName)
+            builder.withNullableField("lastName", TestEntity::getLastName, IndexableFieldFactories.string);
+        return builder.build();
+    }
+
+}
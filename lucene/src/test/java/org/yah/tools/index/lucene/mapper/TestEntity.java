@@ -1,5 +1,6 @@
 package org.yah.tools.index.lucene.mapper;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.github.javafaker.Faker;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
@@ -132,6 +133,7 @@ public class TestEntity {
 
     @IndexedField(type = IndexedFieldType.TEXT, analyzer = FrenchAnalyzer.class)
     @SortedField("sortedName")
+    @JsonIgnore
     public String getFullName() {
         return firstName + " " + lastName;
     }
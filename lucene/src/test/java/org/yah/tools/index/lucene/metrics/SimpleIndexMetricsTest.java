@@ -0,0 +1,74 @@
+package org.yah.tools.index.lucene.metrics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.LuceneIndex;
+import org.yah.tools.index.lucene.LuceneIndexFactory;
+import org.yah.tools.index.lucene.TestIndexes;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+import org.yah.tools.index.query.IndexCursor;
+import org.yah.tools.index.query.IndexQuery;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SimpleIndexMetricsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void recordsIndexOperations() throws Exception {
+        final SimpleIndexMetrics metrics = new SimpleIndexMetrics();
+        final LuceneIndexFactory factory = TestIndexes.factoryBuilder(temporaryFolder)
+                .withMetrics(metrics)
+                .build();
+
+        final List<TestEntity> entities = TestIndexes.entities(42, 50);
+
+        try (LuceneIndex<TestEntity> index = factory.buildInMemoryIndex(TestEntity.class)) {
+            assertThat(index.getName(), is("test"));
+            index.writer().add(entities);
+            index.writer().update(entities.get(0));
+            index.writer().delete(entities.get(1).getId());
+            assertThat(index.reader().list(IndexQuery.ALL), hasSize(49));
+            assertThat(index.reader().count(), is(49));
+        }
+
+        final SimpleIndexMetrics.IndexStats stats = metrics.getStats("test");
+        assertThat(stats.getHistogram(IndexOperation.ADD).getDocuments(), is(50L));
+        assertThat(stats.getHistogram(IndexOperation.UPDATE).getCount(), is(1L));
+        assertThat(stats.getHistogram(IndexOperation.DELETE).getDocuments(), is(1L));
+        assertThat(stats.getHistogram(IndexOperation.REFRESH).getCount(), greaterThan(0L));
+        assertThat(stats.getHistogram(IndexOperation.QUERY).getDocuments(), is(49L));
+        assertThat(stats.getHistogram(IndexOperation.FETCH).getCount(), is(49L));
+        assertThat(stats.getHistogram(IndexOperation.HYDRATE).getCount(), is(49L));
+        assertThat(stats.getHistogram(IndexOperation.COUNT).getDocuments(), is(49L));
+        assertThat(stats.getStoredFieldsBytes(), greaterThan(0L));
+        assertThat(stats.getSegments(), greaterThan(0));
+        assertThat(stats.getReaderReferences(), is(0));
+    }
+
+    @Test
+    public void releasesReaderReferencesOnClose() throws Exception {
+        final SimpleIndexMetrics metrics = new SimpleIndexMetrics();
+        final LuceneIndexFactory factory = TestIndexes.factoryBuilder(temporaryFolder)
+                .withMetrics(metrics)
+                .build();
+
+        final IndexCursor<TestEntity> cursor;
+        try (LuceneIndex<TestEntity> index = factory.buildInMemoryIndex(TestEntity.class)) {
+            index.writer().add(TestIndexes.entities(42, 1));
+            cursor = index.reader().query(IndexQuery.ALL, 10);
+            assertThat(metrics.getStats("test").getReaderReferences(), is(2));
+        }
+        // the cursor left open when the index was closed does not release its reference again
+        assertThat(metrics.getStats("test").getReaderReferences(), is(0));
+        cursor.close();
+        assertThat(metrics.getStats("test").getReaderReferences(), is(0));
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.yah.tools.index.lucene.metrics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.LuceneIndex;
+import org.yah.tools.index.lucene.LuceneIndexFactory;
+import org.yah.tools.index.lucene.TestIndexes;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+import org.yah.tools.index.query.IndexCursor;
+import org.yah.tools.index.query.IndexQuery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SlowQueryLogTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void logsSampledQueriesOverThreshold() throws Exception {
+        final List<SlowQuery> slowQueries = new ArrayList<>();
+        final SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ZERO) {
+            @Override
+            protected void log(SlowQuery query) {
+                slowQueries.add(query);
+            }
+        };
+
+        try (LuceneIndex<TestEntity> index = createIndex(slowQueryLog)) {
+            final IndexQuery query = index.reader().prepareQuery().skip(10).limit(20).build();
+            assertThat(index.reader().list(query), hasSize(20));
+        }
+
+        assertThat(slowQueries, hasSize(1));
+        final SlowQuery slowQuery = slowQueries.get(0);
+        assertThat(slowQuery.getIndex(), is("test"));
+        assertThat(slowQuery.getSkip(), is(10));
+        assertThat(slowQuery.getLimit(), is(20));
+        assertThat(slowQuery.getTotalHits(), is(50L));
+        assertThat(slowQuery.getReturned(), is(20));
+        assertThat(slowQuery.getPhaseNanos(QueryPhase.SKIP), greaterThan(0L));
+        assertThat(slowQuery.getPhaseNanos(QueryPhase.SEARCH), greaterThan(0L));
+        assertThat(slowQuery.getPhaseNanos(QueryPhase.FETCH), greaterThan(0L));
+        assertThat(slowQuery.getPhaseNanos(QueryPhase.DESERIALIZE), greaterThan(0L));
+    }
+
+    @Test
+    public void logsCountsAndClosedCursorsOnce() throws Exception {
+        final List<SlowQuery> slowQueries = new ArrayList<>();
+        final SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ZERO) {
+            @Override
+            protected void log(SlowQuery query) {
+                slowQueries.add(query);
+            }
+        };
+
+        try (LuceneIndex<TestEntity> index = createIndex(slowQueryLog)) {
+            final IndexCursor<TestEntity> cursor = index.reader().query(IndexQuery.ALL, 10);
+            cursor.close();
+            cursor.close();
+            assertThat(slowQueries, hasSize(1));
+
+            assertThat(index.reader().count(IndexQuery.ALL), is(50));
+        }
+
+        assertThat(slowQueries, hasSize(2));
+        final SlowQuery count = slowQueries.get(1);
+        assertThat(count.getTotalHits(), is(50L));
+        assertThat(count.getReturned(), is(0));
+        assertThat(count.getPhaseNanos(QueryPhase.SEARCH), greaterThan(0L));
+    }
+
+    @Test
+    public void ignoresUnsampledAndFastQueries() throws Exception {
+        final List<SlowQuery> slowQueries = new ArrayList<>();
+        final SlowQueryLog unsampled = new SlowQueryLog(Duration.ZERO, 0) {
+            @Override
+            protected void log(SlowQuery query) {
+                slowQueries.add(query);
+            }
+        };
+        final SlowQueryLog fast = new SlowQueryLog(Duration.ofHours(1)) {
+            @Override
+            protected void log(SlowQuery query) {
+                slowQueries.add(query);
+            }
+        };
+
+        for (SlowQueryLog slowQueryLog : List.of(unsampled, fast)) {
+            try (LuceneIndex<TestEntity> index = createIndex(slowQueryLog)) {
+                assertThat(index.reader().list(IndexQuery.ALL), hasSize(50));
+            }
+        }
+        assertThat(slowQueries, empty());
+    }
+
+    private LuceneIndex<TestEntity> createIndex(SlowQueryLog slowQueryLog) throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factoryBuilder(temporaryFolder)
+                .withSlowQueryLog(slowQueryLog)
+                .build();
+        final List<TestEntity> entities = TestIndexes.entities(42, 50);
+
+        final LuceneIndex<TestEntity> index = factory.buildInMemoryIndex(TestEntity.class);
+        index.writer().add(entities);
+        return index;
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.yah.tools.index.lucene.replication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yah.tools.index.lucene.LuceneIndex;
+import org.yah.tools.index.lucene.LuceneIndexFactory;
+import org.yah.tools.index.lucene.TestIndexes;
+import org.yah.tools.index.lucene.mapper.TestEntity;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IndexReplicaTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void replicaCopiesPublishedCommits() throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factory(temporaryFolder);
+        final Path replicationDirectory = temporaryFolder.newFolder().toPath();
+        final List<TestEntity> entities = TestIndexes.entities(42, 100);
+
+        try (LuceneIndex<TestEntity> primary = factory.buildIndex(TestEntity.class);
+             LuceneIndex<TestEntity> replicaIndex = TestIndexes.builder(primary)
+                     .withPath(temporaryFolder.newFolder().toPath())
+                     .build()) {
+            final IndexPublisher publisher = new IndexPublisher(primary, replicationDirectory, 2);
+            final IndexReplica replica = new IndexReplica(replicaIndex, replicationDirectory);
+            assertThat(replica.update(), is(false));
+
+            primary.writer().add(entities);
+            final long generation = publisher.publish();
+            assertThat(publisher.publish(), is(generation));
+            assertThat(replica.update(), is(true));
+            assertThat(replica.update(), is(false));
+            assertThat(replicaIndex.reader().count(), is(entities.size()));
+
+            for (int i = 0; i < 3; i++) {
+                primary.writer().delete(entities.get(i).getId());
+                assertThat(publisher.publish(), greaterThan(generation));
+            }
+            assertThat(revisions(replicationDirectory), is(2L));
+            assertThat(replica.update(), is(true));
+            assertThat(replicaIndex.reader().count(), is(entities.size() - 3));
+            assertThat(replicaIndex.reader().find(entities.get(0).getId()).isPresent(), is(false));
+        }
+    }
+
+    @Test
+    public void replicaFollowsARestoredPrimary() throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factory(temporaryFolder);
+        final Path replicationDirectory = temporaryFolder.newFolder().toPath();
+        final Path backup = temporaryFolder.newFolder().toPath();
+        final List<TestEntity> entities = TestIndexes.entities(42, 100);
+
+        try (LuceneIndex<TestEntity> primary = factory.buildIndex(TestEntity.class);
+             LuceneIndex<TestEntity> replicaIndex = TestIndexes.builder(primary)
+                     .withPath(temporaryFolder.newFolder().toPath())
+                     .build()) {
+            final IndexPublisher publisher = new IndexPublisher(primary, replicationDirectory, 2);
+            final IndexReplica replica = new IndexReplica(replicaIndex, replicationDirectory);
+
+            primary.writer().add(entities.subList(0, 50));
+            final long generation = primary.backupTo(backup, false).getGeneration();
+            primary.writer().add(entities.subList(50, 100));
+            assertThat(publisher.publish(), greaterThan(generation));
+            assertThat(replica.update(), is(true));
+            assertThat(replicaIndex.reader().count(), is(100));
+
+            primary.restoreFrom(backup);
+            assertThat(publisher.publish(), is(generation));
+            assertThat(replica.update(), is(true));
+            assertThat(replica.update(), is(false));
+            assertThat(replicaIndex.reader().count(), is(50));
+        }
+    }
+
+    @Test
+    public void restartedReplicaKeepsTheOpenCommitFiles() throws Exception {
+        final LuceneIndexFactory factory = TestIndexes.factory(temporaryFolder);
+        final Path replicationDirectory = temporaryFolder.newFolder().toPath();
+        final Path replicaPath = temporaryFolder.newFolder().toPath();
+        final List<TestEntity> entities = TestIndexes.entities(42, 100);
+
+        try (LuceneIndex<TestEntity> primary = factory.buildIndex(TestEntity.class);
+             LuceneIndex<TestEntity> replicaIndex = TestIndexes.builder(primary)
+                     .withPath(replicaPath)
+                     .build()) {
+            final IndexPublisher publisher = new IndexPublisher(primary, replicationDirectory, 2);
+            primary.writer().add(entities.subList(0, 50));
+            publisher.publish();
+            assertThat(new IndexReplica(replicaIndex, replicationDirectory).update(), is(true));
+            assertThat(replicaIndex.reader().count(), is(50));
+            final List<Path> openFiles = files(replicaPath);
+
+            // the restarted replica must keep the files of the commit opened before the restart
+            final IndexReplica replica = new IndexReplica(replicaIndex, replicationDirectory);
+            primary.writer().clear();
+            primary.writer().add(entities.subList(50, 100));
+            publisher.publish();
+            assertThat(replica.update(), is(true));
+            for (Path file : openFiles) {
+                assertThat(file + " was deleted", Files.exists(file), is(true));
+            }
+            assertThat(replicaIndex.reader().count(), is(50));
+            assertThat(replicaIndex.reader().find(entities.get(50).getId()).isPresent(), is(true));
+        }
+    }
+
+    private static List<Path> files(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> !file.getFileName().toString().equals("write.lock"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long revisions(Path replicationDirectory) throws Exception {
+        try (Stream<Path> files = Files.list(replicationDirectory)) {
+            return files.filter(Files::isDirectory).count();
+        }
+    }
+}